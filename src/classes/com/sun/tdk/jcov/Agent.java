@@ -26,7 +26,11 @@ package com.sun.tdk.jcov;
 
 import com.sun.tdk.jcov.constants.MiscConstants;
 import com.sun.tdk.jcov.instrument.*;
+import com.sun.tdk.jcov.instrument.asm.ClassCache;
+import com.sun.tdk.jcov.instrument.asm.ClassHierarchy;
 import com.sun.tdk.jcov.instrument.asm.ClassMorph;
+import com.sun.tdk.jcov.instrument.asm.OverriddenClassWriter;
+import com.sun.tdk.jcov.instrument.asm.ReloadStore;
 import com.sun.tdk.jcov.runtime.AgentSocketSaver;
 import com.sun.tdk.jcov.runtime.Collect;
 import com.sun.tdk.jcov.runtime.CollectDetect;
@@ -44,12 +48,20 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.charset.Charset;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -81,9 +93,15 @@ public class Agent extends JCovTool {
     private String template;
     private String filename;
     private String flushPath;
+    private String cachePath;
+    private long cacheSize;
+    private long reloadSize;
+    private String hierarchyPath;
     private InstrumentationOptions.InstrumentationMode mode;
     private InstrumentationOptions.MERGE merge;
     private boolean grabberSaver = false;
+    private int disarmPeriod;
+    private boolean minimizeProbes;
 
     static {
         Utils.initLogger();
@@ -93,7 +111,27 @@ public class Agent extends JCovTool {
     private static ClassMorph classMorph;
     private String host;
     private int port;
-    private static final Object LOCK = new Object();
+    private boolean serialTransform = false;
+    /**
+     * Classes are instrumented holding the read lock so that they can be
+     * instrumented in parallel. Savers hold the write lock - DataRoot can't be
+     * saved while classes are being added to it.
+     */
+    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+
+    static {
+        // load lock implementation classes before the transformer is
+        // installed - otherwise their loading would be transformed under the lock
+        LOCK.readLock().lock();
+        LOCK.readLock().unlock();
+        LOCK.writeLock().lock();
+        LOCK.writeLock().unlock();
+    }
+    /**
+     * Removes probes from fully covered classes. Null unless "disarm" option
+     * is set.
+     */
+    private static volatile Disarmer disarmer;
 
     private static class SynchronizedSaverDecorator implements SaverDecorator {
 
@@ -109,8 +147,16 @@ public class Agent extends JCovTool {
         }
 
         public void saveResults() {
-            synchronized (LOCK) {
+            LOCK.writeLock().lock();
+            try {
+                Disarmer d = disarmer;
+                if (d != null) {
+                    // hits are cleared after saving
+                    d.recordHits();
+                }
                 wrap.saveResults();
+            } finally {
+                LOCK.writeLock().unlock();
             }
         }
     }
@@ -134,6 +180,11 @@ public class Agent extends JCovTool {
          * Can turn off agent instrumentation
          */
         private boolean ignoreLoads = true;
+        /**
+         * Instrument classes one by one even if they are loaded by different
+         * threads
+         */
+        private final boolean serial;
 
         /**
          * Creates new Tr instance
@@ -141,10 +192,12 @@ public class Agent extends JCovTool {
          * @param trname Transformer name. Is not used.
          * @param flushpath Path to flush instrumented classfiles to. Null means
          * that instrumented classfiles should not be flushed.
+         * @param serial Instrument classes one by one
          */
-        public Tr(String trname, String flushpath) {
+        public Tr(String trname, String flushpath, boolean serial) {
             this.trname = trname;
             this.flushpath = flushpath;
+            this.serial = serial;
         }
 
         /**
@@ -164,7 +217,33 @@ public class Agent extends JCovTool {
                 Class<?> classBeingRedefined,
                 ProtectionDomain protectionDomain,
                 byte[] classfileBuffer) {
-            synchronized (LOCK) {
+            return transform(loader, className, classfileBuffer, null);
+        }
+
+        /**
+         * transform method implementation used by VMs supporting modules. The
+         * module is taken from the VM so that ClassMorph doesn't have to load
+         * classes to find it out.
+         */
+        @Override
+        public byte[] transform(Module module,
+                ClassLoader loader,
+                String className,
+                Class<?> classBeingRedefined,
+                ProtectionDomain protectionDomain,
+                byte[] classfileBuffer) {
+            return transform(loader, className, classfileBuffer,
+                    module.isNamed() ? module.getName() : XmlNames.NO_MODULE);
+        }
+
+        private byte[] transform(ClassLoader loader, String className, byte[] classfileBuffer, String module) {
+            Disarmer d = disarmer;
+            if (d != null && d.isDisarmed(className)) {
+                return null; // original classfile - the class is fully covered
+            }
+            Lock lock = serial ? LOCK.writeLock() : LOCK.readLock();
+            lock.lock();
+            try {
                 if (Collect.enabled == false) {
                     return null; // signals to the VM that no changes were done
                 }
@@ -178,7 +257,7 @@ public class Agent extends JCovTool {
                     } else {
                         logger.log(Level.INFO, "Try to transform {0}", className);
 
-                        byte[] newBuff = classMorph.morph(classfileBuffer, loader, flushpath);
+                        byte[] newBuff = classMorph.morph(classfileBuffer, loader, flushpath, module);
                         return newBuff;
                     }
                 } catch (Throwable e) {
@@ -188,10 +267,194 @@ public class Agent extends JCovTool {
                     CollectDetect.leaveInstrumentationCode(); // release instrumentation lock
                 }
                 return null;
+            } finally {
+                lock.unlock();
             }
         }
     }
 
+    /**
+     * Thread periodically looking for classes all blocks of which were hit.
+     * Such classes are retransformed without probes - the transformer returns
+     * their original classfiles. Collected data stays in the DataRoot, counts
+     * of disarmed classes don't grow anymore.
+     */
+    private static class Disarmer extends Thread {
+
+        private final Instrumentation inst;
+        private final DataRoot root;
+        /**
+         * Period between checks in milliseconds
+         */
+        private final long period;
+        /**
+         * Native methods are wrapped - retransformation can't remove wrappers
+         */
+        private final boolean nativeWrapped;
+        /**
+         * Slots hit at least once - Collect clears counts after every save
+         */
+        private final BitSet hit = new BitSet();
+        /**
+         * Blocks without probes hit at least once
+         */
+        private final Set<DataBlock> derivedHit = Collections.newSetFromMap(new IdentityHashMap<DataBlock, Boolean>());
+        /**
+         * Counts of some blocks are computed from counts of other blocks
+         */
+        private final boolean derived;
+        /**
+         * Names of classes which should not be instrumented anymore
+         */
+        private final Set<String> disarmed = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Creates Disarmer instance
+         *
+         * @param inst Instrumentation to retransform classes with
+         * @param root DataRoot classes are instrumented to
+         * @param period Period between checks in milliseconds
+         * @param nativeWrapped Native methods are instrumented
+         * @param derived Some blocks have no probes
+         */
+        Disarmer(Instrumentation inst, DataRoot root, long period, boolean nativeWrapped, boolean derived) {
+            super("JCov disarmer");
+            setDaemon(true);
+            this.inst = inst;
+            this.root = root;
+            this.period = period;
+            this.nativeWrapped = nativeWrapped;
+            this.derived = derived;
+        }
+
+        boolean isDisarmed(String className) {
+            return disarmed.contains(className);
+        }
+
+        /**
+         * Remembers slots hit since the previous save. Should be called
+         * holding the write lock.
+         */
+        void recordHits() {
+            int slots = Collect.slotCount();
+            for (int i = hit.nextClearBit(0); i < slots; i = hit.nextClearBit(i + 1)) {
+                if (Collect.wasHit(i)) {
+                    hit.set(i);
+                }
+            }
+            if (derived) {
+                for (DataClass c : root.getClasses()) {
+                    if (!disarmed.contains(c.getFullname())) {
+                        for (DataMethod m : c.getMethods()) {
+                            for (DataBlock b : m) {
+                                wasHit(b);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return true if the block was hit since the start or since the
+         * previous save
+         */
+        private boolean wasHit(DataBlock b) {
+            if (b.isDerived()) {
+                // computed from counts collected since the previous save
+                if (!derivedHit.contains(b) && b.wasHit()) {
+                    derivedHit.add(b);
+                }
+                return derivedHit.contains(b);
+            }
+            return b.getId() >= 0 && hit.get(b.getId());
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(period);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    disarm();
+                } catch (Throwable e) {
+                    logger.log(Level.SEVERE, "Error while removing probes: ", e);
+                }
+            }
+        }
+
+        private void disarm() {
+            Set<String> covered = new HashSet<String>();
+            LOCK.writeLock().lock();
+            try {
+                recordHits();
+                for (DataClass c : root.getClasses()) {
+                    if (!disarmed.contains(c.getFullname()) && isCovered(c)) {
+                        covered.add(c.getFullname());
+                    }
+                }
+            } finally {
+                LOCK.writeLock().unlock();
+            }
+            if (covered.isEmpty()) {
+                return;
+            }
+            disarmed.addAll(covered);
+            List<Class<?>> classes = new ArrayList<Class<?>>();
+            for (Class<?> c : inst.getAllLoadedClasses()) {
+                if (covered.contains(c.getName().replace('.', '/')) && inst.isModifiableClass(c)) {
+                    classes.add(c);
+                }
+            }
+            if (classes.isEmpty()) {
+                return;
+            }
+            logger.log(Level.INFO, "Removing probes from {0} classes {1}", new Object[]{classes.size(), classes.get(0)});
+            try {
+                inst.retransformClasses(classes.toArray(new Class<?>[classes.size()]));
+            } catch (Throwable e) {
+                // one bad class fails the whole batch - the rest can be done one by one
+                for (Class<?> c : classes) {
+                    try {
+                        inst.retransformClasses(c);
+                    } catch (Throwable t) {
+                        logger.log(Level.WARNING, "Can't remove probes from " + c.getName(), t);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return true if the class has blocks and all of them were hit
+         */
+        private boolean isCovered(DataClass c) {
+            boolean empty = true;
+            for (DataMethod m : c.getMethods()) {
+                if (nativeWrapped && m.getModifiers().isNative()) {
+                    return false;
+                }
+                for (DataBlock b : m) {
+                    if (!wasHit(b)) {
+                        return false;
+                    }
+                    empty = false;
+                }
+            }
+            for (DataField f : c.getFields()) {
+                for (DataBlock b : f) {
+                    if (!wasHit(b)) {
+                        return false;
+                    }
+                    empty = false;
+                }
+            }
+            return !empty;
+        }
+    }
+
     /**
      * Class for listening agent commands
      */
@@ -438,12 +701,14 @@ public class Agent extends JCovTool {
                 detectInternal, instrumentAbstract ? InstrumentationOptions.ABSTRACTMODE.DIRECT : InstrumentationOptions.ABSTRACTMODE.NONE,
                 include, exclude, callerInclude, callerExclude, m_include, m_exclude, mode, saveBegin, saveEnd)
                 .setInstrumentAnonymous(instrumentAnonymous)
-                .setInstrumentSynthetic(instrumentSynthetic);
+                .setInstrumentSynthetic(instrumentSynthetic)
+                .setMinimizeProbes(minimizeProbes);
 
         params.enable();
         CollectDetect.enterInstrumentationCode();
+        initHierarchy();
 
-        Tr transformer = new Tr("RetransformApp", flushPath);
+        Tr transformer = new Tr("RetransformApp", flushPath, serialTransform);
         inst.addTransformer(transformer, true);
         if (params.isInstrumentNative()) {
             inst.setNativeMethodPrefix(transformer, InstrumentationOptions.nativePrefix);
@@ -451,6 +716,8 @@ public class Agent extends JCovTool {
 
         DataRoot root = new DataRoot(agentArgs, params);
         classMorph = new ClassMorph(filename, root, params);
+        initCache(params);
+        classMorph.setReloadStore(new ReloadStore(reloadSize));
         Class[] classes = inst.getAllLoadedClasses();
         Set<Class> examinedClasses = new HashSet<Class>(Arrays.asList(classes));
         int keep = 0;
@@ -477,6 +744,7 @@ public class Agent extends JCovTool {
             }
         }
         logger.log(Level.INFO, "Retransformed {0} classes", keep);
+        logReloadStore();
         Class[] allClasses = inst.getAllLoadedClasses();
         keep = 0;
         for (Class c : allClasses) {
@@ -508,11 +776,72 @@ public class Agent extends JCovTool {
             AgentSocketSaver saver = new AgentSocketSaver(root, filename, host, port);
             Collect.setSaver(Collect.decorateSaver(new SynchronizedSaverDecorator(saver)));
         }
+        if (disarmPeriod > 0) {
+            if (params.isCallerFilterOn()
+                    || saveBegin != null && saveBegin.length > 0 || saveEnd != null && saveEnd.length > 0) {
+                logger.log(Level.WARNING, "Probes can't be removed when caller filter or save points are used");
+            } else {
+                disarmer = new Disarmer(inst, root, disarmPeriod * 1000L, params.isInstrumentNative(), params.isMinimizeProbes());
+                disarmer.start();
+            }
+        }
         CollectDetect.leaveInstrumentationCode();
         PropertyFinder.addAutoShutdownSave();
 
     }
 
+    private void initCache(InstrumentationParams params) {
+        if (cachePath == null) {
+            return;
+        }
+        if (!ClassCache.isApplicable(params)) {
+            logger.log(Level.WARNING, "Instrumented classes cache can't be used with specified instrumentation options");
+            return;
+        }
+        try {
+            classMorph.setCache(new ClassCache(new File(cachePath), cacheSize, params));
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Instrumented classes cache can't be used", e);
+        }
+    }
+
+    private void logReloadStore() {
+        ReloadStore store = classMorph.getReloadStore();
+        if (store != null) {
+            logger.log(Level.INFO, "Instrumented classes kept for reloading: {0}, {1} bytes in memory, {2} bytes in temporary file",
+                    new Object[]{store.size(), store.getMemorySize(), store.getFileSize()});
+        }
+    }
+
+    private void initHierarchy() {
+        if (hierarchyPath == null) {
+            return;
+        }
+        File file = new File(hierarchyPath);
+        String runtime = System.getProperty("java.home") + ";" + System.getProperty("java.runtime.version");
+        if (file.isFile()) {
+            try {
+                ClassHierarchy hierarchy = ClassHierarchy.load(file);
+                if (runtime.equals(hierarchy.getDescription())) {
+                    OverriddenClassWriter.setHierarchy(hierarchy);
+                    return;
+                }
+                logger.log(Level.INFO, "Class hierarchy file {0} was created for another runtime, rebuilding", file);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Class hierarchy file can't be read, rebuilding", e);
+            }
+        }
+        ClassHierarchy hierarchy = new ClassHierarchy();
+        hierarchy.setDescription(runtime);
+        try {
+            hierarchy.addRuntime();
+            hierarchy.save(file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Class hierarchy file can't be created", e);
+        }
+        OverriddenClassWriter.setHierarchy(hierarchy);
+    }
+
     private void loadFileSaverClasses() throws IOException{
         File file = new File(filename + "_load");
         new FileOutputStream(file).close();
@@ -532,11 +861,13 @@ public class Agent extends JCovTool {
                 detectInternal, instrumentAbstract ? InstrumentationOptions.ABSTRACTMODE.DIRECT : InstrumentationOptions.ABSTRACTMODE.NONE,
                 include, exclude, callerInclude, callerExclude, mode, saveBegin, saveEnd)
                 .setInstrumentAnonymous(instrumentAnonymous)
-                .setInstrumentSynthetic(instrumentSynthetic);
+                .setInstrumentSynthetic(instrumentSynthetic)
+                .setMinimizeProbes(minimizeProbes);
 
         params.enable();
         CollectDetect.enterInstrumentationCode();
-        Tr transformer = new Tr("RetransformApp", flushPath);
+        initHierarchy();
+        Tr transformer = new Tr("RetransformApp", flushPath, serialTransform);
         inst.addTransformer(transformer);
         /* if (Options.isInstrumentNative()) {
          inst.setNativeMethodPrefix(transformer, Options.nativePrefix);
@@ -544,6 +875,8 @@ public class Agent extends JCovTool {
          */
         DataRoot root = new DataRoot(agentArgs, params);
         classMorph = new ClassMorph(filename, root, params);
+        initCache(params);
+        classMorph.setReloadStore(new ReloadStore(reloadSize));
         Class[] classes = inst.getAllLoadedClasses();
         Set<Class> examinedClasses = new HashSet<Class>(Arrays.asList(classes));
         int keep = 0;
@@ -629,11 +962,18 @@ public class Agent extends JCovTool {
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_FIELD,
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_SYNTHETIC,
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_ANONYM,
+                    com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_PROBES,
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_CLASSESRELOAD,
                     // Data save points
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_SAVE_BEGIN,
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_SAVE_AT_END,
                     ClassMorph.DSC_FLUSH_CLASSES,
+                    DSC_TRANSFORM,
+                    DSC_CACHE,
+                    DSC_CACHE_SIZE,
+                    DSC_CLASSESRELOAD_SIZE,
+                    DSC_HIERARCHY,
+                    DSC_DISARM,
                     DSC_GRABBER,
                     DSC_PORT_GRABBER,
                     DSC_HOST_GRABBER,
@@ -747,6 +1087,27 @@ public class Agent extends JCovTool {
             flushPath = null;
         }
 
+        cachePath = opts.getValue(DSC_CACHE);
+        if ("none".equals(cachePath)) {
+            cachePath = null;
+        }
+        cacheSize = Utils.checkedToInt(opts.getValue(DSC_CACHE_SIZE), "cache size", Utils.CheckOptions.INT_POSITIVE) * 1024L * 1024L;
+        reloadSize = Utils.checkedToInt(opts.getValue(DSC_CLASSESRELOAD_SIZE), "classes reload size", Utils.CheckOptions.INT_NONNEGATIVE) * 1024L * 1024L;
+
+        hierarchyPath = opts.getValue(DSC_HIERARCHY);
+        if ("none".equals(hierarchyPath)) {
+            hierarchyPath = null;
+        }
+
+        disarmPeriod = Utils.checkedToInt(opts.getValue(DSC_DISARM), "disarm period", Utils.CheckOptions.INT_NONNEGATIVE);
+
+        String probes = opts.getValue(InstrumentationOptions.DSC_PROBES);
+        if ("minimal".equals(probes)) {
+            minimizeProbes = true;
+        } else if (!"all".equals(probes)) {
+            throw new EnvHandlingException("'" + InstrumentationOptions.DSC_PROBES.name + "' parameter value error: expected 'all' or 'minimal'; found: '" + probes + "'");
+        }
+
         String logfile = opts.getValue(EnvHandler.LOGFILE);
         if (opts.isSet(DSC_LOG) || logfile != null) {
             if (logfile == null) {
@@ -805,6 +1166,7 @@ public class Agent extends JCovTool {
         }
 
         grabberSaver = opts.isSet(DSC_GRABBER);
+        serialTransform = "serial".equals(opts.getValue(DSC_TRANSFORM));
         if (grabberSaver) {
             host = opts.getValue(DSC_HOST_GRABBER);
             Utils.checkHostCanBeNull(host, "grabber host");
@@ -863,6 +1225,37 @@ public class Agent extends JCovTool {
     public final static OptionDescr DSC_LOG =
             new OptionDescr("log", "logging", OptionDescr.VAL_NONE, "Turns on JCov's agent logging.\n"
             + "Log records saved in jcov.log file");
+    public final static OptionDescr DSC_TRANSFORM =
+            new OptionDescr("transform", "Class transformation mode",
+            new String[][]{
+                {"parallel", "classes loaded by different threads are instrumented concurrently"},
+                {"serial", "classes are instrumented one by one"}
+            },
+            "Specifies whether classes loaded by different threads can be instrumented concurrently.", "parallel");
+    public final static OptionDescr DSC_CACHE =
+            new OptionDescr("cache", "Instrumented classes cache",
+            OptionDescr.VAL_SINGLE, "Specifies directory to keep instrumented classes between runs.\n"
+            + "Classes loaded again with the same instrumentation options are taken from the directory instead of instrumenting.\n"
+            + "The directory can be shared by several VMs. Default value is \"none\" - classes are not cached.", "none");
+    public final static OptionDescr DSC_CACHE_SIZE =
+            new OptionDescr("cache.size", "Instrumented classes cache size",
+            OptionDescr.VAL_SINGLE, "Specifies maximum size of the instrumented classes cache in megabytes.\n"
+            + "Least recently used classes are removed from the cache when it grows bigger.", "256");
+    public final static OptionDescr DSC_CLASSESRELOAD_SIZE =
+            new OptionDescr("classesreload.size", "Memory for instrumented classes kept for reloading",
+            OptionDescr.VAL_SINGLE, "Specifies how many megabytes of compressed instrumented classes are kept in memory when classesreload is on.\n"
+            + "Least recently used classes are moved to a temporary file when there are more.", "64");
+    public final static OptionDescr DSC_HIERARCHY =
+            new OptionDescr("hierarchy", "Class hierarchy file",
+            OptionDescr.VAL_SINGLE, "Specifies file with superclasses and interfaces of runtime classes used to compute stack map frames.\n"
+            + "The file is created on first use and recreated when the runtime changes. Default value is \"none\" - classes are read when needed.", "none");
+    public final static OptionDescr DSC_DISARM =
+            new OptionDescr("disarm", "Remove probes from covered classes",
+            OptionDescr.VAL_SINGLE, "Specifies period in seconds to look for classes all blocks of which were hit.\n"
+            + "Such classes are retransformed without probes, their counts don't grow after that.\n"
+            + "Classes with native methods are not retransformed when native methods are instrumented.\n"
+            + "Can't be used with caller filter and save points.\n"
+            + "Default value is 0 - probes are never removed.", "0");
     public final static OptionDescr DSC_GRABBER =
             new OptionDescr("grabber", "use grabber saver", OptionDescr.VAL_NONE, "Use grabber saver instead of file saver. jcov.port "
             + "and jcov.host VM properties could be used to control the saver as well as JCOV_PORT and JCOV_HOST env variable");
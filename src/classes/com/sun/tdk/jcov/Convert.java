@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov;
+
+import com.sun.tdk.jcov.instrument.BinaryFormat;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.MERGE;
+import com.sun.tdk.jcov.io.Reader;
+import com.sun.tdk.jcov.runtime.JCovXMLFileSaver;
+import com.sun.tdk.jcov.tools.EnvHandler;
+import com.sun.tdk.jcov.tools.JCovCMDTool;
+import com.sun.tdk.jcov.tools.OptionDescr;
+import com.sun.tdk.jcov.util.Utils;
+import java.io.File;
+
+/**
+ * Converts JCov data files between XML and binary formats. By default binary
+ * files are converted to XML and XML files are converted to binary format.
+ *
+ * Usage examples:
+ * <pre>
+ *   new Convert().convert("result.xml", "result.jcov", Convert.FORMAT_BINARY);
+ * </pre> or from command line:
+ * <pre>
+ * # java com.sun.tdk.jcov.Convert result.xml result.jcov
+ * </pre>
+ *
+ * @see BinaryFormat
+ */
+public class Convert extends JCovCMDTool {
+
+    public static final String FORMAT_XML = "xml";
+    public static final String FORMAT_BINARY = "binary";
+    private String inFile = null;
+    private String outFile = null;
+    private String format = null;
+
+    /**
+     * Reads inFile and writes it down to outFile in the specified format
+     *
+     * @param inFile file to read (XML or binary)
+     * @param outFile file to create
+     * @param format FORMAT_XML or FORMAT_BINARY. If null - the format opposite
+     * to the inFile format is used
+     * @throws Exception
+     */
+    public void convert(String inFile, String outFile, String format) throws Exception {
+        boolean binary = format == null ? !BinaryFormat.isBinary(new File(inFile)) : FORMAT_BINARY.equals(format);
+        DataRoot root = Reader.readXML(inFile, true, null);
+        try {
+            if (binary) {
+                BinaryFormat.write(root, outFile);
+            } else {
+                new JCovXMLFileSaver(root, MERGE.OVERWRITE).saveResults(outFile);
+            }
+        } finally {
+            root.destroy();
+        }
+    }
+
+    /**
+     * Entry point for command line.
+     *
+     * @param args
+     */
+    public static void main(String args[]) {
+        Convert tool = new Convert();
+        try {
+            int res = tool.run(args);
+            System.exit(res);
+        } catch (Exception ex) {
+            System.exit(1);
+        }
+    }
+
+    protected String usageString() {
+        return "java " + Convert.class.getCanonicalName() + " [options] inFile outFile";
+    }
+
+    protected String exampleString() {
+        return "java -cp jcov.jar " + Convert.class.getCanonicalName() + " -format binary result.xml result.jcov";
+    }
+
+    protected String getDescr() {
+        return "converts result data between XML and binary formats";
+    }
+
+///////// JCovTool implementation /////////
+    @Override
+    protected EnvHandler defineHandler() {
+        return new EnvHandler(new OptionDescr[]{
+                    DSC_FORMAT
+                }, this);
+    }
+
+    @Override
+    protected int handleEnv(EnvHandler opts) throws EnvHandlingException {
+        String[] files = opts.getTail();
+        if (files == null || files.length == 0) {
+            throw new EnvHandlingException("no input file specified");
+        } else if (files.length == 1) {
+            throw new EnvHandlingException("no output file specified");
+        } else if (files.length > 2) {
+            throw new EnvHandlingException("too many files specified");
+        }
+        inFile = files[0];
+        Utils.checkFileNotNull(inFile, "input JCov datafile", Utils.CheckOptions.FILE_ISFILE, Utils.CheckOptions.FILE_EXISTS, Utils.CheckOptions.FILE_CANREAD);
+        outFile = files[1];
+        Utils.checkFileNotNull(outFile, "output JCov datafile", Utils.CheckOptions.FILE_NOTEXISTS);
+
+        format = opts.isSet(DSC_FORMAT) ? opts.getValue(DSC_FORMAT) : null;
+
+        return SUCCESS_EXIT_CODE;
+    }
+
+    @Override
+    protected int run() throws Exception {
+        try {
+            convert(inFile, outFile, format);
+        } catch (Exception e) {
+            throw new Exception("Cannot convert " + inFile + " - exception occured: " + e.getMessage(), e);
+        }
+        return SUCCESS_EXIT_CODE;
+    }
+    final static OptionDescr DSC_FORMAT =
+            new OptionDescr("format", "output format",
+            new String[][]{{FORMAT_XML, "write XML"},
+                {FORMAT_BINARY, "write binary JCov data"}},
+            "Sets output format. By default binary files are converted to XML and XML files to binary format", null);
+}
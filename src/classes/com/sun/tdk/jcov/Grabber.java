@@ -32,6 +32,8 @@ import com.sun.tdk.jcov.instrument.DataRoot.CompatibilityCheckResult;
 import com.sun.tdk.jcov.instrument.InstrumentationOptions.MERGE;
 import com.sun.tdk.jcov.runtime.Collect;
 import com.sun.tdk.jcov.runtime.FileSaver;
+import com.sun.tdk.jcov.runtime.JCovSocketSaver;
+import com.sun.tdk.jcov.runtime.JCovSpoolSaver;
 import com.sun.tdk.jcov.runtime.PropertyFinder;
 import com.sun.tdk.jcov.tools.EnvHandler;
 import com.sun.tdk.jcov.tools.JCovCMDTool;
@@ -44,12 +46,26 @@ import com.sun.tdk.jcov.util.Utils.Pair;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Properties;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -65,6 +81,7 @@ import java.util.logging.Logger;
 class Client extends Thread {
 
     private final Socket socket;                    // socket
+    private final SocketChannel channel;            // Unix-domain socket channel
     private final Server server;                    // server
     private final int clientNumber;                 // number of this client
     private boolean working = true;                 // set to false when data is read
@@ -86,15 +103,55 @@ class Client extends Thread {
      * @param clientNumber ID of this client
      */
     public Client(Server server, Socket socket, int clientNumber) {
+        this(server, socket, null, clientNumber);
+    }
+
+    /**
+     * Constructor for Client class connected through Unix-domain socket. Sets
+     * "Client{clientNumber}Thread" as the name of the thread
+     *
+     * @param server Server object this client is connected to
+     * @param channel Remote clients socket channel
+     * @param clientNumber ID of this client
+     */
+    Client(Server server, SocketChannel channel, int clientNumber) {
+        this(server, null, channel, clientNumber);
+    }
+
+    private Client(Server server, Socket socket, SocketChannel channel, int clientNumber) {
         super();
 
         setName("Client" + clientNumber + "Thread");
         setDaemon(false);
         this.socket = socket;
+        this.channel = channel;
         this.server = server;
         this.clientNumber = clientNumber;
     }
 
+    /**
+     * Constructor for Client class used for data read from a spool directory
+     * instead of a socket. executeClient() should not be called for such
+     * clients.
+     *
+     * @param server Server object the data is passed to
+     * @param testName test name written by the client
+     * @param testerName tester name written by the client
+     * @param productName product name written by the client
+     * @param clientNumber ID of this client
+     * @see SpoolReader
+     */
+    Client(Server server, String testName, String testerName, String productName, int clientNumber) {
+        this(server, null, null, clientNumber);
+        this.testerName = testerName;
+        this.productName = productName;
+        if ("".equals(testName)) {
+            testName = testName + " " + testerName + " " + productName + "_test" + ++unknownTestNumber;
+        }
+        this.testName = testName;
+        this.working = false;
+    }
+
     /**
      * <p> Main method. Use start() to launch in new thread. </p> <p> Reads data
      * as long[] or as DataRoot and forwards it to the Server </p> <p> Sets
@@ -110,7 +167,7 @@ class Client extends Thread {
         DataInputStream IN = null;
         byte buff[];
         boolean legacy = false, dynamic = false;
-        int version;
+        int version = 0;
 
         long reserve = 0L;
         try {
@@ -119,7 +176,8 @@ class Client extends Thread {
                /*     while (server.isDumping()) { // locks the thread when is dumping
              Server.STOP_THE_WORLD_LOCK.wait();
              }*/
-            IN = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            IN = new DataInputStream(new BufferedInputStream(channel != null
+                    ? Channels.newInputStream(channel) : socket.getInputStream()));
             buff = new byte[4];
             for (int i = 0; i < buff.length; ++i) {
                 buff[i] = IN.readByte();
@@ -182,6 +240,34 @@ class Client extends Thread {
                     IN.close();
                     IN = null;
                     saveResults(root);
+                } else if (version >= 1) {
+                    String templateHash = IN.readUTF();
+                    int slots[] = new int[1024];
+                    long counts[] = new long[1024];
+                    int count = 0;
+                    try {
+                        int slot = -1;
+                        for (long delta; (delta = JCovSocketSaver.readVarLong(IN)) != 0; ++count) {
+                            slot += (int) delta;
+                            if (count == slots.length) {
+                                slots = Arrays.copyOf(slots, count * 2);
+                                counts = Arrays.copyOf(counts, count * 2);
+                            }
+                            slots[count] = slot;
+                            counts[count] = JCovSocketSaver.readVarLong(IN);
+                        }
+                    } catch (IOException ioe) {
+                        // the client could save it somewhere else, e.g. when it's not sent in the deadline
+                        Grabber.logger.log(Level.SEVERE, "Got incomplete static data from client N{0}: read {1} slots. Data is dropped", new Object[]{clientNumber + "", count});
+                        return;
+                    }
+                    slotNumber = count;
+                    IN.close();
+                    IN = null;
+                    closeConnection();
+
+                    Grabber.logger.log(Level.FINER, "Got sparse static data from client N{0}", clientNumber + "");
+                    saveResults(slots, counts, count);
                 } else {
                     String templateHash = IN.readUTF();
                     slotNumber = IN.readInt();
@@ -200,7 +286,7 @@ class Client extends Thread {
                     }
                     IN.close();
                     IN = null;
-                    socket.close();
+                    closeConnection();
 
                     Grabber.logger.log(Level.FINER, "Got new-format static data from client N{0}", clientNumber + "");
                     saveResults(ids);
@@ -219,13 +305,13 @@ class Client extends Thread {
                 } catch (IOException ex) {
                 }
             }
-            if (!socket.isClosed()) {
+            if (channel != null ? channel.isOpen() : !socket.isClosed()) {
                 try {
-                    socket.close();
+                    closeConnection();
                 } catch (IOException ex) {
                 }
             }
-            --server.aliveClients;
+            server.aliveClients.decrementAndGet();
             working = false; // all is done
             Grabber.logger.log(Level.FINE, "Client N{0} done", clientNumber + "");
         }
@@ -240,6 +326,17 @@ class Client extends Thread {
         server.handleData(ids, this);
     }
 
+    /**
+     * Handle got data. Translates data to the Server.
+     *
+     * @param slots Slots having non-zero counts transferred from client
+     * @param counts Counts for the slots
+     * @param size Number of slots transferred
+     */
+    private void saveResults(int[] slots, long[] counts, int size) {
+        server.handleData(slots, counts, size, this);
+    }
+
     /**
      * Handle got data. Translates data to the Server.
      *
@@ -256,9 +353,27 @@ class Client extends Thread {
      * @see #Client(com.sun.tdk.jcov.Server, java.net.Socket, int)
      */
     public String getClientAddress() {
+        if (channel != null) {
+            try {
+                return PropertyFinder.UNIX_SOCKET_PREFIX + channel.getLocalAddress();
+            } catch (IOException e) {
+                return PropertyFinder.UNIX_SOCKET_PREFIX;
+            }
+        }
+        if (socket == null) {
+            return "spool";
+        }
         return socket.getInetAddress().getHostName() + ":" + socket.getLocalPort();
     }
 
+    private void closeConnection() throws IOException {
+        if (channel != null) {
+            channel.close();
+        } else {
+            socket.close();
+        }
+    }
+
     /**
      * Returns ID assigned to this Client
      *
@@ -323,14 +438,16 @@ class Server extends Thread {
     // status data
     private boolean working = true;         // thread is working (not dead). Set to false at kill() method and when exiting main loop.
     private boolean listening = true;       // thread is listening for new connections. Set to false when exiting main loop.
-    private boolean dataSaved = false;      // no notsaved data. Set to true when accepting new data, set to false when writing data.
+    private volatile boolean dataSaved = false; // no notsaved data. Set to false when accepting new data, set to true when writing data.
     private boolean started = false;        // set to true when all initialization is done.
     // runtime data
     private ServerSocket ss = null;         // socket listener
+    private ServerSocketChannel ssc = null; // Unix-domain socket listener. Used instead of ss when set
+    private String unixSocket = null;       // Unix-domain socket path
     private long[] data = null;             // data got from clients. Not used in SaveAtReceive mode
     private DataRoot dataRoot = null;       // data got from clients. Not used in SaveAtReceive mode
     private int totalConnections;           // connections occurred
-    int aliveClients = 0;                   // increased on client.start(), decreased in client
+    final AtomicInteger aliveClients = new AtomicInteger(); // increased on client.start(), decreased in client
     private LinkedList<String> tests;       // accepted testnames
     static int MAX_TIMEOUT = 90000;         // maximum time to wait for Client working
     static boolean showMemoryChecks = false; // show memory checks
@@ -343,7 +460,12 @@ class Server extends Thread {
     private boolean lowMemoryRun = false; // low memory mode - minimal memory lock, merge
     private boolean normalMemoryRun = false; // normal memory mode - 45% memory lock, merge
     private boolean mergeByTestNames = false;// generate scales based on test names (test name identifies test)
-    private ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    static final int BACKLOG = 1024;        // pending connections queued by the OS while all workers are busy
+    static final int QUEUE_PER_WORKER = 16; // accepted connections queued per worker
+    private ThreadPoolExecutor executor = newExecutor(Runtime.getRuntime().availableProcessors());
+    private SpoolReader spoolReader = null; // reads data spooled by clients on this host
+    private final ReadWriteLock mergeLock = new ReentrantReadWriteLock(); // read - merging sparse data, write - saving
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
 
     /**
      * <p> Constructor for Server class. Warning: ServerSocket will be opened in
@@ -361,6 +483,28 @@ class Server extends Thread {
      * @throws IOException
      */
     public Server(int port, boolean once, String template, String host, boolean saveAtRecieve, boolean genscale, boolean mergeByTestNames) throws BindException, IOException {
+        this(port, once, template, host, saveAtRecieve, genscale, mergeByTestNames, null);
+    }
+
+    /**
+     * <p> Constructor for Server class. Warning: ServerSocket (or Unix-domain
+     * socket when unixSocket is set) will be opened in constructor so port
+     * (path) will be binded. </p> <p> Sets "ServerThread" as the name of the
+     * thread. </p>
+     *
+     * @param port port to listen for client connections
+     * @param once enables 'once' mode - Server connects to hname:port and
+     * receives data from there
+     * @param template template file
+     * @param host host to connect in 'once' mode
+     * @param saveAtRecieve true = save data when it's coming from Client
+     * @param genscale allows to generate scales without outtestlist
+     * @param unixSocket path of Unix-domain socket to listen instead of the
+     * port. Clients should use jcov.host=unix:{path}. Not used in 'once' mode.
+     * @throws BindException
+     * @throws IOException
+     */
+    public Server(int port, boolean once, String template, String host, boolean saveAtRecieve, boolean genscale, boolean mergeByTestNames, String unixSocket) throws BindException, IOException {
         super();
 
         setName("ServerThread");
@@ -410,8 +554,15 @@ class Server extends Thread {
             } catch (FileFormatException ex) {
                 throw new IllegalArgumentException("Bad template: " + templateName, ex);
             }
-            this.ss = new ServerSocket(port);
-            this.port = ss.getLocalPort(); // updating port number - when port == 0 ServerSocket will take any free port
+            if (unixSocket != null) {
+                this.ssc = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+                this.ssc.bind(UnixDomainSocketAddress.of(unixSocket), BACKLOG);
+                this.unixSocket = unixSocket;
+                this.port = port;
+            } else {
+                this.ss = new ServerSocket(port, BACKLOG);
+                this.port = ss.getLocalPort(); // updating port number - when port == 0 ServerSocket will take any free port
+            }
         }
     }
 
@@ -435,7 +586,33 @@ class Server extends Thread {
      */
     Server(int port, boolean once, String template, String output, String outTestList, String host, int maxCount,
             boolean saveAtReceive, boolean genscale, boolean mergeByTestNames) throws BindException, IOException {
-        this(port, once, template, host, saveAtReceive, genscale || outTestList != null, mergeByTestNames);
+        this(port, once, template, output, outTestList, host, maxCount, saveAtReceive, genscale, mergeByTestNames, null);
+    }
+
+    /**
+     * <p> Constructor for Server class. Warning: ServerSocket (or Unix-domain
+     * socket when unixSocket is set) will be opened in constructor so port
+     * (path) will be binded. </p> <p> Sets "ServerThread" as the name of the
+     * thread </p>
+     *
+     * @param port port to listen for client connections
+     * @param once enables 'once' mode - Server connects to hname:port and
+     * receives data from there
+     * @param template template file
+     * @param output output file
+     * @param outTestList file to write testlist to
+     * @param host host to connect in 'once' mode
+     * @param maxCount maximum connections to manage. Infinite if 0
+     * @param saveAtReceive true = save data when it's coming from Client
+     * @param genscale allows to generate scales without outtestlist
+     * @param unixSocket path of Unix-domain socket to listen instead of the
+     * port
+     * @throws BindException
+     * @throws IOException
+     */
+    Server(int port, boolean once, String template, String output, String outTestList, String host, int maxCount,
+            boolean saveAtReceive, boolean genscale, boolean mergeByTestNames, String unixSocket) throws BindException, IOException {
+        this(port, once, template, host, saveAtReceive, genscale || outTestList != null, mergeByTestNames, unixSocket);
 
         this.fileName = output;
         this.outTestList = outTestList;
@@ -445,6 +622,9 @@ class Server extends Thread {
     @Override
     public synchronized void start() {
         super.start();
+        if (spoolReader != null) {
+            spoolReader.start();
+        }
     }
 
     /**
@@ -473,7 +653,7 @@ class Server extends Thread {
                 Socket s = new Socket(adr, port);
 
                 Grabber.logger.log(Level.INFO, "Connection established with {0}:{1}", new Object[]{adr, port});
-                ++aliveClients;
+                aliveClients.incrementAndGet();
                 new Client(this, s, 0).executeClient(); // running client in local thread
                 saveData();
                 Grabber.logger.log(Level.FINE, "Server stopped");
@@ -489,13 +669,20 @@ class Server extends Thread {
                 do {
                     Grabber.logger.log(Level.FINE, "Waiting for new connection");
 
-                    Socket s = ss.accept();
-                    Client c = new Client(this, s, ++n);
-                    Grabber.logger.log(Level.INFO, "Connection N{0} received from {1}:{2}",
-                            new Object[]{n + "", s.getInetAddress(), s.getLocalPort() + ""}); // s.getLocalPort() + "" - to avoid int formatting
-                    Grabber.logger.log(Level.FINE, "Alive connections: {0}; total connections: {1}", new Object[]{aliveClients + 1 + "", totalConnections + 1 + ""});
-                    ++aliveClients;
-                    executor.execute(c);
+                    Client c;
+                    if (ssc != null) {
+                        c = new Client(this, ssc.accept(), ++n);
+                        Grabber.logger.log(Level.INFO, "Connection N{0} received from {1}",
+                                new Object[]{n + "", c.getClientAddress()});
+                    } else {
+                        Socket s = ss.accept();
+                        c = new Client(this, s, ++n);
+                        Grabber.logger.log(Level.INFO, "Connection N{0} received from {1}:{2}",
+                                new Object[]{n + "", s.getInetAddress(), s.getLocalPort() + ""}); // s.getLocalPort() + "" - to avoid int formatting
+                    }
+                    Grabber.logger.log(Level.FINE, "Alive connections: {0}; total connections: {1}", new Object[]{aliveClients.get() + 1 + "", totalConnections + 1 + ""});
+                    aliveClients.incrementAndGet();
+                    executor.execute(c); // runs in this thread when the queue is full - new connections wait in the backlog
                     //c.start();
 
                     ++totalConnections;
@@ -519,6 +706,7 @@ class Server extends Thread {
                     }
                 }
                 ss = null;
+                ssc = null;
                 working = false;
                 listening = false;
                 Grabber.logger.log(Level.FINE, "Server stopped");
@@ -543,12 +731,24 @@ class Server extends Thread {
                 Grabber.logger.log(Level.SEVERE, "Error while closing socket", ex);
             }
         }
+        if (ssc != null && ssc.isOpen()) {
+            try {
+                ssc.close(); // killing Unix-domain socket listener
+                new File(unixSocket).delete();
+            } catch (Exception ex) {
+                Grabber.logger.log(Level.SEVERE, "Error while closing socket", ex);
+            }
+        }
 
         if (!force && clientsAlive()) {
             Grabber.logger.log(Level.INFO, "Awaiting for finishing data transmission from {0} clients. Max timeout time: {1}ms", new Object[]{getAliveConnectionCount() + "", MAX_TIMEOUT});
             waitForAliveClients(); // getting data from alive connected clients
         }
 
+        if (spoolReader != null) {
+            spoolReader.kill(force);
+        }
+
         if (!force) {
             if (!dataSaved) {
                 saveData();
@@ -647,9 +847,7 @@ class Server extends Thread {
         if (saveAtReceive) {
             Grabber.logger.log(Level.FINE, "Server is saving data from client N{0}", client.getClientNumber() + "");
 
-            for (int i = 0; i < data.length && i < dataRoot.getCount(); ++i) {
-                this.data[i] += data[i];
-            }
+            addCounts(data);
 
             saveData(data);
         } else {
@@ -658,35 +856,134 @@ class Server extends Thread {
                 this.data = Collect.counts();
             }
 
-            for (int i = 0; i < data.length && i < dataRoot.getCount(); ++i) {
-                this.data[i] += data[i];
-            }
-            if (genscale) {
-                dataRoot.addScales();
-                dataRoot.update();
-
-                boolean merged = false;
-                if (mergeByTestNames) {
-                    for (int i = 0; i < tests.size(); i++) {
-                        if (tests.get(i).equals(client.getTestName())) {
-
-                            ArrayList<Pair> list = new ArrayList<Pair>();
-                            list.add(new Utils.Pair(i, tests.size()));
-                            this.dataRoot.illuminateDuplicatesInScales(list);
-                            merged = true;
-                            break;
-                        }
+            addCounts(data);
+            addTestScale(client);
+        }
+
+        Grabber.logger.log(Level.FINEST, "Data from client N{0} saved", client.getClientNumber() + "");
+    }
+
+    /**
+     * Receives sparse data from Client and handles it the same way as
+     * handleData(long[], Client) does. In SaveAtExit mode counts are added to
+     * the accumulated data directly without expanding them to the full array.
+     * Unless scales are generated, counts are added atomically without
+     * locking the Server, so clients are merged in parallel and only wait for
+     * saving.
+     *
+     * @param slots slots having non-zero counts
+     * @param counts counts for the slots
+     * @param size number of slots received
+     * @param client client received the data (used for logging)
+     * @see #handleData(long[], com.sun.tdk.jcov.Client)
+     */
+    public void handleData(int[] slots, long[] counts, int size, Client client) {
+        if (saveAtReceive || genscale || templateName == null) {
+            synchronized (this) {
+                if (saveAtReceive) {
+                    long[] data = new long[size == 0 ? 0 : slots[size - 1] + 1];
+                    for (int i = 0; i < size; ++i) {
+                        data[slots[i]] = counts[i];
+                    }
+                    handleData(data, client);
+                } else {
+                    if (!working) {
+                        return;
+                    }
+                    if (templateName == null) {
+                        Grabber.logger.log(Level.SEVERE, "Server can't accept static data - started without template");
+                        return;
                     }
+                    dataSaved = false;
+                    Grabber.logger.log(Level.INFO, "Server got data from client N{0}", client.getClientNumber() + "");
+                    addCounts(slots, counts, size);
+                    addTestScale(client);
+                    Grabber.logger.log(Level.FINEST, "Data from client N{0} saved", client.getClientNumber() + "");
                 }
+            }
+            return;
+        }
 
-                if (!merged) {
-                    tests.add(client.getTestName());
-                }
+        mergeLock.readLock().lock();
+        try {
+            if (!working) {
+                return;
+            }
+            dataSaved = false;
+            Grabber.logger.log(Level.INFO, "Server got data from client N{0}", client.getClientNumber() + "");
+            addCounts(slots, counts, size);
+        } finally {
+            mergeLock.readLock().unlock();
+        }
+        Grabber.logger.log(Level.FINEST, "Data from client N{0} saved", client.getClientNumber() + "");
+    }
 
+    /**
+     * Atomically adds full counts array to the accumulated data. Takes the
+     * merge read lock, so that it doesn't race with clients sending sparse
+     * data and waits for saving.
+     *
+     * @param data counts indexed by slot
+     */
+    private void addCounts(long[] data) {
+        mergeLock.readLock().lock();
+        try {
+            long[] dst = this.data;
+            int count = Math.min(dataRoot.getCount(), dst.length);
+            for (int i = 0; i < data.length && i < count; ++i) {
+                if (data[i] != 0) {
+                    COUNTS.getAndAdd(dst, i, data[i]);
+                }
             }
+        } finally {
+            mergeLock.readLock().unlock();
         }
+    }
 
-        Grabber.logger.log(Level.FINEST, "Data from client N{0} saved", client.getClientNumber() + "");
+    /**
+     * Atomically adds sparse counts to the accumulated data
+     *
+     * @param slots slots having non-zero counts, ascending
+     * @param counts counts for the slots
+     * @param size number of slots
+     */
+    private void addCounts(int[] slots, long[] counts, int size) {
+        long[] data = this.data;
+        int count = Math.min(dataRoot.getCount(), data.length);
+        for (int i = 0; i < size && slots[i] < count; ++i) {
+            COUNTS.getAndAdd(data, slots[i], counts[i]);
+        }
+    }
+
+    /**
+     * Adds scale for the test the client has run (if scales are generated)
+     *
+     * @param client client received the data
+     */
+    private void addTestScale(Client client) {
+        if (genscale) {
+            dataRoot.addScales();
+            dataRoot.update();
+
+            boolean merged = false;
+            if (mergeByTestNames) {
+                for (int i = 0; i < tests.size(); i++) {
+                    if (tests.get(i).equals(client.getTestName())) {
+
+                        ArrayList<Pair> list = new ArrayList<Pair>();
+                        list.add(new Utils.Pair(i, tests.size()));
+                        this.dataRoot.illuminateDuplicatesInScales(list);
+                        merged = true;
+                        break;
+                    }
+                }
+            }
+
+            if (!merged) {
+                tests.add(client.getTestName());
+            }
+
+        }
     }
 
     /**
@@ -808,6 +1105,7 @@ class Server extends Thread {
      * @param data data to save
      */
     private synchronized void saveData(long[] data) {
+        mergeLock.writeLock().lock(); // waiting for clients being merged
         try {
             if (!saveAtReceive) {
                 File file = new File(fileName);
@@ -851,6 +1149,8 @@ class Server extends Thread {
         } catch (Exception ex) {
             Grabber.logger.log(Level.SEVERE, "Error while saving data", ex);
 //            ex.printStackTrace();
+        } finally {
+            mergeLock.writeLock().unlock();
         }
     }
 
@@ -961,7 +1261,7 @@ class Server extends Thread {
      * @return false when all clients have finish working
      */
     private boolean clientsAlive() {
-        return aliveClients > 0;
+        return aliveClients.get() > 0;
     }
 
     /**
@@ -993,7 +1293,7 @@ class Server extends Thread {
      * @return count of connections that are alive at the moment
      */
     public int getAliveConnectionCount() {
-        return aliveClients;
+        return aliveClients.get();
     }
 
     /**
@@ -1106,8 +1406,185 @@ class Server extends Thread {
     public void setSaveBadData(String saveBadData) {
         this.saveBadData = saveBadData;
     }
+
+    /**
+     * Sets the number of threads receiving and decoding clients data. Should
+     * be called before the Server is started.
+     *
+     * @param workers number of threads
+     */
+    public void setWorkers(int workers) {
+        executor.shutdown();
+        executor = newExecutor(workers);
+    }
+
+    /**
+     * Sets the directory to read data written by JCovSpoolSaver. Should be
+     * called before the Server is started.
+     *
+     * @param dir spool directory
+     * @see SpoolReader
+     */
+    public void setSpool(File dir) {
+        spoolReader = new SpoolReader(this, dir);
+    }
+
+    /**
+     * Creates bounded pool of threads receiving clients data. When all threads
+     * are busy and the queue is full the accepting thread receives data
+     * itself, so that new connections are held in the socket backlog instead
+     * of piling up in memory.
+     *
+     * @param workers number of threads
+     * @return executor for Client objects
+     */
+    private static ThreadPoolExecutor newExecutor(int workers) {
+        return new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(workers * QUEUE_PER_WORKER),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
 } // ############# Server
 
+/**
+ * Reads coverage data written to a spool directory by JCovSpoolSaver in test
+ * JVMs running on the same host. Complete files are read, passed to the
+ * Server the same way as sparse data received by Client and deleted. Files
+ * are not mapped as a mapped file can't be deleted on Windows.
+ *
+ * @see com.sun.tdk.jcov.runtime.JCovSpoolSaver
+ */
+class SpoolReader extends Thread {
+
+    private final Server server;                // server
+    private final File dir;                     // spool directory
+    private volatile boolean listening = true;  // set to false at kill()
+    private int fileNumber;                     // number of read files
+    private final Set<String> undeleted = new HashSet<String>(); // files read but not deleted
+    static int POLL_INTERVAL = 100;             // time to wait for new files
+
+    /**
+     * Constructor for SpoolReader class. Sets "SpoolReaderThread" as the name
+     * of the thread.
+     *
+     * @param server Server object to pass data to
+     * @param dir spool directory
+     */
+    SpoolReader(Server server, File dir) {
+        super();
+
+        setName("SpoolReaderThread");
+        setDaemon(true);
+        this.server = server;
+        this.dir = dir;
+    }
+
+    /**
+     * Polls the spool directory until kill() is called
+     */
+    @Override
+    public void run() {
+        while (listening) {
+            scan();
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException ex) {
+            }
+        }
+    }
+
+    /**
+     * Reads all complete files found in the spool directory
+     *
+     * @return number of read files
+     */
+    synchronized int scan() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int read = 0;
+        for (File f : files) {
+            if (!f.getName().endsWith(JCovSpoolSaver.SPOOL_SUFFIX) || undeleted.contains(f.getName())) {
+                continue;
+            }
+            try {
+                read(f);
+                ++read;
+            } catch (Exception e) {
+                Grabber.logger.log(Level.SEVERE, "Error while reading spool file " + f, e);
+            }
+            if (!f.delete() && f.exists()) {
+                Grabber.logger.log(Level.WARNING, "Can''t delete spool file {0}", f);
+                undeleted.add(f.getName());
+                f.deleteOnExit();
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Reads one spool file and passes it to the Server
+     *
+     * @param f file written by JCovSpoolSaver
+     * @throws IOException
+     */
+    private void read(File f) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(f, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+            while (buf.hasRemaining()) {
+                if (channel.read(buf) < 0) {
+                    throw new IOException("Spool file is truncated");
+                }
+            }
+            buf.flip();
+            if (buf.get() != 'J' || buf.get() != 'C' || buf.get() != 'O' || buf.get() != 'V'
+                    || buf.get() > JCovSpoolSaver.SPOOL_VERSION) {
+                throw new IOException("Not a spool file or unsupported version");
+            }
+            buf.position(8);
+            int offset = buf.getInt();
+            int size = buf.getInt();
+            byte[] names = new byte[offset - buf.position()];
+            buf.get(names);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(names));
+            String testerName = in.readUTF();
+            String testName = in.readUTF();
+            String productName = in.readUTF();
+
+            int[] slots = new int[size];
+            long[] counts = new long[size];
+            buf.position(offset);
+            buf.asIntBuffer().get(slots);
+            buf.position(offset + JCovSpoolSaver.align(size * 4));
+            buf.asLongBuffer().get(counts);
+
+            Client client = new Client(server, testName, testerName, productName, ++fileNumber);
+            Grabber.logger.log(Level.FINE, "Got spooled data: name {0}, tester {1}, product {2}", new Object[]{testName, testerName, productName});
+            server.handleData(slots, counts, size, client);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Stops polling the spool directory
+     *
+     * @param force when false - files left in the spool directory are read
+     */
+    public void kill(boolean force) {
+        listening = false; // not interrupting - it would close the channel being read
+        if (!force) {
+            try {
+                join();
+            } catch (InterruptedException ex) {
+            }
+            scan();
+        }
+    }
+} // ############# SpoolReader
+
 /**
  * Class for server command listener. Receives commands from commandPort and
  * controls the Server
@@ -1375,6 +1852,9 @@ public class Grabber extends JCovCMDTool {
     private String baddata;                         // directory to write bad data to
     private String messageFormat;
     private boolean mergeByTestNames = false;       // generate scales based on test names (test name identifies test)
+    private int workers;                            // threads receiving clients data. Number of processors if 0
+    private String spool;                           // directory to read data spooled by clients
+    private String unixSocket;                      // Unix-domain socket to listen instead of the port
 
     /**
      * Get Properties object initialized with info about Server, Command
@@ -1466,8 +1946,14 @@ public class Grabber extends JCovCMDTool {
     }
 
     public void createServer() throws BindException, IOException {
-        server = new Server(port, once, template, filename, outTestList, hostName, maxCount, saveOnReceive, genscale, mergeByTestNames);
+        server = new Server(port, once, template, filename, outTestList, hostName, maxCount, saveOnReceive, genscale, mergeByTestNames, unixSocket);
         server.setSaveBadData(baddata);
+        if (workers > 0) {
+            server.setWorkers(workers);
+        }
+        if (spool != null) {
+            server.setSpool(new File(spool));
+        }
     }
 
     /**
@@ -1639,7 +2125,10 @@ public class Grabber extends JCovCMDTool {
                     Merger.DSC_SCALE,
                     DSC_BADDATA,
                     DSC_MESSAGE_FORMAT,
-                    DSC_SCALE_BY_NAME
+                    DSC_SCALE_BY_NAME,
+                    DSC_WORKERS,
+                    DSC_SPOOL,
+                    DSC_UNIX_SOCKET
                 }, this);
     }
 
@@ -1726,6 +2215,16 @@ public class Grabber extends JCovCMDTool {
 
         mergeByTestNames = opts.isSet(DSC_SCALE_BY_NAME);
 
+        workers = Utils.checkedToInt(opts.getValue(DSC_WORKERS), "workers count", Utils.CheckOptions.INT_NONNEGATIVE);
+
+        spool = opts.getValue(DSC_SPOOL);
+        if (spool != null) {
+            new File(spool).mkdirs();
+            Utils.checkFileCanBeNull(spool, "spool directory", Utils.CheckOptions.FILE_EXISTS, Utils.CheckOptions.FILE_ISDIR);
+        }
+
+        unixSocket = opts.getValue(DSC_UNIX_SOCKET);
+
         return SUCCESS_EXIT_CODE;
     }
 
@@ -1954,4 +2453,13 @@ public class Grabber extends JCovCMDTool {
     public final static OptionDescr DSC_SCALE_BY_NAME =
             new OptionDescr("mergebyname", "process/generate test scales",
             "test name identifies the test. tests with same name will be automatically merged");
+    public final static OptionDescr DSC_WORKERS =
+            new OptionDescr("workers", "", OptionDescr.VAL_SINGLE,
+            "Specify number of threads receiving data from clients. 0 corresponds to the number of processors.", "0");
+    public final static OptionDescr DSC_SPOOL =
+            new OptionDescr("spool", "", OptionDescr.VAL_SINGLE,
+            "Directory to read data saved by clients running on this host with -Djcov.spool=<dir> instead of sending it through the socket, or saved to -Djcov.fallback=<dir> when it was not sent in -Djcov.deadline milliseconds. Spooled data is not counted by -count.");
+    public final static OptionDescr DSC_UNIX_SOCKET =
+            new OptionDescr("unixsocket", "", OptionDescr.VAL_SINGLE,
+            "Path of Unix-domain socket to listen for clients data instead of the port. Clients should be run with -Djcov.host=unix:<path>.");
 }
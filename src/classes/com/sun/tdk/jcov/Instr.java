@@ -28,6 +28,7 @@ import com.sun.tdk.jcov.insert.AbstractUniversalInstrumenter;
 import com.sun.tdk.jcov.instrument.InstrumentationParams;
 import com.sun.tdk.jcov.instrument.asm.ClassMorph;
 import com.sun.tdk.jcov.instrument.InstrumentationPlugin;
+import com.sun.tdk.jcov.runtime.Collect;
 import com.sun.tdk.jcov.tools.EnvHandler;
 import com.sun.tdk.jcov.tools.JCovCMDTool;
 import com.sun.tdk.jcov.tools.OptionDescr;
@@ -76,6 +77,9 @@ public class Instr extends JCovCMDTool {
     private boolean gensynthetic = true;
     private boolean genanonymous = true;
     private boolean innerinvocations = true;
+    private boolean hitonly = false;
+    private boolean inline = false;
+    private boolean classcounts = false;
     private String[] srcs;
     private File outDir;
     private String include_rt;
@@ -83,6 +87,7 @@ public class Instr extends JCovCMDTool {
     private String flushPath;
     private boolean subsequentInstr = false;
     private boolean recurse;
+    private int threads = 1;
     private InstrumentationMode mode = InstrumentationMode.BRANCH;
     private AbstractUniversalInstrumenter instrumenter;
     private ClassMorph morph;
@@ -290,6 +295,9 @@ public class Instr extends JCovCMDTool {
                     .setInnerInvocations(innerinvocations)
                     .setInnerIncludes(innerInclude)
                     .setInnerExcludes(innerExclude)
+                    .setHitOnly(hitonly)
+                    .setInlineProbes(inline)
+                    .setClassCounts(classcounts)
                     .setInstrumentationPlugin(plugin);
             if (subsequentInstr) {
                 morph = new ClassMorph(params, template);
@@ -303,6 +311,18 @@ public class Instr extends JCovCMDTool {
                     return morph.morph(classData, cl, flushPath);
                 }
 
+                int firstSlot;
+
+                @Override
+                protected void instrumentingInParallel() {
+                    firstSlot = Collect.slotCount();
+                }
+
+                @Override
+                protected void instrumentedInParallel(List<byte[]> classes, List<byte[]> results) {
+                    morph.renumberSlots(firstSlot, classes, results);
+                }
+
                 public void finishWork() {
                     if (subsequentInstr) {
                         morph.saveData(MERGE.MERGE); // template should be initialized
@@ -325,6 +345,7 @@ public class Instr extends JCovCMDTool {
                     }
                 }
             };
+            instrumenter.setThreads(threads);
         }
     }
 
@@ -488,6 +509,30 @@ public class Instr extends JCovCMDTool {
         this.callerExclude = callerExclude;
     }
 
+    public boolean isHitOnly() {
+        return hitonly;
+    }
+
+    public void setHitOnly(boolean hitonly) {
+        this.hitonly = hitonly;
+    }
+
+    public boolean isInline() {
+        return inline;
+    }
+
+    public void setInline(boolean inline) {
+        this.inline = inline;
+    }
+
+    public boolean isClassCounts() {
+        return classcounts;
+    }
+
+    public void setClassCounts(boolean classcounts) {
+        this.classcounts = classcounts;
+    }
+
     public void setInnerInclude(String[] include) {
         this.innerInclude = include;
     }
@@ -569,6 +614,18 @@ public class Instr extends JCovCMDTool {
         this.cl = cl;
     }
 
+    /**
+     * @param threads number of threads instrumenting classes of a jar or a
+     * directory
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
     @Override
     protected int run() throws Exception {
         Utils.addToClasspath(srcs);
@@ -605,10 +662,14 @@ public class Instr extends JCovCMDTool {
                 DSC_SYNTHETIC,
                 DSC_ANONYM,
                 DSC_INNERINVOCATION,
+                DSC_HITONLY,
+                DSC_INLINE,
+                DSC_CLASS_COUNTS,
                 DSC_INSTR_PLUGIN,
                 ClassMorph.DSC_FLUSH_CLASSES,
                 DSC_INCLUDE_RT,
-                DSC_RECURSE,}, this);
+                DSC_RECURSE,
+                DSC_THREADS,}, this);
     }
 
     private int handleEnv_(EnvHandler opts) throws EnvHandlingException {
@@ -669,10 +730,15 @@ public class Instr extends JCovCMDTool {
         String innerInvocation = opts.getValue(DSC_INNERINVOCATION);
         innerinvocations = ! "off".equals(innerInvocation);
 
+        hitonly = "on".equals(opts.getValue(DSC_HITONLY));
+        inline = "on".equals(opts.getValue(DSC_INLINE));
+        classcounts = "on".equals(opts.getValue(DSC_CLASS_COUNTS));
+
         callerInclude = opts.getValues(DSC_CALLER_INCLUDE);
         callerExclude = opts.getValues(DSC_CALLER_EXCLUDE);
 
         recurse = opts.isSet(DSC_RECURSE);
+        threads = Utils.checkedToInt(opts.getValue(DSC_THREADS), "number of threads", INT_POSITIVE);
 
         mode = InstrumentationMode.fromString(opts.getValue(DSC_TYPE));
         template = opts.getValue(DSC_TEMPLATE);
@@ -61,6 +61,7 @@ public class Instr2 extends JCovCMDTool {
     private static final Logger logger;
     private String[] srcs;
     private File outDir;
+    private int threads = 1;
 
     static {
         Utils.initLogger();
@@ -111,6 +112,7 @@ public class Instr2 extends JCovCMDTool {
                     public void finishWork() {
                     }
                 };
+        instrumenter.setThreads(threads);
 
         //instrumenter.setPrintStats(opts.isSet(DSC_STATS));
 //        com.sun.tdk.jcov.instrument.Options.instrumentAbstract = com.sun.tdk.jcov.instrument.Options.instrumentAbstract.NONE;
@@ -147,6 +149,7 @@ public class Instr2 extends JCovCMDTool {
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_FIELD,
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_SYNTHETIC,
                     com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_ANONYM,
+                    com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_THREADS,
                     ClassMorph.DSC_FLUSH_CLASSES
                 }, this);
     }
@@ -222,6 +225,8 @@ public class Instr2 extends JCovCMDTool {
             flushPath = null;
         }
 
+        threads = Utils.checkedToInt(envHandler.getValue(InstrumentationOptions.DSC_THREADS), "number of threads", Utils.CheckOptions.INT_POSITIVE);
+
         return SUCCESS_EXIT_CODE;
     }
     final static OptionDescr DSC_OUTPUT =
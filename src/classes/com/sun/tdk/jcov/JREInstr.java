@@ -36,8 +36,17 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -66,6 +75,12 @@ public class JREInstr extends JCovCMDTool {
     private static final Logger logger;
     private String host = null;
     private Integer port = null;
+    private static final String STAGE_TOTAL = "total";
+    private static final String STAGE_EXTRACT = "extract";
+    private static final String STAGE_INSTRUMENT = "instrument";
+    private static final String STAGE_JMOD = "jmod";
+    private static final String STAGE_JLINK = "jlink";
+    private final Map<String, AtomicLong> stageTimes = Collections.synchronizedMap(new LinkedHashMap<String, AtomicLong>());
 
     static {
         Utils.initLogger();
@@ -114,28 +129,51 @@ public class JREInstr extends JCovCMDTool {
                 jdk = toInstrument.getParentFile();
             }
             File jmodsTemp = new File(toInstrument.getParentFile(), "jmod_temp");
+            // jar and jmod are run by several threads, classes of a module
+            // are instrumented by several threads as well
+            ExecutorService pool = instr.getThreads() > 1 ? Executors.newFixedThreadPool(instr.getThreads()) : null;
+            final File jdkDir = jdk;
 
-            ArrayList<URL> urls = new ArrayList<>();
-            for (File mod : getListFiles(toInstrument)) {
-                File jmodDir = extractJMod(jdk, mod.getAbsoluteFile(), jmodsTemp);
-                urls.add(new File(jmodDir, "classes").toURI().toURL());
-            }
-            urls.add(toInstrument.toURI().toURL());
+            final long total = System.nanoTime();
+            try {
+                ArrayList<URL> urls = new ArrayList<>();
+                ArrayList<Future<File>> extracted = new ArrayList<>();
+                for (File mod : getListFiles(toInstrument)) {
+                    final File from = mod.getAbsoluteFile();
+                    extracted.add(submit(pool, () -> extractJMod(jdkDir, from, jmodsTemp)));
+                }
+                for (Future<File> jmodDir : extracted) {
+                    urls.add(new File(jmodDir.get(), "classes").toURI().toURL());
+                }
+                urls.add(toInstrument.toURI().toURL());
 
-            cl = new StaticJREInstrClassLoader(urls.toArray(new URL[0]));
-            instr.setClassLoader(cl);
+                cl = new StaticJREInstrClassLoader(urls.toArray(new URL[0]));
+                instr.setClassLoader(cl);
 
-            try {
+                final String pluginPath = (instr.getPlugin() != null && instr.getPlugin().runtime() != null) ?
+                        instr.getPlugin().runtime().toString() : null;
+                ArrayList<Future<File>> created = new ArrayList<>();
                 for (File mod : getListFiles(jmodsTemp)) {
                     if (mod != null && mod.isDirectory()) {
                         File modClasses = new File(mod, "classes");
+                        long start = System.nanoTime();
                         instr.instrumentFile(modClasses.getAbsolutePath(), null, null, mod.getName());
-                        createJMod(mod, jdk, implant.getAbsolutePath(),
-                                (instr.getPlugin() != null && instr.getPlugin().runtime() != null) ?
-                                    instr.getPlugin().runtime().toString() : null);
+                        addStageTime(STAGE_INSTRUMENT, start);
+                        logger.log(Level.FINE, "{0} instrumented in {1} ms",
+                                new Object[]{mod.getName(), (System.nanoTime() - start) / 1000000});
+                        final File jmodDir = mod;
+                        created.add(submit(pool, () -> {
+                            createJMod(jmodDir, jdkDir, implant.getAbsolutePath(), pluginPath);
+                            return jmodDir;
+                        }));
                     }
                 }
+                for (Future<File> jmod : created) {
+                    jmod.get();
+                }
+                long start = System.nanoTime();
                 File newJdkDir = runJLink(jmodsTemp, jdk);
+                addStageTime(STAGE_JLINK, start);
                 if (newJdkDir != null) {
                     String jimage_path = File.separator + "lib" + File.separator + "modules" + File.separator + "bootmodules.jimage";
                     File orig_jimage = new File(jdk.getCanonicalPath() + jimage_path);
@@ -166,7 +204,13 @@ public class JREInstr extends JCovCMDTool {
                 }
             } catch (Exception e) {
                 logger.log(Level.SEVERE, "exception while creating mods, e = " + e);
+            } finally {
+                if (pool != null) {
+                    pool.shutdownNow();
+                }
             }
+            addStageTime(STAGE_TOTAL, total);
+            logStageTimes();
         } else if (toInstrument.getAbsolutePath().endsWith("bootmodules.jimage")) {
             throw new RuntimeException("This functionality has not yet been implemented");
 //            ArrayList<File> jdkImages = new ArrayList<>();
@@ -260,6 +304,37 @@ public class JREInstr extends JCovCMDTool {
         return SUCCESS_EXIT_CODE;
     }
 
+    /**
+     * Runs the task in the pool or, when there is no pool, right away
+     */
+    private static <T> Future<T> submit(ExecutorService pool, Callable<T> task) {
+        if (pool != null) {
+            return pool.submit(task);
+        }
+        FutureTask<T> done = new FutureTask<>(task);
+        done.run();
+        return done;
+    }
+
+    private void addStageTime(String stage, long start) {
+        stageTimes.computeIfAbsent(stage, s -> new AtomicLong()).addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Logs the time spent in each stage of jmods instrumentation. Time of
+     * jmods extraction and creation is summed up over the threads, total is
+     * the elapsed time.
+     */
+    private void logStageTimes() {
+        StringBuilder sb = new StringBuilder("jmods instrumentation time (ms):");
+        synchronized (stageTimes) {
+            for (Map.Entry<String, AtomicLong> e : stageTimes.entrySet()) {
+                sb.append(' ').append(e.getKey()).append('=').append(e.getValue().get() / 1000000);
+            }
+        }
+        logger.log(Level.INFO, sb.toString());
+    }
+
     private boolean doCommand(String command, File where, String msg) throws IOException, InterruptedException {
         Objects.requireNonNull(command);
         Objects.requireNonNull(msg);
@@ -288,6 +363,7 @@ public class JREInstr extends JCovCMDTool {
     }
 
     private File extractJMod(File jdk, File from, File to) {
+        long start = System.nanoTime();
         try {
             String name = from.getName();
             if (name.contains(".jmod")) {
@@ -304,6 +380,8 @@ public class JREInstr extends JCovCMDTool {
         } catch (Exception e) {
             logger.log(Level.SEVERE, "exception in process(unjar jmod)", e);
             return null;
+        } finally {
+            addStageTime(STAGE_EXTRACT, start);
         }
     }
 
@@ -333,6 +411,7 @@ public class JREInstr extends JCovCMDTool {
     }
 
     private void createJMod(File jmodDir, File jdk, String rt_path, String pluginPath) {
+        long start = System.nanoTime();
         try {
             File modsDir = jmodDir.getParentFile();
             StringBuilder command = new StringBuilder();
@@ -375,6 +454,8 @@ public class JREInstr extends JCovCMDTool {
             doCommand(command.toString(),modsDir,"wrong command for create jmod: ");
         } catch (Exception e) {
             logger.log(Level.SEVERE, "exception in process(create jmod)", e);
+        } finally {
+            addStageTime(STAGE_JMOD, start);
         }
     }
 
@@ -427,9 +508,13 @@ public class JREInstr extends JCovCMDTool {
                 com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_SYNTHETIC,
                 com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_ANONYM,
                 com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_INNERINVOCATION,
+                com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_HITONLY,
+                com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_INLINE,
+                com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_CLASS_COUNTS,
                 com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_INNER_INCLUDE,
                 com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_INNER_EXCLUDE,
                 com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_INSTR_PLUGIN,
+                com.sun.tdk.jcov.instrument.InstrumentationOptions.DSC_THREADS,
                 Instr.DSC_SUBSEQUENT,
                 DSC_JAVAC_HACK,
                 DCS_ADD_JAR,
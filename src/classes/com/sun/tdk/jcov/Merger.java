@@ -39,12 +39,16 @@ import com.sun.tdk.jcov.tools.OptionDescr;
 import com.sun.tdk.jcov.tools.ScaleCompressor;
 import com.sun.tdk.jcov.tools.SimpleScaleCompressor;
 import com.sun.tdk.jcov.util.Utils;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -91,6 +95,7 @@ public class Merger extends JCovCMDTool {
     private boolean sigmerge = false;
     private boolean addMissing = true;
     private boolean warningCritical = false;
+    private int threads = 1;
     private static ScaleCompressor compressor = new SimpleScaleCompressor();
     private final static Logger logger;
 
@@ -157,6 +162,8 @@ public class Merger extends JCovCMDTool {
         private int errors;
         private int warnings;
         private String[] resultTestList;
+        private long bytesRead;
+        private long mergeTime;
 
         public Merge(Result[] files, String template) {
             this.jcovFiles = files;
@@ -272,6 +279,22 @@ public class Merger extends JCovCMDTool {
             skippedFiles.add(file);
         }
 
+        /**
+         * @return Total size of the files (including template) read during
+         * the merge
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return Time taken by the merge in nanoseconds. Together with
+         * getBytesRead() gives the merge throughput.
+         */
+        public long getMergeTime() {
+            return mergeTime;
+        }
+
         /**
          * @return Merge result as DataRoot object or null if Merger was not
          * started or failed (e.g. only one file found)
@@ -410,7 +433,8 @@ public class Merger extends JCovCMDTool {
     }
 
     /**
-     * Merge data
+     * Merge data. If more than one thread is set files are read in parallel
+     * and merged pairwise in a tree. Signature merge is always sequential.
      *
      * @param merge merging data
      * @param outTestList path to write testlist to (testlist data will not be
@@ -421,6 +445,19 @@ public class Merger extends JCovCMDTool {
     public void merge(Merge merge, String outTestList, boolean ignoreOriginalScales) {
 
         readFilter = new ClassSignatureFilter(include, exclude, m_include, m_exclude, fm);
+        long started = System.nanoTime();
+        if (threads > 1 && !sigmerge && merge.jcovFiles.length > 1) {
+            if (mergeParallel(merge, outTestList, ignoreOriginalScales)) {
+                logThroughput(merge, started);
+                return;
+            }
+            logger.log(Level.INFO, "- Problems found during parallel merging. Merging sequentially to report them");
+        }
+        mergeSequentially(merge, outTestList, ignoreOriginalScales);
+        logThroughput(merge, started);
+    }
+
+    private void mergeSequentially(Merge merge, String outTestList, boolean ignoreOriginalScales) {
         DataRoot merged = null;
         DataRoot rNext = null;
         logger.log(Level.INFO, "- Merging started");
@@ -561,6 +598,14 @@ public class Merger extends JCovCMDTool {
             }
         }
 
+        finishMerge(merge, outTestList, merged, filesMerged);
+    }
+
+    /**
+     * Generates result testlist and sets the result to Merge if there were no
+     * errors
+     */
+    private void finishMerge(Merge merge, String outTestList, DataRoot merged, int filesMerged) {
 
         if (outTestList != null) {
             if (merge.errors == 0 || boe == BreakOnError.SKIP) {
@@ -612,6 +657,244 @@ public class Merger extends JCovCMDTool {
         merge.result = merged;
     }
 
+    /**
+     * Result of reading one file in parallel mode
+     */
+    private static class ParsedFile {
+
+        DataRoot root; // cleared when passed to the merge tree
+        String javaVersion;
+        FileFormatException formatError;
+        int scaleSize = -1; // set if scale size doesn't match the testlist
+        boolean failed; // problem which can't be handled without sequential merging
+    }
+
+    /**
+     * Part of the merge tree - the result of merging a range of files
+     */
+    private static class MergeNode {
+
+        final DataRoot root; // null if all files in the range were skipped
+        final boolean first; // the range starts with the first file (or the template)
+        final boolean failed;
+
+        MergeNode(DataRoot root, boolean first, boolean failed) {
+            this.root = root;
+            this.first = first;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * <p> Reads files in a pool of <b>threads</b> and merges them pairwise in
+     * a tree: neighbour files are merged together, then neighbour results and
+     * so on. The left part is always merged with the right one so that scales
+     * keep the order of the files. </p> <p> Errors in files are handled here
+     * only if <b>boe</b> is BreakOnError.SKIP. Merging conflicts and other
+     * errors make this method return false without touching the Merge object
+     * - the files should be merged sequentially then to report all the errors
+     * exactly as sequential merging does. </p>
+     *
+     * @return true if merge was finished
+     */
+    private boolean mergeParallel(final Merge merge, final String outTestList, final boolean ignoreOriginalScales) {
+        final int offset = merge.template != null ? 1 : 0;
+        int count = merge.jcovFiles.length + offset;
+        int window = threads * 2; // limits number of files kept in memory at once
+        ParsedFile[] parsed = new ParsedFile[count];
+        List<CompletableFuture<ParsedFile>> reads = new ArrayList<CompletableFuture<ParsedFile>>(count);
+        // ranges waiting to be merged with their left neighbours and sizes of these ranges
+        LinkedList<CompletableFuture<MergeNode>> stack = new LinkedList<CompletableFuture<MergeNode>>();
+        LinkedList<Integer> sizes = new LinkedList<Integer>();
+
+        logger.log(Level.INFO, "- Merging in {0} threads", threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "MergerThread");
+            t.setDaemon(true);
+            return t;
+        });
+        MergeNode result;
+        try {
+            for (int i = 0; i < count; ++i) {
+                if (i >= window) {
+                    reads.get(i - window).join();
+                }
+                final int index = i;
+                CompletableFuture<ParsedFile> read = CompletableFuture.supplyAsync(
+                        () -> parse(merge, index - offset, outTestList, ignoreOriginalScales), executor);
+                reads.add(read);
+                stack.addLast(read.thenApply(p -> {
+                    parsed[index] = p;
+                    DataRoot root = p.root;
+                    p.root = null;
+                    return new MergeNode(root, index == 0, p.failed
+                            || ((p.formatError != null || p.scaleSize >= 0) && boe != BreakOnError.SKIP));
+                }));
+                sizes.addLast(1);
+                // merging ranges of equal size as soon as they are read - this builds a balanced tree
+                while (sizes.size() > 1 && sizes.getLast().equals(sizes.get(sizes.size() - 2))) {
+                    combineLast(stack, sizes, executor);
+                }
+            }
+            while (stack.size() > 1) {
+                combineLast(stack, sizes, executor);
+            }
+            result = stack.getLast().join();
+        } finally {
+            executor.shutdown();
+        }
+
+        if (result.failed) {
+            if (result.root != null) {
+                result.root.destroy();
+            }
+            return false;
+        }
+
+        int filesMerged = 0;
+        int errors = 0;
+        int warnings = 0;
+        String javaVersion = null;
+        List<String> skipped = new ArrayList<String>();
+        for (int i = 0; i < count; ++i) {
+            String path = i < offset ? merge.template : merge.jcovFiles[i - offset].getResultPath();
+            ParsedFile p = parsed[i];
+            if (p.formatError != null) {
+                logger.log(Level.SEVERE, "Skipping malformed xml file {0}: " + p.formatError.getMessage(), new Object[]{path});
+                errors++;
+                skipped.add(path);
+            } else if (p.scaleSize >= 0) {
+                logger.log(Level.SEVERE, "Inconsistent scale sizes: in file {0}: {1}; expected: {2}", new Object[]{path, p.scaleSize, merge.jcovFiles[i - offset].getTestList().length});
+                skipped.add(path);
+            } else if (filesMerged++ == 0) {
+                javaVersion = p.javaVersion;
+            } else {
+                String ver = p.javaVersion;
+                if (ver != null && !ver.equals(javaVersion)) {
+                    if (warningCritical) {
+                        result.root.destroy();
+                        return false; // warning makes the file skipped
+                    }
+                    logger.log(Level.WARNING, "Java version differs in file {0}: {1}", new Object[]{path, ver});
+                    warnings++;
+                }
+            }
+        }
+        merge.errors += errors;
+        merge.warnings += warnings;
+        for (String path : skipped) {
+            merge.addSkippedFile(path);
+        }
+
+        finishMerge(merge, outTestList, result.root, filesMerged);
+        return true;
+    }
+
+    private void combineLast(LinkedList<CompletableFuture<MergeNode>> stack, LinkedList<Integer> sizes, ExecutorService executor) {
+        CompletableFuture<MergeNode> right = stack.removeLast();
+        CompletableFuture<MergeNode> left = stack.removeLast();
+        stack.addLast(left.thenCombineAsync(right, this::mergeNodes, executor));
+        sizes.addLast(sizes.removeLast() + sizes.removeLast());
+    }
+
+    private MergeNode mergeNodes(MergeNode left, MergeNode right) {
+        if (left.failed || right.failed) {
+            destroy(left.root, right.root);
+            return new MergeNode(null, left.first, true);
+        }
+        if (left.root == null) {
+            // right part becomes the first one - it could contain classes which are not in the first file
+            return new MergeNode(right.root, left.first, left.first && !addMissing && right.root != null);
+        }
+        if (right.root == null) {
+            return new MergeNode(left.root, left.first, false);
+        }
+        try {
+            if (!left.root.getParams().getMode().equals(right.root.getParams().getMode())
+                    || left.root.checkClassesCompatibility(right.root, loose_lvl, true) != 0) {
+                destroy(left.root, right.root);
+                return new MergeNode(null, left.first, true);
+            }
+            // only the first part is limited to its own classes, all other parts keep everything to be merged later
+            left.root.merge(right.root, !left.first || addMissing);
+            right.root.destroy();
+            return new MergeNode(left.root, left.first, false);
+        } catch (Throwable th) {
+            destroy(left.root, right.root);
+            return new MergeNode(null, left.first, true);
+        }
+    }
+
+    private static void destroy(DataRoot... roots) {
+        for (DataRoot root : roots) {
+            if (root != null) {
+                root.destroy();
+            }
+        }
+    }
+
+    /**
+     * Reads one file for parallel merging
+     *
+     * @param index index of the file in merge.jcovFiles or -1 for the
+     * template
+     */
+    private ParsedFile parse(Merge merge, int index, String outTestList, boolean ignoreOriginalScales) {
+        ParsedFile parsed = new ParsedFile();
+        String path = index < 0 ? merge.template : merge.jcovFiles[index].getResultPath();
+        try {
+            DataRoot root = Reader.readXML(path, read_scales, readFilter);
+            if (index < 0) {
+                root.getScaleOpts().setScaleSize(0); // template should not be counted in scales
+                if (root.getParams().isDynamicCollect()) {
+                    root.destroy();
+                    parsed.failed = true;
+                    return parsed;
+                }
+                if (outTestList != null && read_scales && root.getScaleOpts().getScaleSize() == 0) {
+                    root.createScales();
+                }
+            } else if (outTestList != null) {
+                if (ignoreOriginalScales) {
+                    root.cleanScales();
+                    root.createScales();
+                }
+
+                ScaleOptions scaleOpts = root.getScaleOpts();
+                String[] tlist = merge.jcovFiles[index].getTestList();
+                if (scaleOpts.getScaleSize() != tlist.length) {
+                    parsed.scaleSize = scaleOpts.getScaleSize();
+                    root.destroy();
+                    return parsed;
+                }
+                scaleOpts.setTestList(tlist);
+                scaleOpts.setOutTestList(outTestList);
+            }
+            parsed.javaVersion = root.getXMLHeadProperties().get("java.runtime.version");
+            parsed.root = root;
+        } catch (FileFormatException ex) {
+            parsed.formatError = ex;
+            parsed.failed = index < 0;
+        } catch (Throwable th) {
+            parsed.failed = true;
+        }
+        return parsed;
+    }
+
+    private void logThroughput(Merge merge, long started) {
+        merge.mergeTime = System.nanoTime() - started;
+        merge.bytesRead = merge.template != null ? new File(merge.template).length() : 0;
+        for (Result r : merge.jcovFiles) {
+            merge.bytesRead += new File(r.getResultPath()).length();
+        }
+        int files = merge.jcovFiles.length + (merge.template != null ? 1 : 0);
+        double seconds = Math.max(merge.mergeTime, 1) / 1e9;
+        double mb = merge.bytesRead / (1024.0 * 1024.0);
+        logger.log(Level.INFO, "- Processed {0} files ({1} MB) in {2} s: {3} files/s, {4} MB/s",
+                new Object[]{files, String.format("%.1f", mb), String.format("%.2f", seconds),
+                    String.format("%.1f", files / seconds), String.format("%.1f", mb / seconds)});
+    }
+
     protected int run() throws Exception {
         Result results[];
         try {
@@ -919,6 +1202,20 @@ public class Merger extends JCovCMDTool {
         this.warningCritical = warningCritical;
     }
 
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets number of threads reading and merging files. With more than one
+     * thread files are merged in a tree - see merge()
+     *
+     * @param threads number of threads, 1 means sequential merging
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
 ///////// JCovTool implementation /////////
     @Override
     protected EnvHandler defineHandler() {
@@ -939,7 +1236,8 @@ public class Merger extends JCovCMDTool {
                     DSC_BREAKERR,
                     DSC_WARNINGS,
                     DSC_TEMPLATE,
-                    DSC_SKIPPED
+                    DSC_SKIPPED,
+                    DSC_THREADS
                 }, this);
     }
 
@@ -1029,6 +1327,11 @@ public class Merger extends JCovCMDTool {
 
         warningCritical = opts.isSet(DSC_WARNINGS);
 
+        threads = Utils.checkedToInt(opts.getValue(DSC_THREADS), "threads count", Utils.CheckOptions.INT_NONNEGATIVE);
+        if (threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
         return SUCCESS_EXIT_CODE;
     }
 
@@ -1043,6 +1346,10 @@ public class Merger extends JCovCMDTool {
         }
         return code;
     }
+    final static OptionDescr DSC_THREADS =
+            new OptionDescr("threads", "", OptionDescr.VAL_SINGLE,
+            "Number of threads reading and merging files. Files are merged pairwise in a tree when more than 1 thread is used.\n"
+            + "0 corresponds to the number of processors.", "1");
     final static OptionDescr DSC_SKIPPED =
             new OptionDescr("outSkipped", "path for list of skipped files", OptionDescr.VAL_SINGLE,
             "Sets path to the list of files that were skipped during the merge by '-boe skip' option");
@@ -93,7 +93,7 @@ public class ProductInstr extends JCovCMDTool {
         return new AbstractUniversalInstrumenter(true) {
             @Override
             protected byte[] instrument(byte[] classData, int classLength) throws IOException {
-                return morph.morph(classBuf, null, tempPath);
+                return morph.morph(classData, null, tempPath);
             }
 
             @Override
@@ -60,6 +60,10 @@ public class Instrument extends Task {
     private boolean showabstract = false;
     private boolean shownative = false;
     private boolean showfields = false;
+    private boolean hitonly = false;
+    private boolean inline = false;
+    private boolean classcounts = false;
+    private int threads = 1;
     public File propfile = null;
 
 //    private String type; // not used (MERGE now)
@@ -147,7 +151,21 @@ public class Instrument extends Task {
         defValue = shownative ? OptionDescr.ON : OptionDescr.OFF;
         shownative = OptionDescr.ON.equals(PropertyFinder.findValue(InstrumentationOptions.DSC_NATIVE.name, defValue));
 
+        defValue = hitonly ? OptionDescr.ON : OptionDescr.OFF;
+        hitonly = OptionDescr.ON.equals(PropertyFinder.findValue(InstrumentationOptions.DSC_HITONLY.name, defValue));
+
+        defValue = inline ? OptionDescr.ON : OptionDescr.OFF;
+        inline = OptionDescr.ON.equals(PropertyFinder.findValue(InstrumentationOptions.DSC_INLINE.name, defValue));
+
+        defValue = classcounts ? OptionDescr.ON : OptionDescr.OFF;
+        classcounts = OptionDescr.ON.equals(PropertyFinder.findValue(InstrumentationOptions.DSC_CLASS_COUNTS.name, defValue));
+        threads = Integer.parseInt(PropertyFinder.findValue(InstrumentationOptions.DSC_THREADS.name, String.valueOf(threads)));
+
         instr.config(showabstract, showfields, shownative, saveBeg, saveE);
+        instr.setHitOnly(hitonly);
+        instr.setInline(inline);
+        instr.setClassCounts(classcounts);
+        instr.setThreads(threads);
         log("Insturumentator configured", 4);
 
         try {
@@ -423,6 +441,25 @@ public class Instrument extends Task {
         this.showabstract = showabstract;
     }
 
+    public void setHitOnly(boolean hitonly) {
+        this.hitonly = hitonly;
+    }
+
+    public void setInline(boolean inline) {
+        this.inline = inline;
+    }
+
+    public void setClassCounts(boolean classcounts) {
+        this.classcounts = classcounts;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new BuildException("Number of threads should be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
     public void setPropfile(File path) {
         this.propfile = path;
     }
@@ -88,12 +88,6 @@ import java.util.Iterator;
 public class Scale {
 
     public final static String sccsVersion = "%I% $LastChangedDate: 2012-06-20 12:45:52 +0400 (Wed, 20 Jun 2012) $";
-    private static Scale buf_scale;
-
-    static {
-        buf_scale = new Scale();
-        buf_scale.bytes = new byte[1024];
-    }
     /**
      * keeps the internal (always uncompressed) form of the TS
      */
@@ -243,14 +237,13 @@ public class Scale {
             bytes = new byte[sav.length + bytes_extra];
         }
         if (add_before) {
-            if (buf_scale.bytes.length < sav.length) {
-                buf_scale.bytes = new byte[sav.length];
-            }
-            System.arraycopy(sav, 0, buf_scale.bytes, 0, sav.length);
-            buf_scale.size = size;
+            // scales are merged in several threads - the old data can't be kept in a static buffer
+            Scale saved = new Scale();
+            saved.bytes = bytes_extra > 0 ? sav : sav.clone();
+            saved.size = size;
             for (int i = 0; i < bytes.length; bytes[i++] = (byte) 0);
             this.size = num;
-            merge(this, buf_scale);
+            merge(this, saved);
         } else {
             if (bytes_extra > 0) {
                 System.arraycopy(sav, 0, bytes, 0, sav.length);
@@ -508,8 +501,22 @@ public class Scale {
      * @throws IOException
      */
     public Scale(DataInput in) throws IOException {
+        this(in, 0);
+    }
+
+    /**
+     * Creates Scale instance reading it from the stream. The size is not
+     * stored in the stream, it's the scale size of the DataRoot the scale
+     * belongs to.
+     *
+     * @param in
+     * @param size TS size (number of tests)
+     * @throws IOException
+     */
+    public Scale(DataInput in, int size) throws IOException {
         int len = in.readShort();
         bytes = new byte[len];
         in.readFully(bytes);
+        this.size = size;
     }
 }
\ No newline at end of file
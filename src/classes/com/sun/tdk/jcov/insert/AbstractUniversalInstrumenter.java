@@ -26,6 +26,7 @@ package com.sun.tdk.jcov.insert;
 
 import com.sun.tdk.jcov.instrument.asm.OverriddenClassWriter;
 import com.sun.tdk.jcov.util.Utils;
+import org.objectweb.asm.ClassReader;
 
 import java.io.*;
 import java.net.URI;
@@ -34,6 +35,14 @@ import java.nio.file.FileSystem;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.*;
@@ -65,10 +74,10 @@ public abstract class AbstractUniversalInstrumenter {
         logger = Logger.getLogger(AbstractUniversalInstrumenter.class.getName());
     }
     /**
-     * buffer for reading class data (either from a class file or from an
-     * archive)
+     * number of threads instrumenting classes of an archive or a directory
      */
-    protected byte[] classBuf = new byte[32 * 1024];
+    private int threads = 1;
+    private ExecutorService pool;
     /**
      * whether to overwrite files with their instrumented versions
      */
@@ -111,22 +120,23 @@ public abstract class AbstractUniversalInstrumenter {
     }
 
     /**
-     * ensures that the class data buffer is capable of storing the specified
-     * number of bytes
+     * <p> Sets number of threads instrumenting classes of an archive or a
+     * directory. Classes are still written in the original order. </p>
      *
-     * @param length number of bytes to be stored
-     * @param copy_old_buf preserve contents of the buffer if it must be
-     * reallocated
+     * @param threads number of threads, 1 means classes are instrumented one
+     * by one
+     * @see #instrumentedInParallel(java.util.List, java.util.List)
      */
-    private void ensureClassBufLength(int length, boolean copy_old_buf) {
-        if (classBuf.length >= length) {
-            return;
-        }
-        byte[] tmp_buf = new byte[length + length / 2];
-        if (copy_old_buf) {
-            System.arraycopy(classBuf, 0, tmp_buf, 0, classBuf.length);
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads should be positive: " + threads);
         }
-        classBuf = tmp_buf;
+        this.threads = threads;
+        this.pool = null;
+    }
+
+    public int getThreads() {
+        return threads;
     }
 
     /**
@@ -136,91 +146,82 @@ public abstract class AbstractUniversalInstrumenter {
      * @return whether the file represented by f has been instrumented
      */
     protected boolean processClassFile(File f, File outFile) throws IOException {
-        String fname = f.getPath();
         // to suppress verbosity: logger.log(Level.INFO, "Instrumenting classfile ''{0}''...", fname);
-        boolean instredFine = true;
-        int classLength = (int) f.length();
-
         if (f.getName().equals("module-info.class")){
             return true;
         }
 
-        ensureClassBufLength(classLength, false);
-        FileInputStream fis = null;
-
-        try {
-            fis = new FileInputStream(f);
-        } catch (FileNotFoundException e) {
-            logger.log(Level.SEVERE, "  File not found - skipped", e);
+        byte[] data = readClassFile(f);
+        if (data == null) {
             return false;
         }
+        byte[] outBuf = instrumentClassFile(f.getPath(), data);
+        writeClassFile(f, outFile, outBuf != null ? outBuf : data);
+        return outBuf != null;
+    }
+
+    private byte[] readClassFile(File f) {
         try {
-            fis.read(classBuf, 0, classLength); // read in class data
-            fis.close();
+            return Files.readAllBytes(f.toPath());
         } catch (IOException e) {
-            logger.log(Level.SEVERE, "  Error reading '" + fname + "' - skipped", e);
-            return false;
+            logger.log(Level.SEVERE, "  Error reading '" + f.getPath() + "' - skipped", e);
+            return null;
         }
+    }
 
-        byte[] outBuf = null;
+    /**
+     * @return instrumented class or null if the class can't be/is already
+     * instrumented
+     */
+    private byte[] instrumentClassFile(String fname, byte[] data) {
         try {
-            if (f.length() < 4) {
-                if (f.length() == 0) {
+            if (data.length < 4) {
+                if (data.length == 0) {
                     logger.log(Level.SEVERE, "  Error reading data from ''{0}'': File is empty\n - skipped",
                             fname);
-                    instredFine = false;
                 } else {
                     logger.log(Level.SEVERE, "  Error reading data from ''{0}'': File is too small ({1}) - skipped",
-                            new Object[]{fname, f.length()});
-                    instredFine = false;
+                            new Object[]{fname, data.length});
                 }
-            } else {
-                outBuf = instrument(classBuf, classLength); // instrument the class
-//                System.out.println(f + " " + classBuf.length + " " + (outBuf == null ? "null" : outBuf.length));
+                return null;
             }
+            return instrument(data, data.length); // instrument the class
         } catch (IOException e) {
             logger.log(Level.SEVERE, "  Error reading data from '" + fname + "' - skipped", e);
-            instredFine = false;
         } catch (NullPointerException e) {
             logger.log(Level.SEVERE, "  Error reading data from '" + fname + "' - skipped", e);
-            instredFine = false;
         } catch (Exception e) {
             logger.log(Level.SEVERE, "  Error instrumenting '" + fname + "' - skipped", e);
-            instredFine = false;
         }
-        if (outBuf == null) {
-            // class can't be/is already instrumented
-            instredFine = false;
-            outBuf = classBuf;
-        } else {
-            classLength = outBuf.length;
+        return null;
+    }
+
+    private void writeClassFile(File f, File outFile, byte[] data) throws IOException {
+        if (readOnly) {
+            return;
+        }
+        // construct instrumented class file name
+        if (outFile == null) {
+            outFile = f;
+            f.delete();
+        }
+        if (outFile.isDirectory()) {
+            // if outFile is a directory, then use the original file name
+            outFile = new File(outFile, f.getName());
         }
 
-        if (!readOnly) {
-            // construct instrumented class file name
-            if (outFile == null) {
-                outFile = f;
-                f.delete();
-            }
-            if (outFile.isDirectory()) {
-                // if outFile is a directory, then use the original file name
-                outFile = new File(outFile, f.getName());
-            }
-
-            // create "super" directories if necessary
-            String parentName = outFile.getParent();
-            if (parentName != null) {
-                File parent = new File(parentName);
-                if (!parent.exists()) {
-                    parent.mkdirs();
-                }
+        // create "super" directories if necessary
+        String parentName = outFile.getParent();
+        if (parentName != null) {
+            File parent = new File(parentName);
+            if (!parent.exists()) {
+                parent.mkdirs();
             }
-            // write instrumented classfile
-            FileOutputStream fos = new FileOutputStream(outFile);
-            fos.write(outBuf, 0, classLength);
-            fos.close();
         }
-        return instredFine;
+        // write instrumented classfile
+        FileOutputStream fos = new FileOutputStream(outFile);
+        fos.write(data);
+        fos.close();
     }
 
     /**
@@ -230,6 +231,21 @@ public abstract class AbstractUniversalInstrumenter {
      * @param dir directory to be instrumented
      */
     protected void processClassDir(File dir, File outDir) throws IOException {
+        if (threads > 1) {
+            List<ClassTask> tasks = new ArrayList<ClassTask>();
+            instrumentingInParallel();
+            submitClassDir(dir, outDir, tasks, new HashSet<String>());
+            finishTasks(tasks);
+            for (ClassTask task : tasks) {
+                if (task.data != null) {
+                    writeClassFile(task.file, task.outFile, task.result != null ? task.result : task.data);
+                    if (task.result != null) {
+                        iClassCount++;
+                    }
+                }
+            }
+            return;
+        }
         String[] entries = dir.list();
         Arrays.sort(entries);
         for (int i = 0; i < entries.length; i++) {
@@ -248,6 +264,135 @@ public abstract class AbstractUniversalInstrumenter {
         }
     }
 
+    private void submitClassDir(File dir, File outDir, List<ClassTask> tasks, Set<String> names) {
+        String[] entries = dir.list();
+        Arrays.sort(entries);
+        for (int i = 0; i < entries.length; i++) {
+            File f = new File(dir.getPath() + File.separator + entries[i]);
+            if (f.isDirectory()) {
+                submitClassDir(f, new File(outDir, entries[i]), tasks, names);
+            } else {
+                fileCount++;
+                if (FILE_TYPE.hasExtension(f.getPath(), CLASS)) {
+                    classCount++;
+                    if (!f.getName().equals("module-info.class")) {
+                        ClassTask task = new ClassTask(f.getPath(), null);
+                        task.file = f;
+                        task.outFile = new File(outDir, entries[i]);
+                        task.data = readClassFile(f);
+                        submit(task, names);
+                        tasks.add(task);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Class instrumented by the pool
+     */
+    private static class ClassTask {
+
+        final String name;
+        final File arc;
+        File file;
+        File outFile;
+        ZipEntry entry;
+        byte[] data;
+        byte[] result;
+        Future<byte[]> future;
+        boolean postponed;
+
+        ClassTask(String name, File arc) {
+            this.name = name;
+            this.arc = arc;
+        }
+    }
+
+    private ExecutorService pool() {
+        if (pool == null) {
+            pool = Executors.newWorkStealingPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * Starts instrumenting a class in the pool. A class with the same name as
+     * a class submitted before (e.g. a multi-release jar) is instrumented only
+     * after all others, in order, as it would be instrumented one by one.
+     */
+    private void submit(final ClassTask task, Set<String> names) {
+        if (task.data == null) {
+            return;
+        }
+        try {
+            if (!names.add(new ClassReader(task.data).getClassName())) {
+                task.postponed = true;
+                return;
+            }
+        } catch (RuntimeException e) {
+            // broken class - will be reported by instrument()
+        }
+        task.future = pool().submit(new Callable<byte[]>() {
+            public byte[] call() {
+                return instrumentTask(task);
+            }
+        });
+    }
+
+    private byte[] instrumentTask(ClassTask task) {
+        if (task.arc == null) {
+            return instrumentClassFile(task.name, task.data);
+        }
+        try {
+            return instrument(task.data, task.data.length); // try to instrument it
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "    Error reading archive entry '" + task.name + "' in '" + task.arc.getPath() + "' - skipped", ex);
+        } catch (Exception ex) {
+            logger.log(Level.SEVERE, "    Error instrumenting archive entry '" + task.name + "' in '" + task.arc.getPath() + "' - skipped", ex);
+        }
+        return null;
+    }
+
+    /**
+     * Waits for all submitted classes, lets subclasses process the results and
+     * then instruments postponed classes.
+     */
+    private void finishTasks(List<ClassTask> tasks) throws IOException {
+        List<byte[]> classes = new ArrayList<byte[]>();
+        List<byte[]> results = new ArrayList<byte[]>();
+        List<ClassTask> submitted = new ArrayList<ClassTask>();
+        for (ClassTask task : tasks) {
+            if (task.future == null) {
+                continue;
+            }
+            try {
+                task.result = task.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Instrumentation of '" + task.name + "' was interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                logger.log(Level.SEVERE, "  Error instrumenting '" + task.name + "' - skipped", e.getCause());
+            }
+            task.future = null;
+            submitted.add(task);
+            classes.add(task.data);
+            results.add(task.result);
+        }
+        instrumentedInParallel(classes, results);
+        for (int i = 0; i < submitted.size(); i++) {
+            submitted.get(i).result = results.get(i);
+        }
+        for (ClassTask task : tasks) {
+            if (task.postponed) {
+                task.result = instrumentTask(task);
+            }
+        }
+    }
+
     /**
      * instruments classes in specified jar- or zip-archive
      *
@@ -281,6 +426,11 @@ public abstract class AbstractUniversalInstrumenter {
             }
         }
 
+        List<ClassTask> tasks = new ArrayList<ClassTask>();
+        Set<String> names = new HashSet<String>();
+        if (threads > 1) {
+            instrumentingInParallel();
+        }
         while (true) {
             // cycle by all entries in the archive
             ZipEntry e0 = null; // last read entry
@@ -299,101 +449,42 @@ public abstract class AbstractUniversalInstrumenter {
                 fileCount++;
             }
 
-            int fileLength = (int) e0.getSize();
+            ClassTask task = new ClassTask(ename, arc);
+            task.entry = e0;
             try {
-                if (fileLength >= 0) {
-                    // is length of the entry known?
-                    ensureClassBufLength(fileLength, false);
-                    // in.read(byte[],int,int) has a bug in JDK1.1.x - using in.read()...
-                    for (int i = 0; i < fileLength; classBuf[i++] = (byte) in.read()) {
-                    }
-                    in.read(classBuf, 0, fileLength);
-                } else {
-                    // no - read until the end of stream is encountered
-                    int i = 0;
-                    for (;; i++) {
-                        int b = in.read();
-                        if (b < 0) {
-                            break;
-                        }
-                        ensureClassBufLength(i + 1, true); // make sure classBuf is big enough
-                        classBuf[i] = (byte) b;
-                    }
-                    fileLength = i;
-                }
+                task.data = readEntry(in, e0);
             } catch (IOException ex) {
                 logger.log(Level.SEVERE, "  Error reading archive entry '" + ename + "' in '" + arc.getPath() + "' - skipped", ex);
+                task.data = new byte[0];
             }
 
-            byte[] res;
-            boolean isClass = ename.endsWith(CLASS.getExtension()) && !isDir;
-            if (isClass) {
+            if (ename.endsWith(CLASS.getExtension()) && !isDir) {
                 // does the entry represent a class file?
                 classCount++;
                 logger.log(Level.INFO, "  Instrumenting ''{0}''...", ename);
-                try {
-                    res = instrument(classBuf, fileLength); // try to instrument it
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, "    Error reading archive entry '" + ename + "' in '" + arc.getPath() + "' - skipped", ex);
-                    res = null;
-                } catch (Exception ex) {
-                    logger.log(Level.SEVERE, "    Error instrumenting archive entry '" + ename + "' in '" + arc.getPath() + "' - skipped", ex);
-                    res = null;
+                if (threads > 1) {
+                    submit(task, names);
+                } else {
+                    task.result = instrumentTask(task);
                 }
             } else {
                 // no - will write the buffer unchanged
-                res = classBuf;
                 logger.log(Level.INFO, "  Storing ''{0}''...", ename);
             }
-
-            if (!readOnly) {
-                ZipEntry e1 = new ZipEntry(ename); // entry to be written to the resulting archive
-                e1.setSize(fileLength);
-                e1.setMethod(e0.getMethod());
-                e1.setExtra(e0.getExtra());
-                e1.setComment(e0.getComment());
-                long crc = e0.getCrc();
-                if (crc >= 0) {
-                    e1.setCrc(crc);
-                }
-                if (res != null && isClass) {
-                    // have the class been instrumented?
-                    if (res.length > 1) {
-                        iClassCount++;
-                        if (e0.getCrc() != -1) {
-                            // update CRC if needed
-                            crc32.reset();
-                            crc32.update(res);
-                            e1.setCrc(crc32.getValue());
-                        }
-                        fileLength = res.length; // set new length
-                        e1.setSize(fileLength);
-                    } else {
-                        if (res.length == 1 && res[0] == (byte) 'P') {
-                            logger.log(Level.WARNING, "    skipped: first pass native preview");
-                        }
-                        if (res.length == 1 && res[0] == (byte) 'F') {
-                            logger.log(Level.WARNING, "    skipped: filtered out");
-                        }
-                        res = classBuf;
-                    }
-                } else {
-                    // no - will write the buffer unchanged
-                    res = classBuf;
-                    if (!isClass) {
-                        logger.log(Level.FINE, "    ''{0}'' - not instrumented (not a class)", ename);
-                    } else {
-//                        logger.log(Level.WARNING, "    ''{0}'' - not instrumented", ename);
-                    }
-                }
-
-                try {
-                    out.putNextEntry(e1); // write the entry to the resulting archive
-                    out.write(res, 0, fileLength); // write actual entry data as well
-                    out.closeEntry();
-                } catch (IOException ex) {
-                    logger.log(Level.SEVERE, "Error adding archive entry '" + ename + "' to '" + outFilename + "' - skipped", ex);
-                }
+            if (threads > 1) {
+                tasks.add(task);
+            } else {
+                writeEntry(task, out, outFilename, crc32);
+            }
+        }
+        if (threads > 1) {
+            try {
+                finishTasks(tasks);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Error processing archive '" + arc.getPath() + "'", ex);
+            }
+            for (ClassTask task : tasks) {
+                writeEntry(task, out, outFilename, crc32);
             }
         }
 
@@ -428,28 +519,9 @@ public abstract class AbstractUniversalInstrumenter {
                         continue;
                     }
 
-                    int fileLength = (int) e0.getSize();
-                    if (fileLength >= 0) {
-                        // is length of the entry known?
-                        ensureClassBufLength(fileLength, false);
-                        // in.read(byte[],int,int) has a bug in JDK1.1.x - using in.read()...
-                        for (int i = 0; i < fileLength; classBuf[i++] = (byte) rtIn.read());
-                        rtIn.read(classBuf, 0, fileLength);
-                    } else {
-                        // no - read until the end of stream is encountered
-                        int i = 0;
-                        for (;; i++) {
-                            int b = rtIn.read();
-                            if (b < 0) {
-                                break;
-                            }
-                            ensureClassBufLength(i + 1, true); // make sure classBuf is big enough
-                            classBuf[i] = (byte) b;
-                        }
-                        fileLength = i;
-                    }
+                    byte[] data = readEntry(rtIn, e0);
                     ZipEntry e1 = new ZipEntry(ename); // entry to be written to the resulting archive
-                    e1.setSize(fileLength);
+                    e1.setSize(data.length);
                     e1.setMethod(e0.getMethod());
                     e1.setExtra(e0.getExtra());
                     e1.setComment(e0.getComment());
@@ -492,7 +564,7 @@ public abstract class AbstractUniversalInstrumenter {
                             throw e;
                         }
                     }
-                    out.write(classBuf, 0, fileLength); // write actual entry data as well
+                    out.write(data); // write actual entry data as well
                     out.closeEntry();
                 }
 
@@ -520,6 +592,77 @@ public abstract class AbstractUniversalInstrumenter {
         }
     }
 
+    /**
+     * Writes an entry to the resulting archive
+     */
+    private void writeEntry(ClassTask task, ZipOutputStream out, String outFilename, CRC32 crc32) {
+        if (readOnly) {
+            return;
+        }
+        ZipEntry e0 = task.entry;
+        String ename = task.name;
+        boolean isClass = ename.endsWith(CLASS.getExtension()) && !e0.isDirectory();
+        byte[] res = task.result;
+        ZipEntry e1 = new ZipEntry(ename); // entry to be written to the resulting archive
+        e1.setSize(task.data.length);
+        e1.setMethod(e0.getMethod());
+        e1.setExtra(e0.getExtra());
+        e1.setComment(e0.getComment());
+        long crc = e0.getCrc();
+        if (crc >= 0) {
+            e1.setCrc(crc);
+        }
+        if (res != null && isClass) {
+            // have the class been instrumented?
+            if (res.length > 1) {
+                iClassCount++;
+                if (e0.getCrc() != -1) {
+                    // update CRC if needed
+                    crc32.reset();
+                    crc32.update(res);
+                    e1.setCrc(crc32.getValue());
+                }
+                e1.setSize(res.length); // set new length
+            } else {
+                if (res.length == 1 && res[0] == (byte) 'P') {
+                    logger.log(Level.WARNING, "    skipped: first pass native preview");
+                }
+                if (res.length == 1 && res[0] == (byte) 'F') {
+                    logger.log(Level.WARNING, "    skipped: filtered out");
+                }
+                res = task.data;
+            }
+        } else {
+            // no - will write the buffer unchanged
+            res = task.data;
+            if (!isClass) {
+                logger.log(Level.FINE, "    ''{0}'' - not instrumented (not a class)", ename);
+            }
+        }
+
+        try {
+            out.putNextEntry(e1); // write the entry to the resulting archive
+            out.write(res); // write actual entry data as well
+            out.closeEntry();
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Error adding archive entry '" + ename + "' to '" + outFilename + "' - skipped", ex);
+        }
+    }
+
+    /**
+     * Reads current entry of an archive
+     */
+    private static byte[] readEntry(ZipInputStream in, ZipEntry e) throws IOException {
+        long size = e.getSize();
+        if (size < 0) {
+            // length of the entry is not known - read until the end of stream is encountered
+            return in.readAllBytes();
+        }
+        byte[] data = new byte[(int) size];
+        int n = in.readNBytes(data, 0, data.length);
+        return n == data.length ? data : Arrays.copyOf(data, n);
+    }
+
     public void instrument(String arg) throws IOException {
         instrument(new File(arg), null, null, false);
     }
@@ -632,7 +775,7 @@ public abstract class AbstractUniversalInstrumenter {
         String fname = file.toAbsolutePath().toString();
         try {
             final String distinationStr = destinationPath.toString();
-            classBuf = Files.readAllBytes(file);
+            byte[] classBuf = Files.readAllBytes(file);
             int classLength = classBuf.length;
             byte[] outBuf = null;
             try {
@@ -718,6 +861,29 @@ public abstract class AbstractUniversalInstrumenter {
      */
     protected abstract byte[] instrument(byte[] classData, int classLength) throws IOException;
 
+    /**
+     * Called before classes of an archive or a directory are instrumented by
+     * several threads.
+     *
+     * @see #instrumentedInParallel(java.util.List, java.util.List)
+     */
+    protected void instrumentingInParallel() {
+    }
+
+    /**
+     * <p> Called when classes of an archive or a directory were instrumented
+     * by several threads, before they are written. Classes are passed in their
+     * original order so that results can be made independent from the order
+     * the classes were instrumented in (e.g. slots can be renumbered). </p>
+     *
+     * @param classes original classes
+     * @param results results of instrument() for these classes. Elements can
+     * be replaced.
+     * @see #setThreads(int)
+     */
+    protected void instrumentedInParallel(List<byte[]> classes, List<byte[]> results) {
+    }
+
     public abstract void finishWork();
 
     /**
@@ -752,26 +918,7 @@ public abstract class AbstractUniversalInstrumenter {
                 continue;
             }
 
-            int fileLength = (int) e0.getSize();
-            if (fileLength >= 0) {
-                // is length of the entry known?
-                ensureClassBufLength(fileLength, false);
-                // in.read(byte[],int,int) has a bug in JDK1.1.x - using in.read()...
-                for (int i = 0; i < fileLength; classBuf[i++] = (byte) in.read());
-                in.read(classBuf, 0, fileLength);
-            } else {
-                // no - read until the end of stream is encountered
-                int i = 0;
-                for (;; i++) {
-                    int b = in.read();
-                    if (b < 0) {
-                        break;
-                    }
-                    ensureClassBufLength(i + 1, true); // make sure classBuf is big enough
-                    classBuf[i] = (byte) b;
-                }
-                fileLength = i;
-            }
+            byte[] data = readEntry(in, e0);
 
             File outFile = new File(output.getPath() + File.separator + e0.getName());
             if (!e0.isDirectory()) {
@@ -790,7 +937,7 @@ public abstract class AbstractUniversalInstrumenter {
                         }
                     }
                     FileOutputStream fos = new FileOutputStream(outFile);
-                    fos.write(classBuf, 0, fileLength);
+                    fos.write(data);
                     fos.close();
                 }
             }
@@ -29,11 +29,10 @@ import com.sun.tdk.jcov.tools.DelegateIterator;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.List;
 
 /**
  * BasicBlock
@@ -52,7 +51,9 @@ import java.util.Set;
 public class BasicBlock extends LocationConcrete {
 
     private DataBlock fallenInto = null;
-    private final Set<DataBlock> blocks;
+    // blocks are kept in the order they were added to generate the same
+    // code each time, DataBlockTarget* override equals()
+    private final List<DataBlock> blocks;
     public DataExit exit = null;
 
     /**
@@ -60,7 +61,7 @@ public class BasicBlock extends LocationConcrete {
      */
     public BasicBlock(int rootId, int startBCI) {
         super(rootId, startBCI);
-        blocks = Collections.newSetFromMap(new IdentityHashMap<>());
+        blocks = new ArrayList<>();
     }
 
     /**
@@ -68,7 +69,7 @@ public class BasicBlock extends LocationConcrete {
      */
     BasicBlock(int rootId, int startBCI, int endBCI) {
         super(rootId, startBCI, endBCI);
-        blocks = Collections.newSetFromMap(new IdentityHashMap<>());
+        blocks = new ArrayList<>();
     }
 
     public BasicBlock(int rootId) {
@@ -76,7 +77,9 @@ public class BasicBlock extends LocationConcrete {
     }
 
     public void add(DataBlock blk) {
-        blocks.add(blk);
+        if (!contains(blk)) {
+            blocks.add(blk);
+        }
         if (blk.isFallenInto()) {
             fallenInto = blk;
         }
@@ -84,7 +87,12 @@ public class BasicBlock extends LocationConcrete {
     }
 
     boolean contains(DataBlock blk) {
-        return blocks.contains(blk);
+        for (DataBlock b : blocks) {
+            if (b == blk) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public DataBlock fallenInto() {
@@ -214,9 +222,16 @@ public class BasicBlock extends LocationConcrete {
         };
     }
 
+    /**
+     * @return blocks written by writeObject()
+     */
+    Collection<DataBlock> serializedBlocks() {
+        return blocks();
+    }
+
     void writeObject(DataOutput out) throws IOException {
         super.writeObject(out);
-        Collection<DataBlock> blocks = blocks();
+        Collection<DataBlock> blocks = serializedBlocks();
         int blocksNum = 0;
         for (DataBlock b : blocks) {
             if (!(b instanceof DataBlockTarget)) {
@@ -263,7 +278,7 @@ public class BasicBlock extends LocationConcrete {
     BasicBlock(int rootId, DataInput in) throws IOException {
         super(rootId, in);
         int blockNum = in.readShort();
-        blocks = Collections.newSetFromMap(new IdentityHashMap<>());
+        blocks = new ArrayList<>();
         int code;
         for (int i = 0; i < blockNum; ++i) {
             code = in.readByte();
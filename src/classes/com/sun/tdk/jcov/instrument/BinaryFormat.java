@@ -0,0 +1,569 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument;
+
+import com.sun.tdk.jcov.data.ScaleOptions;
+import com.sun.tdk.jcov.filter.MemberFilter;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.InstrumentationMode;
+import com.sun.tdk.jcov.tools.SimpleScaleCompressor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p> Binary JCov data format. It's an alternative to XML which is much faster
+ * to read and write and is several times smaller. The file consists of </p>
+ * <ul> <li>header: magic, format version, offset of the index and the
+ * DataRoot header (mode, filters, scale options, slot count,
+ * properties)</li> <li>class records written with DataClass.writeObject()</li>
+ * <li>index: string table with package, module and class names followed by
+ * package entries listing offset and length of every class record</li> </ul>
+ * <p> The index allows to find and read single classes without reading the
+ * rest of the file - see Mapped. Reader.readXML() and DataRoot.read() detect
+ * the format automatically. </p>
+ *
+ * @see Mapped
+ * @see #isBinary(java.io.File)
+ */
+public class BinaryFormat {
+
+    /**
+     * Magic bytes starting every binary JCov data file
+     */
+    public static final byte[] MAGIC = {'J', 'C', 'O', 'V', 'B', 'I', 'N', 0};
+    /**
+     * Current version of the format
+     */
+    public static final int VERSION = 2;
+    /**
+     * Recommended extension for binary JCov data files
+     */
+    public static final String EXTENSION = ".jcov";
+    private static final int INDEX_OFFSET_POSITION = MAGIC.length + 2;
+    private static final int HEADER_POSITION = INDEX_OFFSET_POSITION + 8 + 4;
+
+    /**
+     * Checks whether the file is a binary JCov data file
+     *
+     * @param file file to check
+     * @return true if the file starts with binary format magic
+     */
+    public static boolean isBinary(File file) {
+        if (!file.isFile() || file.length() < MAGIC.length) {
+            return false;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] magic = new byte[MAGIC.length];
+            return in.readNBytes(magic, 0, magic.length) == magic.length && Arrays.equals(magic, MAGIC);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the stream contains binary JCov data. The stream should
+     * support mark() - it's reset to the current position.
+     *
+     * @param in stream to check
+     * @return true if the stream starts with binary format magic
+     * @throws IOException
+     */
+    public static boolean isBinary(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            return in.readNBytes(magic, 0, magic.length) == magic.length && Arrays.equals(magic, MAGIC);
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Writes DataRoot to a file in binary format. Existing file is
+     * overwritten.
+     *
+     * @param root data to write
+     * @param fileName file to write to
+     * @throws IOException
+     */
+    public static void write(DataRoot root, String fileName) throws IOException {
+        long indexOffset = write(root, new BufferedOutputStream(new FileOutputStream(fileName), 65536));
+
+        try (RandomAccessFile raf = new RandomAccessFile(fileName, "rw")) {
+            raf.seek(INDEX_OFFSET_POSITION);
+            raf.writeLong(indexOffset);
+        }
+    }
+
+    /**
+     * Creates a detached copy of DataRoot. Counters of an attached DataRoot
+     * are copied as they are at the moment of the call.
+     *
+     * @param root data to copy
+     * @return new DataRoot which should be destroyed by the caller
+     * @throws IOException
+     */
+    public static DataRoot copy(DataRoot root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long indexOffset = write(root, bytes);
+        ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+        data.putLong(INDEX_OFFSET_POSITION, indexOffset);
+        try (Mapped mapped = new Mapped(data, root.getScaleOpts().needReadScales())) {
+            return mapped.readAll(null);
+        }
+    }
+
+    /**
+     * Writes a single class record as it's stored in binary files
+     *
+     * @param dc class to write
+     * @param out stream to write to
+     * @throws IOException
+     * @see #readClass(DataRoot, DataInput)
+     */
+    public static void writeClass(DataClass dc, DataOutput out) throws IOException {
+        dc.writeObject(out);
+    }
+
+    /**
+     * Reads a single class record written by writeClass(). The class is not
+     * added to the root and its blocks are detached.
+     *
+     * @param root DataRoot the class will belong to
+     * @param in stream to read from
+     * @return read class
+     * @throws IOException
+     */
+    public static DataClass readClass(DataRoot root, DataInput in) throws IOException {
+        return new DataClass(root.rootId(), in);
+    }
+
+    /**
+     * Writes DataRoot leaving zero index offset in the header
+     *
+     * @return index offset to be written at INDEX_OFFSET_POSITION
+     */
+    private static long write(DataRoot root, OutputStream os) throws IOException {
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> stringIds = new HashMap<String, Integer>();
+        List<DataPackage> packages = new ArrayList<DataPackage>(root.getPackages());
+        Collections.sort(packages);
+        long[][] offsets = new long[packages.size()][];
+        int[][] lengths = new int[packages.size()][];
+
+        long indexOffset;
+        CountingOutputStream counter = new CountingOutputStream(os);
+        try (DataOutputStream out = new DataOutputStream(counter)) {
+            out.write(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(0); // index offset - written at the end
+            byte[] header = writeHeader(root);
+            out.writeInt(header.length);
+            out.write(header);
+
+            for (int i = 0; i < packages.size(); ++i) {
+                List<DataClass> classes = packages.get(i).getClasses();
+                offsets[i] = new long[classes.size()];
+                lengths[i] = new int[classes.size()];
+                int j = 0;
+                for (DataClass c : classes) { // LinkedList - no indexed access
+                    offsets[i][j] = counter.count;
+                    c.writeObject(out);
+                    lengths[i][j] = (int) (counter.count - offsets[i][j]);
+                    ++j;
+                }
+            }
+
+            indexOffset = counter.count;
+            for (DataPackage p : packages) {
+                stringId(p.getName(), strings, stringIds);
+                stringId(p.getModuleName(), strings, stringIds);
+                for (DataClass c : p.getClasses()) {
+                    stringId(c.getFullname(), strings, stringIds);
+                }
+            }
+            out.writeInt(strings.size());
+            for (String s : strings) {
+                out.writeUTF(s);
+            }
+            out.writeInt(packages.size());
+            for (int i = 0; i < packages.size(); ++i) {
+                DataPackage p = packages.get(i);
+                out.writeInt(stringIds.get(p.getName()));
+                out.writeInt(stringIds.get(p.getModuleName()));
+                out.writeInt(offsets[i].length);
+                int j = 0;
+                for (DataClass c : p.getClasses()) {
+                    out.writeInt(stringIds.get(c.getFullname()));
+                    out.writeLong(offsets[i][j]);
+                    out.writeInt(lengths[i][j]);
+                    ++j;
+                }
+            }
+        }
+        return indexOffset;
+    }
+
+    private static int stringId(String s, List<String> strings, Map<String, Integer> stringIds) {
+        Integer id = stringIds.get(s);
+        if (id == null) {
+            id = strings.size();
+            strings.add(s);
+            stringIds.put(s, id);
+        }
+        return id;
+    }
+
+    /**
+     * DataRoot header contains the same information as XML header
+     */
+    private static byte[] writeHeader(DataRoot root) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        InstrumentationParams params = root.getParams();
+        out.writeUTF(params.getMode().name());
+        out.writeBoolean(params.isDetectInternal());
+        out.writeBoolean(params.isDynamicCollect());
+        DataAbstract.writeStrings(out, params.getIncludes());
+        DataAbstract.writeStrings(out, params.getExcludes());
+        DataAbstract.writeStrings(out, params.getCallerIncludes());
+        DataAbstract.writeStrings(out, params.getCallerExcludes());
+        DataAbstract.writeString(out, root.getArgs());
+        out.writeInt(root.getCount());
+        out.writeInt(root.getScaleOpts().getScaleSize());
+        out.writeBoolean(root.getScaleOpts().scalesCompressed());
+        Map<String, String> props = root.getXMLHeadProperties();
+        out.writeInt(props.size());
+        for (Map.Entry<String, String> e : props.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static DataRoot readHeader(DataInput in, boolean readScales) throws IOException {
+        DataRoot root = new DataRoot("", false);
+        InstrumentationMode mode = InstrumentationMode.valueOf(in.readUTF());
+        boolean detectInternal = in.readBoolean();
+        boolean dynamicCollect = in.readBoolean();
+        String[] includes = DataAbstract.readStrings(in);
+        String[] excludes = DataAbstract.readStrings(in);
+        String[] callerIncludes = DataAbstract.readStrings(in);
+        String[] callerExcludes = DataAbstract.readStrings(in);
+        root.setParams(new InstrumentationParams(dynamicCollect, false, false, detectInternal, null,
+                includes, excludes, callerIncludes, callerExcludes, mode));
+        root.setArgs(DataAbstract.readString(in));
+        root.setCount(in.readInt());
+        ScaleOptions scaleOpts = new ScaleOptions(readScales, 0, new SimpleScaleCompressor());
+        int scaleSize = in.readInt();
+        if (readScales) {
+            scaleOpts.setScaleSize(scaleSize);
+        }
+        scaleOpts.setScalesCompressed(in.readBoolean());
+        root.setScaleOpts(scaleOpts);
+        int propsCount = in.readInt();
+        TreeMap<String, String> props = new TreeMap<String, String>();
+        for (int i = 0; i < propsCount; ++i) {
+            props.put(in.readUTF(), in.readUTF());
+        }
+        root.setXMLHeadProperties(props);
+        return root;
+    }
+
+    /**
+     * Reads the whole DataRoot from binary file
+     *
+     * @param fileName file to read
+     * @param readScales if true - scales are read from the file or created if
+     * the file doesn't contain them
+     * @param filter filter for classes, methods and fields. Can be null
+     * @return DataRoot read from the file
+     * @throws IOException
+     */
+    public static DataRoot read(String fileName, boolean readScales, MemberFilter filter) throws IOException {
+        try (Mapped mapped = new Mapped(fileName, readScales)) {
+            DataRoot root = mapped.readAll(filter);
+            root.setStorageFileName(fileName);
+            return root;
+        }
+    }
+
+    /**
+     * Reads the whole DataRoot from binary data in a stream. The stream is
+     * read till the end.
+     *
+     * @param in stream to read
+     * @param readScales if true - scales are read from the stream or created
+     * if it doesn't contain them
+     * @param filter filter for classes, methods and fields. Can be null
+     * @return DataRoot read from the stream
+     * @throws IOException
+     */
+    public static DataRoot read(InputStream in, boolean readScales, MemberFilter filter) throws IOException {
+        try (Mapped mapped = new Mapped(ByteBuffer.wrap(in.readAllBytes()), readScales)) {
+            return mapped.readAll(filter);
+        }
+    }
+
+    /**
+     * <p> Binary JCov data file mapped into memory. Only the header and the
+     * index are read when the file is opened - classes are read when they are
+     * requested. </p> <p> Classes are read into DataRoot returned by getRoot()
+     * which should be destroyed by the caller when it's not needed. </p>
+     */
+    public static class Mapped implements Closeable {
+
+        private final FileChannel channel;
+        private final ByteBuffer whole; // null if the file is too large to be mapped at once
+        private final boolean readScales;
+        private final DataRoot root;
+        private final Map<String, long[]> index = new HashMap<String, long[]>(); // class name -> {offset, length}
+        private final List<String> classNames = new ArrayList<String>();
+        private final Map<String, DataClass> read = new HashMap<String, DataClass>();
+
+        /**
+         * Maps binary JCov data file
+         *
+         * @param fileName file to map
+         * @param readScales if true - scales are read from the file
+         * @throws IOException if the file can't be read or is not a binary
+         * JCov data file
+         */
+        public Mapped(String fileName, boolean readScales) throws IOException {
+            this.channel = FileChannel.open(new File(fileName).toPath(), StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                this.whole = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+                this.readScales = readScales;
+                this.root = open();
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private Mapped(ByteBuffer data, boolean readScales) throws IOException {
+            this.channel = null;
+            this.whole = data;
+            this.readScales = readScales;
+            this.root = open();
+        }
+
+        private DataRoot open() throws IOException {
+            DataInputStream in = input(0, HEADER_POSITION);
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a binary JCov data file");
+            }
+            int version = in.readUnsignedShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary JCov data version " + version + ", expected " + VERSION);
+            }
+            long indexOffset = in.readLong();
+            int headerLength = in.readInt();
+            DataRoot result = readHeader(input(HEADER_POSITION, headerLength), readScales);
+
+            try {
+                in = input(indexOffset, (int) Math.min(Integer.MAX_VALUE, size() - indexOffset));
+                String[] strings = new String[in.readInt()];
+                for (int i = 0; i < strings.length; ++i) {
+                    strings[i] = in.readUTF();
+                }
+                int packages = in.readInt();
+                for (int i = 0; i < packages; ++i) {
+                    in.readInt(); // package name
+                    in.readInt(); // module name
+                    int classes = in.readInt();
+                    for (int j = 0; j < classes; ++j) {
+                        String name = strings[in.readInt()];
+                        index.put(name, new long[]{in.readLong(), in.readInt()});
+                        classNames.add(name);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                result.destroy();
+                throw e;
+            }
+            return result;
+        }
+
+        private long size() throws IOException {
+            return whole != null ? whole.limit() : channel.size();
+        }
+
+        private DataInputStream input(long offset, int length) throws IOException {
+            ByteBuffer b;
+            if (whole != null) {
+                b = whole.duplicate();
+                b.position((int) offset);
+                b.limit((int) offset + length);
+            } else {
+                b = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+            return new DataInputStream(new ByteBufferInputStream(b.slice()));
+        }
+
+        /**
+         * @return DataRoot classes are read into. Contains header information
+         * from the file
+         */
+        public DataRoot getRoot() {
+            return root;
+        }
+
+        /**
+         * @return full names of all classes stored in the file in the order
+         * they are stored
+         */
+        public List<String> getClassNames() {
+            return Collections.unmodifiableList(classNames);
+        }
+
+        /**
+         * Reads a class and adds it to the DataRoot. Each class is read only
+         * once.
+         *
+         * @param fullName full name of the class (eg java/lang/String)
+         * @return read class or null if there is no such class in the file
+         * @throws IOException
+         */
+        public DataClass readClass(String fullName) throws IOException {
+            DataClass dc = read.get(fullName);
+            if (dc == null) {
+                long[] entry = index.get(fullName);
+                if (entry == null) {
+                    return null;
+                }
+                dc = new DataClass(root.rootId(), input(entry[0], (int) entry[1]));
+                read.put(fullName, dc);
+                root.addClass(dc);
+            }
+            return dc;
+        }
+
+        /**
+         * Reads all classes to the DataRoot
+         *
+         * @param filter filter for classes, methods and fields. Can be null
+         * @return DataRoot with all classes accepted by the filter
+         * @throws IOException
+         */
+        public DataRoot readAll(MemberFilter filter) throws IOException {
+            root.setAcceptor(filter);
+            for (String name : classNames) {
+                readClass(name);
+            }
+            root.applyFilter(filter);
+            if (!readScales) {
+                root.cleanScales();
+            } else if (root.getScaleOpts().getScaleSize() == 0) {
+                root.createScales();
+            }
+            return root;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buffer.remaining());
+            buffer.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * <p> DataBlock is an abstract class storing location & count info about some
@@ -51,6 +52,13 @@ public abstract class DataBlock extends LocationRef {
     protected long count;
     protected boolean attached;
     protected Scale scale;
+    /**
+     * Blocks the count of this block is computed from when it has no probe:
+     * sum of plus counts minus sum of minus counts. Null for blocks with
+     * probes.
+     */
+    private DataBlock[] plus;
+    private DataBlock[] minus;
 
     /**
      * Creates a new instance of DataBlock
@@ -138,15 +146,49 @@ public abstract class DataBlock extends LocationRef {
         this.count = count;
     }
 
+    /**
+     * Makes the count of this block computed from counts of other blocks
+     * instead of its slot. Instrumented code doesn't hit the slot of such
+     * block.
+     *
+     * @param plus blocks to add counts of
+     * @param minus blocks to subtract counts of
+     */
+    public void derive(List<DataBlock> plus, List<DataBlock> minus) {
+        this.plus = plus.toArray(new DataBlock[plus.size()]);
+        this.minus = minus.toArray(new DataBlock[minus.size()]);
+    }
+
+    /**
+     * @return true if the count of this block is computed from counts of
+     * other blocks
+     */
+    public boolean isDerived() {
+        return plus != null;
+    }
+
     /**
      * Default implementations
      *
      */
     protected boolean wasCollectHit() {
+        if (plus != null) {
+            return collectCount() != 0;
+        }
         return Collect.wasHit(slot);
     }
 
     protected long collectCount() {
+        if (plus != null) {
+            long res = 0;
+            for (DataBlock b : plus) {
+                res += b.getCount();
+            }
+            for (DataBlock b : minus) {
+                res -= b.getCount();
+            }
+            return res;
+        }
         return Collect.countFor(slot);
     }
 
@@ -301,7 +343,8 @@ public abstract class DataBlock extends LocationRef {
         slot = in.readInt();
 
         if (in.readBoolean()) {
-            scale = new Scale(in);
+            DataRoot r = DataRoot.getInstance(rootId);
+            scale = new Scale(in, r != null ? r.getScaleOpts().getScaleSize() : 0);
         } else {
             scale = null;
         }
@@ -27,15 +27,21 @@ package com.sun.tdk.jcov.instrument;
 import com.sun.tdk.jcov.instrument.asm.ASMModifiers;
 import com.sun.tdk.jcov.util.NaturalComparator;
 import com.sun.tdk.jcov.filter.MemberFilter;
+import com.sun.tdk.jcov.runtime.Collect;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -557,6 +563,43 @@ public class DataClass extends DataAnnotated implements Comparable<DataClass> {
         return fields;
     }
 
+    /**
+     * Reserves new Collect slots for all blocks of this class and attaches
+     * them to Collect. Used for classes read from a file which were
+     * instrumented in another VM - their bytecode should be remapped to the
+     * new slots.
+     *
+     * @return mapping from the old slots to the reserved ones
+     */
+    public Map<Integer, Integer> reserveSlots() {
+        // the same block can be listed twice (eg exits), it should be
+        // renumbered only once
+        Set<DataBlock> blocks = Collections.newSetFromMap(new IdentityHashMap<DataBlock, Boolean>());
+        for (DataMethod m : methods) {
+            for (DataBlock b : m) {
+                blocks.add(b);
+            }
+        }
+        for (DataField f : fields) {
+            for (DataBlock b : f) {
+                blocks.add(b);
+            }
+        }
+        // new slots keep the order of the old ones, blocks can share the slot
+        Map<Integer, Integer> slots = new TreeMap<Integer, Integer>();
+        for (DataBlock b : blocks) {
+            slots.put(b.slot, null);
+        }
+        for (Map.Entry<Integer, Integer> e : slots.entrySet()) {
+            e.setValue(Collect.newSlot());
+        }
+        for (DataBlock b : blocks) {
+            b.setId(slots.get(b.slot));
+            b.attach();
+        }
+        return slots;
+    }
+
     /**
      * Check whether this class was hit. Checks one-by-one all methods and all
      * fields in this class. Class is hit only is any method or field is hit.
@@ -731,44 +774,42 @@ public class DataClass extends DataAnnotated implements Comparable<DataClass> {
                 logger.log(Level.INFO, me.getMessage());
             }
         }
+        Map<String, DataMethod> otherMethods = methodsBySignature(other.methods);
         for (DataMethod meth : methods) {
-            for (DataMethod ometh : other.methods) {
-                if (meth.equals(ometh)) {
-                    try {
-                        meth.checkCompatibility(ometh, traceString + ": " + other.fullname + "." + ometh.getName() + ometh.getVmSignature());
-                    } catch (MergeException e) {
-                        if (isCritical(e, severity)) {
-                            errors++;
-                            logger.log(Level.SEVERE, "Error while merging method " + ometh.getName() + ometh.getVmSignature(), e);
-                            if (boe) {
-                                return errors;
-                            }
-                        } else {
-                            logger.log(Level.WARNING, "Error while merging method " + ometh.getName() + ometh.getVmSignature() + " - skipped as not critical", e);
+            DataMethod ometh = otherMethods.get(meth.getName() + meth.getVmSignature());
+            if (ometh != null && meth.equals(ometh)) {
+                try {
+                    meth.checkCompatibility(ometh, traceString + ": " + other.fullname + "." + ometh.getName() + ometh.getVmSignature());
+                } catch (MergeException e) {
+                    if (isCritical(e, severity)) {
+                        errors++;
+                        logger.log(Level.SEVERE, "Error while merging method " + ometh.getName() + ometh.getVmSignature(), e);
+                        if (boe) {
+                            return errors;
                         }
+                    } else {
+                        logger.log(Level.WARNING, "Error while merging method " + ometh.getName() + ometh.getVmSignature() + " - skipped as not critical", e);
                     }
-                    break;
                 }
             }
         }
 
+        Map<String, DataField> otherFields = fieldsBySignature(other.fields);
         for (DataField fld : fields) {
-            for (DataField ofld : other.fields) {
-                if (fld.equals(ofld)) {
-                    try {
-                        fld.checkCompatibility(ofld, traceString + ": " + other.fullname + "." + ofld.getName());
-                    } catch (MergeException e) {
-                        if (isCritical(e, severity)) {
-                            errors++;
-                            logger.log(Level.SEVERE, "Error while merging field " + ofld.getName(), e);
-                            if (boe) {
-                                return errors;
-                            }
-                        } else {
-                            logger.log(Level.WARNING, "Error while merging field " + ofld.getName() + " - skipped as not critical", e);
+            DataField ofld = otherFields.get(fld.getName() + fld.getVmSig());
+            if (ofld != null && fld.equals(ofld)) {
+                try {
+                    fld.checkCompatibility(ofld, traceString + ": " + other.fullname + "." + ofld.getName());
+                } catch (MergeException e) {
+                    if (isCritical(e, severity)) {
+                        errors++;
+                        logger.log(Level.SEVERE, "Error while merging field " + ofld.getName(), e);
+                        if (boe) {
+                            return errors;
                         }
+                    } else {
+                        logger.log(Level.WARNING, "Error while merging field " + ofld.getName() + " - skipped as not critical", e);
                     }
-                    break;
                 }
             }
         }
@@ -852,22 +893,20 @@ public class DataClass extends DataAnnotated implements Comparable<DataClass> {
      * @param other
      */
     public void merge(DataClass other) {
+        Map<String, DataMethod> otherMethods = methodsBySignature(other.methods);
         for (DataMethod meth : methods) {
-            for (DataMethod ometh : other.methods) {
-                if (meth.equals(ometh)) {
-                    meth.merge(ometh);
-                    break;
-                } // XXX meth not found
-            }
+            DataMethod ometh = otherMethods.get(meth.getName() + meth.getVmSignature());
+            if (ometh != null && meth.equals(ometh)) {
+                meth.merge(ometh);
+            } // XXX meth not found
         }
 
+        Map<String, DataField> otherFields = fieldsBySignature(other.fields);
         for (DataField fld : fields) {
-            for (DataField ofld : other.fields) {
-                if (fld.equals(ofld)) {
-                    fld.merge(ofld);
-                    break;
-                } // XXX field not found
-            }
+            DataField ofld = otherFields.get(fld.getName() + fld.getVmSig());
+            if (ofld != null && fld.equals(ofld)) {
+                fld.merge(ofld);
+            } // XXX field not found
         }
 
         if (checksum == -1) {
@@ -881,23 +920,19 @@ public class DataClass extends DataAnnotated implements Comparable<DataClass> {
      * @param otherClass
      */
     public void mergeOnSignatures(DataClass otherClass) {
-        ListIterator<DataMethod> other_it = otherClass.methods.listIterator();
-        outer:
-        while (other_it.hasNext()) {
-            DataMethod otherMethod = other_it.next();
-            ListIterator<DataMethod> it = methods.listIterator();
-            while (it.hasNext()) {
-                DataMethod thisMethod = it.next();
-                if (otherMethod.getFullName().equals(thisMethod.getFullName())) { // signature checking only
-                    if (otherMethod instanceof DataMethodEntryOnly) {
-                        thisMethod.merge(otherMethod);
-                    } else {
-                        // it's terrible but better than creating new DataMethodEntryOnly from otherMethod
-                        thisMethod.iterator().next().mergeScale(otherMethod.iterator().next());
-                        thisMethod.setCount(thisMethod.getCount() + otherMethod.getCount());
-                    }
-                    continue outer;
+        // classes have the same name so method full names differ only in name and signature
+        Map<String, DataMethod> thisMethods = methodsBySignature(methods);
+        for (DataMethod otherMethod : otherClass.methods) {
+            DataMethod thisMethod = thisMethods.get(otherMethod.getName() + otherMethod.getVmSignature());
+            if (thisMethod != null) { // signature checking only
+                if (otherMethod instanceof DataMethodEntryOnly) {
+                    thisMethod.merge(otherMethod);
+                } else {
+                    // it's terrible but better than creating new DataMethodEntryOnly from otherMethod
+                    thisMethod.iterator().next().mergeScale(otherMethod.iterator().next());
+                    thisMethod.setCount(thisMethod.getCount() + otherMethod.getCount());
                 }
+                continue;
             }
 
             // means that this method is missing - it's an error, but ignoring - just writting warning
@@ -905,15 +940,12 @@ public class DataClass extends DataAnnotated implements Comparable<DataClass> {
         }
 
         // fields
-        outer:
+        Map<String, DataField> thisFields = fieldsBySignature(fields);
         for (DataField otherFields : otherClass.fields) {
-            ListIterator<DataField> it = fields.listIterator();
-            while (it.hasNext()) {
-                DataField thisField = it.next();
-                if (otherFields.equals(thisField)) { // parent && signature checking only
-                    thisField.merge(otherFields);
-                    continue outer;
-                }
+            DataField thisField = thisFields.get(otherFields.getName() + otherFields.getVmSig());
+            if (thisField != null && otherFields.equals(thisField)) { // parent && signature checking only
+                thisField.merge(otherFields);
+                continue;
             }
 
             // means that this field is missing - it's an error, but ignoring - just writting warning
@@ -921,6 +953,32 @@ public class DataClass extends DataAnnotated implements Comparable<DataClass> {
         }
     }
 
+    /**
+     * Indexes methods by name and VM signature to avoid nested loops over
+     * methods of merged classes. The first method wins as it was in linear
+     * search.
+     */
+    private static Map<String, DataMethod> methodsBySignature(List<DataMethod> methods) {
+        Map<String, DataMethod> res = new HashMap<String, DataMethod>(methods.size() * 2);
+        for (DataMethod m : methods) {
+            res.putIfAbsent(m.getName() + m.getVmSignature(), m);
+        }
+        return res;
+    }
+
+    /**
+     * Indexes fields by name and VM signature
+     *
+     * @see #methodsBySignature(java.util.List)
+     */
+    private static Map<String, DataField> fieldsBySignature(List<DataField> fields) {
+        Map<String, DataField> res = new HashMap<String, DataField>(fields.size() * 2);
+        for (DataField f : fields) {
+            res.putIfAbsent(f.getName() + f.getVmSig(), f);
+        }
+        return res;
+    }
+
     /**
      * Return true, if merge error is critical, false for warnings
      *
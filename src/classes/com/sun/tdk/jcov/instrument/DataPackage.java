@@ -29,8 +29,12 @@ import com.sun.tdk.jcov.filter.MemberFilter;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.AbstractSequentialList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.LinkedList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -53,7 +57,125 @@ public class DataPackage extends DataAbstract implements Comparable<DataPackage>
     /**
      * Classes in this package
      */
-    private final List<DataClass> classes;
+    private final ClassList classes;
+
+    /**
+     * List of classes keeping an index of them by name. The index is updated
+     * on every change, including the ones made through getClasses() and its
+     * iterators, so findClass() only reads it.
+     */
+    private static class ClassList extends AbstractSequentialList<DataClass> {
+
+        private final LinkedList<DataClass> list = new LinkedList<DataClass>();
+        /**
+         * The first class of each name
+         */
+        private final Map<String, DataClass> index = new HashMap<String, DataClass>();
+        /**
+         * Set once two classes with the same name were added - then removal
+         * has to look for the next class of that name
+         */
+        private boolean duplicates;
+
+        DataClass find(String className) {
+            return index.get(className);
+        }
+
+        private void added(DataClass c) {
+            DataClass prev = index.get(c.getName());
+            if (prev == null) {
+                index.put(c.getName(), c);
+            } else if (prev != c) {
+                duplicates = true;
+            }
+        }
+
+        private void removed(DataClass c) {
+            if (index.get(c.getName()) != c) {
+                return;
+            }
+            index.remove(c.getName());
+            if (duplicates) {
+                for (DataClass other : list) {
+                    if (other.getName().equals(c.getName())) {
+                        index.put(other.getName(), other);
+                        break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return list.size();
+        }
+
+        @Override
+        public boolean add(DataClass c) {
+            list.add(c);
+            added(c);
+            return true;
+        }
+
+        /**
+         * Reordering doesn't change the index
+         */
+        @Override
+        public void sort(Comparator<? super DataClass> c) {
+            list.sort(c);
+        }
+
+        @Override
+        public ListIterator<DataClass> listIterator(int index) {
+            final ListIterator<DataClass> it = list.listIterator(index);
+            return new ListIterator<DataClass>() {
+                private DataClass last;
+
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                public DataClass next() {
+                    return last = it.next();
+                }
+
+                public boolean hasPrevious() {
+                    return it.hasPrevious();
+                }
+
+                public DataClass previous() {
+                    return last = it.previous();
+                }
+
+                public int nextIndex() {
+                    return it.nextIndex();
+                }
+
+                public int previousIndex() {
+                    return it.previousIndex();
+                }
+
+                public void remove() {
+                    it.remove();
+                    removed(last);
+                    last = null;
+                }
+
+                public void set(DataClass c) {
+                    it.set(c);
+                    removed(last);
+                    added(c);
+                    last = c;
+                }
+
+                public void add(DataClass c) {
+                    it.add(c);
+                    added(c);
+                    last = null;
+                }
+            };
+        }
+    }
 
     /**
      * Creates a new instance of DataPackage
@@ -65,7 +187,7 @@ public class DataPackage extends DataAbstract implements Comparable<DataPackage>
         super(rootId);
         this.name = name;
         this.moduleName = modulename;
-        this.classes = new LinkedList<DataClass>();
+        this.classes = new ClassList();
     }
 
     public void setModuleName(String moduleName){
@@ -111,13 +233,7 @@ public class DataPackage extends DataAbstract implements Comparable<DataPackage>
      * doesn't contain this class
      */
     public DataClass findClass(String className) {
-        for (DataClass cl : classes) {
-            if (cl.getName().equals(className)) {
-                return cl;
-            }
-        }
-
-        return null;
+        return classes.find(className);
     }
 
     public boolean removeClass(DataClass k) {
@@ -125,18 +241,8 @@ public class DataPackage extends DataAbstract implements Comparable<DataPackage>
     }
 
     public boolean removeClass(String k) {
-        if (k == null) {
-            return false;
-        }
-        Iterator<DataClass> it = classes.iterator();
-        while (it.hasNext()) {
-            if (it.next().getName().equals(k)) {
-                it.remove();
-                return true;
-            }
-        }
-
-        return false;
+        DataClass c = k == null ? null : findClass(k);
+        return c != null && classes.remove(c);
     }
 
     /**
@@ -215,7 +321,7 @@ public class DataPackage extends DataAbstract implements Comparable<DataPackage>
         name = in.readUTF();
         moduleName = in.readUTF();
         int classNum = in.readUnsignedShort();
-        classes = new ArrayList<DataClass>(classNum);
+        classes = new ClassList();
         for (int i = 0; i < classNum; ++i) {
             classes.add(new DataClass(rootID, in));
         }
@@ -52,6 +52,8 @@ import java.util.Map;
 import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -105,10 +107,12 @@ public class DataRoot extends DataAbstract {
      */
     protected InstrumentationParams params;
     /**
-     * All instances of DataRoots (for attaching&merging capabilities)
+     * All instances of DataRoots (for attaching&merging capabilities). DataRoots
+     * can be read and merged in several threads (e.g. by Merger) so the map is
+     * concurrent.
      */
-    private static Map<Integer, DataRoot> instances = new HashMap();
-    private static volatile int instanceCount = 0;
+    private static Map<Integer, DataRoot> instances = new ConcurrentHashMap<Integer, DataRoot>();
+    private static final AtomicInteger instanceCount = new AtomicInteger();
     private List<Integer> secondaryIDs = new LinkedList<Integer>();
     /**
      * Acceptor API
@@ -195,7 +199,7 @@ public class DataRoot extends DataAbstract {
      * com.sun.tdk.jcov.filter.MemberFilter)
      */
     public DataRoot(String args, boolean attached) {
-        super(instanceCount++);
+        super(instanceCount.getAndIncrement());
         instances.put(rootId, this);
 
         this.args = args;
@@ -409,7 +413,7 @@ public class DataRoot extends DataAbstract {
      * @param name
      * @return package
      */
-    public DataPackage findPackage(String name, String moduleName) {
+    public synchronized DataPackage findPackage(String name, String moduleName) {
         DataPackage pack = packages.get(name);
         if (pack == null) {
             pack = new DataPackage(rootId, name, moduleName);
@@ -430,7 +434,7 @@ public class DataRoot extends DataAbstract {
         String packname;
         if (i > 0) {
             packname = classname.substring(0, i);
-            classname = classname.substring(i);
+            classname = classname.substring(i + 1);
         } else {
             packname = ROOT_PACKAGE;
         }
@@ -460,11 +464,12 @@ public class DataRoot extends DataAbstract {
     }
 
     /**
-     * Add a class to the DataRoot.
+     * Add a class to the DataRoot. Classes can be added from several threads
+     * at once (e.g. by Agent).
      *
      * @param clazz
      */
-    public void addClass(DataClass clazz) {
+    public synchronized void addClass(DataClass clazz) {
         if (acceptor != null && !acceptor.accept(clazz)) {
             return;
         }
@@ -612,7 +617,6 @@ public class DataRoot extends DataAbstract {
                     new Object[]{params.getMode().name(), params.getMode().name()});
             return new CompatibilityCheckResult(1, 0);
         }
-        int errors = 0;
         int warnings = 0;
 
         // checking java version after all checks as java mismatch is warning
@@ -622,6 +626,22 @@ public class DataRoot extends DataAbstract {
             warnings += 1;
         }
 
+        return new CompatibilityCheckResult(checkClassesCompatibility(other, severity, boe), warnings);
+    }
+
+    /**
+     * Checks that classes existing in both DataRoots can be merged. Unlike
+     * checkCompatibility() neither data type nor java version are checked.
+     *
+     * @param other DataRoot to check
+     * @param severity the same as in checkCompatibility()
+     * @param boe stop on the first error
+     * @return number of errors found
+     * @see #checkCompatibility(com.sun.tdk.jcov.instrument.DataRoot, int,
+     * boolean)
+     */
+    public int checkClassesCompatibility(DataRoot other, int severity, boolean boe) {
+        int errors = 0;
         for (DataPackage pOther : other.packages.values()) {
             if (packages.containsKey(pOther.getName())) {
                 DataPackage p = packages.get(pOther.getName());
@@ -634,7 +654,7 @@ public class DataRoot extends DataAbstract {
                             logger.log(Level.SEVERE, "Error while merging class " + cl.getFullname(), e);
                             errors++;
                             if (boe) {
-                                return new CompatibilityCheckResult(errors, warnings);
+                                return errors;
                             }
                         }
                     }
@@ -642,7 +662,7 @@ public class DataRoot extends DataAbstract {
             }
         }
 
-        return new CompatibilityCheckResult(errors, warnings);
+        return errors;
     }
 
     /**
@@ -864,9 +884,7 @@ public class DataRoot extends DataAbstract {
             }
         }
 
-        instances.remove(other.rootId);
-        instances.put(other.rootId, this);
-        secondaryIDs.add(other.rootId);
+        attachInstances(other);
         other.rootId = -1; // to avoid remove problems (DataRoot.merge(dr); dr.destroy();)
     }
 
@@ -913,17 +931,14 @@ public class DataRoot extends DataAbstract {
                 }
             } else {
                 // package merging logic is in DataRoot as merging can affect scales
-                outer:
                 for (DataClass otherClass : otherPackage.getClasses()) {
-                    for (DataClass thisClass : thisPackage.getClasses()) {
-                        if (otherClass.getName().equals(thisClass.getName())) {
-                            thisClass.mergeOnSignatures(otherClass);
-
-                            continue outer;
-                        }
+                    DataClass thisClass = thisPackage.findClass(otherClass.getName());
+                    if (thisClass != null) {
+                        thisClass.mergeOnSignatures(otherClass);
+                        continue;
                     }
 
-                    // "continue outer" didn't happen - class not found
+                    // class not found
                     if (addmissing) {
                         if (scaleOpts.needReadScales()) {
                             otherClass.expandScales(scaleOpts.getScaleSize(), true, 0);
@@ -943,9 +958,21 @@ public class DataRoot extends DataAbstract {
             }
         }
 
-        instances.remove(other.rootId);
+        attachInstances(other);
+    }
+
+    /**
+     * Makes all IDs of other DataRoot (own and secondary) point to this
+     * DataRoot as classes were moved here
+     */
+    private void attachInstances(DataRoot other) {
         instances.put(other.rootId, this);
         secondaryIDs.add(other.rootId);
+        for (int id : other.secondaryIDs) {
+            instances.put(id, this);
+            secondaryIDs.add(id);
+        }
+        other.secondaryIDs.clear();
     }
 
     private boolean checkHeaderCompatibility(DataRoot other) {
@@ -1185,12 +1212,13 @@ public class DataRoot extends DataAbstract {
     /**
      * <p> Reads XML and retrieves DataRoot from it. Scales are read from the
      * file or created if file doesn't contain scale information </p> <p> Uses
-     * Reader.readXML() </p>
+     * Reader.readXML() which also accepts binary JCov data files </p>
      *
      * @param filename file to read
      * @return DataRoot read from XML
      * @throws FileFormatException if any problem reading XML occurs.
      * @see com.sun.tdk.jcov.io.Reader
+     * @see BinaryFormat
      */
     public static DataRoot read(String filename) throws FileFormatException {
         return Reader.readXML(filename);
@@ -1295,10 +1323,11 @@ public class DataRoot extends DataAbstract {
      * @throws IOException
      */
     public DataRoot(DataInput in) throws IOException {
-        super(instanceCount++);
+        super(instanceCount.getAndIncrement());
+        params = new InstrumentationParams(in);
+        scaleOpts = new ScaleOptions(in);
+        instances.put(rootId, this); // blocks take the scale size from here
         try {
-            params = new InstrumentationParams(in);
-            scaleOpts = new ScaleOptions(in);
             args = readString(in);
             int packs = in.readShort();
             packages = new HashMap<String, DataPackage>(packs);
@@ -1311,9 +1340,8 @@ public class DataRoot extends DataAbstract {
             for (int i = 0; i < propsCount; ++i) {
                 props.put(in.readUTF(), in.readUTF());
             }
-            instances.put(rootId, this);
         } catch (IOException e) {
-            --instanceCount;
+            instances.remove(rootId);
             throw e;
         }
     }
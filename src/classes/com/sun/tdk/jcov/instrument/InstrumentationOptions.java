@@ -148,6 +148,29 @@ public class InstrumentationOptions {
                 {"on", "count inner invocations in the product"},
                 {"off", "count only invocations outside the instrumented product"}
             }, "Allows to filter inner invocations in the instrumented product", "on");
+    public final static OptionDescr DSC_HITONLY =
+            new OptionDescr("hitonly", "Hit-only mode", new String[][]{
+                {"on", "only mark members as hit (counts in the result are 0 or 1)"},
+                {"off", "count hits"}
+            }, "Allows to mark hits with a plain byte store instead of counting them.\n" +
+            "Reduces runtime overhead. Ignored for classes instrumented with caller filter or in agent mode.", "off");
+    public final static OptionDescr DSC_INLINE =
+            new OptionDescr("inline", "Inline probes", new String[][]{
+                {"on", "update the counts array directly in instrumented methods"},
+                {"off", "call Collect.hit() for every probe"}
+            }, "Allows to load the counts array into a local variable at method entry and to increment\n" +
+            "its elements in place instead of calling a method in every probe. Helps in large methods\n" +
+            "the JIT doesn't inline the calls in. Ignored for classes instrumented with caller filter or in agent mode.", "off");
+    public final static OptionDescr DSC_CLASS_COUNTS =
+            new OptionDescr("classcounts", "Per-class counts", new String[][]{
+                {"on", "every class counts hits in its own array"},
+                {"off", "all classes count hits in one array of JCov runtime"}
+            }, "Allows to count hits of every class in an array held by a synthetic static field of the class.\n" +
+            "The array is allocated when the class is initialized and is folded into the results when they are saved,\n" +
+            "so the number of slots is not limited by the runtime. Slots are not renumbered after instrumenting\n" +
+            "in several threads. Ignored for classes instrumented with caller filter or in agent mode.\n" +
+            "A class initializer is added to classes which have none, and interfaces get a public field - both\n" +
+            "change the default serialVersionUID of serializable classes which don't declare one.", "off");
     public final static OptionDescr DSC_INNER_INCLUDE =
             new OptionDescr("inner_include", new String[]{"ii"}, "", OptionDescr.VAL_MULTI,
             "Specify included classes by regular expression for adding inner invocations instrumentation\n" +
@@ -159,6 +182,21 @@ public class InstrumentationOptions {
     public final static OptionDescr DSC_INSTR_PLUGIN =
             new OptionDescr("instr_plugin", new String[0], "Instrumentation plugin", OptionDescr.VAL_SINGLE,
                     "Defines instrumentation to be performed additionaly to already performed by JCov");
+    public final static OptionDescr DSC_THREADS =
+            new OptionDescr("threads", "Instrumentation threads", OptionDescr.VAL_SINGLE,
+            "Specifies number of threads instrumenting classes of a jar or a directory.\n"
+            + "Instrumented classes are written in the original order, slots are the same for every run\n"
+            + "unless caller filters, fields or abstract methods are instrumented.\n"
+            + "jreinstr also extracts and creates jmods concurrently.", "1");
+    public final static OptionDescr DSC_PROBES =
+            new OptionDescr("probes", "Probes placement",
+            new String[][]{
+                {"all", "every block and branch target is counted by its own probe"},
+                {"minimal", "counts following from counts of other blocks are not collected"}
+            },
+            "Specifies which blocks and branch targets of a method get probes in branch mode.\n"
+            + "Counts of blocks without probes are computed from counts of other blocks when data is saved.\n"
+            + "Ignored in hit-only mode and with caller filter.", "all");
 
     public static enum ABSTRACTMODE {
 
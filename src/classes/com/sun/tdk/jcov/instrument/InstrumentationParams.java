@@ -29,8 +29,9 @@ import com.sun.tdk.jcov.instrument.InstrumentationOptions.InstrumentationMode;
 import com.sun.tdk.jcov.instrument.InstrumentationPlugin;
 import com.sun.tdk.jcov.runtime.Collect;
 import com.sun.tdk.jcov.runtime.CollectDetect;
+import com.sun.tdk.jcov.util.NameMatcher;
+import com.sun.tdk.jcov.util.PatternMatcher;
 import com.sun.tdk.jcov.util.Utils;
-import com.sun.tdk.jcov.util.Utils.Pattern;
 
 import java.io.DataInput;
 import java.io.DataOutput;
@@ -67,10 +68,18 @@ public class InstrumentationParams {
     private String saveEnd;
     private String[] savesBegin;
     private String[] savesEnd;
-    private Pattern[] alls;
-    private Pattern[] all_modules;
-    private Pattern[] inner_alls;
+    private PatternMatcher alls;
+    private PatternMatcher all_modules;
+    private PatternMatcher inner_alls;
+    private NameMatcher callerIncludeMatcher;
+    private NameMatcher callerExcludeMatcher;
+    private NameMatcher saveBeginMatcher;
+    private NameMatcher saveEndMatcher;
     private boolean innerInvocations;
+    private boolean hitOnly;
+    private boolean inlineProbes;
+    private boolean classCounts;
+    private boolean minimizeProbes;
     private InstrumentationPlugin plugin;
 
     //TODO replace by a builder!!!
@@ -194,9 +203,13 @@ public class InstrumentationParams {
         this.saveEnd = InstrumentationOptions.concatRegexps(saveEnd);
         this.callerInclude = InstrumentationOptions.concatRegexps(callerIncludes);
         this.callerExclude = InstrumentationOptions.concatRegexps(callerExcludes);
-        this.alls = Utils.concatFilters(includes, excludes);
-        this.all_modules = Utils.concatModuleFilters(m_includes, m_excludes);
-        this.inner_alls = Utils.concatFilters(inner_includes, inner_excludes);
+        this.saveBeginMatcher = new NameMatcher(this.saveBegin);
+        this.saveEndMatcher = new NameMatcher(this.saveEnd);
+        this.callerIncludeMatcher = new NameMatcher(callerInclude);
+        this.callerExcludeMatcher = new NameMatcher(callerExclude);
+        this.alls = Utils.compileFilters(includes, excludes);
+        this.all_modules = Utils.compileModuleFilters(m_includes, m_excludes);
+        this.inner_alls = Utils.compileFilters(inner_includes, inner_excludes);
         this.plugin = plugin;
     }
 
@@ -230,6 +243,34 @@ public class InstrumentationParams {
 
     public InstrumentationPlugin getInstrumentationPlugin() { return plugin; }
 
+    /**
+     * @return true if instrumented code should only mark members as hit
+     * instead of counting hits
+     */
+    public boolean isHitOnly() {
+        return hitOnly;
+    }
+
+    /**
+     * @return true if instrumented code should update the counts array
+     * directly instead of calling Collect.hit()
+     */
+    public boolean isInlineProbes() {
+        return inlineProbes;
+    }
+
+    /**
+     * @return true if every instrumented class should count hits in its own
+     * array
+     */
+    public boolean isClassCounts() {
+        return classCounts;
+    }
+
+    public boolean isMinimizeProbes() {
+        return minimizeProbes;
+    }
+
 //    public boolean skipNotCoveredClasses() {
 //        return dynamicCollect;
 //    }
@@ -270,8 +311,7 @@ public class InstrumentationParams {
     }
 
     public boolean isCallerFilterAccept(String className) {
-        boolean name = className.matches(callerInclude) && !className.matches(callerExclude);
-        return name;
+        return callerIncludeMatcher.matches(className) && !callerExcludeMatcher.matches(className);
     }
 
     public boolean isStackMapShouldBeUpdated() {
@@ -283,13 +323,30 @@ public class InstrumentationParams {
     }
 
     public boolean isDataSaveFilterAccept(String className, String methodName, boolean isBegin) {
-        return (className + "." + methodName).matches(isBegin ? saveBegin : saveEnd);
+        return (isBegin ? saveBeginMatcher : saveEndMatcher).matches(className + "." + methodName);
     }
 
     public boolean isDataSaveSpecified() {
         return saveBegin != null || saveEnd != null;
     }
 
+    /**
+     * @return string describing all parameters which change the way an
+     * included class is instrumented. Class filters are not included.
+     */
+    public String getInstrumentationSignature() {
+        return mode + ";dynamic=" + dynamicCollect + ";detectInternal=" + detectInternal
+                + ";native=" + instrumentNative + ";fields=" + instrumentFields
+                + ";abstract=" + instrumentAbstract + ";synthetic=" + instrumentSynthetic
+                + ";anonymous=" + instrumentAnonymous + ";hitOnly=" + hitOnly + ";inline=" + inlineProbes + ";classCounts=" + classCounts
+                + ";innerInvocations=" + innerInvocations
+                + ";innerIncludes=" + Arrays.toString(inner_includes)
+                + ";innerExcludes=" + Arrays.toString(inner_excludes)
+                + ";callerInclude=" + callerInclude + ";callerExclude=" + callerExclude
+                + ";saveBegin=" + saveBegin + ";saveEnd=" + saveEnd
+                + ";plugin=" + (plugin == null ? null : plugin.getClass().getName());
+    }
+
     public static InstrumentationParams mergeParams(InstrumentationParams first, InstrumentationParams other) {
         boolean detectInternal = first.detectInternal || other.detectInternal;
 
@@ -351,23 +408,23 @@ public class InstrumentationParams {
 
     public void setExcludes(String[] excludes) {
         this.excludes = excludes;
-        this.alls = Utils.concatFilters(includes, excludes);
+        this.alls = Utils.compileFilters(includes, excludes);
     }
 
     public void setIncludes(String[] includes) {
         this.includes = includes;
-        this.alls = Utils.concatFilters(includes, excludes);
+        this.alls = Utils.compileFilters(includes, excludes);
     }
 
     public InstrumentationParams setInnerExcludes(String[] excludes) {
         this.inner_excludes = excludes;
-        this.inner_alls = Utils.concatFilters(inner_includes, excludes);
+        this.inner_alls = Utils.compileFilters(inner_includes, excludes);
         return this;
     }
 
     public InstrumentationParams setInnerIncludes(String[] includes) {
         this.inner_includes = includes;
-        this.inner_alls = Utils.concatFilters(includes, inner_excludes);
+        this.inner_alls = Utils.compileFilters(includes, inner_excludes);
         return this;
     }
 
@@ -386,6 +443,26 @@ public class InstrumentationParams {
         return this;
     }
 
+    public InstrumentationParams setHitOnly(boolean hitOnly) {
+        this.hitOnly = hitOnly;
+        return this;
+    }
+
+    public InstrumentationParams setInlineProbes(boolean inlineProbes) {
+        this.inlineProbes = inlineProbes;
+        return this;
+    }
+
+    public InstrumentationParams setClassCounts(boolean classCounts) {
+        this.classCounts = classCounts;
+        return this;
+    }
+
+    public InstrumentationParams setMinimizeProbes(boolean minimizeProbes) {
+        this.minimizeProbes = minimizeProbes;
+        return this;
+    }
+
     public InstrumentationParams setInstrumentationPlugin(InstrumentationPlugin plugin) {
         this.plugin = plugin;
         return this;
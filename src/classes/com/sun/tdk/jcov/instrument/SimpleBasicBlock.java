@@ -29,6 +29,8 @@ import com.sun.tdk.jcov.tools.OneElemIterator;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 
 /**
@@ -172,6 +174,11 @@ public class SimpleBasicBlock extends BasicBlock {
         return new OneElemIterator(block);
     }
 
+    @Override
+    Collection<DataBlock> serializedBlocks() {
+        return Collections.emptyList(); // the block is written separately
+    }
+
     @Override
     void writeObject(DataOutput out) throws IOException {
         super.writeObject(out);
@@ -197,8 +204,10 @@ public class SimpleBasicBlock extends BasicBlock {
                         return XmlNames.BLOCK;
                     }
                 };
+                break;
             default:
                 throw new IOException("DataBlock with unknown code in SimpleBasicBlock " + code);
         }
+        add(block);
     }
 }
\ No newline at end of file
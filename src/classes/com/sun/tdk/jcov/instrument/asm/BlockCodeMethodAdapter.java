@@ -55,16 +55,19 @@ class BlockCodeMethodAdapter extends OffsetRecordingMethodAdapter {
     private final List<DataExit> exits;
     private final Map<AbstractInsnNode, SimpleBasicBlock> insnToBB;
     private final InstrumentationParams params;
+    private final ClassCountsAdapter classCounts;
 
     public BlockCodeMethodAdapter(final MethodVisitor mv,
             final DataMethodWithBlocks method,
-            final InstrumentationParams params) {
+            final InstrumentationParams params,
+            final ClassCountsAdapter classCounts) {
         super(new MethodNode(method.getAccess(), method.getName(), method.getVmSignature(), method.getSignature(), method.getExceptions()),
                 method);
         this.nextVisitor = mv;
         this.insnToBB = new IdentityHashMap<AbstractInsnNode, SimpleBasicBlock>();
         this.exits = new ArrayList<DataExit>();
         this.params = params;
+        this.classCounts = classCounts;
     }
 
     private SimpleBasicBlock getBB(AbstractInsnNode insn, int startBCI) {
@@ -422,6 +425,7 @@ class BlockCodeMethodAdapter extends OffsetRecordingMethodAdapter {
     private void insertInstrumentation() {
         MethodNode methodNode = (MethodNode) mv;
         InsnList instructions = methodNode.instructions;
+        int countsVar = Instrumenter.countsVar(methodNode, params);
 
         for (Map.Entry<AbstractInsnNode, SimpleBasicBlock> entry : insnToBB.entrySet()) {
 
@@ -429,8 +433,9 @@ class BlockCodeMethodAdapter extends OffsetRecordingMethodAdapter {
             AbstractInsnNode insn = entry.getKey();
             SimpleBasicBlock bb = entry.getValue();
             //   System.out.println("insn = " + insn);
-            instructions.insert(insn, Instrumenter.instrumentation(bb, params.isDetectInternal()));
+            instructions.insert(insn, Instrumenter.instrumentation(bb, params.isDetectInternal(), params.isHitOnly(), countsVar, classCounts));
         }
+        instructions.insert(Instrumenter.loadCounts(countsVar, params.isHitOnly(), classCounts));
     }
 
     @Override
@@ -40,6 +40,7 @@ import com.sun.tdk.jcov.instrument.DataBlockTargetCase;
 import com.sun.tdk.jcov.instrument.DataBlockTargetCond;
 import com.sun.tdk.jcov.instrument.DataBlockTargetDefault;
 import com.sun.tdk.jcov.instrument.DataBlockTargetGoto;
+import com.sun.tdk.jcov.instrument.DataBranch;
 import com.sun.tdk.jcov.instrument.DataBranchCond;
 import com.sun.tdk.jcov.instrument.DataBranchGoto;
 import com.sun.tdk.jcov.instrument.DataBranchSwitch;
@@ -65,10 +66,12 @@ class BranchCodeMethodAdapter extends OffsetRecordingMethodAdapter {
     private final List<DataBlock> src;
     private final Map<AbstractInsnNode, BasicBlock> insnToBB;
     private final InstrumentationParams params;
+    private final ClassCountsAdapter classCounts;
     private final Map<DataBlock, LabelNode> blockLabels;
 
     public BranchCodeMethodAdapter(final MethodVisitor mv,
-                                   final DataMethodWithBlocks method, InstrumentationParams params) {
+                                   final DataMethodWithBlocks method, InstrumentationParams params,
+                                   ClassCountsAdapter classCounts) {
         super(new MethodNode(method.getAccess(), method.getName(), method.getVmSignature(), method.getSignature(), method.getExceptions()),
                 method);
         this.nextVisitor = mv;
@@ -76,6 +79,7 @@ class BranchCodeMethodAdapter extends OffsetRecordingMethodAdapter {
         this.exits = new ArrayList<DataExit>();
         this.src = new ArrayList<DataBlock>();
         this.params = params;
+        this.classCounts = classCounts;
         blockLabels = new IdentityHashMap<>();
     }
 
@@ -450,18 +454,57 @@ class BranchCodeMethodAdapter extends OffsetRecordingMethodAdapter {
         assert (ei == exits.size());
     }
 
+    /**
+     * @return basic blocks which can't throw and are left only through their
+     * branch or by falling into the next block. Empty for methods with
+     * subroutines.
+     */
+    private Set<BasicBlock> conservingBlocks(BasicBlock[] basicBlocks) {
+        Set<BasicBlock> throwing = Collections.newSetFromMap(new IdentityHashMap<BasicBlock, Boolean>());
+        BasicBlock current = null;
+        for (Iterator<AbstractInsnNode> it = ((MethodNode) mv).instructions.iterator(); it.hasNext();) {
+            AbstractInsnNode insn = it.next();
+            if (insnToBB.containsKey(insn)) {
+                current = insnToBB.get(insn);
+            }
+            int opcode = insn.getOpcode();
+            if (opcode == JSR || opcode == RET) {
+                return Collections.emptySet();
+            }
+            if (opcode >= 0 && current != null && ProbeMinimizer.canThrow(insn)) {
+                throwing.add(current);
+            }
+        }
+        Set<BasicBlock> conserving = Collections.newSetFromMap(new IdentityHashMap<BasicBlock, Boolean>());
+        for (int i = 0; i < basicBlocks.length; ++i) {
+            BasicBlock bb = basicBlocks[i];
+            if (!throwing.contains(bb)
+                    && (bb.exit instanceof DataBranch || bb.exit == null && i + 1 < basicBlocks.length)) {
+                conserving.add(bb);
+            }
+        }
+        return conserving;
+    }
+
     private void insertInstrumentation() {
         MethodNode methodNode = (MethodNode) mv;
         InsnList instructions = methodNode.instructions;
+        int countsVar = Instrumenter.countsVar(methodNode, params);
 
         for (Map.Entry<AbstractInsnNode, BasicBlock> entry : insnToBB.entrySet()) {
             // Basic block 'bb' starts at instruction 'insn'
             AbstractInsnNode insn = entry.getKey();
             BasicBlock bb = entry.getValue();
 
-            // Get the entry blocks for this basic block
+            // Get the entry blocks for this basic block. Derived blocks
+            // have no instrumentation, their labels go to the real code.
             Collection<DataBlock> blocks = bb.blocks();
-            int remaining = blocks.size();
+            int remaining = 0;
+            for (DataBlock block : blocks) {
+                if (block.isFallenInto() || !block.isDerived()) {
+                    ++remaining;
+                }
+            }
             LabelNode realStuff = null;
             if (remaining > 1) {
                 // There are two or more entries to this block.
@@ -473,7 +516,9 @@ class BranchCodeMethodAdapter extends OffsetRecordingMethodAdapter {
             DataBlock fallenInto = bb.fallenInto();
             if (fallenInto != null) {
                 assert (blockLabels.get(fallenInto) == null);
-                instructions.insertBefore(insn, Instrumenter.instrumentation(fallenInto, params.isDetectInternal()));
+                if (!fallenInto.isDerived()) {
+                    instructions.insertBefore(insn, Instrumenter.instrumentation(fallenInto, params.isDetectInternal(), params.isHitOnly(), countsVar, classCounts));
+                }
                 if (--remaining > 0) {
                     // jump over the next instrumentation of this basic block
                     instructions.insertBefore(insn, new JumpInsnNode(GOTO, realStuff));
@@ -482,7 +527,7 @@ class BranchCodeMethodAdapter extends OffsetRecordingMethodAdapter {
 
             // Process the other entry blocks
             for (DataBlock block : blocks) {
-                if (!block.isFallenInto()) {
+                if (!block.isFallenInto() && !block.isDerived()) {
                     // insert the label
                     LabelNode lnode = blockLabels.get(block);
                     assert (lnode != null);
@@ -491,13 +536,18 @@ class BranchCodeMethodAdapter extends OffsetRecordingMethodAdapter {
                     instructions.insertBefore(insn, lnode);
 
                     // insert the instrumentation
-                    instructions.insertBefore(insn, Instrumenter.instrumentation(block, params.isDetectInternal()));
+                    instructions.insertBefore(insn, Instrumenter.instrumentation(block, params.isDetectInternal(), params.isHitOnly(), countsVar, classCounts));
                     if (--remaining > 0) {
                         // jump over the next instrumentation of this basic block
                         instructions.insertBefore(insn, new JumpInsnNode(GOTO, realStuff));
                     }
                 }
             }
+            for (DataBlock block : blocks) {
+                if (!block.isFallenInto() && block.isDerived()) {
+                    instructions.insertBefore(insn, blockLabels.get(block));
+                }
+            }
             if (realStuff != null) {
                 // insert label for the real code
                 instructions.insertBefore(insn, realStuff);
@@ -505,6 +555,7 @@ class BranchCodeMethodAdapter extends OffsetRecordingMethodAdapter {
 
             assert (remaining == 0);
         }
+        instructions.insert(Instrumenter.loadCounts(countsVar, params.isHitOnly(), classCounts));
     }
 
     @Override
@@ -522,6 +573,9 @@ class BranchCodeMethodAdapter extends OffsetRecordingMethodAdapter {
 
         BasicBlock[] basicBlocks = completeComputationOfCodeLabelNodes();
         computeEndBCIsAndFoldInExits(basicBlocks);
+        if (params.isMinimizeProbes() && !params.isHitOnly() && !params.isCallerFilterOn()) {
+            ProbeMinimizer.minimize(basicBlocks, conservingBlocks(basicBlocks));
+        }
         //debugDump();
         insertInstrumentation();
         method().setBasicBlocks(basicBlocks);
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2025, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.BinaryFormat;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataMethodInvoked;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import com.sun.tdk.jcov.tools.JcovVersion;
+import com.sun.tdk.jcov.util.Utils;
+import org.objectweb.asm.Opcodes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+/**
+ * <p> Directory with classes instrumented by the Agent in previous runs. An
+ * entry keeps instrumented classfile and the DataClass describing it and is
+ * keyed by checksum of the original classfile and by instrumentation
+ * parameters (including JCov build and the runtime). When a class is loaded
+ * again the entry is used instead of instrumenting - only new slots are
+ * reserved in Collect. </p>
+ *
+ * <p> Stack map frames of an instrumented class can depend on the hierarchy
+ * of other classes (see OverriddenClassWriter.getCommonSuperClass()). Such
+ * classes are cached only when all these classes belong to the runtime -
+ * the classpath is not a part of the key. </p>
+ *
+ * <p> Slot numbers are not looked for in the bytecode. Offsets of slot
+ * constants are stored in the entry and new slots are just written there (see
+ * SlotPatcher). That's why the cache can't be used with caller filters, field and
+ * abstract method instrumentation which add other integer constants - see
+ * isApplicable(). </p>
+ *
+ * <p> Several VMs can use the same directory. Entries are written to temporary
+ * files and renamed so a reader sees either whole entry or nothing. When the
+ * directory grows bigger than the limit, least recently used entries are
+ * removed by the VM holding the lock file. </p>
+ */
+public class ClassCache {
+
+    static final String EXTENSION = ".jcc";
+    private static final byte[] MAGIC = {'J', 'C', 'O', 'V', 'C', 'L', 'S', 0};
+    private static final int VERSION = 1;
+    private static final String LOCK_FILE = "cache.lock";
+    private static final long TMP_FILE_AGE = 60 * 60 * 1000;
+    private static final Logger logger;
+    private final File dir;
+    private final long maxSize;
+    private final byte[] signature;
+    private final String suffix;
+    private final AtomicLong size = new AtomicLong();
+
+    static {
+        Utils.initLogger();
+        logger = Logger.getLogger(ClassCache.class.getName());
+    }
+
+    /**
+     * Opens cache directory creating it when needed. Removes old entries if
+     * the directory is bigger than the limit.
+     *
+     * @param dir cache directory
+     * @param maxSize approximate limit of the directory size in bytes
+     * @param params instrumentation parameters - entries created with other
+     * parameters are not used
+     * @throws IOException when the directory can't be created
+     */
+    public ClassCache(File dir, long maxSize, InstrumentationParams params) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Can't create class cache directory " + dir);
+        }
+        this.dir = dir;
+        this.maxSize = maxSize;
+        String sig = JcovVersion.jcovVersion + "-" + JcovVersion.jcovBuildNumber + ";" + jcovBuild()
+                + ";" + System.getProperty("java.home") + ";" + System.getProperty("java.runtime.version")
+                + ";" + params.getInstrumentationSignature();
+        this.signature = sig.getBytes(StandardCharsets.UTF_8);
+        this.suffix = String.format("-%08x", sig.hashCode()) + EXTENSION;
+        evict();
+    }
+
+    /**
+     * @param params instrumentation parameters
+     * @return true when classes instrumented with these parameters can be
+     * cached
+     */
+    public static boolean isApplicable(InstrumentationParams params) {
+        return params.isDynamicCollect()
+                && !params.isCallerFilterOn()
+                && !params.isInstrumentFields()
+                && !params.isInstrumentAbstract()
+                && !params.isHitOnly()
+                && !params.isMinimizeProbes()
+                && params.getInstrumentationPlugin() == null;
+    }
+
+    /**
+     * @param dc instrumented class
+     * @return true if the class can be restored from the cache. Natives are
+     * not stored as their DataMethods are not restored as they were created.
+     */
+    public static boolean isCacheable(DataClass dc) {
+        for (DataMethod m : dc.getMethods()) {
+            if (m instanceof DataMethodInvoked || (m.getAccess() & Opcodes.ACC_NATIVE) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param classfile original classfile
+     * @return key of the classfile in the cache
+     */
+    public static long checksum(byte[] classfile) {
+        CRC32 crc = new CRC32();
+        crc.update(classfile, 0, classfile.length);
+        Adler32 adler = new Adler32();
+        adler.update(classfile, 0, classfile.length);
+        return crc.getValue() << 32 | adler.getValue();
+    }
+
+    /**
+     * Reads a class from the cache. Slots of the class are reserved in Collect
+     * and the class is attached.
+     *
+     * @param className VM name of the class
+     * @param checksum checksum of the original classfile
+     * @param root DataRoot the class will belong to. The class is not added
+     * to it.
+     * @return cached class or null if there is no such class in the cache
+     */
+    public Entry load(String className, long checksum, DataRoot root) {
+        File file = file(checksum);
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Can't read cached class " + className, e);
+            return null;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.readShort() != VERSION) {
+                throw new IOException("not a class cache entry");
+            }
+            byte[] sig = new byte[in.readInt()];
+            in.readFully(sig);
+            if (!Arrays.equals(sig, signature) || !className.equals(in.readUTF()) || in.readLong() != checksum) {
+                return null; // hash collision
+            }
+            byte[] classfile = new byte[in.readInt()];
+            in.readFully(classfile);
+            int[] offsets = new int[in.readInt()];
+            int[] oldSlots = new int[offsets.length];
+            for (int i = 0; i < offsets.length; ++i) {
+                offsets[i] = in.readInt();
+                oldSlots[i] = in.readInt();
+            }
+            DataClass dc = BinaryFormat.readClass(root, in);
+
+            Map<Integer, Integer> slots = dc.reserveSlots();
+            for (int i = 0; i < offsets.length; ++i) {
+                SlotPatcher.write(classfile, offsets[i], slots.get(oldSlots[i]));
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(dc, classfile);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Broken class cache entry " + file + " for " + className + " is removed", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes instrumented class to the cache. An existing entry is replaced.
+     * Classes which have original integer constants equal to a slot are not
+     * written.
+     *
+     * @param className VM name of the class
+     * @param checksum checksum of the original classfile
+     * @param dc instrumented class data
+     * @param classfile instrumented classfile
+     * @param constants constant pool size of the original classfile
+     */
+    public void store(String className, long checksum, DataClass dc, byte[] classfile, int constants) {
+        int[] offsets = SlotPatcher.find(classfile, SlotPatcher.slots(dc), constants);
+        if (offsets == null) {
+            logger.log(Level.INFO, "{0} - not cached (has a constant equal to a slot)", className);
+            return;
+        }
+
+        Path tmp = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(classfile.length * 2);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(signature.length);
+            out.write(signature);
+            out.writeUTF(className);
+            out.writeLong(checksum);
+            out.writeInt(classfile.length);
+            out.write(classfile);
+            out.writeInt(offsets.length);
+            for (int offset : offsets) {
+                out.writeInt(offset);
+                out.writeInt(SlotPatcher.read(classfile, offset));
+            }
+            BinaryFormat.writeClass(dc, out);
+            out.flush();
+
+            tmp = Files.createTempFile(dir.toPath(), "jcov", ".tmp");
+            Files.write(tmp, bytes.toByteArray());
+            Path target = file(checksum).toPath();
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+            if (size.addAndGet(bytes.size()) > maxSize) {
+                evict();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Can't write class " + className + " to the cache", e);
+        } finally {
+            if (tmp != null) {
+                tmp.toFile().delete();
+            }
+        }
+    }
+
+    /**
+     * Removes least recently used entries until the directory is 3/4 of the
+     * limit. Does nothing if another VM is doing the same.
+     */
+    synchronized void evict() {
+        try (FileChannel channel = FileChannel.open(new File(dir, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                return;
+            }
+            final long now = System.currentTimeMillis();
+            File[] files = dir.listFiles(new FileFilter() {
+                public boolean accept(File f) {
+                    if (f.getName().endsWith(".tmp") && now - f.lastModified() > TMP_FILE_AGE) {
+                        f.delete(); // left by a killed VM
+                    }
+                    return f.getName().endsWith(EXTENSION);
+                }
+            });
+            if (files == null) {
+                return;
+            }
+            final long[] used = new long[files.length];
+            Integer[] order = new Integer[files.length];
+            long total = 0;
+            for (int i = 0; i < files.length; ++i) {
+                used[i] = files[i].lastModified();
+                order[i] = i;
+                total += files[i].length();
+            }
+            if (total > maxSize) {
+                Arrays.sort(order, new Comparator<Integer>() {
+                    public int compare(Integer a, Integer b) {
+                        return Long.compare(used[a], used[b]);
+                    }
+                });
+                for (int i = 0; i < order.length && total > maxSize / 4 * 3; ++i) {
+                    long length = files[order[i]].length();
+                    if (files[order[i]].delete()) {
+                        total -= length;
+                    }
+                }
+            }
+            size.set(total);
+        } catch (IOException | OverlappingFileLockException e) {
+            logger.log(Level.WARNING, "Can't clean class cache " + dir, e);
+        }
+    }
+
+    private File file(long checksum) {
+        return new File(dir, String.format("%016x", checksum) + suffix);
+    }
+
+    /**
+     * @return location and timestamp of JCov classes so that entries are not
+     * used by another build
+     */
+    private static String jcovBuild() {
+        URL url = ClassCache.class.getResource("ClassCache.class");
+        if (url == null) {
+            return "";
+        }
+        String path = url.getPath();
+        if ("jar".equals(url.getProtocol()) && path.startsWith("file:") && path.contains("!/")) {
+            path = path.substring("file:".length(), path.indexOf("!/"));
+        }
+        File f = new File(path);
+        return url + ";" + f.length() + ";" + f.lastModified();
+    }
+
+    /**
+     * Class restored from the cache
+     */
+    public static class Entry {
+
+        private final DataClass dataClass;
+        private final byte[] classfile;
+
+        Entry(DataClass dataClass, byte[] classfile) {
+            this.dataClass = dataClass;
+            this.classfile = classfile;
+        }
+
+        /**
+         * @return attached DataClass with reserved slots
+         */
+        public DataClass getDataClass() {
+            return dataClass;
+        }
+
+        /**
+         * @return instrumented classfile hitting the reserved slots
+         */
+        public byte[] getClassfile() {
+            return classfile;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.runtime.Collect;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * <p> Adds the counts array to a class instrumented with per-class counts. The
+ * array is held by a synthetic static field through a one-element holder
+ * Collect reads it from when results are saved. The array keeps totals and
+ * is never switched, so probes may keep it in a local variable. The
+ * holder is allocated and registered with Collect at the start of the class
+ * initializer. Probes of the class index the array by the slot minus the first
+ * slot the class could get. </p>
+ * <p> The array length is known only when all the methods are instrumented, so
+ * the class initializer is written at the end of the class. A class
+ * initializer is added to the classes which have none. That and the public
+ * field added to interfaces change the default serialVersionUID of
+ * serializable classes which don't declare one. </p>
+ */
+class ClassCountsAdapter extends ClassVisitor {
+
+    static final String FIELD = "$jcov$counts";
+    private final DataClass dataClass;
+    private final int base;
+    private String owner;
+    private boolean isInterface;
+    private MethodNode clinit;
+
+    ClassCountsAdapter(ClassVisitor cv, DataClass dataClass) {
+        super(ASMUtils.ASM_API_VERSION, cv);
+        this.dataClass = dataClass;
+        // slots reserved while the class is instrumented are not less than that
+        this.base = Collect.slotCount();
+    }
+
+    /**
+     * @return the index of the slot in the counts array
+     */
+    int index(int slot) {
+        return slot - base;
+    }
+
+    /**
+     * @return instructions loading the counts array
+     */
+    InsnList load() {
+        InsnList il = new InsnList();
+        il.add(new FieldInsnNode(GETSTATIC, owner, FIELD, "[[J"));
+        il.add(new InsnNode(ICONST_0));
+        il.add(new InsnNode(AALOAD));
+        return il;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        owner = name;
+        isInterface = (access & ACC_INTERFACE) != 0;
+        super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        if ("<clinit>".equals(name)) {
+            clinit = new MethodNode(ASMUtils.ASM_API_VERSION, access, name, desc, signature, exceptions);
+            return clinit;
+        }
+        return super.visitMethod(access, name, desc, signature, exceptions);
+    }
+
+    @Override
+    public void visitEnd() {
+        int max = base - 1;
+        for (int slot : SlotPatcher.slots(dataClass)) {
+            max = Math.max(max, slot);
+        }
+        final int length = max + 1 - base;
+        if (length <= 0) {
+            if (clinit != null) {
+                clinit.accept(cv);
+            }
+            super.visitEnd();
+            return;
+        }
+
+        // interface fields can only be public
+        super.visitField((isInterface ? ACC_PUBLIC : ACC_PRIVATE) | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC,
+                FIELD, "[[J", null, null).visitEnd();
+        MethodVisitor mv = clinit != null
+                ? super.visitMethod(clinit.access, clinit.name, clinit.desc, clinit.signature,
+                        clinit.exceptions.toArray(new String[0]))
+                : super.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        MethodVisitor register = new MethodVisitor(ASMUtils.ASM_API_VERSION, mv) {
+            @Override
+            public void visitCode() {
+                super.visitCode();
+                super.visitLdcInsn(base);
+                super.visitLdcInsn(length);
+                super.visitMethodInsn(INVOKESTATIC, "com/sun/tdk/jcov/runtime/Collect", "registerCounts", "(II)[[J",
+                        false);
+                super.visitFieldInsn(PUTSTATIC, owner, FIELD, "[[J");
+            }
+        };
+        if (clinit != null) {
+            clinit.accept(register);
+        } else {
+            register.visitCode();
+            register.visitInsn(RETURN);
+            register.visitMaxs(2, 0);
+            register.visitEnd();
+        }
+        super.visitEnd();
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2025, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import org.objectweb.asm.ClassReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * <p> Index of superclasses and interfaces used to compute stack map frames.
+ * The index is filled by OverriddenClassWriter from classes it reads through
+ * classloaders but it can also be built beforehand from directories, jars,
+ * jmods or the runtime image and saved to a file so that the classes are not
+ * read at all while instrumenting. </p>
+ *
+ * <p> The index is safe to use from several threads. An entry never changes
+ * once added. </p>
+ *
+ * @see OverriddenClassWriter#setHierarchy(ClassHierarchy)
+ */
+public class ClassHierarchy {
+
+    private static final int MAGIC = 0x4A434348; // JCCH
+    private static final int VERSION = 1;
+    private static final String[] NO_INTERFACES = new String[0];
+    private final ConcurrentHashMap<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+    private volatile String description = "";
+
+    /**
+     * Superclass and direct interfaces of a class. Transitive closure of the
+     * interfaces is computed on demand by OverriddenClassWriter as it may
+     * need classes missing in the index.
+     */
+    static final class Node {
+
+        final String superName;
+        final String[] interfaces;
+        volatile String[] allInterfaces;
+
+        Node(String superName, String[] interfaces) {
+            this.superName = superName;
+            this.interfaces = interfaces == null || interfaces.length == 0 ? NO_INTERFACES : interfaces;
+        }
+    }
+
+    Node get(String className) {
+        return nodes.get(className);
+    }
+
+    /**
+     * Adds a class to the index unless it's already there.
+     *
+     * @param className VM name of the class
+     * @param superName VM name of the superclass, null for java/lang/Object
+     * and module-info
+     * @param interfaces VM names of directly implemented interfaces
+     * @return node describing the class - the existing one if the class was
+     * already added
+     */
+    Node put(String className, String superName, String[] interfaces) {
+        Node node = new Node(superName, interfaces);
+        Node prev = nodes.putIfAbsent(className, node);
+        return prev != null ? prev : node;
+    }
+
+    /**
+     * Adds a class to the index
+     *
+     * @param classfile class bytes
+     */
+    public void add(byte[] classfile) {
+        add(new ClassReader(classfile));
+    }
+
+    /**
+     * Adds a class to the index
+     *
+     * @param in stream to read the class from
+     * @throws IOException
+     */
+    public void add(InputStream in) throws IOException {
+        add(new ClassReader(in));
+    }
+
+    private void add(ClassReader cr) {
+        put(cr.getClassName(), cr.getSuperName(), cr.getInterfaces());
+    }
+
+    /**
+     * Adds all classes found in a directory, jar, zip or jmod file
+     *
+     * @param path directory or archive
+     * @throws IOException
+     */
+    public void addPath(File path) throws IOException {
+        if (path.isDirectory()) {
+            addDirectory(path.toPath());
+            return;
+        }
+        ZipFile zip = new ZipFile(path);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry e = entries.nextElement();
+                if (!e.isDirectory() && isClass(e.getName())) {
+                    InputStream in = zip.getInputStream(e);
+                    try {
+                        add(in);
+                    } finally {
+                        in.close();
+                    }
+                }
+            }
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * Adds all classes of the runtime image of the current VM (jrt:/
+     * filesystem)
+     *
+     * @throws IOException
+     */
+    public void addRuntime() throws IOException {
+        FileSystem fs = FileSystems.getFileSystem(URI.create("jrt:/"));
+        addDirectory(fs.getPath("/modules"));
+    }
+
+    private void addDirectory(Path dir) throws IOException {
+        List<Path> subdirs = new ArrayList<Path>();
+        DirectoryStream<Path> ds = Files.newDirectoryStream(dir);
+        try {
+            for (Path p : ds) {
+                if (Files.isDirectory(p)) {
+                    subdirs.add(p);
+                } else if (isClass(p.getFileName().toString())) {
+                    add(Files.readAllBytes(p));
+                }
+            }
+        } finally {
+            ds.close();
+        }
+        for (Path p : subdirs) {
+            addDirectory(p);
+        }
+    }
+
+    private static boolean isClass(String name) {
+        return name.endsWith(".class") && !name.endsWith("module-info.class");
+    }
+
+    /**
+     * @return number of classes in the index
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Removes all classes from the index
+     */
+    public void clear() {
+        nodes.clear();
+    }
+
+    /**
+     * @return description saved with the index
+     * @see #setDescription(java.lang.String)
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Sets free form description saved with the index, e.g. version of the
+     * runtime it was built from. Can be used to check that a saved index is
+     * still valid.
+     *
+     * @param description
+     */
+    public void setDescription(String description) {
+        this.description = description == null ? "" : description;
+    }
+
+    /**
+     * Writes the index to a file. The file is replaced atomically so other
+     * VMs can read it meanwhile.
+     *
+     * @param file
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        Path tmp = Files.createTempFile(dir.toPath(), "jcov", ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(description);
+                out.writeInt(nodes.size());
+                for (Map.Entry<String, Node> e : nodes.entrySet()) {
+                    Node n = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeUTF(n.superName == null ? "" : n.superName);
+                    out.writeShort(n.interfaces.length);
+                    for (String itf : n.interfaces) {
+                        out.writeUTF(itf);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Reads an index saved by save()
+     *
+     * @param file
+     * @return read index
+     * @throws IOException when the file can't be read or has wrong format
+     */
+    public static ClassHierarchy load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a class hierarchy file " + file);
+            }
+            ClassHierarchy h = new ClassHierarchy();
+            h.description = in.readUTF();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                String superName = in.readUTF();
+                String[] interfaces = new String[in.readUnsignedShort()];
+                for (int j = 0; j < interfaces.length; j++) {
+                    interfaces[j] = in.readUTF();
+                }
+                h.put(name, superName.isEmpty() ? null : superName, interfaces);
+            }
+            return h;
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -58,7 +58,10 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.Adler32;
@@ -73,13 +76,15 @@ public class ClassMorph {
 
     private DataRoot root;
     private final String outputFile;
-    private HashMap<String, Long> instrumented = new HashMap<String, Long>(); // Set should work better
-    private HashMap<String, byte[]> instrumentedValues = new HashMap<String, byte[]>(); // Set should work better
+    // classes can be morphed by the Agent in several threads at once
+    private final Map<String, Long> instrumented = new ConcurrentHashMap<String, Long>();
+    private ReloadStore reloadStore; // instrumented classfiles, kept only when they can be reloaded
     private static final boolean IS_SELFTEST = System.getProperty("jcov.selftest") != null;
     private final InstrumentationParams params;
     private boolean rtClassesInstrumented = false;
     private static final Logger logger;
     private String currentModuleName = null;
+    private ClassCache cache;
 
     static {
         Utils.initLogger();
@@ -92,6 +97,9 @@ public class ClassMorph {
         this.root = root;
         this.params = params; // can't use params from root - they can be different from instrumenting ones (? - but not at the moment)
         rtClassesInstrumented = params.isDataSaveSpecified();
+        if (params.isClassesReload() && params.isDynamicCollect()) {
+            reloadStore = new ReloadStore(ReloadStore.DEFAULT_MEMORY);
+        }
         findAlreadyInstrumentedAndSetID();
     }
 
@@ -99,6 +107,98 @@ public class ClassMorph {
         return root;
     }
 
+    /**
+     * Sets cache of instrumented classes shared between runs
+     *
+     * @param cache cache to use or null
+     * @see ClassCache#isApplicable(InstrumentationParams)
+     */
+    public void setCache(ClassCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the store of instrumented classfiles given again when classes are
+     * reloaded. Used only when classes reload is on in dynamic mode.
+     *
+     * @param reloadStore store to use
+     */
+    public void setReloadStore(ReloadStore reloadStore) {
+        if (this.reloadStore != null) {
+            this.reloadStore = reloadStore;
+        }
+    }
+
+    /**
+     * @return store of instrumented classfiles or null if they are not kept
+     */
+    public ReloadStore getReloadStore() {
+        return reloadStore;
+    }
+
+    /**
+     * <p> Renumbers slots of classes instrumented by several threads so that
+     * they don't depend on the order the classes were instrumented in. Slots
+     * are reserved again in the order of the list and written to the
+     * instrumented classfiles. </p>
+     *
+     * <p> Slots are left as is if instrumentation adds other integer constants
+     * (caller filters, fields, abstract methods, invocation ids from a template,
+     * plugins) - they can't be told apart from slots, and with per-class counts
+     * - probes use indexes relative to the first slot. A class whose original
+     * constant is equal to a slot keeps its slots as well - slots of the other
+     * classes are then reserved after all the used ones. </p>
+     *
+     * @param firstSlot Collect.slotCount() before the classes were
+     * instrumented. All slots reserved since then should belong to these
+     * classes.
+     * @param classes original classfiles
+     * @param results classfiles returned by morph() for these classes, changed
+     * in place
+     */
+    public void renumberSlots(int firstSlot, List<byte[]> classes, List<byte[]> results) {
+        if (params.isCallerFilterOn() || params.isInstrumentFields() || params.isInstrumentAbstract()
+                || params.getInstrumentationPlugin() != null || !StaticInvokeMethodAdapter.map.isEmpty()
+                || params.isClassCounts()) {
+            return;
+        }
+
+        DataClass[] dcs = new DataClass[results.size()];
+        int[][] offsets = new int[results.size()][];
+        boolean kept = false;
+        for (int i = 0; i < dcs.length; ++i) {
+            byte[] res = results.get(i);
+            if (res == null || res.length <= 1) {
+                continue;
+            }
+            DataClass dc = root.findClass(new ClassReader(res).getClassName());
+            if (dc == null) {
+                kept = true;
+                continue;
+            }
+            Set<Integer> slots = SlotPatcher.slots(dc);
+            if (!ClassCache.isCacheable(dc)
+                    || (offsets[i] = SlotPatcher.find(res, slots, new ClassReader(classes.get(i)).getItemCount())) == null) {
+                logger.log(Level.FINE, "{0} - slots are not renumbered", dc.getFullname());
+                kept = true;
+                continue;
+            }
+            dcs[i] = dc;
+        }
+        if (!kept) {
+            Collect.setSlot(firstSlot);
+        }
+        for (int i = 0; i < dcs.length; ++i) {
+            if (dcs[i] != null) {
+                byte[] res = results.get(i);
+                Map<Integer, Integer> slots = dcs[i].reserveSlots();
+                for (int offset : offsets[i]) {
+                    SlotPatcher.write(res, offset, slots.get(SlotPatcher.read(res, offset)));
+                }
+            }
+        }
+    }
+
     /**
      * Default constructor for Instr and TemplGen. Uses specified template as
      * output file.
@@ -153,6 +253,23 @@ public class ClassMorph {
      * @throws IOException
      */
     public byte[] morph(byte[] classfileBuffer, ClassLoader loader, String flushPath) throws IOException {
+        return morph(classfileBuffer, loader, flushPath, null);
+    }
+
+    /**
+     * <p> Instrument loaded class data. </p>
+     *
+     * @param classfileBuffer Class data
+     * @param loader ClassLoader containing this class (used in agent)
+     * @param flushPath
+     * @param module name of the module the class is defined in when it's
+     * known (e.g. passed to the agent by VM). When null, in dynamic mode the
+     * module is looked up by loading the class which can deadlock if classes
+     * are loaded by several threads
+     * @return
+     * @throws IOException
+     */
+    public byte[] morph(byte[] classfileBuffer, ClassLoader loader, String flushPath, String module) throws IOException {
         if (loader == null) {
             loader = ClassLoader.getSystemClassLoader();
         }
@@ -184,11 +301,10 @@ public class ClassMorph {
             }
         }
 
-        if (params.isClassesReload()
+        if (reloadStore != null
                 && !shouldTransform(fullname)
-                && isAlreadyTransformed(fullname)
-                && params.isDynamicCollect()) {
-            return instrumentedValues.get(fullname);
+                && isAlreadyTransformed(fullname)) {
+            return reloadStore.get(fullname);
         }
 
         if (!shouldTransform(fullname)) {
@@ -230,7 +346,7 @@ public class ClassMorph {
 
         String moduleName = null;
         if (params.isDynamicCollect()) {
-            moduleName = updateClassModule(fullname);
+            moduleName = module != null ? "module " + module : updateClassModule(fullname);
         }
         else{
             if (currentModuleName != null) {
@@ -249,6 +365,17 @@ public class ClassMorph {
         long checksum = params.isDynamicCollect() ? -1
                 : computeCheckSum(classfileBuffer);
 
+        long cacheKey = 0;
+        if (cache != null) {
+            cacheKey = ClassCache.checksum(classfileBuffer);
+            ClassCache.Entry entry = cache.load(fullname, cacheKey, root);
+            if (entry != null) {
+                logger.log(Level.FINE, "{0} - cached copy used", fullname);
+                entry.getDataClass().setModuleName(moduleName.substring(7));
+                return addInstrumented(fullname, checksum, entry.getDataClass(), entry.getClassfile(), flushPath);
+            }
+        }
+
         // The stackmap should be calculated only when static instrumentation
         // is used and class version 50. In this case the classfiles should
         // be downgraded to v 49.
@@ -264,37 +391,63 @@ public class ClassMorph {
             opt = ClassWriter.COMPUTE_FRAMES;
         }
 
-        ClassWriter cw = new OverriddenClassWriter(cr, opt, loader);
+        OverriddenClassWriter cw = new OverriddenClassWriter(cr, opt, loader);
         DataClass k = new DataClass(root.rootId(), fullname, moduleName.substring(7), checksum, false);
 //        ClassVisitor cv = shouldFlush ? new TraceClassVisitor
 //                (cw, DebugUtils.getPrintWriter(fullname, Options.getFlushPath())) :
 //                cw;
         ClassVisitor cv = cw;
-        cv = new DeferringMethodClassAdapter(cv, k, params);
+        ClassCountsAdapter classCounts = null;
+        if (params.isClassCounts() && !params.isDetectInternal()) {
+            cv = classCounts = new ClassCountsAdapter(cv, k);
+        }
+        cv = new DeferringMethodClassAdapter(cv, k, params, classCounts);
 
         cr.accept(cv,
                 new Attribute[]{new CharacterRangeTableAttribute(new CharacterRangeTable(root.rootId()))}, 0);
 
         if (k.hasModifier(Opcodes.ACC_SYNTHETIC) && !params.isInstrumentSynthetic()) {
             return null;
-        } else {
-            root.addClass(k);
-            instrumented.put(fullname, checksum);
-            instrumentedValues.put(fullname, cw.toByteArray());
-
-            byte[] res = cw.toByteArray();
-            if (shouldFlush) {
-                DebugUtils.flushInstrumentedClass(flushPath, fullname, res);
+        }
+        byte[] res = cw.toByteArray();
+        if (cache != null && ClassCache.isCacheable(k)) {
+            if (cw.isClasspathUsed()) {
+                logger.log(Level.FINE, "{0} - not cached (frames depend on classpath)", fullname);
+            } else {
+                cache.store(fullname, cacheKey, k, res, cr.getItemCount());
             }
+        }
+        return addInstrumented(fullname, checksum, k, res, flushPath);
+    }
 
-            if (!params.isDynamicCollect() && !rtClassesInstrumented && isPreVMLoadClass(fullname)) {
-                rtClassesInstrumented = true;
-                logger.log(Level.WARNING, "It's possible that you are instrumenting classes which are loaded before VM is loaded.\n" +
-                        "It's recommended to add saveatend at java/lang/Shutdown.runHooks method. Data could be lost otherwise.");
+    private byte[] addInstrumented(String fullname, long checksum, DataClass k, byte[] res, String flushPath) {
+        if (reloadStore != null) {
+            // stored before the class is marked as instrumented - other threads
+            // look for it in the store then
+            byte[] stored = reloadStore.putIfAbsent(fullname, res);
+            if (stored != null) {
+                logger.log(Level.INFO, "{0} - skipped (already instrumented)", fullname);
+                return stored;
             }
+        }
+        if (instrumented.putIfAbsent(fullname, checksum) != null) {
+            // the same class was instrumented in another thread meanwhile
+            logger.log(Level.INFO, "{0} - skipped (already instrumented)", fullname);
+            return reloadStore != null ? reloadStore.get(fullname) : null;
+        }
+        root.addClass(k);
 
-            return res;
+        if (flushPath != null) {
+            DebugUtils.flushInstrumentedClass(flushPath, fullname, res);
+        }
+
+        if (!params.isDynamicCollect() && !rtClassesInstrumented && isPreVMLoadClass(fullname)) {
+            rtClassesInstrumented = true;
+            logger.log(Level.WARNING, "It's possible that you are instrumenting classes which are loaded before VM is loaded.\n" +
+                    "It's recommended to add saveatend at java/lang/Shutdown.runHooks method. Data could be lost otherwise.");
         }
+
+        return res;
     }
 
     public byte[] clearHashes(byte[] moduleInfo, ClassLoader loader) {
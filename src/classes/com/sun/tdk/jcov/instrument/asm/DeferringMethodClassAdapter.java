@@ -53,13 +53,24 @@ class DeferringMethodClassAdapter extends ClassVisitor {
 
     private final DataClass dataClass;
     private final InstrumentationParams params;
+    private final ClassCountsAdapter classCounts;
 
     private static final Logger logger = Logger.getLogger("com.sun.tdk.jcov");
 
     public DeferringMethodClassAdapter(final ClassVisitor cv, DataClass dataClass, InstrumentationParams params) {
+        this(cv, dataClass, params, null);
+    }
+
+    /**
+     * @param classCounts counts array of the class, null if hits are counted
+     * in Collect
+     */
+    DeferringMethodClassAdapter(final ClassVisitor cv, DataClass dataClass, InstrumentationParams params,
+                                ClassCountsAdapter classCounts) {
         super(ASMUtils.ASM_API_VERSION, cv);
         this.dataClass = dataClass;
         this.params = params;
+        this.classCounts = classCounts;
     }
 
     @Override
@@ -155,22 +166,22 @@ class DeferringMethodClassAdapter extends ClassVisitor {
         // temporary use only method coverage
         if (dataClass.getFullname().equals("sun/awt/X11/XWindowPeer") && name.equals("handleButtonPressRelease")) {
             DataMethodEntryOnly meth = new DataMethodEntryOnly(dataClass, access, name, desc, signature, exceptions);
-            return new EntryCodeMethodAdapter(mv, meth, params);
+            return new EntryCodeMethodAdapter(mv, meth, params, classCounts);
         }
 
 
         switch (params.getMode()) {
             case METHOD: {
                 DataMethodEntryOnly meth = new DataMethodEntryOnly(dataClass, access, name, desc, signature, exceptions);
-                return new EntryCodeMethodAdapter(mv, meth, params);
+                return new EntryCodeMethodAdapter(mv, meth, params, classCounts);
             }
             case BLOCK: {
                 DataMethodWithBlocks meth = new DataMethodWithBlocks(dataClass, access, name, desc, signature, exceptions);
-                return new BlockCodeMethodAdapter(mv, meth, params);
+                return new BlockCodeMethodAdapter(mv, meth, params, classCounts);
             }
             case BRANCH: {
                 DataMethodWithBlocks meth = new DataMethodWithBlocks(dataClass, access, name, desc, signature, exceptions);
-                return new BranchCodeMethodAdapter(mv, meth, params);
+                return new BranchCodeMethodAdapter(mv, meth, params, classCounts);
             }
             default:
                 break;
@@ -41,13 +41,16 @@ class EntryCodeMethodAdapter extends MethodVisitor {
     private final DataMethodEntryOnly method;
     boolean isLineNumberVisited = false;
     private final InstrumentationParams params;
+    private final ClassCountsAdapter classCounts;
 
     EntryCodeMethodAdapter(final MethodVisitor mv,
             final DataMethodEntryOnly method,
-            final InstrumentationParams params) {
+            final InstrumentationParams params,
+            final ClassCountsAdapter classCounts) {
         super(ASMUtils.ASM_API_VERSION, mv);
         this.method = method;
         this.params = params;
+        this.classCounts = classCounts;
     }
 
     @Override
@@ -70,12 +73,15 @@ class EntryCodeMethodAdapter extends MethodVisitor {
             }
         }
 
-        Instrumenter.visitInstrumentation(mv, method.getId(), id, fullId, params.isDetectInternal());
+        // a single probe - inlined probe reads the array from the field
+        Instrumenter.visitInstrumentation(mv, method.getId(), id, fullId, params.isDetectInternal(), params.isHitOnly(),
+                params.isInlineProbes() ? Instrumenter.STATIC_FIELD : Instrumenter.NO_INLINE, classCounts);
     }
 
     @Override
     public void visitMaxs(int maxStack, int maxLocals) {
-        super.visitMaxs(maxStack < 3 ? 3 : maxStack, maxLocals);
+        int probeStack = params.isInlineProbes() || classCounts != null ? 6 : 3; // counts[id]++ needs 6
+        super.visitMaxs(maxStack < probeStack ? probeStack : maxStack, maxLocals);
     }
 
     @Override
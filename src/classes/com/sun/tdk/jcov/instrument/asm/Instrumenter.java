@@ -25,6 +25,7 @@
 package com.sun.tdk.jcov.instrument.asm;
 
 import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
 import com.sun.tdk.jcov.instrument.SimpleBasicBlock;
 import org.objectweb.asm.tree.*;
 
@@ -37,11 +38,17 @@ import static org.objectweb.asm.Opcodes.*;
  */
 class Instrumenter {
 
-    private static InsnList instrumentation(int id, boolean detectInternal) {
-        return instrumentation(id, 0, 0, detectInternal);
-    }
+    /**
+     * Probes call Collect.hit()
+     */
+    static final int NO_INLINE = -2;
+    /**
+     * Inlined probes read the counts array from the static field
+     */
+    static final int STATIC_FIELD = -1;
 
-    private static InsnList instrumentation(int id, int hash, int fullHash, boolean detectInternal) {
+    private static InsnList instrumentation(int id, int hash, int fullHash, boolean detectInternal, boolean hitOnly,
+                                            int countsVar, ClassCountsAdapter classCounts) {
         InsnList il = new InsnList();
         if (hash != 0 || fullHash != 0) { // caller filter ON (hash & fullHash == 0 otherwise)
             il.add(new LdcInsnNode(id));
@@ -53,6 +60,31 @@ class Instrumenter {
             il.add(new LdcInsnNode(id));
             il.add(new MethodInsnNode(INVOKESTATIC,
                     "com/sun/tdk/jcov/runtime/CollectDetect", "hit", "(I)V", false));
+        } else if (classCounts != null) { // static, counts[index]++ or counts[index] = 1 in the class array
+            il.add(loadArray(countsVar, hitOnly, classCounts));
+            il.add(new LdcInsnNode(classCounts.index(id)));
+            if (hitOnly) {
+                il.add(new InsnNode(LCONST_1));
+            } else {
+                il.add(new InsnNode(DUP2));
+                il.add(new InsnNode(LALOAD));
+                il.add(new InsnNode(LCONST_1));
+                il.add(new InsnNode(LADD));
+            }
+            il.add(new InsnNode(LASTORE));
+        } else if (hitOnly) { // static, CollectHits.hits[id] = 1
+            il.add(loadArray(countsVar, true, null));
+            il.add(new LdcInsnNode(id));
+            il.add(new InsnNode(ICONST_1));
+            il.add(new InsnNode(BASTORE));
+        } else if (countsVar != NO_INLINE) { // static, CollectCounts.counts[id]++
+            il.add(loadArray(countsVar, false, null));
+            il.add(new LdcInsnNode(id));
+            il.add(new InsnNode(DUP2));
+            il.add(new InsnNode(LALOAD));
+            il.add(new InsnNode(LCONST_1));
+            il.add(new InsnNode(LADD));
+            il.add(new InsnNode(LASTORE));
         } else { // static
             il.add(new LdcInsnNode(id));
             il.add(new MethodInsnNode(INVOKESTATIC,
@@ -61,16 +93,62 @@ class Instrumenter {
         return il;
     }
 
-    public static InsnList instrumentation(DataBlock block, boolean detectInternal) {
-        return instrumentation(block.getId(), detectInternal);
+    private static InsnList loadArray(int countsVar, boolean hitOnly, ClassCountsAdapter classCounts) {
+        if (classCounts != null && countsVar < 0) {
+            return classCounts.load();
+        }
+        InsnList il = new InsnList();
+        if (countsVar >= 0) {
+            il.add(new VarInsnNode(ALOAD, countsVar));
+        } else {
+            il.add(hitOnly
+                    ? new FieldInsnNode(GETSTATIC, "com/sun/tdk/jcov/runtime/CollectHits", "hits", "[B")
+                    : new FieldInsnNode(GETSTATIC, "com/sun/tdk/jcov/runtime/CollectCounts", "counts", "[J"));
+        }
+        return il;
+    }
+
+    public static InsnList instrumentation(DataBlock block, boolean detectInternal, boolean hitOnly, int countsVar,
+                                           ClassCountsAdapter classCounts) {
+        return instrumentation(block.getId(), 0, 0, detectInternal, hitOnly, countsVar, classCounts);
     }
 
-    public static InsnList instrumentation(SimpleBasicBlock block, boolean detectInternal) {
-        return instrumentation(block.getId(), detectInternal);
+    public static InsnList instrumentation(SimpleBasicBlock block, boolean detectInternal, boolean hitOnly,
+                                           int countsVar, ClassCountsAdapter classCounts) {
+        return instrumentation(block.getId(), 0, 0, detectInternal, hitOnly, countsVar, classCounts);
     }
 
-    static void visitInstrumentation(final MethodVisitor mv, int id, int hash, int fullHash, boolean detectInternal) {
-        instrumentation(id, hash, fullHash, detectInternal).accept(mv);
+    static void visitInstrumentation(final MethodVisitor mv, int id, int hash, int fullHash, boolean detectInternal,
+                                     boolean hitOnly, int countsVar, ClassCountsAdapter classCounts) {
+        instrumentation(id, hash, fullHash, detectInternal, hitOnly, countsVar, classCounts).accept(mv);
+    }
+
+    /**
+     * Reserves a local variable the counts array is loaded to at the method
+     * entry when probes are inlined.
+     *
+     * @return the variable or NO_INLINE if probes are not inlined
+     */
+    static int countsVar(MethodNode method, InstrumentationParams params) {
+        if (!params.isInlineProbes() || params.isDetectInternal()) {
+            return NO_INLINE;
+        }
+        return method.maxLocals++;
+    }
+
+    /**
+     * @param classCounts counts array of the class, null if hits are counted
+     * in Collect
+     * @return code loading the counts array to the variable reserved by
+     * countsVar(), empty if probes are not inlined
+     */
+    static InsnList loadCounts(int countsVar, boolean hitOnly, ClassCountsAdapter classCounts) {
+        InsnList il = new InsnList();
+        if (countsVar >= 0) {
+            il.add(loadArray(STATIC_FIELD, hitOnly, classCounts));
+            il.add(new VarInsnNode(ASTORE, countsVar));
+        }
+        return il;
     }
     /*
      static InsnList insertSavePoint() {
@@ -223,7 +223,7 @@ class NativeWrappingMethodAdapter extends ForkingMethodAdapter {
                 exceptions);
 
         //instrument wrapper
-        EntryCodeMethodAdapter ecma = new EntryCodeMethodAdapter(mvn, dataMethod, params);
+        EntryCodeMethodAdapter ecma = new EntryCodeMethodAdapter(mvn, dataMethod, params, null);
         methodNode.accept(ecma);
     }
 }
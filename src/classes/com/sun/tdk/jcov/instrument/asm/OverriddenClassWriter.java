@@ -25,12 +25,10 @@
 package com.sun.tdk.jcov.instrument.asm;
 
 import com.sun.tdk.jcov.JREInstr;
-import com.sun.tdk.jcov.runtime.PropertyFinder;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -49,6 +47,7 @@ import static com.sun.tdk.jcov.util.Utils.CUSTOM_CLASS_FILE_EXTENSIONS;
 public class OverriddenClassWriter extends ClassWriter {
 
     private final ClassLoader loader;
+    private boolean usedClasspath;
 
     public OverriddenClassWriter(final ClassReader classReader, final int flags, ClassLoader loader) {
         super(classReader, flags);
@@ -64,9 +63,20 @@ public class OverriddenClassWriter extends ClassWriter {
      */
     @Override
     protected String getCommonSuperClass(final String type1, final String type2) {
+        if (!type1.startsWith("java/") || !type2.startsWith("java/")) {
+            usedClasspath = true;
+        }
         return getCommonSuperClassAlt(type1, type2, loader);
     }
 
+    /**
+     * @return true if computed frames depend on classes outside the runtime -
+     * only "java/" classes can't come from the classpath
+     */
+    boolean isClasspathUsed() {
+        return usedClasspath;
+    }
+
     static String getCommonSuperClassAlt(final String type1, final String type2, ClassLoader loader) {
         if (isAssignableFrom(type2, type1, loader)) {
             return type2;
@@ -79,37 +89,39 @@ public class OverriddenClassWriter extends ClassWriter {
         return type;
     }
     /**
-     * Map: class name --> super class name
+     * Superclasses and interfaces of classes read so far. Shared by all
+     * writers.
      */
-    private static final HashMap<String, String> class_superclass =
-            new HashMap<String, String>();
+    private static volatile ClassHierarchy hierarchy = new ClassHierarchy();
+
     /**
-     * Map: class name --> implemented interfaces
+     * Sets index of classes to be used by all writers, e.g. one built
+     * beforehand and loaded from a file. Classes missing in the index are
+     * read through classloaders and added to it.
+     *
+     * @param h index to use
      */
-    private static final HashMap<String, List<String>> class_interfaces =
-            new HashMap<String, List<String>>();
+    public static void setHierarchy(ClassHierarchy h) {
+        hierarchy = h;
+    }
+
     /**
-     * The empty list object, to avoid multiple creation of empty lists
+     * @return index of classes used by all writers
      */
-    private static final List<String> EMPTY_LIST = new ArrayList<String>();
+    public static ClassHierarchy getHierarchy() {
+        return hierarchy;
+    }
 
     /**
-     * Cleans collected maps.
+     * Cleans collected classes.
      */
     public static void clean() {
-        class_superclass.clear();
-        class_interfaces.clear();
+        hierarchy.clear();
     }
 
     public static void addClassInfo(InputStream in){
         try {
-            ClassReader cr = new OffsetLabelingClassReader(in);
-            if (class_superclass.get(cr.getClassName()) == null) {
-                class_superclass.put(cr.getClassName(), cr.getSuperName());
-            }
-            if (class_interfaces.get(cr.getClassName()) == null) {
-                class_interfaces.put(cr.getClassName(), Arrays.asList(cr.getInterfaces()));
-            }
+            hierarchy.add(in);
         }
         catch (IOException ioe){
             System.err.println("Failed to read class. Reason: " + ioe.getMessage());
@@ -133,23 +145,22 @@ public class OverriddenClassWriter extends ClassWriter {
             return false;
         }
 
-        String superType = getSuperClass(t2, loader); // init interfaces for t2!
-        List<String> t2Interfaces = class_interfaces.get(t2);
-        if (t2Interfaces != null && !t2Interfaces.isEmpty()) {
-            for (String in2 : t2Interfaces) {
-                if (t1.equals(in2)) {
-                    return true;
-                }
+        ClassHierarchy.Node node = getNode(t2, loader);
+        if (node == null) {
+            return false;
+        }
+        for (String in2 : getAllInterfaces(node, loader)) {
+            if (t1.equals(in2)) {
+                return true;
             }
         }
 
-        return isAssignableFrom(t1, superType, loader);
+        return isAssignableFrom(t1, node.superName, loader);
     }
 
     /**
      * Returns super class of a given class. For the sake of performance
-     * returned values are hashed. Method also invokes detectInterfaces() to
-     * calculate implemented interfaces.
+     * returned values are hashed.
      *
      * @param clName
      * @return
@@ -158,16 +169,25 @@ public class OverriddenClassWriter extends ClassWriter {
         if (clName == null) {
             return null;
         }
-        String loaded = class_superclass.get(clName);
-        if (loaded != null) {
-            return loaded;
+        ClassHierarchy.Node node = getNode(clName, loader);
+        return node != null ? node.superName : null;
+    }
+
+    /**
+     * Looks for the class in the index reading it from the loader if it's
+     * not there yet.
+     *
+     * @return the class or null if it can't be read
+     */
+    private static ClassHierarchy.Node getNode(final String clName, final ClassLoader loader) {
+        ClassHierarchy h = hierarchy;
+        ClassHierarchy.Node node = h.get(clName);
+        if (node != null) {
+            return node;
         }
         try {
             ClassInfo ci = getClassInfo(clName, loader);
-            String superName = ci.getSuperName();
-            class_superclass.put(clName, superName);
-            detectInterfaces(clName, ci, loader);
-            return superName;
+            return h.put(clName, ci.getSuperName(), ci.getInterfaces());
         } catch (IOException e) {
             System.err.println("Failed to read class: " + clName + ". Reason: " + e.getMessage());
         }
@@ -175,40 +195,26 @@ public class OverriddenClassWriter extends ClassWriter {
     }
 
     /**
-     * Detects interfaces all implemented by the given class. The method updates
-     * class_interfaces map. For new loaded interfaces class_superclass map is
-     * also updated to avoid multiple loading.
-     *
-     * @param clName
-     * @param ci
-     * @throws IOException
+     * Detects all interfaces implemented by the given class and its
+     * interfaces. Result is remembered in the node. Interfaces which can't be
+     * read are not looked into.
      */
-    static void detectInterfaces(String clName, ClassInfo ci, final ClassLoader loader)
-            throws IOException {
-        if (class_interfaces.get(clName) != null) {
-            return;
+    private static String[] getAllInterfaces(ClassHierarchy.Node node, final ClassLoader loader) {
+        String[] all = node.allInterfaces;
+        if (all != null) {
+            return all;
         }
-        if (ci == null) {
-            ci = getClassInfo(clName, loader);
-            String superName = ci.getSuperName();
-            class_superclass.put(clName, superName);
-        }
-
-        ArrayList list = new ArrayList();
-        String[] interfaces = ci.getInterfaces();
-        if (interfaces != null) {
-            for (String itf : interfaces) {
-                list.add(itf);
-                detectInterfaces(itf, null, loader);
-                list.addAll(class_interfaces.get(itf));
+        List<String> list = new ArrayList<String>();
+        for (String itf : node.interfaces) {
+            list.add(itf);
+            ClassHierarchy.Node in = getNode(itf, loader);
+            if (in != null) {
+                list.addAll(Arrays.asList(getAllInterfaces(in, loader)));
             }
         }
-        if (list.isEmpty()) {
-            class_interfaces.put(clName, EMPTY_LIST);
-        } else {
-            class_interfaces.put(clName, list);
-        }
-
+        all = list.toArray(new String[list.size()]);
+        node.allInterfaces = all;
+        return all;
     }
 
     /**
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.BasicBlock;
+import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.DataBlockFallThrough;
+import com.sun.tdk.jcov.instrument.DataBranch;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * <p> Chooses DataBlocks of a method which don't need probes in branch mode.
+ * Every DataBlock counts an edge of the control flow graph between basic
+ * blocks. A basic block which can't throw and is left only through its branch
+ * or by falling into the next block is left as many times as it is entered, so
+ * one of its edges can be computed from the others. </p> <p> Such basic blocks
+ * are nodes of a graph, all other basic blocks and the method callers make one
+ * more node. Edges of a spanning tree of the graph get no probes, their counts
+ * are computed from the others. Edges going back (loops) are taken to the tree
+ * first as they are likely to be executed more often. </p>
+ */
+class ProbeMinimizer {
+
+    /**
+     * Node of the basic blocks which are not conserving and of the callers
+     */
+    private static final int OUTSIDE = 0;
+
+    private final List<DataBlock> edges = new ArrayList<DataBlock>();
+    private final List<int[]> ends = new ArrayList<int[]>(); // {from, to} of every edge
+    private final List<Boolean> backward = new ArrayList<Boolean>();
+    private int nodes;
+
+    /**
+     * Marks blocks of the method which can be computed from other blocks as
+     * derived.
+     *
+     * @param basicBlocks basic blocks of the method sorted by start BCI
+     * @param conserving basic blocks which can't throw and are left only
+     * through their branch or by falling into the next block
+     */
+    static void minimize(BasicBlock[] basicBlocks, Set<BasicBlock> conserving) {
+        ProbeMinimizer m = new ProbeMinimizer();
+        m.buildGraph(basicBlocks, conserving);
+        m.derive(m.spanningTree());
+    }
+
+    private void buildGraph(BasicBlock[] basicBlocks, Set<BasicBlock> conserving) {
+        Map<BasicBlock, Integer> node = new IdentityHashMap<BasicBlock, Integer>();
+        nodes = 1;
+        for (BasicBlock bb : basicBlocks) {
+            node.put(bb, conserving.contains(bb) ? nodes++ : OUTSIDE);
+        }
+        // method entries and exception handlers are entered from outside
+        Map<DataBlock, BasicBlock> sources = new IdentityHashMap<DataBlock, BasicBlock>();
+        for (int i = 0; i < basicBlocks.length; ++i) {
+            BasicBlock bb = basicBlocks[i];
+            if (bb.exit instanceof DataBranch) {
+                for (Iterator<DataBlock> it = bb.exit.getIterator(); it.hasNext();) {
+                    sources.put(it.next(), bb);
+                }
+            } else if (bb.exit == null && i + 1 < basicBlocks.length
+                    && basicBlocks[i + 1].fallenInto() instanceof DataBlockFallThrough) {
+                sources.put(basicBlocks[i + 1].fallenInto(), bb);
+            }
+        }
+        for (BasicBlock bb : basicBlocks) {
+            for (DataBlock b : bb.blocks()) {
+                BasicBlock source = sources.get(b);
+                edges.add(b);
+                ends.add(new int[]{source == null ? OUTSIDE : node.get(source), node.get(bb)});
+                backward.add(source != null && bb.startBCI() <= source.startBCI());
+            }
+        }
+    }
+
+    /**
+     * @return indexes of the edges making a spanning tree (forest) of the
+     * graph
+     */
+    private List<Integer> spanningTree() {
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < edges.size(); ++i) {
+            if (backward.get(i)) {
+                order.add(i);
+            }
+        }
+        for (int i = 0; i < edges.size(); ++i) {
+            if (!backward.get(i)) {
+                order.add(i);
+            }
+        }
+        int[] parent = new int[nodes];
+        for (int i = 0; i < nodes; ++i) {
+            parent[i] = i;
+        }
+        List<Integer> tree = new ArrayList<Integer>();
+        for (int e : order) {
+            int from = find(parent, ends.get(e)[0]);
+            int to = find(parent, ends.get(e)[1]);
+            if (from != to) {
+                parent[from] = to;
+                tree.add(e);
+            }
+        }
+        return tree;
+    }
+
+    private static int find(int[] parent, int n) {
+        while (parent[n] != n) {
+            parent[n] = parent[parent[n]];
+            n = parent[n];
+        }
+        return n;
+    }
+
+    /**
+     * Computes tree edges from the other edges. A tree edge is computed at a
+     * node where all other edges are known - at a leaf of the tree which is
+     * not the outside node.
+     */
+    private void derive(List<Integer> tree) {
+        List<List<Integer>> incident = new ArrayList<List<Integer>>();
+        for (int n = 0; n < nodes; ++n) {
+            incident.add(new ArrayList<Integer>());
+        }
+        for (int e = 0; e < edges.size(); ++e) {
+            int[] end = ends.get(e);
+            if (end[0] != end[1]) { // loops add as much as they take
+                incident.get(end[0]).add(e);
+                incident.get(end[1]).add(e);
+            }
+        }
+        boolean[] unknown = new boolean[edges.size()];
+        int[] unknownAt = new int[nodes];
+        for (int e : tree) {
+            unknown[e] = true;
+            ++unknownAt[ends.get(e)[0]];
+            ++unknownAt[ends.get(e)[1]];
+        }
+        Deque<Integer> leaves = new ArrayDeque<Integer>();
+        for (int n = OUTSIDE + 1; n < nodes; ++n) {
+            if (unknownAt[n] == 1) {
+                leaves.add(n);
+            }
+        }
+        while (!leaves.isEmpty()) {
+            int n = leaves.poll();
+            if (unknownAt[n] != 1) {
+                continue;
+            }
+            int edge = -1;
+            for (int e : incident.get(n)) {
+                if (unknown[e]) {
+                    edge = e;
+                }
+            }
+            // entered as many times as left
+            boolean in = ends.get(edge)[1] == n;
+            List<DataBlock> plus = new ArrayList<DataBlock>();
+            List<DataBlock> minus = new ArrayList<DataBlock>();
+            for (int e : incident.get(n)) {
+                if (e != edge) {
+                    boolean eIn = ends.get(e)[1] == n;
+                    (eIn == in ? minus : plus).add(edges.get(e));
+                }
+            }
+            edges.get(edge).derive(plus, minus);
+            unknown[edge] = false;
+            for (int end : ends.get(edge)) {
+                if (--unknownAt[end] == 1 && end != OUTSIDE) {
+                    leaves.add(end);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the instruction can throw an exception
+     */
+    static boolean canThrow(AbstractInsnNode insn) {
+        int opcode = insn.getOpcode();
+        switch (opcode) {
+            case IDIV:
+            case LDIV:
+            case IREM:
+            case LREM:
+                return true;
+            case LDC: {
+                // classes, method handles and dynamic constants are resolved
+                Object cst = ((LdcInsnNode) insn).cst;
+                return !(cst instanceof Integer || cst instanceof Float || cst instanceof Long
+                        || cst instanceof Double || cst instanceof String);
+            }
+            case JSR:
+            case RET:
+                return true;
+            case IFNULL:
+            case IFNONNULL:
+                return false;
+            default:
+                // constants, locals, stack, arithmetic, conversions, compares, jumps and switches
+                return !(opcode <= SIPUSH
+                        || opcode >= ILOAD && opcode <= ALOAD
+                        || opcode >= ISTORE && opcode <= ASTORE
+                        || opcode >= POP && opcode <= LOOKUPSWITCH);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.util.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p> Instrumented classfiles kept by the Agent to give them again when a
+ * class is reloaded (classesreload=on). Classfiles are kept compressed. When
+ * they take more memory than the limit, least recently used ones are moved to
+ * a temporary file and read back when needed. The file is rewritten without
+ * replaced classfiles when they take more than half of it. </p>
+ *
+ * @see ClassMorph#setReloadStore(ReloadStore)
+ */
+public class ReloadStore {
+
+    /**
+     * Default limit of memory taken by compressed classfiles
+     */
+    public static final long DEFAULT_MEMORY = 64L * 1024 * 1024;
+
+    private static final Logger logger;
+    private final long maxMemory;
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private final Map<String, long[]> spilled = new HashMap<String, long[]>(); // {offset, length} in the file
+    private final Map<String, Integer> lengths = new HashMap<String, Integer>();
+    private long memorySize;
+    private File spillFile;
+    private RandomAccessFile file;
+    private long garbage; // bytes of replaced classfiles in the file
+
+    static {
+        Utils.initLogger();
+        logger = Logger.getLogger(ReloadStore.class.getName());
+    }
+
+    /**
+     * @param maxMemory approximate limit of compressed classfiles kept in
+     * memory, in bytes
+     */
+    public ReloadStore(long maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Stores a classfile replacing the one stored for the class before
+     */
+    public void put(String className, byte[] classfile) {
+        byte[] compressed = compress(classfile);
+        synchronized (this) {
+            add(className, classfile.length, compressed);
+        }
+    }
+
+    /**
+     * Stores a classfile if there is no classfile for the class yet
+     *
+     * @return classfile stored for the class before or null if the given one
+     * was stored
+     */
+    public byte[] putIfAbsent(String className, byte[] classfile) {
+        byte[] compressed = compress(classfile);
+        synchronized (this) {
+            if (lengths.containsKey(className)) {
+                return get(className);
+            }
+            add(className, classfile.length, compressed);
+            return null;
+        }
+    }
+
+    private void add(String className, int length, byte[] compressed) {
+        byte[] old = memory.put(className, compressed);
+        if (old != null) {
+            memorySize -= old.length;
+        }
+        long[] location = spilled.remove(className);
+        if (location != null) {
+            garbage += location[1];
+        }
+        lengths.put(className, length);
+        memorySize += compressed.length;
+        if (memorySize > maxMemory) {
+            spill();
+        }
+    }
+
+    /**
+     * @return classfile stored for the class or null
+     */
+    public synchronized byte[] get(String className) {
+        byte[] compressed = memory.get(className);
+        if (compressed == null) {
+            long[] location = spilled.get(className);
+            if (location == null) {
+                return null;
+            }
+            try {
+                compressed = new byte[(int) location[1]];
+                file.seek(location[0]);
+                file.readFully(compressed);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Can't read instrumented class " + className, e);
+                return null;
+            }
+        }
+        return decompress(compressed, lengths.get(className));
+    }
+
+    /**
+     * @return size of compressed classfiles kept in memory
+     */
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * @return size of the temporary file
+     */
+    public synchronized long getFileSize() {
+        try {
+            return file == null ? 0 : file.length();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public synchronized int size() {
+        return lengths.size();
+    }
+
+    private void spill() {
+        try {
+            if (file == null) {
+                spillFile = File.createTempFile("jcov-reload", ".tmp");
+                spillFile.deleteOnExit();
+                file = new RandomAccessFile(spillFile, "rw");
+                logger.log(Level.INFO, "Instrumented classes take more than {0} bytes, moving them to {1}",
+                        new Object[]{maxMemory, spillFile});
+            } else if (garbage > file.length() / 2) {
+                compact();
+            }
+            long offset = file.length();
+            file.seek(offset);
+            Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+            while (memorySize > maxMemory / 2 && it.hasNext()) {
+                Map.Entry<String, byte[]> e = it.next();
+                byte[] compressed = e.getValue();
+                file.write(compressed);
+                spilled.put(e.getKey(), new long[]{offset, compressed.length});
+                offset += compressed.length;
+                memorySize -= compressed.length;
+                it.remove();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Can't move instrumented classes to a temporary file, keeping them in memory", e);
+        }
+    }
+
+    /**
+     * Copies spilled classfiles to a new file leaving out replaced ones
+     */
+    private void compact() throws IOException {
+        File f = File.createTempFile("jcov-reload", ".tmp");
+        f.deleteOnExit();
+        RandomAccessFile compacted = new RandomAccessFile(f, "rw");
+        Map<String, long[]> moved = new HashMap<String, long[]>();
+        try {
+            long offset = 0;
+            for (Map.Entry<String, long[]> e : spilled.entrySet()) {
+                byte[] compressed = new byte[(int) e.getValue()[1]];
+                file.seek(e.getValue()[0]);
+                file.readFully(compressed);
+                compacted.write(compressed);
+                moved.put(e.getKey(), new long[]{offset, compressed.length});
+                offset += compressed.length;
+            }
+        } catch (IOException e) {
+            compacted.close();
+            f.delete();
+            throw e;
+        }
+        logger.log(Level.INFO, "Removed {0} bytes of replaced classes from {1}", new Object[]{garbage, spillFile});
+        file.close();
+        spillFile.delete();
+        spillFile = f;
+        file = compacted;
+        spilled.putAll(moved);
+        garbage = 0;
+    }
+
+    private static byte[] compress(byte[] classfile) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(classfile);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(classfile.length / 2 + 64);
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] compressed, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] classfile = new byte[length];
+            int read = 0;
+            while (read < length && !inflater.finished()) {
+                int n = inflater.inflate(classfile, read, length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated instrumented class");
+                }
+                read += n;
+            }
+            return classfile;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
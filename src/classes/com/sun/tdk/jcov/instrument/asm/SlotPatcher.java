@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2025, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataField;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import org.objectweb.asm.ClassReader;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds and replaces slots in instrumented classfiles without parsing the
+ * code. Instrumented classfile keeps constant pool of the original one and
+ * probes load slots with ldc, so every slot is a CONSTANT_Integer added after
+ * original constants. It's enough to write a new value there. The caller is
+ * responsible for instrumentation not adding other integer constants which
+ * can be equal to a slot.
+ */
+final class SlotPatcher {
+
+    private static final int CONSTANT_INTEGER = 3;
+
+    private SlotPatcher() {
+    }
+
+    /**
+     * @param dc instrumented class
+     * @return slots used by the class
+     */
+    static Set<Integer> slots(DataClass dc) {
+        Set<Integer> slots = new HashSet<Integer>();
+        for (DataMethod m : dc.getMethods()) {
+            for (DataBlock b : m) {
+                slots.add(b.getId());
+            }
+        }
+        for (DataField f : dc.getFields()) {
+            for (DataBlock b : f) {
+                slots.add(b.getId());
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Looks for slot constants in the constant pool
+     *
+     * @param classfile instrumented classfile
+     * @param slots slots used by the class
+     * @param constants constant pool size of the original classfile
+     * @return offsets of the slot values in the classfile or null if an
+     * original constant is equal to a slot - it's shared with the probe then
+     * and can't be changed
+     */
+    static int[] find(byte[] classfile, Set<Integer> slots, int constants) {
+        ClassReader cr = new ClassReader(classfile);
+        List<Integer> offsets = new ArrayList<Integer>();
+        for (int i = 1; i < cr.getItemCount(); ++i) {
+            int offset = cr.getItem(i);
+            if (offset > 0 && classfile[offset - 1] == CONSTANT_INTEGER && slots.contains(cr.readInt(offset))) {
+                if (i < constants) {
+                    return null;
+                }
+                offsets.add(offset);
+            }
+        }
+        int[] res = new int[offsets.size()];
+        for (int i = 0; i < res.length; ++i) {
+            res[i] = offsets.get(i);
+        }
+        return res;
+    }
+
+    static int read(byte[] classfile, int offset) {
+        return (classfile[offset] & 0xFF) << 24 | (classfile[offset + 1] & 0xFF) << 16
+                | (classfile[offset + 2] & 0xFF) << 8 | classfile[offset + 3] & 0xFF;
+    }
+
+    static void write(byte[] classfile, int offset, int slot) {
+        classfile[offset] = (byte) (slot >>> 24);
+        classfile[offset + 1] = (byte) (slot >>> 16);
+        classfile[offset + 2] = (byte) (slot >>> 8);
+        classfile[offset + 3] = (byte) slot;
+    }
+}
@@ -28,8 +28,8 @@ import com.sun.tdk.jcov.filter.MemberFilter;
 import com.sun.tdk.jcov.instrument.DataField;
 import com.sun.tdk.jcov.instrument.DataMethod;
 import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.util.PatternMatcher;
 import com.sun.tdk.jcov.util.Utils;
-import com.sun.tdk.jcov.util.Utils.Pattern;
 
 /**
  * An acceptor able to filter classes by their names and modifiers. All filters
@@ -49,8 +49,8 @@ public class ClassSignatureFilter implements MemberFilter {
     private String[] modifs;
     private String[] includes;
     private String[] excludes;
-    private Pattern[] alls;
-    private Pattern[] all_modules;
+    private PatternMatcher alls;
+    private PatternMatcher all_modules;
 
     /**
      * Constructs new ClassSignatureAcceptor with the specified
@@ -68,8 +68,8 @@ public class ClassSignatureFilter implements MemberFilter {
         this.modifs = modifs;
         this.includes = incl_masks;
         this.excludes = excl_masks;
-        this.alls = Utils.concatFilters(incl_masks, excl_masks);
-        this.all_modules = Utils.concatModuleFilters(m_includes, m_excludes);
+        this.alls = Utils.compileFilters(incl_masks, excl_masks);
+        this.all_modules = Utils.compileModuleFilters(m_includes, m_excludes);
     }
 
     public boolean accept(DataClass c) {
@@ -24,6 +24,7 @@
  */
 package com.sun.tdk.jcov.io;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -32,6 +33,7 @@ import java.io.InputStream;
 import com.sun.tdk.jcov.data.FileFormatException;
 import com.sun.tdk.jcov.data.ScaleOptions;
 import com.sun.tdk.jcov.filter.MemberFilter;
+import com.sun.tdk.jcov.instrument.BinaryFormat;
 import com.sun.tdk.jcov.instrument.DataRoot;
 import com.sun.tdk.jcov.instrument.reader.ReaderFactory;
 import com.sun.tdk.jcov.tools.SimpleScaleCompressor;
@@ -92,6 +94,13 @@ public class Reader {
         if (!f.exists()) {
             throw new FileFormatException("File " + fileName + " doesn''t exist");
         }
+        if (BinaryFormat.isBinary(f)) {
+            try {
+                return BinaryFormat.read(fileName, read_scales, filter);
+            } catch (IOException e) {
+                throw new FileFormatException(e.getMessage(), e);
+            }
+        }
         try  (InputStream in = openZipOrXML(f)) {
             DataRoot dataRoot = readXML(in, read_scales, filter);
             dataRoot.setStorageFileName(fileName);
@@ -105,9 +114,26 @@ public class Reader {
         }
     }
 
+    /**
+     * Reads DataRoot from the stream. Both XML and binary JCov data formats
+     * are accepted.
+     *
+     * @see BinaryFormat
+     */
     public static DataRoot readXML(InputStream input, boolean read_scales,
             MemberFilter filter) throws FileFormatException {
 
+        if (!input.markSupported()) {
+            input = new BufferedInputStream(input, IO_BUF_SIZE);
+        }
+        try {
+            if (BinaryFormat.isBinary(input)) {
+                return BinaryFormat.read(input, read_scales, filter);
+            }
+        } catch (IOException e) {
+            throw new FileFormatException(e.getMessage(), e);
+        }
+
         DataRoot root = new DataRoot("", false);
         ScaleOptions scaleOpts = new ScaleOptions(read_scales, 0, new SimpleScaleCompressor());
         root.setScaleOpts(scaleOpts);
@@ -125,6 +151,13 @@ public class Reader {
     }
 
     public static DataRoot readXMLHeader(String fileName) throws FileFormatException {
+        if (BinaryFormat.isBinary(new File(fileName))) {
+            try (BinaryFormat.Mapped mapped = new BinaryFormat.Mapped(fileName, false)) {
+                return mapped.getRoot();
+            } catch (IOException e) {
+                throw new FileFormatException(e.getMessage(), e);
+            }
+        }
         try {
             return readXMLHeader(new FileInputStream(fileName));
         } catch (FileNotFoundException ex) {
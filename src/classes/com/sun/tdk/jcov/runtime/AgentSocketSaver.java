@@ -25,10 +25,13 @@
 package com.sun.tdk.jcov.runtime;
 
 import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.net.Socket;
+import java.io.OutputStream;
 import java.net.UnknownHostException;
 
 /**
@@ -72,10 +75,27 @@ public class AgentSocketSaver extends JCovSocketSaver {
                 }
             }
 
-            Socket s = null;
+            int deadline = detectDeadline();
+            if (deadline > 0) {
+                ByteArrayOutputStream payload = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(payload);
+                writeData(out, testname);
+                out.close();
+                if (!send(payload.toByteArray(), deadline)) {
+                    File dir = detectFallback();
+                    dir.mkdirs();
+                    File file = File.createTempFile("jcov", ".xml", dir);
+                    FileSaver.getFileSaver(root, file.getPath(), null, InstrumentationOptions.MERGE.OVERWRITE, true).saveResults();
+                    System.err.println("JCovRT: Data is not sent to " + host + ":" + port + " in " + deadline
+                            + "ms, saved to " + file);
+                }
+                return;
+            }
+
+            OutputStream s = null;
             for (int i = 0; i < 3; ++i) {
                 try {
-                    s = new Socket(host, port);
+                    s = connect(host, port);
                     break;
                 } catch (UnknownHostException e) {
                     System.err.println("JCovRT: Can't resolve hostname " + host
@@ -92,19 +112,22 @@ public class AgentSocketSaver extends JCovSocketSaver {
                 return;
             }
 
-            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
-            out.writeBytes("JCOV");                                 // magicword    - 8bytes
-            out.write(SOCKET_SAVER_VERSION);                        // version      - 1byte
-            out.writeUTF(System.getProperty("user.name"));          // testername   - 1+?bytes
-            out.writeUTF(testname); // testname     - 1+?bytes
-            out.writeUTF(PropertyFinder.findValue("product", ""));  // productname  - 1+?bytes
-            out.writeBoolean(root.getParams().isDynamicCollect());  // dynamic      - 1byte
-            root.writeObject(out);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s));
+            writeData(out, testname);
             out.close();
-            s.close();
         } catch (InterruptedException ignored) {
         } catch (IOException ex) {
             System.err.println("JCovRT: " + ex);
         }
     }
+
+    private void writeData(DataOutputStream out, String testname) throws IOException {
+        out.writeBytes("JCOV");                                 // magicword    - 8bytes
+        out.write(SOCKET_SAVER_VERSION);                        // version      - 1byte
+        out.writeUTF(System.getProperty("user.name"));          // testername   - 1+?bytes
+        out.writeUTF(testname); // testname     - 1+?bytes
+        out.writeUTF(PropertyFinder.findValue("product", ""));  // productname  - 1+?bytes
+        out.writeBoolean(root.getParams().isDynamicCollect());  // dynamic      - 1byte
+        root.writeObject(out);
+    }
 }
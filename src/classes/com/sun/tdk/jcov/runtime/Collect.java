@@ -24,6 +24,7 @@
  */
 package com.sun.tdk.jcov.runtime;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 /**
@@ -32,7 +33,41 @@ import java.util.Objects;
  * Collect should be usable in the earliest VM lifecycle - eg in String class
  * loading. </p> <p> slots count can be optimized at instrumentation time
  * by generation Collect class exactly for instrumented data. For agent it's
- * possible to use increasing array (see newSlot()). </p>
+ * possible to use increasing array (see newSlot()). </p> <p> On many-core
+ * machines hits can optionally be collected in striped mode (see
+ * enableStripes()): every thread increments its own stripe array, so that
+ * hot blocks don't bounce the same cache line between CPUs and increments
+ * of different threads don't race. Stripes are folded into counts() only
+ * when results are saved. </p> <p>
+ * Classes instrumented in hit-only mode don't call hit() at all - they store 1
+ * into the hits array (CollectHits.hits) directly. Such a store is idempotent
+ * and needs neither a read nor a call. Hits are folded into counts() as 0/1
+ * values when results are saved. </p> <p> Classes instrumented with inlined
+ * probes increment elements of the counts (CollectCounts.counts) or hits
+ * array themselves. A method loads the array once when it's entered and
+ * keeps incrementing it until it returns, even if the storage has grown
+ * meanwhile. Arrays grown away from are therefore kept (see Retired) and
+ * the stores made into them later are folded into the next save. </p>
+ * <p> The counts and hits arrays are allocated when they are needed first:
+ * counts by hit() or CollectCounts initialization, hits by CollectHits
+ * initialization. So hit-only code keeps only the byte array and counting
+ * code only the long one. The instrumented code reaches the arrays through
+ * the holder classes, so that the JVM initializes them (and allocates the
+ * array) when the code runs first, and the probes need no checks. </p>
+ * <p> Classes instrumented with per-class counts keep hits in their own array
+ * allocated by registerCounts() when the class is initialized. The class
+ * reaches the array through a one-element holder. Hits of these arrays are
+ * folded into counts() when results are saved, the storage grows then if a
+ * class uses slots beyond it. </p>
+ * <p> Savers get only hits collected since the previous save (see delta()).
+ * Hit collection is not switched to other arrays for that - the counts
+ * arrays keep growing totals and saveResults() computes the difference from
+ * the totals seen by the previous save into an array reused by every save.
+ * A total is read once, so an increment racing with the save either gets
+ * into this delta or into the next one, and a probe may keep the array as
+ * long as it likes. Hit-only bytes are cleared after being read - a store
+ * racing with that is lost, but the slot has been saved as hit already.
+ * </p>
  *
  * @author Dmitry Fazunenko
  * @author Alexey Fedorchenko
@@ -44,9 +79,29 @@ public class Collect {
     public static int SLOTS = MAX_SLOTS;
     private static final int MAX_SAVERS = 10;
     private static int nextSlot = 0;
-    private static long[] counts;
-    private static long[] counts_;
+    private static final Object SLOT_LOCK = new Object(); // not Collect.class - slots are reserved by Agent in several threads while saving
+    public static long[] counts; // totals, null until hits are counted, CollectCounts.counts refers to it once initialized
+    private static long[] lastCounts; // totals seen by the previous save
+    private static long[] deltaCounts; // hits since the previous save, reused by every save
+    private static boolean saving = false; // savers are being called, deltaCounts is valid
+    static byte[] hits; // null until CollectHits is initialized, CollectHits.hits refers to it then
+    private static int capacity; // length of the arrays, they are allocated lazily
+    private static boolean countsHeld = false; // CollectCounts.counts is set
+    private static boolean hitsHeld = false; // CollectHits.hits is set
+    private static Retired retired = null; // arrays grown away from, the latest first
+    private static int saves = 0;
     // -- coverage data
+    // striped coverage data
+    public static final int MAX_STRIPES = 256;
+    private static Stripe[] stripes = null; // null when striped mode is off
+    private static final ThreadTable STRIPE_THREADS = new ThreadTable(); // index of a thread is its stripe
+    private static Thread addingStripeThread; // thread being added to STRIPE_THREADS
+    private static final Object STRIPE_LOCK = new Object(); // not Collect.class - it's held while saving
+    // -- striped coverage data
+    // per-class coverage data
+    private static volatile ClassCounts classCounts = null; // registered arrays, the latest first
+    private static final Object CLASS_COUNTS_LOCK = new Object();
+    // -- per-class coverage data
     // savers
     private static JCovSaver[] savers = new JCovSaver[MAX_SAVERS];
     private static int nextSaver = 0;
@@ -64,18 +119,157 @@ public class Collect {
     // -- saving state
 
     /**
-     * <p> Reserves a new slot for coverage item. </p>
+     * <p> Reserves a new slot for coverage item. Can be called from several
+     * threads at once. </p>
      *
      * @return next slot number
      */
     public static int newSlot() {
-        if (nextSlot >= counts.length) {
-            long[] newCounts = new long[nextSlot * 2];
-            System.arraycopy(counts, 0, newCounts, 0, counts.length);
-            counts_ = counts = newCounts;
-//            throw new Error("Method slot count exceeded");
+        synchronized (SLOT_LOCK) {
+            if (nextSlot >= capacity) {
+                grow(nextSlot * 2);
+//                throw new Error("Method slot count exceeded");
+            }
+            return nextSlot++;
+        }
+    }
+
+    /**
+     * <p> Extends the allocated arrays. Called with SLOT_LOCK held. </p>
+     *
+     * @param length new length of the arrays
+     */
+    private static void grow(int length) {
+        capacity = length;
+        if (saving) {
+            deltaCounts = Arrays.copyOf(deltaCounts, length);
+        }
+        if (lastCounts != null) {
+            lastCounts = Arrays.copyOf(lastCounts, length);
+        }
+        if (countsHeld || hitsHeld) { // inlined probes may still store into the arrays
+            retired = new Retired(countsHeld ? counts : null, hitsHeld ? hits : null, retired);
+        }
+        if (counts != null) {
+            setCounts(Arrays.copyOf(counts, length));
+        }
+        if (hits != null) {
+            setHits(Arrays.copyOf(hits, length));
+        }
+    }
+
+    /**
+     * <p> Arrays the storage has grown away from. A method with inlined
+     * probes keeps the array it loaded when it was entered, so a long
+     * running one (a loop in main(), a server thread) stores into it after
+     * grow(). Totals of the counts array at the time it was copied are kept
+     * aside, the difference is what was stored into it later. These arrays
+     * are never released - the storage doubles when it grows, so there are
+     * only a few of them. </p>
+     */
+    private static final class Retired {
+
+        final long[] counts;
+        final long[] last; // totals folded so far
+        final byte[] hits;
+        final Retired next;
+
+        Retired(long[] counts, byte[] hits, Retired next) {
+            this.counts = counts;
+            this.last = counts != null ? Arrays.copyOf(counts, counts.length) : null;
+            this.hits = hits;
+            this.next = next;
+        }
+    }
+
+    /**
+     * <p> Adds stores made into retired arrays since the previous save to
+     * <code>dest</code>. Called with SLOT_LOCK held. </p>
+     *
+     * @param dest array to fold hits into
+     */
+    private static void foldRetired(long[] dest) {
+        for (Retired r = retired; r != null; r = r.next) {
+            long[] c = r.counts;
+            if (c != null) {
+                long[] last = r.last;
+                for (int i = 0; i < c.length; i++) {
+                    long v = c[i];
+                    if (v != last[i]) {
+                        dest[i] += v - last[i];
+                        last[i] = v;
+                    }
+                }
+            }
+            if (r.hits != null) {
+                foldHits(r.hits, dest);
+            }
+        }
+    }
+
+    /**
+     * <p> Switches counting to another array. Called with SLOT_LOCK held. </p>
+     */
+    private static void setCounts(long[] c) {
+        counts = c;
+        if (countsHeld) {
+            CollectCounts.counts = c;
+        }
+    }
+
+    /**
+     * <p> Switches hit-only code to another array. Called with SLOT_LOCK
+     * held. </p>
+     */
+    private static void setHits(byte[] h) {
+        hits = h;
+        if (hitsHeld) {
+            CollectHits.hits = h;
+        }
+    }
+
+    /**
+     * <p> Returns the array hits are counted in, allocating it when no hits
+     * were counted yet. </p>
+     *
+     * @return array hits are counted in
+     */
+    static long[] liveCounts() {
+        synchronized (SLOT_LOCK) {
+            if (counts == null) {
+                setCounts(new long[capacity]);
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * <p> Called when CollectCounts is initialized. </p>
+     *
+     * @return array hits are counted in
+     */
+    static long[] holdCounts() {
+        synchronized (SLOT_LOCK) {
+            long[] c = liveCounts();
+            countsHeld = true;
+            return c;
+        }
+    }
+
+    /**
+     * <p> Called when CollectHits is initialized, i.e. when hit-only
+     * instrumented code runs first. </p>
+     *
+     * @return array hit-only code stores hits into
+     */
+    static byte[] holdHits() {
+        synchronized (SLOT_LOCK) {
+            if (hits == null) {
+                hits = new byte[capacity];
+            }
+            hitsHeld = true;
+            return hits;
         }
-        return nextSlot++;
     }
 
     /**
@@ -96,7 +290,322 @@ public class Collect {
      * @param slot
      */
     public static void hit(int slot) {
-        counts[slot]++;
+        Stripe[] s = stripes;
+        if (s == null) {
+            long[] c = counts;
+            if (c == null) {
+                c = liveCounts();
+            }
+            c[slot]++;
+        } else {
+            hitStripe(s, slot);
+        }
+    }
+
+    /**
+     * <p> Increase coverage statistics on certain slot in the stripe owned by
+     * the current thread. Kept separately from hit() so that the default path
+     * stays small enough to be inlined. A thread without a stripe (there are
+     * more live threads than stripes) counts in the shared array. </p>
+     *
+     * @param s stripes
+     * @param slot
+     */
+    private static void hitStripe(Stripe[] s, int slot) {
+        Thread t = Thread.currentThread();
+        ThreadTable.Entry e = STRIPE_THREADS.get(t.getId());
+        if (e == null) {
+            e = addStripeThread(t);
+        }
+        if (e == null || e.index >= s.length) {
+            long[] c = counts;
+            if (c == null) {
+                c = liveCounts();
+            }
+            c[slot]++;
+            return;
+        }
+        Stripe stripe = s[e.index];
+        long[] c = stripe.counts;
+        if (c == null || slot >= c.length) {
+            c = growStripe(stripe, slot);
+        }
+        c[slot]++;
+    }
+
+    /**
+     * <p> Gives the current thread a stripe index, the lowest one not held by
+     * a live thread. </p>
+     *
+     * @return entry of the thread or null if the thread hits while being
+     * added
+     */
+    private static ThreadTable.Entry addStripeThread(Thread t) {
+        synchronized (STRIPE_LOCK) {
+            if (addingStripeThread == t) {
+                return null;
+            }
+            addingStripeThread = t;
+            try {
+                ThreadTable.Entry e = new ThreadTable.Entry(t);
+                STRIPE_THREADS.add(e);
+                return e;
+            } finally {
+                addingStripeThread = null;
+            }
+        }
+    }
+
+    /**
+     * <p> Allocates or extends the array of a stripe so that it can hold the
+     * slot. Arrays are allocated lazily and only as long as the highest slot
+     * hit through them, not <code>SLOTS</code> longs each. Called only by the
+     * thread owning the stripe, so no increment is made to the old array
+     * while it's copied. </p>
+     */
+    private static long[] growStripe(Stripe stripe, int slot) {
+        long[] c = stripe.counts;
+        int length = c == null ? 1024 : c.length;
+        while (length <= slot) {
+            length *= 2;
+        }
+        if (length > capacity && slot < capacity) {
+            length = capacity;
+        }
+        long[] grown = new long[length];
+        if (c != null) {
+            System.arraycopy(c, 0, grown, 0, c.length);
+        }
+        stripe.counts = grown;
+        return grown;
+    }
+
+    /**
+     * <p> Hits collected by the threads which held an index. A stripe keeps
+     * totals, the ones seen by the previous save are kept aside. </p>
+     */
+    private static final class Stripe {
+
+        volatile long[] counts; // written by the thread holding the index only
+        long[] last; // totals folded so far
+    }
+
+    /**
+     * <p> Turns striped hit collection on or off. In striped mode each of the
+     * first <code>n</code> threads (at most MAX_STRIPES) collects hits in a
+     * stripe of its own instead of the shared counts array, other threads
+     * keep using the shared array. A stripe is reused when the thread holding
+     * it dies. Hits collected so far are preserved, except for the ones
+     * racing with turning striped mode off. </p>
+     *
+     * @param n number of stripes, 0 or 1 turns striped mode off
+     */
+    public static synchronized void enableStripes(int n) {
+        if (stripes != null) {
+            foldStripes(liveCounts());
+        }
+        if (n <= 1) {
+            stripes = null;
+            return;
+        }
+        stripes = newStripes(Math.min(n, MAX_STRIPES));
+    }
+
+    private static Stripe[] newStripes(int n) {
+        Stripe[] s = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            s[i] = new Stripe();
+        }
+        return s;
+    }
+
+    /**
+     * @return true if hits are collected in striped mode
+     */
+    public static boolean isStriped() {
+        return stripes != null;
+    }
+
+    /**
+     * <p> Adds hits collected in stripes since the previous fold to
+     * <code>dest</code>. The owners keep counting meanwhile, a total is read
+     * once so an increment racing with the fold gets into the next one. </p>
+     *
+     * @param dest array to fold hits into
+     */
+    private static void foldStripes(long[] dest) {
+        Stripe[] s = stripes;
+        if (s == null) {
+            return;
+        }
+        for (int i = 0; i < s.length; i++) {
+            long[] c = s[i].counts;
+            if (c == null) {
+                continue;
+            }
+            long[] last = s[i].last;
+            if (last == null || last.length < c.length) {
+                last = s[i].last = last == null ? new long[c.length] : Arrays.copyOf(last, c.length);
+            }
+            int length = Math.min(c.length, dest.length);
+            for (int j = 0; j < length; j++) {
+                long v = c[j];
+                if (v != last[j]) {
+                    dest[j] += v - last[j];
+                    last[j] = v;
+                }
+            }
+        }
+    }
+
+    /**
+     * <p> Allocates the counts array of a class instrumented with per-class
+     * counts. Called from the class initializer - the holder is kept in a
+     * static field of the class and its probes increment the elements of
+     * <code>holder[0]</code> directly. </p>
+     *
+     * @param base slot counted by the first element
+     * @param length number of slots the class uses starting with base
+     * @return holder of the counts array of the class
+     */
+    public static long[][] registerCounts(int base, int length) {
+        long[][] holder = new long[][]{new long[length]};
+        synchronized (CLASS_COUNTS_LOCK) {
+            classCounts = new ClassCounts(base, length, holder, classCounts);
+        }
+        return holder;
+    }
+
+    /**
+     * <p> Grows the storage if a class with per-class counts uses slots
+     * beyond it. Called with SLOT_LOCK held. </p>
+     */
+    private static void growForClassCounts() {
+        int length = 0;
+        for (ClassCounts c = classCounts; c != null; c = c.next) {
+            length = Math.max(length, c.base + c.length);
+        }
+        if (length > capacity) {
+            int newLength = Math.max(capacity, 1);
+            while (newLength < length) {
+                newLength *= 2;
+            }
+            grow(newLength);
+        }
+    }
+
+    /**
+     * <p> Adds hits collected in per-class arrays since the previous save to
+     * <code>dest</code>. Registered arrays are walked without locking. An
+     * array keeps totals, the ones seen by the previous save are kept aside
+     * (allocated when the class has hits first). </p>
+     *
+     * @param dest array to fold hits into
+     */
+    private static void foldClassCounts(long[] dest) {
+        for (ClassCounts c = classCounts; c != null; c = c.next) {
+            long[] src = c.holder[0];
+            long[] last = c.last;
+            if (last == null) {
+                if (!hasHits(src)) {
+                    continue;
+                }
+                last = c.last = new long[c.length];
+            }
+            for (int i = 0; i < src.length; i++) {
+                long v = src[i];
+                if (v != last[i]) {
+                    dest[c.base + i] += v - last[i];
+                    last[i] = v;
+                }
+            }
+        }
+    }
+
+    private static boolean hasHits(long[] src) {
+        for (int i = 0; i < src.length; i++) {
+            if (src[i] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p> Counts array of a class instrumented with per-class counts. Element
+     * <code>i</code> of <code>holder[0]</code> counts slot
+     * <code>base + i</code>. </p>
+     */
+    private static final class ClassCounts {
+
+        final int base;
+        final int length;
+        final long[][] holder;
+        final ClassCounts next;
+        long[] last; // totals seen by the previous save
+
+        ClassCounts(int base, int length, long[][] holder, ClassCounts next) {
+            this.base = base;
+            this.length = length;
+            this.holder = holder;
+            this.next = next;
+        }
+    }
+
+    /**
+     * <p> Moves hits collected by hit-only instrumented code to
+     * <code>dest</code>. A slot which was hit is counted as 1 unless it
+     * already has a count. </p>
+     *
+     * @param src hits, cleared
+     * @param dest array to fold hits into
+     */
+    private static void foldHits(byte[] src, long[] dest) {
+        int length = Math.min(src.length, dest.length);
+        for (int i = 0; i < length; i++) {
+            if (src[i] != 0) {
+                src[i] = 0;
+                if (dest[i] == 0) {
+                    dest[i] = 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * <p> Computes hits collected since the previous save into deltaCounts
+     * and remembers the totals. Called with SLOT_LOCK held. </p>
+     */
+    private static void snapshot() {
+        growForClassCounts();
+        long[] d = deltaCounts;
+        if (d == null || d.length != capacity) {
+            d = deltaCounts = new long[capacity];
+        }
+        long[] c = counts;
+        if (c != null) {
+            long[] last = lastCounts;
+            if (last == null) {
+                last = lastCounts = new long[c.length];
+            }
+            for (int i = 0; i < c.length; i++) {
+                long v = c[i]; // read once - a racing increment gets into the next delta
+                if (v != last[i]) {
+                    d[i] = v > last[i] ? v - last[i] : 0; // less after setCountFor()
+                    last[i] = v;
+                } else {
+                    d[i] = 0;
+                }
+            }
+        } else {
+            Arrays.fill(d, 0);
+        }
+        foldStripes(d);
+        foldClassCounts(d);
+        foldRetired(d);
+        if (hits != null) {
+            foldHits(hits, d);
+        }
     }
 
     /**
@@ -115,21 +624,39 @@ public class Collect {
      * @return
      */
     public static boolean wasHit(int slot) {
-        return counts_[slot] != 0;
+        return countFor(slot) != 0;
     }
 
     /**
-     * <p> Get all coverage data in the array. </p> <p> The real numbers are
-     * returned always in this method. The coverage data is copied in a
-     * temporary array while it's being saved so that new coverage data coming
-     * from different threads would not corrupt saving coverage data. This
-     * method will return data being saved in case Collect.saveResults() was
-     * called. </p>
+     * <p> Get all coverage data in the array. </p> <p> While savers are
+     * called from saveResults() it's the data being saved - hits collected
+     * since the previous save (see delta()). New coverage data coming from
+     * different threads doesn't change it. Otherwise it's the array hits are
+     * counted in, it has totals including the hits already saved. </p>
      *
      * @return coverage data
      */
     public static long[] counts() {
-        return counts_;
+        return saving ? deltaCounts : liveCounts();
+    }
+
+    /**
+     * <p> Get hits collected since the previous saveResults() call. Valid
+     * while savers are called from saveResults(). The array is not changed
+     * by other threads meanwhile and is reused by the next save. </p>
+     *
+     * @return coverage data collected since the previous save
+     */
+    public static long[] delta() {
+        return counts();
+    }
+
+    /**
+     * @return number of saveResults() calls completed. Can be used by savers
+     * to tell one delta() from another.
+     */
+    public static int saveCount() {
+        return saves;
     }
 
     /**
@@ -139,7 +666,21 @@ public class Collect {
      * @return coverage data
      */
     public static long countFor(int slot) {
-        return counts_[slot];
+        if (saving) {
+            return deltaCounts[slot];
+        }
+        long[] c = counts;
+        long[] last = lastCounts;
+        byte[] h = hits;
+        long count = c != null ? c[slot] - (last != null ? last[slot] : 0) : 0;
+        boolean hit = h != null && h[slot] != 0;
+        for (Retired r = retired; r != null; r = r.next) {
+            if (r.counts != null && slot < r.counts.length) {
+                count += r.counts[slot] - r.last[slot];
+            }
+            hit |= r.hits != null && slot < r.hits.length && r.hits[slot] != 0;
+        }
+        return count == 0 && hit ? 1 : count;
     }
 
     /**
@@ -149,17 +690,32 @@ public class Collect {
      * @param count new coverage data
      */
     public static void setCountFor(int slot, long count) {
-        counts[slot] = count;
+        long[] c = liveCounts();
+        long[] last = lastCounts;
+        c[slot] = last != null ? last[slot] + count : count;
     }
 
     /**
-     * <p> Create the storage for coverage data. Allocates
-     * <code>SLOTS</code> array of longs. </p>
+     * <p> Create the storage for coverage data for <code>SLOTS</code> slots.
+     * The array of longs for counting code and the array of bytes for
+     * hit-only instrumented code are allocated when they are needed, arrays
+     * already in use are replaced with empty ones. Totals seen by saves are
+     * forgotten. </p>
      *
      * @see #SLOTS
      */
     public static void enableCounts() {
-        counts_ = counts = new long[SLOTS];
+        synchronized (SLOT_LOCK) {
+            capacity = SLOTS;
+            setCounts(countsHeld ? new long[SLOTS] : null);
+            lastCounts = null;
+            deltaCounts = null;
+            retired = null;
+            setHits(hitsHeld ? new byte[SLOTS] : null);
+        }
+        if (stripes != null) {
+            stripes = newStripes(stripes.length);
+        }
     }
 
     /**
@@ -202,16 +758,18 @@ public class Collect {
     /**
      * <p> Save all collected data with all savers installed in Collect. If
      * "jcov.saver" property is set savers names would be read from this
-     * property. </p> <p> Coverage data array will be hidden while saveResults
-     * is working to be sure that other threads will not corrupt data that is
-     * being saved. </p>
+     * property. </p> <p> Savers get hits collected since the previous save
+     * (see counts() and delta()) computed in an array reused by every save,
+     * other threads keep counting hits meanwhile. </p>
      */
     public static synchronized void saveResults() {
         if (!saveEnabled) {
             return;
         }
-        // Disable hits. Can't use "enabled = false" as it will result in Agent malfunction
-        counts = new long[counts.length]; // reset counts[] that are collecting hits - real hits will be available in counts_
+        synchronized (SLOT_LOCK) { // arrays don't grow meanwhile
+            snapshot();
+            saving = true;
+        }
 
         String s = PropertyFinder.findValue("saver", null);
         if (s != null) {
@@ -249,8 +807,10 @@ public class Collect {
                 }
             }
         }
-        counts_ = counts; // repoint counts_[] that are answering DataRoot about hits to newly created counts[]
-        // Enable hits. Can't use "enabled = false" as it will result in Agent malfunction
+        synchronized (SLOT_LOCK) {
+            saving = false; // DataRoot is answered about hits made since this save
+        }
+        saves++;
     }
 
     /**
@@ -317,6 +877,7 @@ public class Collect {
             isInternal = true;
             if (isVMReady || isVMReady()) {
                 loadSaverExtension();
+                initStripes();
                 addSaver(instantiateSaver());
                 PropertyFinder.addAutoShutdownSave();
                 isInitialized = true;
@@ -325,6 +886,22 @@ public class Collect {
         }
     }
 
+    /**
+     * <p> Reads "stripes" property and turns striped mode on if it's set.
+     * "auto" means one stripe per available processor. </p>
+     */
+    private static void initStripes() {
+        String s = PropertyFinder.findValue("stripes", null);
+        if (s == null) {
+            return;
+        }
+        try {
+            enableStripes("auto".equals(s) ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(s));
+        } catch (NumberFormatException e) {
+            System.err.println("JCovRT: Stripes count parse error (not a number) " + s);
+        }
+    }
+
     static {
         Collect.enableCounts();
         Collect.init();
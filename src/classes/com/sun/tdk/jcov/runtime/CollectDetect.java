@@ -37,10 +37,8 @@ public class CollectDetect extends Collect {
      * can continue to collect hits. Also used to concurrent control of
      * CallerInclude/CallerExclude
      */
-    private static class ThreadInfo {
+    private static class ThreadInfo extends ThreadTable.Entry {
 
-        private static int INFO_LENGTH = 100;
-        long id; // thread id
         int instLevel;      // not-zero instLevel means that this thread entered into instrumentation (agent) or
                             // saving code when it shouldn't collect hits
         int expected = 0; // used for CallerInclude/CallerExclude - caller() method is instrumented with setExpected() method
@@ -50,10 +48,9 @@ public class CollectDetect extends Collect {
          * runtime type + name + vmsig
          * */
         int expectedFull; // used for CallerInclude/CallerExclude - caller() method is instrumented with setExpected() method
-        ThreadInfo next;
 
-        ThreadInfo(long id) {
-            this.id = id;
+        ThreadInfo(Thread thread) {
+            super(thread);
         }
 
         private boolean enabled() {
@@ -69,9 +66,18 @@ public class CollectDetect extends Collect {
             return (expectedFull == i) && instLevel == 0;
         }
     }
-    static ThreadInfo[] info;
-    static ThreadInfo prevInfo;
+    /**
+     * ThreadInfo of every thread. Can be read before the class is initialized
+     * when instrumented JDK code is called by Collect.
+     */
+    static volatile ThreadTable threads;
+    static ThreadInfo prevInfo; // found last, the same thread usually hits many times in a row
+    /**
+     * Returned to a thread which needs its ThreadInfo while creating it -
+     * creating triggers instrumented code. Its lock is held meanwhile.
+     */
     static ThreadInfo underConstruction;
+    private static Thread constructing; // thread creating its ThreadInfo
 
     static {
 //      CollectDetect.init();
@@ -79,15 +85,14 @@ public class CollectDetect extends Collect {
     }
 
     static void initInfo() {
-        if (info == null) {
+        if (threads == null) {
             // do initialization
-            underConstruction = new ThreadInfo(0L);
+            underConstruction = new ThreadInfo(null);
             underConstruction.instLevel++;
             try {
                 if (Thread.currentThread() != null) {
-                    info = new ThreadInfo[ThreadInfo.INFO_LENGTH];
-                    long id = Thread.currentThread().getId();
-                    prevInfo = infoForThread(id);
+                    threads = new ThreadTable();
+                    currentInfo();
                 }
             } catch (Throwable t) {}
         }
@@ -99,41 +104,56 @@ public class CollectDetect extends Collect {
 
     public static void enableDetectInternal() {
         initInfo();
-        if (info == null) {
+        if (threads == null) {
             // do initialization
-            underConstruction = new ThreadInfo(0L);
+            underConstruction = new ThreadInfo(null);
             underConstruction.instLevel++;
-            info = new ThreadInfo[ThreadInfo.INFO_LENGTH];
-            long id = Thread.currentThread().getId();
-            prevInfo = infoForThread(id);
+            threads = new ThreadTable();
+            currentInfo();
         }
     }
 
-    private static ThreadInfo infoForThread(long id) {
-        ThreadInfo ti;
-        if( info == null ) {
-            info = new ThreadInfo[ThreadInfo.INFO_LENGTH];
+    /**
+     * @return ThreadInfo of the current thread or null if it's not created
+     * yet and can't be created
+     */
+    private static ThreadInfo currentInfo() {
+        Thread t = Thread.currentThread();
+        long id = t.getId();
+        ThreadInfo ti = prevInfo;
+        if (ti != null && ti.id == id) {
+            return ti;
+        }
+        ThreadTable table = threads;
+        if (table == null) {
+            return null;
         }
-        int hash = (int) (id % ThreadInfo.INFO_LENGTH);
-        for (ti = info[hash]; ti != null; ti = ti.next) {
-            if (ti.id == id) {
-                prevInfo = ti;
+        ti = (ThreadInfo) table.get(id);
+        if (ti == null) {
+            ti = createInfo(table, t);
+            if (ti == null || ti == underConstruction) {
                 return ti;
             }
         }
-        if (underConstruction != null) {
-            synchronized (underConstruction) {
-                // set up a placeholder to protect us
-                underConstruction.id = id;
-                underConstruction.next = info[hash];
-                info[hash] = underConstruction;
-                prevInfo = underConstruction;
+        prevInfo = ti;
+        return ti;
+    }
 
-                // we are now protected, safe to create the real one
-                ti = new ThreadInfo(id); // the new will trigger a track
-                ti.next = underConstruction.next;
-                info[hash] = ti;
-                prevInfo = ti;
+    private static ThreadInfo createInfo(ThreadTable table, Thread t) {
+        ThreadInfo ti = underConstruction;
+        if (ti == null) {
+            return null;
+        }
+        synchronized (ti) {
+            if (constructing == t) {
+                return ti; // we are protected by the placeholder
+            }
+            constructing = t;
+            try {
+                ti = new ThreadInfo(t); // the new will trigger a track
+                table.add(ti);
+            } finally {
+                constructing = null;
             }
         }
         return ti;
@@ -143,13 +163,7 @@ public class CollectDetect extends Collect {
         if (Collect.isVMReady || Collect.isVMReady()) {
             Thread t = Thread.currentThread();
             if (t != null) {
-                long id = Thread.currentThread().getId();
-                ThreadInfo ti = prevInfo;
-
-                if (ti == null || ti.id != id) {
-                    ti = infoForThread(id);
-                }
-
+                ThreadInfo ti = currentInfo();
                 if (ti == null || ti.enabled()) {
                     Collect.hit(slot);
                 }
@@ -161,12 +175,7 @@ public class CollectDetect extends Collect {
         if (Collect.isVMReady || Collect.isVMReady()) {
             Thread t = Thread.currentThread();
             if (t != null) {
-                long id = t.getId();
-                ThreadInfo ti = prevInfo;
-
-                if (ti == null || ti.id != id) {
-                    ti = infoForThread(id);
-                }
+                ThreadInfo ti = currentInfo();
                 if ( ti == null ) {
                     Collect.hit(slot);
                 } else {
@@ -184,78 +193,50 @@ public class CollectDetect extends Collect {
     }
 
     public static void enterInstrumentationCode() {
-        if (prevInfo != null) {
-            long id = Thread.currentThread().getId();
-            ThreadInfo ti = prevInfo;
-            if (ti == null || ti.id != id) {
-                ti = infoForThread(id);
-            }
+        if (underConstruction != null) {
+            ThreadInfo ti = currentInfo();
             if( ti != null )
                 ti.instLevel++;
         }
     }
 
     public static void setExpected(int hash) {
-        if (prevInfo != null) {
-            long id = Thread.currentThread().getId();
-            ThreadInfo ti = prevInfo;
-
-            if (ti == null || ti.id != id) {
-                ti = infoForThread(id);
-            }
+        if (underConstruction != null) {
+            ThreadInfo ti = currentInfo();
             if( ti != null )
                 ti.expected = hash;
         }
     }
 
     public static void enterClinit() {
-        if (prevInfo != null) {
-            long id = Thread.currentThread().getId();
-            ThreadInfo ti = prevInfo;
-
-            if (ti == null || ti.id != id) {
-                ti = infoForThread(id);
-            }
+        if (underConstruction != null) {
+            ThreadInfo ti = currentInfo();
             if( ti != null )
                 ti.clinitValue = ti.expected;
         }
     }
 
     public static void leaveClinit() {
-        if (prevInfo != null) {
-            long id = Thread.currentThread().getId();
-            ThreadInfo ti = prevInfo;
-
-            if (ti == null || ti.id != id) {
-                ti = infoForThread(id);
-            }
+        if (underConstruction != null) {
+            ThreadInfo ti = currentInfo();
             if( ti != null )
                 ti.expected = ti.clinitValue;
         }
     }
 
     public static void setExpectedFull(int fullHash) {
-        if (prevInfo != null) {
-            long id = Thread.currentThread().getId();
-            ThreadInfo ti = prevInfo;
-
-            if (ti == null || ti.id != id) {
-                ti = infoForThread(id);
-            }
+        if (underConstruction != null) {
+            ThreadInfo ti = currentInfo();
             if( ti != null )
                 ti.expectedFull = fullHash;
         }
     }
 
     public static void leaveInstrumentationCode() {
-        if (prevInfo != null) {
-            long id = Thread.currentThread().getId();
-            ThreadInfo ti = prevInfo;
-
-            if (ti.id != id) {
-                ti = infoForThread(id);
-            }
-            ti.instLevel--;
+        if (underConstruction != null) {
+            ThreadInfo ti = currentInfo();
+            if( ti != null )
+                ti.instLevel--;
         }
     }
     private static long[] invokeCounts;
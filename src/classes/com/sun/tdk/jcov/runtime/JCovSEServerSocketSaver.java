@@ -63,7 +63,7 @@ public class JCovSEServerSocketSaver extends JCovServerSocketSaver {
                 ByteArrayOutputStream bo = new ByteArrayOutputStream(Collect.MAX_SLOTS * 4);
                 DataOutputStream os = new DataOutputStream(bo);
                 for (int j = 0; j < Collect.counts().length; j++) {
-                    os.writeLong(Collect.counts()[j]);
+                    os.writeLong(Collect.countFor(j));
                 }
                 OutputStream oss = sock.getOutputStream();
                 oss.write(bo.toByteArray());
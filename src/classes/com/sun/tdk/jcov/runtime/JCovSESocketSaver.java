@@ -24,10 +24,13 @@
  */
 package com.sun.tdk.jcov.runtime;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.net.Socket;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.Properties;
@@ -41,6 +44,7 @@ public class JCovSESocketSaver extends JCovSocketSaver {
     public static final String NETWORK_DEF_PROPERTIES_FILENAME = "jcov_network_default.properties";
     public static final String PORT_PROPERTIES_NAME = "port";
     public static final String HOST_PROPERTIES_NAME = "host";
+    private final JCovSpoolSaver spoolSaver = new JCovSpoolSaver();
 
     static {
         URL url = null;
@@ -103,6 +107,10 @@ public class JCovSESocketSaver extends JCovSocketSaver {
     }
 
     public synchronized void saveResults() {
+        if (JCovSpoolSaver.detectSpool() != null) {
+            spoolSaver.saveResults(); // Grabber reads the spool directory on the same host
+            return;
+        }
         try {
             host = detectHost();
             port = detectPort();
@@ -115,26 +123,27 @@ public class JCovSESocketSaver extends JCovSocketSaver {
                 }
             }
 
-            int count = 0;
-            final long[] data = Collect.counts();
-            final long[] dataVal = new long[data.length];
-            final int[] dataIdx = new int[data.length];
-            int lastIndex = 0;
-            for (int i = 0; i < Collect.MAX_SLOTS; i++) {
-                if (data[i] != 0) {
-                    dataIdx[count] = i;
-                    dataVal[count] = data[i];
-                    lastIndex = i;
-                    count++;
+            int deadline = detectDeadline();
+            if (deadline > 0) {
+                ByteArrayOutputStream payload = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(payload);
+                writeData(out, testname);
+                out.close();
+                if (!send(payload.toByteArray(), deadline)) {
+                    File file = JCovSpoolSaver.write(detectFallback(), System.getProperty("user.name"), testname,
+                            PropertyFinder.findValue("product", ""), Collect.counts());
+                    System.err.println("JCovRT: Data is not sent to " + host + ":" + port + " in " + deadline
+                            + "ms, saved to " + file);
                 }
+                return;
             }
 
-            Socket s = null;
+            OutputStream s = null;
 
             /* Make 3 attempts to connect with JCOV server */
             for (int i = 0; i < 3; i++) {
                 try {
-                    s = new Socket(host, port);
+                    s = connect(host, port);
                 } catch (UnknownHostException e) {
                     System.err.println("JCovRT: Can't resolve hostname " + host
                             + " - unknown host. Exiting. ");
@@ -156,25 +165,32 @@ public class JCovSESocketSaver extends JCovSocketSaver {
             }
             //System.out.println("Connected to " + host + ":" + port);
 
-            DataOutputStream out = new DataOutputStream(s.getOutputStream());
-            out.write(new byte[]{'J', 'C', 'O', 'V'});              // magicword    - 8bytes
-            out.write(SOCKET_SAVER_VERSION);                        // version      - 1byte
-            out.writeUTF(System.getProperty("user.name"));          // testername   - 1+?bytes
-            out.writeUTF(testname); // testname     - 1+?bytes
-            out.writeUTF(PropertyFinder.findValue("product", ""));  // productname  - 1+?bytes
-            out.writeBoolean(false);                                // static       - 1byte
-            out.writeUTF("NIY");
-            out.writeInt(count);
-            out.writeInt(lastIndex);
-            for (int j = 0; j < count; ++j) {
-                out.writeInt(dataIdx[j]);
-                out.writeLong(dataVal[j]);
-            }
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s));
+            writeData(out, testname);
             out.close();
-            s.close();
         } catch (InterruptedException e) {
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    private static void writeData(DataOutputStream out, String testname) throws IOException {
+        out.write(new byte[]{'J', 'C', 'O', 'V'});              // magicword    - 8bytes
+        out.write(SOCKET_SAVER_VERSION);                        // version      - 1byte
+        out.writeUTF(System.getProperty("user.name"));          // testername   - 1+?bytes
+        out.writeUTF(testname); // testname     - 1+?bytes
+        out.writeUTF(PropertyFinder.findValue("product", ""));  // productname  - 1+?bytes
+        out.writeBoolean(false);                                // static       - 1byte
+        out.writeUTF("NIY");
+        final long[] data = Collect.counts();
+        int prev = -1;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != 0) {
+                writeVarLong(out, i - prev);                    // slot delta   - 1+?bytes
+                writeVarLong(out, data[i]);                     // count        - 1+?bytes
+                prev = i;
+            }
+        }
+        out.write(0);                                           // end of data  - 1byte
+    }
 }
@@ -24,17 +24,38 @@
  */
 package com.sun.tdk.jcov.runtime;
 
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
 /**
+ * <p> Base class for savers sending coverage data to Grabber. </p> <p> Since
+ * version 1 of the protocol static data is sent as a sequence of (slot delta,
+ * count) pairs of non-zero slots terminated by 0. Both values are unsigned
+ * varints: 7 bits per byte, the lowest group first, high bit set on all bytes
+ * except the last one. Slot delta is the difference from the previous non-zero
+ * slot (the first one is counted from -1) so it's never 0. Version 0 used an
+ * int count, an int last index and an int+long pair per non-zero slot. </p>
+ * <p> Host specified as unix:/path/to/socket selects Unix-domain socket
+ * instead of TCP, the port is ignored then. </p> <p> When jcov.deadline is
+ * set savers don't retry connection. Data is sent by a separate thread and
+ * is written to the fallback spool directory (jcov.fallback) if it's not
+ * sent in the deadline, so an unreachable Grabber doesn't delay the exit. </p>
  *
  * @author Sergey Borodin
  */
 public abstract class JCovSocketSaver implements JCovSaver {
 
-    public static final int SOCKET_SAVER_VERSION = 0;
+    public static final int SOCKET_SAVER_VERSION = 1;
     protected static String defaultHost = "localhost";
     protected static int defaultPort = 3334;
     protected static final String HOST = "host";
     protected static final String PORT = "port";
+    protected static final String DEADLINE = "deadline";
+    protected static final String FALLBACK = "fallback";
     protected String host;
     protected int port = -1;
 
@@ -62,6 +83,174 @@ public abstract class JCovSocketSaver implements JCovSaver {
         return defaultPort;
     }
 
+    /**
+     * @return time in milliseconds to connect and send data to Grabber or 0
+     * if not limited
+     */
+    static int detectDeadline() {
+        String d = null;
+        try {
+            d = PropertyFinder.findValue(DEADLINE, "0");
+            return Integer.parseInt(d);
+        } catch (NumberFormatException e) {
+            System.err.println("JCovRT: Deadline parse error (not a number) " + d);
+        } catch (Throwable ignore) {
+        }
+        return 0;
+    }
+
+    /**
+     * @return directory to write data not sent in the deadline
+     */
+    static File detectFallback() {
+        return new File(PropertyFinder.findValue(FALLBACK,
+                System.getProperty("java.io.tmpdir") + File.separator + "jcov_spool"));
+    }
+
+    /**
+     * <p> Opens connection to Grabber. </p>
+     *
+     * @param host host name or unix:/path/to/socket
+     * @param port port to connect (not used for Unix-domain socket)
+     * @return stream closing the connection when closed
+     * @throws IOException
+     * @see PropertyFinder#unixSocketPath(String)
+     */
+    public static OutputStream connect(String host, int port) throws IOException {
+        String path = PropertyFinder.unixSocketPath(host);
+        if (path != null) {
+            return UnixSocketConnector.connect(path);
+        }
+        return new Socket(host, port).getOutputStream();
+    }
+
+    /**
+     * <p> Opens connection to Grabber waiting at most timeout milliseconds
+     * for TCP connection. </p>
+     *
+     * @param host host name or unix:/path/to/socket
+     * @param port port to connect (not used for Unix-domain socket)
+     * @param timeout connection timeout
+     * @return stream closing the connection when closed
+     * @throws IOException
+     */
+    public static OutputStream connect(String host, int port, int timeout) throws IOException {
+        if (PropertyFinder.unixSocketPath(host) != null) {
+            return connect(host, port);
+        }
+        Socket s = new Socket();
+        try {
+            s.connect(new InetSocketAddress(host, port), timeout);
+            return s.getOutputStream();
+        } catch (IOException e) {
+            s.close();
+            throw e;
+        }
+    }
+
+    /**
+     * <p> Sends data to Grabber in a separate daemon thread. The last byte of
+     * the payload is held back until the rest is flushed, and it's written
+     * only if the deadline hasn't passed yet. Otherwise the connection is
+     * closed, so Grabber gets incomplete data and drops it. Once the last
+     * byte is being written data is considered sent even if the deadline
+     * passes meanwhile - it may be lost then, but it's never both merged by
+     * Grabber and written to the fallback directory. </p>
+     *
+     * @param payload data to send
+     * @param deadline time to connect and send data in milliseconds
+     * @return true if the data is sent, false if it should be saved elsewhere
+     * @throws InterruptedException
+     */
+    protected boolean send(final byte[] payload, final int deadline) throws InterruptedException {
+        final Object lock = new Object();
+        final OutputStream[] connection = new OutputStream[1];
+        final boolean[] state = new boolean[2]; // committed, aborted
+        Thread sender = new Thread(new Runnable() {
+            public void run() {
+                OutputStream out = null;
+                try {
+                    out = connect(host, port, deadline);
+                    synchronized (lock) {
+                        if (state[1]) {
+                            out.close();
+                            return;
+                        }
+                        connection[0] = out;
+                    }
+                    out.write(payload, 0, payload.length - 1);
+                    out.flush();
+                    synchronized (lock) {
+                        if (state[1]) {
+                            return;
+                        }
+                        state[0] = true;
+                    }
+                    out.write(payload[payload.length - 1]);
+                    out.flush();
+                } catch (Throwable e) {
+                    System.err.println("JCovRT: Can't send data to " + host + ":" + port + ": " + e);
+                } finally {
+                    if (out != null) {
+                        try {
+                            out.close();
+                        } catch (IOException ignore) {
+                        }
+                    }
+                }
+            }
+        }, "JCovSocketSaver");
+        sender.setDaemon(true);
+        sender.start();
+        sender.join(deadline);
+        synchronized (lock) {
+            if (!state[0]) {
+                state[1] = true;
+                if (connection[0] != null) {
+                    try {
+                        connection[0].close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+            return state[0];
+        }
+    }
+
+    /**
+     * <p> Writes unsigned varint. </p>
+     *
+     * @param out stream to write to
+     * @param value non-negative value
+     * @throws IOException
+     */
+    public static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * <p> Reads unsigned varint written by writeVarLong(). </p>
+     *
+     * @param in stream to read from
+     * @return read value
+     * @throws IOException
+     */
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
     public JCovSocketSaver() {
     }
 
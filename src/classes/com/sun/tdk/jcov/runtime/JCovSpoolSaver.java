@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * <p> Saver writing static coverage data to a spool directory shared with
+ * Grabber running on the same host. Every save is a separate file which is
+ * renamed to *.jcov when it's complete, so Grabber never sees partially
+ * written data and the test JVM doesn't wait for a connection. The file is
+ * written through a channel rather than mapped - a mapped file can't be
+ * renamed on Windows until the mapping is collected. </p>
+ * <p> File layout (big-endian): "JCOV", version byte, 3 zero bytes, int offset
+ * of the data (multiple of 8), int number of non-zero slots N, tester name,
+ * test name and product name in modified UTF-8 (as DataOutput.writeUTF()),
+ * then at the data offset N int slots, zero padding to 8 bytes and N long
+ * counts. </p>
+ *
+ * @see #SPOOL
+ */
+public class JCovSpoolSaver implements JCovSaver {
+
+    public static final int SPOOL_VERSION = 1;
+    /**
+     * Property (jcov.spool or JCOV_SPOOL) specifying the spool directory
+     */
+    public static final String SPOOL = "spool";
+    public static final String SPOOL_SUFFIX = ".jcov";
+    public static final String TMP_SUFFIX = ".tmp";
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * @return spool directory specified by user or null
+     */
+    public static String detectSpool() {
+        return PropertyFinder.findValue(SPOOL, null);
+    }
+
+    public synchronized void saveResults() {
+        try {
+            String spool = detectSpool();
+            if (spool == null) {
+                return;
+            }
+            String testname = PropertyFinder.findValue("testname", null);
+            if (testname == null) {
+                testname = PropertyFinder.findValue("file", "result.xml");
+            } else {
+                if ("<jcov.ignore>".equals(testname)) {
+                    return; // ignoring this test data
+                }
+            }
+            write(new File(spool), System.getProperty("user.name"), testname,
+                    PropertyFinder.findValue("product", ""), Collect.counts());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * <p> Writes non-zero counts to a new file in the spool directory. </p>
+     *
+     * @param dir spool directory. Created if doesn't exist.
+     * @param tester tester name
+     * @param testname test name
+     * @param product product name
+     * @param data counts indexed by slot
+     * @return written file
+     * @throws IOException
+     */
+    public static File write(File dir, String tester, String testname, String product, long[] data) throws IOException {
+        int size = 0;
+        for (int i = 0; i < data.length; ++i) {
+            if (data[i] != 0) {
+                ++size;
+            }
+        }
+
+        ByteArrayOutputStream names = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(names);
+        out.writeUTF(tester == null ? "" : tester);
+        out.writeUTF(testname == null ? "" : testname);
+        out.writeUTF(product == null ? "" : product);
+        out.close();
+        int offset = align(HEADER_SIZE + names.size());
+        int countsOffset = offset + align(size * 4);
+
+        dir.mkdirs();
+        File tmp = File.createTempFile("jcov", TMP_SUFFIX, dir);
+        try {
+            RandomAccessFile file = new RandomAccessFile(tmp, "rw");
+            try {
+                FileChannel channel = file.getChannel();
+                ByteBuffer buf = ByteBuffer.allocate(countsOffset + size * 8);
+                buf.put(new byte[]{'J', 'C', 'O', 'V', (byte) SPOOL_VERSION, 0, 0, 0});
+                buf.putInt(offset);
+                buf.putInt(size);
+                buf.put(names.toByteArray());
+                buf.position(offset);
+                IntBuffer slots = buf.asIntBuffer();
+                buf.position(countsOffset);
+                LongBuffer counts = buf.asLongBuffer();
+                for (int i = 0; i < data.length; ++i) {
+                    if (data[i] != 0) {
+                        slots.put(i);
+                        counts.put(data[i]);
+                    }
+                }
+                buf.clear();
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            } finally {
+                file.close();
+            }
+            String name = tmp.getName();
+            File result = new File(dir, name.substring(0, name.length() - TMP_SUFFIX.length()) + SPOOL_SUFFIX);
+            Files.move(tmp.toPath(), result.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return result;
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+    }
+
+    public static int align(int size) {
+        return (size + 7) & ~7;
+    }
+}
@@ -25,6 +25,7 @@
 package com.sun.tdk.jcov.runtime;
 
 import com.sun.tdk.jcov.Merger;
+import com.sun.tdk.jcov.instrument.BinaryFormat;
 import com.sun.tdk.jcov.instrument.DataClass;
 import com.sun.tdk.jcov.instrument.DataPackage;
 import com.sun.tdk.jcov.instrument.DataRoot;
@@ -34,7 +35,10 @@ import com.sun.tdk.jcov.io.Reader;
 import com.sun.tdk.jcov.util.RuntimeUtils;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.RandomAccessFile;
@@ -44,7 +48,10 @@ import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -55,6 +62,16 @@ import java.util.zip.ZipOutputStream;
  */
 public class JCovXMLFileSaver extends FileSaver {
 
+    /**
+     * When jcov.sidecar is true a binary copy of the merged result is kept
+     * next to the XML file (with BinaryFormat.EXTENSION appended) so that the
+     * next save doesn't need to parse the XML. The copy records the CRC32 of
+     * the XML it was written with and is used only while the XML file has the
+     * same checksum.
+     */
+    static final String SIDECAR = "sidecar";
+    static final String SIDECAR_XML_CRC = "sidecar.xml.crc32";
+
     // private final static boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows");
 
     public JCovXMLFileSaver(DataRoot root, InstrumentationOptions.MERGE mergeMode) {
@@ -120,31 +137,21 @@ public class JCovXMLFileSaver extends FileSaver {
             try {
                 root = Reader.readXML(src, scale, null);
                 DataRoot templRoot = Reader.readXML(tmpname, scale, null);
-                List<DataPackage> packs = root.getPackages();
+                Map<String, DataPackage> packs = new HashMap<String, DataPackage>();
+                for (DataPackage pack : root.getPackages()) {
+                    packs.put(pack.getName(), pack);
+                }
 
                 for (DataPackage templPack : templRoot.getPackages()) {
-                    boolean pInserted = false;
-                    for (DataPackage pack : packs) {
-                        if (!pack.getName().equals(templPack.getName())) {
-                            continue;
-                        }
-                        for (DataClass clazzNew : templPack.getClasses()) {
-                            boolean cInserted = false;
-                            for (DataClass clazz : pack.getClasses()) {
-                                if (clazz.getName().equals(clazzNew.getName())) {
-                                    cInserted = true;
-                                    break;
-                                }
-                            }
-                            if (!cInserted) {
-                                pack.getClasses().add(clazzNew);
-                            }
-                        }
-                        pInserted = true;
-                        break; // there can't be 2 similar packages
-                    }
-                    if (!pInserted) {
+                    DataPackage pack = packs.get(templPack.getName());
+                    if (pack == null) {
                         root.addPackage(templPack);
+                        continue;
+                    }
+                    for (DataClass clazzNew : templPack.getClasses()) {
+                        if (pack.findClass(clazzNew.getName()) == null) {
+                            pack.addClass(clazzNew);
+                        }
                     }
                 }
 
@@ -161,6 +168,9 @@ public class JCovXMLFileSaver extends FileSaver {
             }
 
         } else {
+            if (!scale && mergeInMemory(dest, src)) {
+                return;
+            }
             String tmpFileName = dest + RuntimeUtils.genSuffix();
             try {
                 this.saveResults(tmpFileName);
@@ -174,4 +184,102 @@ public class JCovXMLFileSaver extends FileSaver {
             }
         }
     }
+
+    /**
+     * Merges current data with <b>src</b> without writing and re-reading
+     * temporary XML. If sidecars are enabled <b>src</b> is read from its binary
+     * sidecar when it is up to date and the result is written to <b>dest</b>
+     * together with a new sidecar, otherwise XML is parsed.
+     *
+     * @return false if the data can't be merged this way (e.g. it's not
+     * compatible) and Merger should be used instead
+     */
+    private boolean mergeInMemory(String dest, String src) throws Exception {
+        boolean sidecar = detectSidecar();
+        DataRoot other = sidecar ? readSidecar(src) : null;
+        if (other == null) {
+            other = Reader.readXML(src, false, null);
+        }
+        DataRoot merged = BinaryFormat.copy(root);
+        try {
+            if (agentdata) {
+                // the same classes as skipped in saveResults()
+                for (DataPackage pack : merged.getPackages()) {
+                    for (DataClass clazz : new ArrayList<DataClass>(pack.getClasses())) {
+                        if (!clazz.wasHit() || clazz.getMethods().isEmpty()) {
+                            pack.removeClass(clazz);
+                        }
+                    }
+                }
+            }
+            if (merged.checkCompatibility(other, 0, true).errors != 0) {
+                return false;
+            }
+            merged.merge(other, true);
+
+            new JCovXMLFileSaver(merged, InstrumentationOptions.MERGE.OVERWRITE).saveResults(dest);
+            if (sidecar) {
+                writeSidecar(merged, dest);
+            }
+            return true;
+        } finally {
+            merged.destroy();
+            other.destroy();
+        }
+    }
+
+    static boolean detectSidecar() {
+        return Boolean.parseBoolean(PropertyFinder.findValue(SIDECAR, "false"));
+    }
+
+    /**
+     * @return data from the sidecar of <b>xml</b> or null if there is no
+     * sidecar or it doesn't match the XML file
+     */
+    static DataRoot readSidecar(String xml) {
+        File sidecar = new File(xml + BinaryFormat.EXTENSION);
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        try {
+            DataRoot r = BinaryFormat.read(sidecar.getPath(), false, null);
+            String crc = r.getXMLHeadProperties().remove(SIDECAR_XML_CRC);
+            if (checksum(new File(xml)).equals(crc)) {
+                return r;
+            }
+            r.destroy();
+        } catch (IOException ignore) {
+            // broken sidecar - XML will be read
+        }
+        return null;
+    }
+
+    private static void writeSidecar(DataRoot root, String xml) {
+        File sidecar = new File(xml + BinaryFormat.EXTENSION);
+        try {
+            root.getXMLHeadProperties().put(SIDECAR_XML_CRC, checksum(new File(xml)));
+            BinaryFormat.write(root, sidecar.getPath());
+        } catch (IOException e) {
+            sidecar.delete();
+        } finally {
+            root.getXMLHeadProperties().remove(SIDECAR_XML_CRC);
+        }
+    }
+
+    /**
+     * @return CRC32 of the file content in hex
+     */
+    private static String checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[64 * 1024];
+            for (int n; (n = in.read(buf)) > 0; ) {
+                crc.update(buf, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return Long.toHexString(crc.getValue());
+    }
 }
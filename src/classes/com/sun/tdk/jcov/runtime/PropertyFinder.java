@@ -216,6 +216,7 @@ public final class PropertyFinder {
     public static final String PROPERTY_FILE_PREFIX = "jcov.";
     public static final String JVM_PROPERTY_PREFIX = PROPERTY_FILE_PREFIX;
     public static final String ENV_PROPERTY_PREFIX = "JCOV_";
+    public static final String UNIX_SOCKET_PREFIX = "unix:";
 
     /**
      *  Returns value specified by user. If sys prop defined the value is
@@ -268,6 +269,20 @@ public final class PropertyFinder {
         return processMacroString(res, null, null);
     }
 
+    /**
+     *  Returns path of Unix-domain socket if the host is specified as
+     * unix:/path/to/socket (e.g. -Djcov.host=unix:/tmp/jcov.sock)
+     *
+     * @param host host specified by user
+     * @return socket path or null for network hosts
+     */
+    public static String unixSocketPath(String host) {
+        if (host != null && host.startsWith(UNIX_SOCKET_PREFIX)) {
+            return host.substring(UNIX_SOCKET_PREFIX.length());
+        }
+        return null;
+    }
+
     /**
      *  Searches for jcov property file. First candidate to read is file in
      * JCOV_PROPFILE system env variable. Second candidate is file in
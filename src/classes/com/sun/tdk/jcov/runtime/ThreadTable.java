@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+/**
+ * <p> Finds the state kept for the current thread by its id and gives every
+ * thread a small index. Thread ids are never reused, so ids can't index an
+ * array themselves - they are looked up in an open addressing table, and
+ * threads get the lowest index not held by a live thread instead. </p> <p>
+ * Lookups don't lock: a thread only looks for its own entry, which it added
+ * itself, and a rebuilt table is published only when it's filled. Entries
+ * are added under the lock of the table. Entries of dead threads are
+ * dropped when the table is rebuilt, so it's as large as the number of live
+ * threads needs, not the highest id. </p> <p> Here should be no imports and
+ * no java.util.concurrent - the table is used by Collect in the earliest VM
+ * lifecycle. </p>
+ *
+ * @see CollectDetect
+ */
+final class ThreadTable {
+
+    /**
+     * <p> State of a thread kept in the table. </p>
+     */
+    static class Entry {
+
+        final long id; // thread id
+        final Thread thread; // to tell a dead thread, null for placeholders not kept in the table
+        int index = -1; // lowest index not held by a live thread when added
+
+        Entry(Thread thread) {
+            this.thread = thread;
+            this.id = thread != null ? thread.getId() : 0;
+        }
+
+        boolean isDead() {
+            return thread != null && !thread.isAlive();
+        }
+    }
+
+    private static final int MIN_LENGTH = 64;
+    private volatile Entry[] table = new Entry[MIN_LENGTH];
+    private int used = 0; // entries in the table including the ones of dead threads
+    private Entry[] indexes = new Entry[16]; // entry holding an index
+
+    /**
+     * @param id thread id
+     * @return entry of the thread or null if it's not added
+     */
+    Entry get(long id) {
+        Entry[] t = table;
+        int mask = t.length - 1;
+        for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+            Entry e = t[i];
+            if (e == null || e.id == id) {
+                return e;
+            }
+        }
+    }
+
+    /**
+     * <p> Adds the entry of the current thread and assigns its index. </p>
+     *
+     * @param e entry not added yet
+     */
+    synchronized void add(Entry e) {
+        if ((used + 1) * 2 > table.length) {
+            rebuild();
+        }
+        insert(table, e);
+        used++;
+        int i = 0;
+        while (i < indexes.length && indexes[i] != null && !indexes[i].isDead()) {
+            i++;
+        }
+        if (i == indexes.length) {
+            Entry[] grown = new Entry[indexes.length * 2];
+            System.arraycopy(indexes, 0, grown, 0, indexes.length);
+            indexes = grown;
+        }
+        indexes[i] = e;
+        e.index = i;
+    }
+
+    /**
+     * <p> Replaces the table with one holding only entries of live threads,
+     * at most a quarter full. </p>
+     */
+    private void rebuild() {
+        Entry[] t = table;
+        int live = 0;
+        for (int i = 0; i < t.length; i++) {
+            if (t[i] != null && !t[i].isDead()) {
+                live++;
+            }
+        }
+        int length = MIN_LENGTH;
+        while (length < live * 4) {
+            length *= 2;
+        }
+        Entry[] rebuilt = new Entry[length];
+        for (int i = 0; i < t.length; i++) {
+            if (t[i] != null && !t[i].isDead()) {
+                insert(rebuilt, t[i]);
+            }
+        }
+        for (int i = 0; i < indexes.length; i++) {
+            if (indexes[i] != null && indexes[i].isDead()) {
+                indexes[i] = null;
+            }
+        }
+        used = live;
+        table = rebuilt;
+    }
+
+    private static void insert(Entry[] t, Entry e) {
+        int mask = t.length - 1;
+        int i = hash(e.id) & mask;
+        while (t[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t[i] = e;
+    }
+
+    private static int hash(long id) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32); // ids are consecutive
+    }
+
+    /**
+     * @return length of the table
+     */
+    synchronized int length() {
+        return table.length;
+    }
+}
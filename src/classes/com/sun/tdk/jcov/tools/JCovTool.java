@@ -112,6 +112,7 @@ public abstract class JCovTool {
         "com.sun.tdk.jcov.Merger",
         "com.sun.tdk.jcov.RepMerge",
         "com.sun.tdk.jcov.Filter",
+        "com.sun.tdk.jcov.Convert",
         "com.sun.tdk.jcov.DiffCoverage",
         "com.sun.tdk.jcov.RepGen",
         "com.sun.tdk.jcov.JCov",
@@ -28,9 +28,10 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 
 /**
@@ -72,8 +73,9 @@ public class MapHelper {
     /**
      * The method assumes that templ is an XML with jcov data. This method
      * provides update of this file without parsing templ into XML model. This
-     * methods just reads the given file line by line and modifies those lines
-     * which contains "id=...".
+     * methods just scans bytes of the given file line by line and modifies
+     * those lines which contains "id=...". All other bytes are copied as is,
+     * long unchanged regions are copied with FileChannel.transferTo().
      *
      * <b>Note</b> this method is very sensitive to changes of XML format.
      *
@@ -88,59 +90,228 @@ public class MapHelper {
         FileInputStream is = new FileInputStream(templ);
         File outputFile = new File(result);
         if (!outputFile.getAbsoluteFile().getParentFile().exists()) {
+            is.close();
             throw new Exception("Specified directory for output file doesn't exist - " + outputFile.getParentFile().getPath());
         }
         if (outputFile.exists() && !outputFile.canWrite()) {
+            is.close();
             throw new Exception("Can't write output file");
         }
         if (outputFile.exists() && !outputFile.canRead()) {
+            is.close();
             throw new Exception("Can't read output file");
         }
         FileOutputStream os = new FileOutputStream(outputFile, false);
 
-        BufferedReader r = new BufferedReader(new InputStreamReader(is, Charset.defaultCharset()));
-        PrintWriter pw = new PrintWriter(new OutputStreamWriter(os, Charset.defaultCharset()));
         try {
-            String s = r.readLine();
-            while (s != null) {
-                int i = s.indexOf("id=");
-                if (i != -1 && counts != null) {
-                    int id = 0;
-                    long count = 0;
-
-                    i += 4; //id="
-                    int id_end = s.indexOf("\"", i);
-                    id = Integer.parseInt(s.substring(i, id_end));
-
-                    if (counts[id] == 0) {
-                        pw.println(s); // nothing changed
-                    } else if (s.indexOf("count", i) > 0) {
-                        i = id_end + 9; //"_count="
-                        String res = s.substring(0, i);
-
-                        int count_end = s.indexOf("\"", i);
-                        count = Long.parseLong(s.substring(i, count_end));
-                        count += counts[id];
-                        res += count;
-
-                        res += s.substring(count_end);
-                        pw.println(res);
+            new CountsRewriter(is.getChannel(), os.getChannel(), counts).run();
+        } finally {
+            is.close();
+            os.close();
+        }
+    }
+
+    /**
+     * Streams template bytes to the output adding counts to "count" attributes
+     * of lines with "id" attribute. No Strings are created for unchanged
+     * lines.
+     */
+    private static class CountsRewriter {
+
+        private static final int BUFFER_SIZE = 4 << 20;
+        private static final int TRANSFER_THRESHOLD = 64 << 10; // shorter regions are copied through outBuf
+        private static final byte[] COUNT = {'c', 'o', 'u', 'n', 't'};
+        private static final byte[] COUNT_ATTR = {' ', 'c', 'o', 'u', 'n', 't', '=', '"'};
+        private final FileChannel in;
+        private final FileChannel out;
+        private final long[] counts;
+        private ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private ByteBuffer view = buf.duplicate();
+        private final ByteBuffer outBuf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final byte[] digits = new byte[20];
+        private long bufStart = 0; // file offset of buf[0]
+        private long copied = 0;   // template bytes before this offset are already written
+
+        CountsRewriter(FileChannel in, FileChannel out, long[] counts) {
+            this.in = in;
+            this.out = out;
+            this.counts = counts;
+        }
+
+        void run() throws IOException {
+            long size = in.size();
+            if (counts != null) {
+                while (true) {
+                    boolean eof = in.read(buf) < 0;
+                    int limit = buf.position();
+                    int lineStart = 0;
+                    int id = -1; // position of the first "id=" in the line
+                    ByteBuffer data = buf;
+                    for (int i = 0; i < limit; ++i) {
+                        byte b = data.get(i);
+                        if (b == '\n') {
+                            if (id >= 0) {
+                                line(id, i);
+                                id = -1;
+                            }
+                            lineStart = i + 1;
+                        } else if (b == '=' && id < 0 && i - lineStart >= 2
+                                && data.get(i - 1) == 'd' && data.get(i - 2) == 'i') {
+                            id = i - 2;
+                        }
+                    }
+                    if (eof) {
+                        if (id >= 0) {
+                            line(id, limit);
+                        }
+                        break;
+                    }
+                    if (lineStart == 0 && limit == buf.capacity()) {
+                        // the line doesn't fit into the buffer
+                        ByteBuffer bigger = ByteBuffer.allocateDirect(buf.capacity() * 2);
+                        buf.flip();
+                        bigger.put(buf);
+                        buf = bigger;
+                        view = buf.duplicate();
                     } else {
-                        String res = s.substring(0, id_end + 1) + " count=\"" + counts[id] + "\"" + s.substring(id_end + 1);
-                        pw.println(res);
+                        buf.limit(limit).position(lineStart);
+                        buf.compact();
+                        bufStart += lineStart;
                     }
-                } else {
-                    pw.println(s);
                 }
+            }
+            copyTo(size);
+            flush();
+        }
 
-                s = r.readLine();
+        /**
+         * @param id position of "id=" in the line
+         * @param end position of the line end
+         */
+        private void line(int id, int end) throws IOException {
+            int idStart = id + 4; // id="
+            int idEnd = indexOf((byte) '"', idStart, end);
+            long add = counts[(int) parse(idStart, idEnd)];
+            if (add == 0) {
+                return; // nothing changed
             }
-            pw.flush();
-        } finally {
-            pw.close();
-            r.close();
-            is.close();
-            os.close();
+            if (indexOf(COUNT, idStart, end) >= 0) {
+                int countStart = idEnd + 9; // " count="
+                int countEnd = indexOf((byte) '"', countStart, end);
+                long count = parse(countStart, countEnd) + add;
+                copyTo(bufStart + countStart);
+                reserve(digits.length);
+                putNumber(count);
+                copied = bufStart + countEnd;
+            } else {
+                copyTo(bufStart + idEnd + 1);
+                reserve(COUNT_ATTR.length + digits.length + 1);
+                outBuf.put(COUNT_ATTR);
+                putNumber(add);
+                outBuf.put((byte) '"');
+                copied = bufStart + idEnd + 1;
+            }
+        }
+
+        private int indexOf(byte b, int from, int to) {
+            for (int i = from; i < to; ++i) {
+                if (buf.get(i) == b) {
+                    return i;
+                }
+            }
+            throw new NumberFormatException("Unterminated attribute value: " + text(from, to));
+        }
+
+        private int indexOf(byte[] pattern, int from, int to) {
+            next:
+            for (int i = from; i <= to - pattern.length; ++i) {
+                for (int j = 0; j < pattern.length; ++j) {
+                    if (buf.get(i + j) != pattern[j]) {
+                        continue next;
+                    }
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        private long parse(int from, int to) {
+            int i = from;
+            boolean negative = i < to && buf.get(i) == '-';
+            if (negative) {
+                ++i;
+            }
+            if (i == to) {
+                throw new NumberFormatException("For input string: \"" + text(from, to) + "\"");
+            }
+            long res = 0;
+            for (; i < to; ++i) {
+                int d = buf.get(i) - '0';
+                if (d < 0 || d > 9) {
+                    throw new NumberFormatException("For input string: \"" + text(from, to) + "\"");
+                }
+                res = res * 10 + d;
+            }
+            return negative ? -res : res;
+        }
+
+        private String text(int from, int to) {
+            byte[] b = new byte[to - from];
+            view.limit(to).position(from);
+            view.get(b);
+            return new String(b, Charset.defaultCharset());
+        }
+
+        private void putNumber(long value) {
+            int p = digits.length;
+            long v = value;
+            do {
+                long q = v / 10;
+                digits[--p] = (byte) ('0' + Math.abs(v - q * 10));
+                v = q;
+            } while (v != 0);
+            if (value < 0) {
+                digits[--p] = '-';
+            }
+            outBuf.put(digits, p, digits.length - p);
+        }
+
+        /**
+         * Writes template bytes from <b>copied</b> till <b>end</b> to the
+         * output
+         */
+        private void copyTo(long end) throws IOException {
+            long len = end - copied;
+            if (len <= 0) {
+                return;
+            }
+            if (copied >= bufStart && len < TRANSFER_THRESHOLD) {
+                reserve((int) len);
+                view.limit((int) (end - bufStart)).position((int) (copied - bufStart));
+                outBuf.put(view);
+            } else {
+                flush();
+                while (len > 0) {
+                    long n = in.transferTo(copied, len, out);
+                    copied += n;
+                    len -= n;
+                }
+            }
+            copied = end;
+        }
+
+        private void reserve(int len) throws IOException {
+            if (outBuf.remaining() < len) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            outBuf.flip();
+            while (outBuf.hasRemaining()) {
+                out.write(outBuf);
+            }
+            outBuf.clear();
         }
     }
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * <p> Compiled regular expression matched against whole names, a replacement
+ * for String.matches() which compiles the expression on each call. </p> <p>
+ * Alternatives which are plain names or names followed by ".*" (e.g.
+ * "com/foo/.*|com/bar/Baz") are put into a prefix tree, the rest is compiled
+ * to a single Pattern. </p>
+ */
+public final class NameMatcher {
+
+    private static final String METACHARS = "\\^$.|?*+()[]{}";
+    private final String regex;
+    private final PrefixTrie trie = new PrefixTrie();
+    private final Pattern pattern;
+
+    public NameMatcher(String regex) {
+        this.regex = regex;
+        if (regex.contains("\\|") || regex.contains("(") || regex.contains("[") || regex.contains("{")) {
+            pattern = Pattern.compile(regex); // '|' may be not on the top level
+            return;
+        }
+        StringBuilder rest = new StringBuilder();
+        for (String alternative : regex.split("\\|", -1)) {
+            boolean any = alternative.endsWith(".*") && !alternative.endsWith("\\.*");
+            String prefix = literal(any ? alternative.substring(0, alternative.length() - 2) : alternative);
+            if (prefix != null) {
+                trie.add(prefix, any ? PrefixTrie.ANY : PrefixTrie.EXACT, 0);
+            } else {
+                rest.append(rest.length() == 0 ? "" : "|").append(alternative);
+            }
+        }
+        pattern = rest.length() == 0 ? null : Pattern.compile(rest.toString());
+    }
+
+    /**
+     * @return string matched by the regexp or null if the regexp is not a
+     * literal. Only non-alphanumeric characters can be escaped.
+     */
+    static String literal(String regexp) {
+        StringBuilder sb = new StringBuilder(regexp.length());
+        for (int i = 0; i < regexp.length(); ++i) {
+            char c = regexp.charAt(i);
+            if (c == '\\') {
+                if (++i == regexp.length() || Character.isLetterOrDigit(c = regexp.charAt(i))) {
+                    return null;
+                }
+            } else if (METACHARS.indexOf(c) >= 0) {
+                return null;
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    public boolean matches(String name) {
+        return !trie.isEmpty() && trie.find(name) >= 0
+                || pattern != null && pattern.matcher(name).matches();
+    }
+
+    @Override
+    public String toString() {
+        return regex;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.util;
+
+import com.sun.tdk.jcov.util.Utils.Pattern;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p> Compiled form of include/exclude patterns produced by
+ * Utils.concatFilters(). Plain package and class masks like "com.foo.*" or
+ * "com.foo.Bar" are put into a prefix tree so a name is checked against all of
+ * them in one pass. Other masks are matched by their regular expressions. </p>
+ * <p> Like Utils.accept() did, the last of the (sorted) patterns matching a
+ * name decides whether the name is included. </p>
+ *
+ * @see Utils#accept(PatternMatcher, String[], String, String)
+ */
+public final class PatternMatcher {
+
+    private static final String MEMBERS = "(/.*|\\$.*)*";
+    private static final String STAR = "[a-zA-Z0-9_$]*";
+    private static final String STARS = "[a-zA-Z0-9_$/]*";
+    private final Pattern[] patterns;
+    private final PrefixTrie trie = new PrefixTrie();
+    final int[] regexps; // indexes of patterns matched by regexps
+    private final boolean included;
+
+    public PatternMatcher(Pattern[] patterns) {
+        this.patterns = patterns;
+        List<Integer> regexps = new ArrayList<Integer>();
+        boolean included = false;
+        for (int i = 0; i < patterns.length; ++i) {
+            included |= patterns[i].included;
+            if (!addLiteral(patterns[i].patt, i)) {
+                regexps.add(i);
+            }
+        }
+        this.included = included;
+        this.regexps = new int[regexps.size()];
+        for (int i = 0; i < this.regexps.length; ++i) {
+            this.regexps[i] = regexps.get(i);
+        }
+    }
+
+    /**
+     * Puts the pattern to the prefix tree if its regexp is a literal followed
+     * by one of the tails Utils.Pattern generates
+     */
+    private boolean addLiteral(java.util.regex.Pattern patt, int index) {
+        String regexp = patt.pattern();
+        if (patt.flags() != 0 || !regexp.endsWith(MEMBERS)) {
+            return false;
+        }
+        regexp = regexp.substring(0, regexp.length() - MEMBERS.length());
+        int tail = PrefixTrie.MEMBERS;
+        if (regexp.endsWith(STARS)) {
+            regexp = regexp.substring(0, regexp.length() - STARS.length());
+            tail = PrefixTrie.STARS;
+        } else if (regexp.endsWith(STAR)) {
+            regexp = regexp.substring(0, regexp.length() - STAR.length());
+            tail = PrefixTrie.STAR;
+        }
+        String prefix = NameMatcher.literal(regexp);
+        if (prefix == null) {
+            return false;
+        }
+        trie.add(prefix, tail, index);
+        return true;
+    }
+
+    public Pattern[] getPatterns() {
+        return patterns;
+    }
+
+    public boolean isEmpty() {
+        return patterns.length == 0;
+    }
+
+    /**
+     * @return true if there is at least one including pattern
+     */
+    public boolean hasIncludes() {
+        return included;
+    }
+
+    /**
+     * @return the last pattern matching the name or null if no pattern
+     * matches it
+     */
+    public Pattern lastMatch(String name) {
+        int best = trie.find(name);
+        for (int i = regexps.length - 1; i >= 0 && regexps[i] > best; --i) {
+            if (patterns[regexps[i]].patt.matcher(name).matches()) {
+                best = regexps[i];
+                break;
+            }
+        }
+        return best < 0 ? null : patterns[best];
+    }
+}
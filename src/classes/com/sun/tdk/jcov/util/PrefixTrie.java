@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.util;
+
+import java.util.Arrays;
+
+/**
+ * <p> Prefix tree of name masks. Every mask is a literal prefix followed by a
+ * tail saying which remainders of a name are accepted after the prefix. A
+ * lookup walks the name once and returns the greatest value of the masks
+ * matching it. </p> <p> Tails reproduce exactly the regular expressions used
+ * by Utils.Pattern and by simple caller filters, including the fact that '.'
+ * doesn't match line terminators. </p>
+ *
+ * @see PatternMatcher
+ * @see NameMatcher
+ */
+final class PrefixTrie {
+
+    /**
+     * nothing after the prefix
+     */
+    static final int EXACT = 0;
+    /**
+     * ".*" - anything without line terminators
+     */
+    static final int ANY = 1;
+    /**
+     * "(/.*|\$.*)*" - the class itself, its nested classes and subpackages
+     */
+    static final int MEMBERS = 2;
+    /**
+     * "[a-zA-Z0-9_$]*(/.*|\$.*)*" - a mask ending with '*'
+     */
+    static final int STAR = 3;
+    /**
+     * "[a-zA-Z0-9_$/]*(/.*|\$.*)*" - a mask ending with "**"
+     */
+    static final int STARS = 4;
+    private static final int TAILS = 5;
+
+    private final Node root = new Node();
+    private boolean empty = true;
+
+    void add(String prefix, int tail, int value) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); ++i) {
+            node = node.child(prefix.charAt(i), true);
+        }
+        if (node.values == null) {
+            node.values = new int[TAILS];
+            Arrays.fill(node.values, -1);
+        }
+        node.values[tail] = Math.max(node.values[tail], value);
+        empty = false;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * @return the greatest value of masks matching the name or -1
+     */
+    int find(String name) {
+        int best = -1;
+        Node node = root;
+        for (int i = 0; ; ++i) {
+            int[] values = node.values;
+            if (values != null) {
+                for (int tail = 0; tail < TAILS; ++tail) {
+                    if (values[tail] > best && accepts(tail, name, i)) {
+                        best = values[tail];
+                    }
+                }
+            }
+            if (i == name.length() || (node = node.child(name.charAt(i), false)) == null) {
+                return best;
+            }
+        }
+    }
+
+    private static boolean accepts(int tail, String name, int from) {
+        int length = name.length();
+        switch (tail) {
+            case EXACT:
+                return from == length;
+            case ANY:
+                return !hasLineTerminator(name, from);
+            case MEMBERS:
+                return from == length
+                        || (name.charAt(from) == '/' || name.charAt(from) == '$') && !hasLineTerminator(name, from);
+            default:
+                // the star takes a run of allowed characters, the rest should start with '/' or '$'
+                int q = from;
+                while (q < length && isStarChar(name.charAt(q), tail == STARS)) {
+                    ++q;
+                }
+                if (q == length) {
+                    return true;
+                }
+                if (hasLineTerminator(name, q)) {
+                    return false;
+                }
+                if (name.charAt(q) == '/') {
+                    return true;
+                }
+                for (int p = from; p < q; ++p) {
+                    if (name.charAt(p) == '$' || name.charAt(p) == '/') {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+    private static boolean isStarChar(char c, boolean slash) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '_' || c == '$' || slash && c == '/';
+    }
+
+    private static boolean hasLineTerminator(String name, int from) {
+        for (int i = from; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int[] values;
+
+        private Node child(char c, boolean create) {
+            for (int i = 0; i < keys.length; ++i) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            if (!create) {
+                return null;
+            }
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            return children[children.length - 1] = new Node();
+        }
+    }
+}
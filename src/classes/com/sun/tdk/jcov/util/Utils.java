@@ -861,6 +861,17 @@ public final class Utils {
         return concatFilters(includes, excludes, true);
     }
 
+    /**
+     * @return concatFilters() result compiled for repeated matching
+     */
+    public static PatternMatcher compileFilters(String[] includes, String[] excludes) {
+        return new PatternMatcher(concatFilters(includes, excludes, false));
+    }
+
+    public static PatternMatcher compileModuleFilters(String[] includes, String[] excludes) {
+        return new PatternMatcher(concatFilters(includes, excludes, true));
+    }
+
     private static Pattern[] concatFilters(String[] includes, String[] excludes, boolean modulePattern) {
         if (includes == null || includes.length == 1 && includes[0].equals("")) {
             includes = new String[0];
@@ -1064,7 +1075,23 @@ public final class Utils {
      * least one allowed modificator
      */
     public static boolean accept(Pattern[] alls, String[] allowedModifs, String className, String sig) {
-        if (alls.length == 0) {
+        return accept(new PatternMatcher(alls), allowedModifs, className, sig);
+    }
+
+    /**
+     * <p> Check whether a
+     * <code>className</code> is accepted by compiled patterns. </p>
+     *
+     * @param matcher       patterns to use
+     * @param allowedModifs class modificators to accept. Ignored if null.
+     * @param className     class name to check
+     * @param sig           class's signature
+     * @return true if a class name is accepted by all patters and contain at
+     * least one allowed modificator
+     * @see #compileFilters(String[], String[])
+     */
+    public static boolean accept(PatternMatcher matcher, String[] allowedModifs, String className, String sig) {
+        if (matcher.isEmpty()) {
             if (allowedModifs != null && sig != null && allowedModifs.length != 0) {
                 for (int j = 0; j < allowedModifs.length; j++) {
                     if (sig.contains(allowedModifs[j])) {
@@ -1076,24 +1103,9 @@ public final class Utils {
             return true;
         }
 
-        Boolean parentIncluded = null; // null means that no pattern matching the className found - neither including or excluding
-        boolean included = false;
-//        System.out.println("c: " + className);
-        outer:
-        for (int i = 0; i < alls.length; ++i) {
-            if (alls[i].included) {
-                included = true;
-            }
-
-//            System.out.println("match: " + alls[i].patt.toString());
-            if (alls[i].patt.matcher(className).matches()) {
-//                System.out.println("matched " + alls[i].included);
-                parentIncluded = alls[i].included;
-            }
-        }
-
         if (sig == null || allowedModifs == null || allowedModifs.length == 0) {
-            return parentIncluded != null ? parentIncluded : !included; // if parent package was not found (parentIncluded == null) - accept depends on was ANYTHING included or not
+            Pattern parent = matcher.lastMatch(className);
+            return parent != null ? parent.included : !matcher.hasIncludes(); // if parent package was not found - accept depends on was ANYTHING included or not
         }
 
         for (int j = 0; j < allowedModifs.length; j++) {
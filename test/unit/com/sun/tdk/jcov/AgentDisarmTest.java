@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov;
+
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.Util;
+import com.sun.tdk.jcov.io.Reader;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Runs an application with the agent retransforming covered classes without
+ * probes ("disarm" option).
+ */
+public class AgentDisarmTest {
+    static final int CALLS = 80;
+    static final String SOURCE =
+            "package disarm;\n" +
+            "public class App {\n" +
+            "    public static void main(String[] args) throws InterruptedException {\n" +
+            "        new Covered();\n" +
+            "        new Partial();\n" +
+            "        for (int i = 0; i < " + CALLS + "; ++i) {\n" +
+            "            Covered.run(i);\n" +
+            "            Partial.run(i);\n" +
+            "            Thread.sleep(50);\n" +
+            "        }\n" +
+            "    }\n" +
+            "}\n" +
+            "class Covered {\n" +
+            "    static int run(int i) {\n" +
+            "        return (i & 1) == 0 ? i : -i;\n" +
+            "    }\n" +
+            "}\n" +
+            "class Partial {\n" +
+            "    static int run(int i) {\n" +
+            "        return i >= 0 ? i : -i;\n" +
+            "    }\n" +
+            "}\n";
+    Path test_dir;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Files.createTempDirectory("agent_disarm_test");
+        Path src = test_dir.resolve("App.java");
+        Files.writeString(src, SOURCE);
+        assertEquals(ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", test_dir.toString(), src.toString()), 0);
+    }
+
+    @Test
+    public void coveredClassDisarmed() throws Exception {
+        String jar = null;
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.endsWith("jcov.jar")) {
+                jar = entry;
+            }
+        }
+        if (jar == null) {
+            throw new SkipException("jcov.jar is not in the classpath");
+        }
+        Path result = test_dir.resolve("result.xml");
+        // the application runs for about 4 seconds, coverage is checked every second
+        Process p = new ProcessBuilder(System.getProperty("java.home") + "/bin/java",
+                "-javaagent:" + jar + "=disarm=1,file=" + result + ",include=disarm.*",
+                "-cp", test_dir.toString(), "disarm.App")
+                .inheritIO().start();
+        assertTrue(p.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(p.exitValue(), 0);
+
+        DataRoot root = Reader.readXML(result.toString());
+        long covered = count(root, "disarm/Covered");
+        long partial = count(root, "disarm/Partial");
+        root.destroy();
+        // all blocks were hit by the first calls, the count stopped growing
+        // once the class was retransformed without probes
+        assertTrue(covered > 0 && covered < CALLS, "Covered.run count: " + covered);
+        // a block is never hit - the class keeps its probes
+        assertEquals(partial, CALLS);
+    }
+
+    private static long count(DataRoot root, String className) {
+        for (DataClass dc : root.getClasses()) {
+            if (dc.getFullname().equals(className)) {
+                for (DataMethod m : dc.getMethods()) {
+                    if (m.getName().equals("run")) {
+                        return m.getCount();
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        Util.rmRF(test_dir);
+    }
+}
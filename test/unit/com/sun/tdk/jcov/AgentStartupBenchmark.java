@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures startup of an application loading lots of classes from several
+ * threads under the agent with "transform=serial", "transform=parallel" and
+ * with instrumented classes cache (the cache is filled in the first round).
+ * Not a unit test - run it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.AgentStartupBenchmark jcov.jar [threads]
+ * </pre> The application loads (without initializing) all classes of several
+ * JDK modules which are instrumented by the agent.
+ */
+public class AgentStartupBenchmark {
+
+    static final String[] MODULES = {"java.desktop", "java.xml", "java.sql", "java.management", "java.naming"};
+
+    public static void main(String[] args) throws Exception {
+        String jar = args[0];
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        File result = File.createTempFile("startup", ".xml");
+        Path cache = Files.createTempDirectory("startup-cache");
+        for (int i = 0; i < 3; ++i) {
+            for (String mode : new String[]{"transform=serial", "transform=parallel", "cache=" + cache}) {
+                result.delete();
+                new File(result + ".jcov").delete();
+                long start = System.nanoTime();
+                Process p = new ProcessBuilder(System.getProperty("java.home") + "/bin/java",
+                        "-javaagent:" + jar + "=" + mode + ",file=" + result + ",include=javax.*,include=com.sun.*",
+                        "-cp", System.getProperty("java.class.path"),
+                        Load.class.getName(), Integer.toString(threads))
+                        .inheritIO().start();
+                int code = p.waitFor();
+                long end = System.nanoTime();
+                System.out.printf("%s: %d ms in %d threads%s%n", mode, (end - start) / 1000000, threads,
+                        code == 0 ? "" : " (exit code " + code + ")");
+            }
+        }
+        result.delete();
+        new File(result + ".jcov").delete();
+        try (Stream<Path> files = Files.list(cache)) {
+            files.forEach(f -> f.toFile().delete());
+        }
+        Files.delete(cache);
+    }
+
+    /**
+     * The application being started
+     */
+    public static class Load {
+
+        public static void main(String[] args) throws Exception {
+            List<String> classes = classes();
+            int threads = Integer.parseInt(args[0]);
+            List<Thread> loaders = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                int first = t;
+                loaders.add(new Thread(() -> {
+                    for (int i = first; i < classes.size(); i += threads) {
+                        try {
+                            Class.forName(classes.get(i), false, ClassLoader.getSystemClassLoader());
+                        } catch (Throwable ignore) {
+                        }
+                    }
+                }));
+            }
+            for (Thread t : loaders) {
+                t.start();
+            }
+            for (Thread t : loaders) {
+                t.join();
+            }
+            System.out.println(classes.size() + " classes loaded");
+        }
+
+        static List<String> classes() throws IOException {
+            FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            List<String> classes = new ArrayList<>();
+            for (String module : MODULES) {
+                Path root = jrt.getPath("modules", module);
+                try (Stream<Path> files = Files.walk(root)) {
+                    classes.addAll(files.map(f -> root.relativize(f).toString())
+                            .filter(f -> f.endsWith(".class") && !f.equals("module-info.class"))
+                            .map(f -> f.substring(0, f.length() - ".class".length()).replace('/', '.'))
+                            .collect(Collectors.toList()));
+                }
+            }
+            return classes;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov;
+
+import java.io.File;
+
+/**
+ * Measures steady state throughput of code instrumented by the agent in
+ * regular dynamic mode and with probes removed from fully covered classes
+ * ("disarm=1"). Not a unit test - run it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.DisarmBenchmark jcov.jar [seconds]
+ * </pre> The application calls a small method with branches in a loop and
+ * prints the number of calls per millisecond in the second half of the run.
+ */
+public class DisarmBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String jar = args[0];
+        String seconds = args.length > 1 ? args[1] : "10";
+        File result = File.createTempFile("disarm", ".xml");
+        for (int i = 0; i < 3; ++i) {
+            for (String mode : new String[]{"disarm=0", "disarm=1"}) {
+                result.delete();
+                Process p = new ProcessBuilder(System.getProperty("java.home") + "/bin/java",
+                        "-javaagent:" + jar + "=" + mode + ",file=" + result + ",include=com.sun.tdk.jcov.DisarmBenchmark$Work",
+                        "-Djcov.selftest=true", // lets the agent instrument com.sun.tdk.jcov classes
+                        "-cp", System.getProperty("java.class.path"),
+                        Run.class.getName(), mode, seconds)
+                        .inheritIO().start();
+                int code = p.waitFor();
+                if (code != 0) {
+                    System.out.println(mode + ": exit code " + code);
+                }
+            }
+        }
+        result.delete();
+    }
+
+    /**
+     * The application being measured
+     */
+    public static class Run {
+
+        public static void main(String[] args) {
+            long duration = Long.parseLong(args[1]) * 1000000000L;
+            new Work(); // all blocks of Work should be hit
+            long start = System.nanoTime();
+            long half = start + duration / 2;
+            long calls = 0;
+            long sum = 0;
+            long measured = 0;
+            long now = start;
+            while (now - start < duration) {
+                for (int i = 0; i < 100000; ++i) {
+                    sum += Work.step(i);
+                }
+                now = System.nanoTime();
+                if (now < half) {
+                    measured = now;
+                } else {
+                    calls += 100000;
+                }
+            }
+            System.out.printf("%s: %d calls/ms (%d)%n", args[0], calls * 1000000 / (now - measured), sum & 1);
+        }
+    }
+
+    /**
+     * Instrumented code - all its blocks are hit in the first iterations
+     */
+    public static class Work {
+
+        static int step(int i) {
+            int r = i & 7;
+            if ((i & 1) == 0) {
+                r += i >> 3;
+            } else {
+                r -= i >> 5;
+            }
+            switch (i & 3) {
+                case 0:
+                    return r;
+                case 1:
+                    return r * 3;
+                default:
+                    return -r;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov;
+
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataPackage;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.Util;
+import com.sun.tdk.jcov.io.Reader;
+import com.sun.tdk.jcov.runtime.Collect;
+import com.sun.tdk.jcov.runtime.JCovSpoolSaver;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Simulates many test VMs on the Grabber host saving static data to a spool
+ * directory.
+ */
+public class GrabberSpoolTest {
+    static final int CLIENTS = 500;
+    static final int CONCURRENCY = 64;
+    Path test_dir;
+    Path template;
+    Path result;
+    Path spool;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Paths.get(System.getProperty("user.dir")).resolve("grabber_spool_test");
+        Util.rmRF(test_dir);
+        template = test_dir.resolve("template.xml");
+        result = test_dir.resolve("result.xml");
+        spool = test_dir.resolve("spool");
+        Files.createDirectories(spool);
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(
+                "com/sun/tdk/jcov/report/dataprocessor/privacy/privacy_template.xml")) {
+            Files.copy(in, template);
+        }
+    }
+
+    @Test
+    public void spooledClients() throws Exception {
+        int slots = Reader.readXML(template.toString()).getCount();
+        long[] data = new long[slots];
+        for (int i = 0; i < slots; i++) {
+            data[i] = i % 2 == 0 ? 1 : 0;
+        }
+        // written before the Server is started and read at the first scan
+        JCovSpoolSaver.write(spool.toFile(), "tester", "early", "", data);
+        Path partial = Files.createFile(spool.resolve("partial" + JCovSpoolSaver.TMP_SUFFIX));
+
+        Server server = new Server(0, false, template.toString(), result.toString(), null, null, 0,
+                false, false, false);
+        server.setSpool(spool.toFile());
+        server.start();
+        long start = System.currentTimeMillis();
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        List<Future<File>> sent = new ArrayList<>();
+        for (int i = 0; i < CLIENTS - 1; i++) {
+            int n = i;
+            sent.add(clients.submit(() -> JCovSpoolSaver.write(spool.toFile(), "tester", "test" + n, "", data)));
+        }
+        for (Future<File> f : sent) {
+            assertTrue(f.get().getName().endsWith(JCovSpoolSaver.SPOOL_SUFFIX));
+        }
+        clients.shutdown();
+        server.kill(false);
+        server.join(Server.MAX_TIMEOUT);
+        long time = System.currentTimeMillis() - start;
+        System.out.println(CLIENTS + " spooled clients merged in " + time + "ms (" + CLIENTS * 1000L / Math.max(time, 1) + " clients/s)");
+
+        DataRoot root = Reader.readXML(result.toString());
+        int methods = 0;
+        for (DataPackage p : root.getPackages()) {
+            for (DataClass c : p.getClasses()) {
+                for (DataMethod m : c.getMethods()) {
+                    assertEquals(m.getCount(), m.getSlot() % 2 == 0 ? CLIENTS : 0, m.getName());
+                    methods++;
+                }
+            }
+        }
+        assertTrue(methods > 0);
+        assertTrue(Files.exists(partial), "incomplete file should be left in the spool");
+        try (var left = Files.list(spool)) {
+            assertFalse(left.anyMatch(p -> p.toString().endsWith(JCovSpoolSaver.SPOOL_SUFFIX)));
+        }
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        Collect.SLOTS = Collect.MAX_SLOTS;
+        Collect.enableCounts();
+        Util.rmRF(test_dir);
+    }
+}
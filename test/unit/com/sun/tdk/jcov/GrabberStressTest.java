@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov;
+
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataPackage;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.Util;
+import com.sun.tdk.jcov.io.Reader;
+import com.sun.tdk.jcov.runtime.Collect;
+import com.sun.tdk.jcov.runtime.JCovSocketSaver;
+import com.sun.tdk.jcov.runtime.PropertyFinder;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Simulates many test VMs sending static data to the Grabber at once.
+ */
+public class GrabberStressTest {
+    static final int CLIENTS = 500;
+    static final int CONCURRENCY = 64;
+    Path test_dir;
+    Path template;
+    Path result;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Paths.get(System.getProperty("user.dir")).resolve("grabber_stress_test");
+        Util.rmRF(test_dir);
+        template = test_dir.resolve("template.xml");
+        result = test_dir.resolve("result.xml");
+        Files.createDirectories(test_dir);
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(
+                "com/sun/tdk/jcov/report/dataprocessor/privacy/privacy_template.xml")) {
+            Files.copy(in, template);
+        }
+    }
+
+    @Test
+    public void concurrentClients() throws Exception {
+        Server server = new Server(0, false, template.toString(), result.toString(), null, null, CLIENTS,
+                false, false, false);
+        sendAndCheck(server, "localhost", result);
+    }
+
+    @Test
+    public void unixSocketClients() throws Exception {
+        Path socket = Paths.get(System.getProperty("java.io.tmpdir"), "jcov" + ProcessHandle.current().pid() + ".sock");
+        Files.deleteIfExists(socket);
+        Path unixResult = test_dir.resolve("unix_result.xml");
+        Server server = new Server(0, false, template.toString(), unixResult.toString(), null, null, CLIENTS,
+                false, false, false, socket.toString());
+        sendAndCheck(server, PropertyFinder.UNIX_SOCKET_PREFIX + socket, unixResult);
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    public void mixedVersionClients() throws Exception {
+        Path mixedResult = test_dir.resolve("mixed_result.xml");
+        Server server = new Server(0, false, template.toString(), mixedResult.toString(), null, null, CLIENTS,
+                false, false, false);
+        int slots = Reader.readXML(template.toString()).getCount();
+        server.start();
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        List<Future<?>> sent = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            int n = i;
+            // version 0 clients merge full arrays while version 1 ones merge sparse data
+            sent.add(clients.submit(() -> n % 2 == 0
+                    ? send("localhost", server.getPort(), "test" + n, slots)
+                    : sendVersion0(server.getPort(), "test" + n, slots)));
+        }
+        for (Future<?> f : sent) {
+            f.get();
+        }
+        clients.shutdown();
+        server.join(Server.MAX_TIMEOUT);
+        check(mixedResult);
+    }
+
+    private void sendAndCheck(Server server, String host, Path result) throws Exception {
+        int slots = Reader.readXML(template.toString()).getCount();
+        server.start();
+        long start = System.currentTimeMillis();
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        List<Future<?>> sent = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            int n = i;
+            sent.add(clients.submit(() -> send(host, server.getPort(), "test" + n, slots)));
+        }
+        for (Future<?> f : sent) {
+            f.get();
+        }
+        clients.shutdown();
+        server.join(Server.MAX_TIMEOUT);
+        long time = System.currentTimeMillis() - start;
+        System.out.println(CLIENTS + " clients (" + host + ") merged in " + time + "ms (" + CLIENTS * 1000L / Math.max(time, 1) + " clients/s)");
+        check(result);
+    }
+
+    private static void check(Path result) throws Exception {
+        DataRoot data = Reader.readXML(result.toString());
+        int methods = 0;
+        for (DataPackage p : data.getPackages()) {
+            for (DataClass c : p.getClasses()) {
+                for (DataMethod m : c.getMethods()) {
+                    assertEquals(m.getCount(), CLIENTS, m.getName());
+                    methods++;
+                }
+            }
+        }
+        assertTrue(methods > 0);
+    }
+
+    private static Void send(String host, int port, String test, int slots) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(JCovSocketSaver.connect(host, port)))) {
+            out.write(new byte[]{'J', 'C', 'O', 'V'});
+            out.write(JCovSocketSaver.SOCKET_SAVER_VERSION);
+            out.writeUTF("tester");
+            out.writeUTF(test);
+            out.writeUTF("");
+            out.writeBoolean(false);
+            out.writeUTF("NIY");
+            for (int i = 0; i < slots; i++) {
+                JCovSocketSaver.writeVarLong(out, 1); // slot delta
+                JCovSocketSaver.writeVarLong(out, 1); // count
+            }
+            out.write(0);
+        }
+        return null;
+    }
+
+    private static Void sendVersion0(int port, String test, int slots) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                JCovSocketSaver.connect("localhost", port)))) {
+            out.write(new byte[]{'J', 'C', 'O', 'V'});
+            out.write(0);
+            out.writeUTF("tester");
+            out.writeUTF(test);
+            out.writeUTF("");
+            out.writeBoolean(false);
+            out.writeUTF("NIY");
+            out.writeInt(slots);
+            out.writeInt(slots - 1);
+            for (int i = 0; i < slots; i++) {
+                out.writeInt(i);
+                out.writeLong(1);
+            }
+        }
+        return null;
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        Collect.SLOTS = Collect.MAX_SLOTS;
+        Collect.enableCounts();
+        Util.rmRF(test_dir);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov;
+
+import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.MERGE;
+import com.sun.tdk.jcov.instrument.Util;
+import com.sun.tdk.jcov.io.Reader;
+import com.sun.tdk.jcov.runtime.JCovXMLFileSaver;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks that parallel merging gives the same result as sequential one.
+ */
+public class MergerParallelTest {
+    static final int FILES = 11;
+    Path test_dir;
+    List<String> files = new ArrayList<>();
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Paths.get(System.getProperty("user.dir")).resolve("merger_parallel_test");
+        Util.rmRF(test_dir);
+        Files.createDirectories(test_dir);
+        Path template = test_dir.resolve("template.xml");
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(
+                "com/sun/tdk/jcov/report/dataprocessor/privacy/privacy_template.xml")) {
+            Files.copy(in, template);
+        }
+        for (int i = 0; i < FILES; ++i) {
+            DataRoot root = Reader.readXML(template.toString());
+            int b = 0;
+            for (DataClass c : root.getClasses()) {
+                for (DataMethod m : c.getMethods()) {
+                    for (DataBlock block : m) {
+                        block.setCount((i + b++) % 3);
+                    }
+                }
+            }
+            Path file = test_dir.resolve("result" + i + ".xml");
+            new JCovXMLFileSaver(root, MERGE.OVERWRITE).saveResults(file.toString());
+            root.destroy();
+            files.add(file + "#test" + i);
+            if (i == 5) {
+                Path bad = test_dir.resolve("bad.xml");
+                Files.write(bad, "<coverage".getBytes());
+                files.add(bad + "#bad");
+            }
+        }
+    }
+
+    @Test
+    public void sameAsSequential() throws IOException {
+        Merger.Merge sequential = merge(1, "sequential");
+        Merger.Merge parallel = merge(4, "parallel");
+
+        assertNotNull(parallel.getResult());
+        assertEquals(parallel.getErrors(), sequential.getErrors());
+        assertEquals(parallel.getSkippedFiles(), sequential.getSkippedFiles());
+        assertEquals(parallel.getResultTestList(), sequential.getResultTestList());
+        assertEquals(content(test_dir.resolve("parallel.xml")),
+                content(test_dir.resolve("sequential.xml")));
+        assertTrue(parallel.getBytesRead() > 0);
+        assertTrue(parallel.getMergeTime() > 0);
+    }
+
+    /**
+     * @return lines of the file except the creation time which differs
+     */
+    private static List<String> content(Path file) throws IOException {
+        return Files.readAllLines(file).stream()
+                .filter(l -> !l.contains("coverage.created."))
+                .collect(Collectors.toList());
+    }
+
+    private Merger.Merge merge(int threads, String name) throws IOException {
+        Merger merger = new Merger();
+        merger.setThreads(threads);
+        merger.setRead_scales(true);
+        merger.setBreakOnError(Merger.BreakOnError.SKIP);
+        return merger.mergeAndWrite(files.toArray(new String[0]),
+                test_dir.resolve(name + ".lst").toString(),
+                test_dir.resolve(name + ".xml").toString(), null, null);
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        Util.rmRF(test_dir);
+    }
+}
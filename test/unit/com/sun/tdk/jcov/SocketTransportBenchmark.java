@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov;
+
+import com.sun.tdk.jcov.runtime.JCovSocketSaver;
+import com.sun.tdk.jcov.runtime.PropertyFinder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares throughput of the Grabber receiving small static payloads through
+ * TCP loopback and Unix-domain socket. Not a unit test - run it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.SocketTransportBenchmark [payloads]
+ * </pre> Payloads (10 slots each) are sent one after another by a single
+ * client, so the time is dominated by connection setup.
+ */
+public class SocketTransportBenchmark {
+
+    static final int SLOTS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int payloads = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        Path dir = Files.createTempDirectory("jcov");
+        Path template = dir.resolve("template.xml");
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(
+                "com/sun/tdk/jcov/report/dataprocessor/privacy/privacy_template.xml")) {
+            Files.copy(in, template);
+        }
+        Path socket = dir.resolve("grabber.sock");
+        for (int i = 0; i < 3; ++i) {
+            run("tcp", new Server(0, false, template.toString(), dir.resolve("tcp.xml").toString(), null, null,
+                    payloads, false, false, false), "localhost", payloads);
+            run("unix", new Server(0, false, template.toString(), dir.resolve("unix.xml").toString(), null, null,
+                    payloads, false, false, false, socket.toString()), PropertyFinder.UNIX_SOCKET_PREFIX + socket, payloads);
+        }
+        try (var files = Files.list(dir)) {
+            files.forEach(p -> p.toFile().delete());
+        }
+        Files.delete(dir);
+    }
+
+    private static void run(String name, Server server, String host, int payloads) throws Exception {
+        server.start();
+        long start = System.nanoTime();
+        for (int i = 0; i < payloads; ++i) {
+            send(host, server.getPort(), "test" + i);
+        }
+        long sent = System.nanoTime();
+        server.join();
+        long merged = System.nanoTime();
+        System.out.printf("%-5s %d payloads sent in %d ms (%d/s), merged in %d ms%n", name, payloads,
+                (sent - start) / 1000000, payloads * 1000000000L / (sent - start), (merged - start) / 1000000);
+    }
+
+    private static void send(String host, int port, String test) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(JCovSocketSaver.connect(host, port)))) {
+            out.write(new byte[]{'J', 'C', 'O', 'V'});
+            out.write(JCovSocketSaver.SOCKET_SAVER_VERSION);
+            out.writeUTF("tester");
+            out.writeUTF(test);
+            out.writeUTF("");
+            out.writeBoolean(false);
+            out.writeUTF("NIY");
+            for (int i = 0; i < SLOTS; i++) {
+                JCovSocketSaver.writeVarLong(out, 1); // slot delta
+                JCovSocketSaver.writeVarLong(out, 1); // count
+            }
+            out.write(0);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument;
+
+import com.sun.tdk.jcov.Convert;
+import com.sun.tdk.jcov.data.Scale;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.MERGE;
+import com.sun.tdk.jcov.io.Reader;
+import com.sun.tdk.jcov.runtime.JCovXMLFileSaver;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class BinaryFormatTest {
+    Path test_dir;
+    Path xml;
+    Path binary;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Paths.get(System.getProperty("user.dir")).resolve("binary_format_test");
+        Util.rmRF(test_dir);
+        Files.createDirectories(test_dir);
+        xml = test_dir.resolve("template.xml");
+        binary = test_dir.resolve("template" + BinaryFormat.EXTENSION);
+        try (InputStream in = ClassLoader.getSystemResourceAsStream(
+                "com/sun/tdk/jcov/report/dataprocessor/privacy/privacy_template.xml")) {
+            Files.copy(in, xml);
+        }
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        DataRoot root = Reader.readXML(xml.toString());
+        BinaryFormat.write(root, binary.toString());
+        root.destroy();
+        assertTrue(BinaryFormat.isBinary(binary.toFile()));
+        assertFalse(BinaryFormat.isBinary(xml.toFile()));
+        assertTrue(Files.size(binary) < Files.size(xml));
+
+        Path fromXML = test_dir.resolve("from_xml.xml");
+        Path fromBinary = test_dir.resolve("from_binary.xml");
+        root = Reader.readXML(xml.toString());
+        new JCovXMLFileSaver(root, MERGE.OVERWRITE).saveResults(fromXML.toString());
+        root.destroy();
+        root = DataRoot.read(binary.toString());
+        new JCovXMLFileSaver(root, MERGE.OVERWRITE).saveResults(fromBinary.toString());
+        root.destroy();
+        assertEquals(lines(fromBinary), lines(fromXML));
+    }
+
+    @Test
+    public void scales() throws Exception {
+        DataRoot root = Reader.readXML(xml.toString(), true, null);
+        root.createScales();
+        root.addScales();
+        Path scaled = test_dir.resolve("scaled" + BinaryFormat.EXTENSION);
+        BinaryFormat.write(root, scaled.toString());
+        // Scale encoding is a part of DataRoot sent to Grabber - the size is not written
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(wire)) {
+            scale(root).writeObject(out);
+        }
+        assertEquals(wire.size(), 2 + 1);
+        root.destroy();
+
+        root = BinaryFormat.read(scaled.toString(), true, null);
+        assertEquals(scale(root).size(), 2);
+        root.destroy();
+    }
+
+    private static Scale scale(DataRoot root) {
+        for (DataClass c : root.getClasses()) {
+            for (DataMethod m : c.getMethods()) {
+                for (DataBlock b : m) {
+                    if (b.getScale() != null) {
+                        return b.getScale();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<String> lines(Path xml) throws IOException {
+        // the files can be saved in different seconds
+        return Files.readAllLines(xml).stream()
+                .filter(l -> !l.contains("coverage.created"))
+                .collect(Collectors.toList());
+    }
+
+    @Test(dependsOnMethods = "roundTrip")
+    public void lazyRead() throws IOException {
+        try (BinaryFormat.Mapped mapped = new BinaryFormat.Mapped(binary.toString(), false)) {
+            List<String> names = mapped.getClassNames();
+            assertFalse(names.isEmpty());
+            assertTrue(mapped.getRoot().getClasses().isEmpty());
+            String name = names.get(names.size() - 1);
+            DataClass dc = mapped.readClass(name);
+            assertNotNull(dc);
+            assertEquals(dc.getFullname(), name);
+            assertEquals(mapped.getRoot().getClasses().size(), 1);
+            assertNull(mapped.readClass("no/such/Class"));
+            mapped.getRoot().destroy();
+        }
+    }
+
+    @Test(dependsOnMethods = "roundTrip")
+    public void convert() throws Exception {
+        Path converted = test_dir.resolve("converted.xml");
+        assertEquals(new Convert().run(new String[]{binary.toString(), converted.toString()}), 0);
+        assertFalse(BinaryFormat.isBinary(converted.toFile()));
+        DataRoot root = Reader.readXML(converted.toString());
+        try (BinaryFormat.Mapped mapped = new BinaryFormat.Mapped(binary.toString(), false)) {
+            assertEquals(root.getClasses().size(), mapped.getClassNames().size());
+        }
+        root.destroy();
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        Util.rmRF(test_dir);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class DataPackageTest {
+    DataRoot root;
+    DataPackage pack;
+
+    @BeforeMethod
+    public void setup() {
+        root = new DataRoot("", false, new InstrumentationParams(false, false, false, false, null,
+                new String[0], new String[0], new String[0], new String[0],
+                InstrumentationOptions.InstrumentationMode.METHOD));
+        pack = root.findPackage("pkg", XmlNames.NO_MODULE);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        root.destroy();
+    }
+
+    private DataClass newClass(String name) {
+        return new DataClass(root.rootId(), "pkg/" + name, XmlNames.NO_MODULE, 0, false);
+    }
+
+    @Test
+    public void indexFollowsChanges() {
+        DataClass a = newClass("A");
+        DataClass b = newClass("B");
+        pack.addClass(a);
+        assertSame(pack.findClass("A"), a);
+        assertNull(pack.findClass("B"));
+
+        // changes made through the list are seen too
+        pack.getClasses().add(b);
+        assertSame(pack.findClass("B"), b);
+        pack.getClasses().remove(a);
+        assertNull(pack.findClass("A"));
+
+        assertTrue(pack.removeClass("B"));
+        assertFalse(pack.removeClass("B"));
+        assertNull(pack.findClass("B"));
+        assertTrue(pack.getClasses().isEmpty());
+    }
+
+    @Test
+    public void indexKeepsFirstOfName() {
+        DataClass a1 = newClass("A");
+        DataClass a2 = newClass("A");
+        DataClass b = newClass("B");
+        pack.addClass(a1);
+        pack.getClasses().listIterator().add(b);
+        pack.addClass(a2);
+        assertSame(pack.findClass("A"), a1);
+        assertSame(pack.findClass("B"), b);
+
+        pack.sort();
+        assertSame(pack.findClass("A"), a1);
+        assertTrue(pack.removeClass(a1));
+        assertSame(pack.findClass("A"), a2);
+        assertTrue(pack.removeClass("A"));
+        assertNull(pack.findClass("A"));
+        assertSame(pack.findClass("B"), b);
+    }
+
+    @Test
+    public void mergeUsesSignatures() {
+        DataClass a = newClass("A");
+        new DataMethodEntryOnly(a, 1, "m", "()V", null, null, 0, 1);
+        new DataMethodEntryOnly(a, 1, "m", "(I)V", null, null, 1, 2);
+        DataClass other = newClass("A");
+        new DataMethodEntryOnly(other, 1, "m", "(I)V", null, null, 2, 10);
+        new DataMethodEntryOnly(other, 1, "m", "()V", null, null, 3, 20);
+
+        a.merge(other);
+        assertEquals(a.getMethods().get(0).getCount(), 21);
+        assertEquals(a.getMethods().get(1).getCount(), 12);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument;
+
+import com.sun.tdk.jcov.io.Reader;
+
+/**
+ * Measures DataRoot.checkCompatibility(), merge() and mergeOnSignatures() on
+ * two big DataRoots. Not a unit test - run it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.instrument.MergeBenchmark [jdk1.xml jdk2.xml]
+ * </pre> Without arguments two synthetic JDK sized templates are generated.
+ * Full JDK templates can be created with TmplGen or JREInstr.
+ */
+public class MergeBenchmark {
+
+    static final int PACKAGES = 40;
+    static final int CLASSES = 500; // per package, ~20000 classes as in JDK
+    static final int METHODS = 20;
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < 3; ++i) {
+            DataRoot first = args.length == 2 ? Reader.readXML(args[0], false, null) : generate(false);
+            DataRoot second = args.length == 2 ? Reader.readXML(args[1], false, null) : generate(true);
+            DataRoot third = args.length == 2 ? Reader.readXML(args[1], false, null) : generate(true);
+
+            long start = System.nanoTime();
+            DataRoot.CompatibilityCheckResult res = first.checkCompatibility(second, 0, false);
+            long checked = System.nanoTime();
+            first.merge(second, true);
+            long merged = System.nanoTime();
+            first.mergeOnSignatures(third, true);
+            long sigmerged = System.nanoTime();
+
+            System.out.printf("%d classes: checkCompatibility %d ms (%d errors), merge %d ms, mergeOnSignatures %d ms%n",
+                    first.getClasses().size(), (checked - start) / 1000000, res.errors,
+                    (merged - checked) / 1000000, (sigmerged - merged) / 1000000);
+            first.destroy();
+            second.destroy();
+            third.destroy();
+        }
+    }
+
+    /**
+     * @param reverse generate classes and methods in reverse order as they
+     * are stored in the order of loading in dynamic data
+     */
+    private static DataRoot generate(boolean reverse) {
+        DataRoot root = new DataRoot("", false, new InstrumentationParams(false, false, false, false, null,
+                new String[0], new String[0], new String[0], new String[0],
+                InstrumentationOptions.InstrumentationMode.METHOD));
+        for (int p = 0; p < PACKAGES; ++p) {
+            for (int i = 0; i < CLASSES; ++i) {
+                int c = reverse ? CLASSES - i - 1 : i;
+                DataClass dc = new DataClass(root.rootId(), "pkg" + p + "/Class" + c, XmlNames.NO_MODULE, 0, false);
+                dc.setInfo("public", null, "java/lang/Object", null);
+                for (int j = 0; j < METHODS; ++j) {
+                    int m = reverse ? METHODS - j - 1 : j;
+                    new DataMethodEntryOnly(dc, 1, "method" + m, "(I)V", null, null, (p * CLASSES + c) * METHODS + m, m);
+                }
+                root.addClass(dc);
+            }
+        }
+        return root;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2025, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.ABSTRACTMODE;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.InstrumentationMode;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import com.sun.tdk.jcov.instrument.Util;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class ClassCacheTest {
+    static final String CLASS = "java/util/AbstractList";
+    Path test_dir;
+    InstrumentationParams params;
+    byte[] original;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Paths.get(System.getProperty("user.dir")).resolve("class_cache_test");
+        Util.rmRF(test_dir);
+        params = new InstrumentationParams(true, false, false, true, ABSTRACTMODE.NONE,
+                null, null, null, null, InstrumentationMode.BLOCK);
+        try (InputStream in = Object.class.getResourceAsStream("/" + CLASS + ".class")) {
+            original = in.readAllBytes();
+        }
+    }
+
+    @Test
+    public void reuseWithNewSlots() throws Exception {
+        ClassMorph first = new ClassMorph(null, new DataRoot(params), params);
+        first.setCache(new ClassCache(test_dir.toFile(), 1 << 20, params));
+        byte[] instrumented = first.morph(original.clone(), null, null, "java.base");
+        assertNotNull(instrumented);
+        assertNotNull(new ClassCache(test_dir.toFile(), 1 << 20, params)
+                .load(CLASS, ClassCache.checksum(original), new DataRoot(params)));
+
+        ClassMorph second = new ClassMorph(null, new DataRoot(params), params);
+        second.setCache(new ClassCache(test_dir.toFile(), 1 << 20, params));
+        byte[] cached = second.morph(original.clone(), null, null, "java.base");
+        assertNotNull(cached);
+
+        DataClass dc1 = first.getRoot().getClasses().get(0);
+        DataClass dc2 = second.getRoot().getClasses().get(0);
+        assertEquals(dc2.getModuleName(), "java.base");
+        assertEquals(dc2.getMethods().size(), dc1.getMethods().size());
+        Set<Integer> slots1 = slots(dc1);
+        Set<Integer> slots2 = slots(dc2);
+        assertEquals(slots2.size(), slots1.size());
+        for (Integer s : slots2) {
+            assertFalse(slots1.contains(s), "slot " + s + " is reused");
+        }
+
+        Set<Integer> probes1 = probes(instrumented);
+        Set<Integer> probes2 = probes(cached);
+        assertEquals(probes2.size(), probes1.size());
+        assertTrue(slots1.containsAll(probes1));
+        assertTrue(slots2.containsAll(probes2));
+    }
+
+    @Test
+    public void otherParamsNotUsed() throws Exception {
+        ClassMorph morph = new ClassMorph(null, new DataRoot(params), params);
+        morph.setCache(new ClassCache(test_dir.toFile(), 1 << 20, params));
+        morph.morph(original.clone(), null, null, "java.base");
+
+        InstrumentationParams method = new InstrumentationParams(true, false, false, true, ABSTRACTMODE.NONE,
+                null, null, null, null, InstrumentationMode.METHOD);
+        assertEquals(new ClassCache(test_dir.toFile(), 1 << 20, method)
+                .load(CLASS, ClassCache.checksum(original), new DataRoot(method)), null);
+    }
+
+    @Test
+    public void classpathFramesNotCached() throws Exception {
+        Path classes = Files.createTempDirectory("class_cache_classes");
+        try {
+            Path src = classes.resolve("Pick.java");
+            Files.writeString(src, "package cache;\n" +
+                    "public class Pick {\n" +
+                    "    static Object pick(boolean a) {\n" +
+                    "        return a ? new A() : new B();\n" +
+                    "    }\n" +
+                    "}\n" +
+                    "class A {}\n" +
+                    "class B {}\n");
+            assertEquals(ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                    "-d", classes.toString(), src.toString()), 0);
+            byte[] pick = Files.readAllBytes(classes.resolve("cache/Pick.class"));
+
+            // frames merge cache/A and cache/B - their hierarchy is not a part of the key
+            try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, null)) {
+                ClassMorph morph = new ClassMorph(null, new DataRoot(params), params);
+                morph.setCache(new ClassCache(test_dir.toFile(), 1 << 20, params));
+                assertNotNull(morph.morph(pick.clone(), loader, null, null));
+            }
+            assertEquals(new ClassCache(test_dir.toFile(), 1 << 20, params)
+                    .load("cache/Pick", ClassCache.checksum(pick), new DataRoot(params)), null);
+        } finally {
+            Util.rmRF(classes);
+        }
+    }
+
+    @Test(dependsOnMethods = {"reuseWithNewSlots", "otherParamsNotUsed"})
+    public void evict() throws Exception {
+        File dir = test_dir.toFile();
+        assertTrue(entries(dir) > 0);
+        new ClassCache(dir, 1, params);
+        assertEquals(entries(dir), 0);
+    }
+
+    private static int entries(File dir) {
+        return dir.list((d, name) -> name.endsWith(ClassCache.EXTENSION)).length;
+    }
+
+    private static Set<Integer> slots(DataClass dc) {
+        Set<Integer> slots = new HashSet<>();
+        for (DataMethod m : dc.getMethods()) {
+            for (DataBlock b : m) {
+                slots.add(b.getId());
+            }
+        }
+        return slots;
+    }
+
+    private static Set<Integer> probes(byte[] classfile) {
+        Set<Integer> probes = new HashSet<>();
+        new ClassReader(classfile).accept(new ClassVisitor(ASMUtils.ASM_API_VERSION) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                return new MethodVisitor(ASMUtils.ASM_API_VERSION) {
+                    Object ldc;
+
+                    @Override
+                    public void visitLdcInsn(Object value) {
+                        ldc = value;
+                    }
+
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                        if (opcode == Opcodes.INVOKESTATIC && name.equals("hit") && desc.equals("(I)V")) {
+                            probes.add((Integer) ldc);
+                        }
+                        ldc = null;
+                    }
+                };
+            }
+        }, 0);
+        return probes;
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        Util.rmRF(test_dir);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.ABSTRACTMODE;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.InstrumentationMode;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import com.sun.tdk.jcov.instrument.Util;
+import com.sun.tdk.jcov.runtime.Collect;
+import com.sun.tdk.jcov.runtime.JCovSaver;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import javax.tools.ToolProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ClassCountsTest {
+    static final String[] CLASSES = {"counts.Work", "counts.Step", "counts.Plain"};
+    static final String[] SOURCES = {
+            "package counts;\n" +
+            "public class Work implements Step {\n" +
+            "    static final long[] SQUARES = new long[10];\n" +
+            "    static {\n" +
+            "        for (int i = 0; i < SQUARES.length; i++) {\n" +
+            "            SQUARES[i] = i * i;\n" +
+            "        }\n" +
+            "    }\n" +
+            "    public static long run(int n) {\n" +
+            "        long sum = 0;\n" +
+            "        Work w = new Work();\n" +
+            "        for (int i = 0; i < n; i++) {\n" +
+            "            sum += i % 3 == 0 ? SQUARES[i % 10] : w.step(i);\n" +
+            "            sum += Plain.abs(i - n / 2);\n" +
+            "        }\n" +
+            "        return sum;\n" +
+            "    }\n" +
+            "}\n",
+            "package counts;\n" +
+            "public interface Step {\n" +
+            "    default long step(int i) {\n" +
+            "        return i % 2 == 0 ? i : -i;\n" +
+            "    }\n" +
+            "}\n",
+            "package counts;\n" +
+            "public class Plain {\n" +
+            "    static int abs(int i) {\n" +
+            "        return i < 0 ? -i : i;\n" +
+            "    }\n" +
+            "}\n"
+    };
+    Path test_dir;
+    Map<String, byte[]> original = new HashMap<>();
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Files.createTempDirectory("class_counts_test");
+        List<String> args = new ArrayList<>(List.of("-d", test_dir.toString()));
+        for (int i = 0; i < CLASSES.length; i++) {
+            Path src = test_dir.resolve(CLASSES[i].substring(CLASSES[i].indexOf('.') + 1) + ".java");
+            Files.writeString(src, SOURCES[i]);
+            args.add(src.toString());
+        }
+        assertEquals(ToolProvider.getSystemJavaCompiler().run(null, null, null, args.toArray(new String[0])), 0);
+        for (String c : CLASSES) {
+            original.put(c, Files.readAllBytes(test_dir.resolve(c.replace('.', '/') + ".class")));
+        }
+    }
+
+    @DataProvider
+    public Object[][] modes() {
+        return new Object[][]{
+            {InstrumentationMode.METHOD, false, false},
+            {InstrumentationMode.BLOCK, false, false},
+            {InstrumentationMode.BRANCH, false, false},
+            {InstrumentationMode.BLOCK, true, false},
+            {InstrumentationMode.BRANCH, true, false},
+            {InstrumentationMode.BRANCH, false, true},
+            {InstrumentationMode.BRANCH, true, true}
+        };
+    }
+
+    @Test(dataProvider = "modes")
+    public void sameCounts(InstrumentationMode mode, boolean hitOnly, boolean inline) throws Exception {
+        InstrumentationParams call = params(mode).setHitOnly(hitOnly);
+        ClassMorph callMorph = new ClassMorph(null, new DataRoot(call), call);
+        Map<String, byte[]> callClasses = morph(callMorph);
+
+        InstrumentationParams own = params(mode).setHitOnly(hitOnly).setInlineProbes(inline).setClassCounts(true);
+        ClassMorph ownMorph = new ClassMorph(null, new DataRoot(own), own);
+        Map<String, byte[]> ownClasses = morph(ownMorph);
+
+        for (byte[] classfile : ownClasses.values()) {
+            assertEquals(calls(classfile), List.of("registerCounts"));
+        }
+        assertTrue(hasCountsField(ownClasses.get("counts.Plain")));
+
+        Collect.saveResults();
+        assertEquals(run(ownClasses), run(callClasses));
+        List<List<String>> counts = new ArrayList<>();
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+                counts.add(counts(callMorph.getRoot()));
+                counts.add(counts(ownMorph.getRoot()));
+            }
+        });
+        Collect.saveResults();
+
+        assertEquals(counts.get(1), counts.get(0));
+        assertTrue(counts.get(0).stream().anyMatch(s -> s.startsWith("counts/Step") && !s.endsWith("=0")));
+        assertTrue(counts.get(0).stream().anyMatch(s -> s.contains("<clinit>") && !s.endsWith("=0")));
+    }
+
+    private static InstrumentationParams params(InstrumentationMode mode) {
+        return new InstrumentationParams(true, false, false, false, ABSTRACTMODE.NONE,
+                null, null, new String[]{".*"}, null, mode);
+    }
+
+    private Map<String, byte[]> morph(ClassMorph morph) throws Exception {
+        Map<String, byte[]> classes = new HashMap<>();
+        for (String c : CLASSES) {
+            classes.put(c, morph.morph(original.get(c).clone(), null, null));
+        }
+        return classes;
+    }
+
+    private static Object run(Map<String, byte[]> classes) throws Exception {
+        ClassLoader loader = new ClassLoader(ClassCountsTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] classfile = classes.get(name);
+                if (classfile != null) {
+                    return defineClass(name, classfile, 0, classfile.length);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        };
+        return loader.loadClass(CLASSES[0]).getMethod("run", int.class).invoke(null, 50);
+    }
+
+    private static List<String> counts(DataRoot root) {
+        List<String> counts = new ArrayList<>();
+        for (DataClass dc : root.getClasses()) {
+            for (DataMethod m : dc.getMethods()) {
+                for (DataBlock b : m) {
+                    counts.add(dc.getFullname() + "." + m.getName() + m.getVmSignature() + " "
+                            + b.getClass().getSimpleName() + " " + b.startBCI() + "=" + b.getCount());
+                }
+            }
+        }
+        counts.sort(null);
+        return counts;
+    }
+
+    /**
+     * @return names of JCov runtime methods called by the class
+     */
+    private static List<String> calls(byte[] classfile) {
+        List<String> calls = new ArrayList<>();
+        new ClassReader(classfile).accept(new ClassVisitor(ASMUtils.ASM_API_VERSION) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                return new MethodVisitor(ASMUtils.ASM_API_VERSION) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                        if (opcode == Opcodes.INVOKESTATIC && owner.startsWith("com/sun/tdk/jcov/runtime/")) {
+                            calls.add(name);
+                        }
+                    }
+                };
+            }
+        }, 0);
+        return calls;
+    }
+
+    private static boolean hasCountsField(byte[] classfile) {
+        boolean[] found = new boolean[1];
+        new ClassReader(classfile).accept(new ClassVisitor(ASMUtils.ASM_API_VERSION) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+                found[0] |= name.equals(ClassCountsAdapter.FIELD) && (access & Opcodes.ACC_SYNTHETIC) != 0;
+                return null;
+            }
+        }, 0);
+        return found[0];
+    }
+
+    @AfterMethod
+    public void resetSaver() {
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+            }
+        });
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        Util.rmRF(test_dir);
+    }
+}
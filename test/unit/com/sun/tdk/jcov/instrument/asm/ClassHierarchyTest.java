@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2025, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.Util;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ClassHierarchyTest {
+    static final String[] CLASSES = {
+            "java/util/ArrayList", "java/util/LinkedList", "java/util/HashSet", "java/util/TreeSet",
+            "java/util/concurrent/CopyOnWriteArrayList", "java/util/ArrayDeque", "java/lang/StringBuilder",
+            "java/lang/StringBuffer", "java/lang/Integer", "java/lang/Long", "java/util/HashMap",
+            "java/util/concurrent/ConcurrentHashMap", "java/io/FileInputStream", "java/io/ByteArrayInputStream",
+            "java/lang/IllegalStateException", "java/lang/NumberFormatException"};
+    Path test_dir;
+    ClassHierarchy saved;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Paths.get(System.getProperty("user.dir")).resolve("class_hierarchy_test");
+        Util.rmRF(test_dir);
+        test_dir.toFile().mkdirs();
+        saved = OverriddenClassWriter.getHierarchy();
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        OverriddenClassWriter.setHierarchy(saved);
+        Util.rmRF(test_dir);
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        ClassHierarchy h = new ClassHierarchy();
+        h.setDescription("runtime");
+        h.addRuntime();
+        assertTrue(h.size() > 1000);
+        File file = test_dir.resolve("hierarchy").toFile();
+        h.save(file);
+        ClassHierarchy loaded = ClassHierarchy.load(file);
+        assertEquals(loaded.getDescription(), "runtime");
+        assertEquals(loaded.size(), h.size());
+        assertEquals(loaded.get("java/util/ArrayList").superName, "java/util/AbstractList");
+        assertEquals(loaded.get("java/lang/Object").superName, null);
+    }
+
+    @Test
+    public void classesAreNotRead() {
+        ClassHierarchy h = new ClassHierarchy();
+        h.put("a/J", "java/lang/Object", null);
+        h.put("a/I", "java/lang/Object", new String[]{"a/J"});
+        h.put("a/A", "java/lang/Object", new String[]{"a/I"});
+        h.put("a/B", "a/A", null);
+        h.put("a/C", "a/A", null);
+        OverriddenClassWriter.setHierarchy(h);
+        assertTrue(OverriddenClassWriter.isAssignableFrom("a/J", "a/B", null));
+        assertFalse(OverriddenClassWriter.isAssignableFrom("a/B", "a/A", null));
+        assertEquals(OverriddenClassWriter.getCommonSuperClassAlt("a/B", "a/C", null), "a/A");
+    }
+
+    @Test
+    public void concurrentLookups() throws Exception {
+        ClassLoader loader = ClassLoader.getSystemClassLoader();
+        OverriddenClassWriter.setHierarchy(new ClassHierarchy());
+        List<String> expected = commonSuperClasses(loader);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int round = 0; round < 5; round++) {
+                OverriddenClassWriter.setHierarchy(new ClassHierarchy());
+                List<Future<List<String>>> results = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    results.add(executor.submit(() -> commonSuperClasses(loader)));
+                }
+                for (Future<List<String>> r : results) {
+                    assertEquals(r.get(), expected);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(expected.get(1), "java/util/AbstractList");
+    }
+
+    private static List<String> commonSuperClasses(ClassLoader loader) {
+        List<String> res = new ArrayList<>();
+        for (String c1 : CLASSES) {
+            for (String c2 : CLASSES) {
+                res.add(OverriddenClassWriter.getCommonSuperClassAlt(c1, c2, loader));
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2025, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Recomputes stack map frames of all classes of a module of the running JDK
+ * with OverriddenClassWriter. The hierarchy is either read from classes on
+ * demand or prebuilt from jrt:/ and loaded from a file. Not a unit test - run
+ * it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.instrument.asm.FrameComputationBenchmark [module [threads]]
+ * </pre> Default module is java.base, default number of threads is the number
+ * of processors.
+ */
+public class FrameComputationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String module = args.length > 0 ? args[0] : "java.base";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        Path dir = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules", module);
+        List<byte[]> classes = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.filter(p -> p.toString().endsWith(".class")
+                    && !p.endsWith("module-info.class")).collect(Collectors.toList())) {
+                classes.add(Files.readAllBytes(p));
+            }
+        }
+
+        File file = File.createTempFile("hierarchy", ".jcch");
+        try {
+            long start = System.nanoTime();
+            ClassHierarchy prebuilt = new ClassHierarchy();
+            prebuilt.addRuntime();
+            prebuilt.save(file);
+            System.out.printf("jrt:/ hierarchy of %d classes built and saved in %d ms%n",
+                    prebuilt.size(), (System.nanoTime() - start) / 1000000);
+
+            for (int i = 0; i < 3; ++i) {
+                for (int t : new int[]{1, threads}) {
+                    OverriddenClassWriter.setHierarchy(new ClassHierarchy());
+                    run(classes, t, "on demand");
+
+                    start = System.nanoTime();
+                    OverriddenClassWriter.setHierarchy(ClassHierarchy.load(file));
+                    long loaded = System.nanoTime();
+                    run(classes, t, String.format("prebuilt (loaded in %d ms)", (loaded - start) / 1000000));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void run(List<byte[]> classes, int threads, String hierarchy) throws Exception {
+        ClassLoader loader = ClassLoader.getSystemClassLoader();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int c = next.getAndIncrement(); c < classes.size(); c = next.getAndIncrement()) {
+                        try {
+                            ClassReader cr = new ClassReader(classes.get(c));
+                            ClassWriter cw = new OverriddenClassWriter(null, ClassWriter.COMPUTE_FRAMES, loader);
+                            cr.accept(cw, 0);
+                            cw.toByteArray();
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        System.out.printf("%d classes, %d threads, %s hierarchy: %d ms (%d failed)%n", classes.size(), threads,
+                hierarchy, (System.nanoTime() - start) / 1000000, failed.get());
+    }
+}
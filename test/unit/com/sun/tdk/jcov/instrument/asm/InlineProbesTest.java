@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.ABSTRACTMODE;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.InstrumentationMode;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import com.sun.tdk.jcov.instrument.Util;
+import com.sun.tdk.jcov.runtime.Collect;
+import com.sun.tdk.jcov.runtime.JCovSaver;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import javax.tools.ToolProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class InlineProbesTest {
+    static final String CLASS = "inline.Work";
+    static final String SOURCE = "package inline;\n" +
+            "public class Work {\n" +
+            "    long sum;\n" +
+            "    public Work(int n) {\n" +
+            "        this(n > 0 ? n : -n, 0);\n" +
+            "    }\n" +
+            "    private Work(int n, int unused) {\n" +
+            "        for (int i = 0; i < n; i++) {\n" +
+            "            if (i % 3 == 0) {\n" +
+            "                sum += i;\n" +
+            "            }\n" +
+            "            try {\n" +
+            "                sum += 100 / (i % 7);\n" +
+            "            } catch (ArithmeticException e) {\n" +
+            "                sum = -sum;\n" +
+            "            }\n" +
+            "        }\n" +
+            "    }\n" +
+            "    public static long run(int n) {\n" +
+            "        return new Work(n).sum + new Work(-n).sum;\n" +
+            "    }\n" +
+            "}\n";
+    static final String LOOP_CLASS = "inline.Loop";
+    static final String LOOP_SOURCE = "package inline;\n" +
+            "public class Loop {\n" +
+            "    public static long run(int n, Runnable save) {\n" +
+            "        long sum = 0;\n" +
+            "        for (int i = 0; i < n; i++) {\n" +
+            "            if (i % 2 == 0) {\n" +
+            "                sum += i;\n" +
+            "            }\n" +
+            "            if (i % 100 == 99) {\n" +
+            "                save.run();\n" +
+            "            }\n" +
+            "            if (i == n - 1) {\n" +
+            "                sum = -sum;\n" +
+            "            }\n" +
+            "        }\n" +
+            "        return sum;\n" +
+            "    }\n" +
+            "}\n";
+    Path test_dir;
+    byte[] original;
+    byte[] loop;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Files.createTempDirectory("inline_probes_test");
+        Path src = test_dir.resolve("Work.java");
+        Files.writeString(src, SOURCE);
+        assertEquals(ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", test_dir.toString(), src.toString()), 0);
+        original = Files.readAllBytes(test_dir.resolve("inline").resolve("Work.class"));
+        Path loopSrc = test_dir.resolve("Loop.java");
+        Files.writeString(loopSrc, LOOP_SOURCE);
+        assertEquals(ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", test_dir.toString(), loopSrc.toString()), 0);
+        loop = Files.readAllBytes(test_dir.resolve("inline").resolve("Loop.class"));
+    }
+
+    @DataProvider
+    public Object[][] modes() {
+        return new Object[][]{
+            {InstrumentationMode.METHOD, false},
+            {InstrumentationMode.BLOCK, false},
+            {InstrumentationMode.BRANCH, false},
+            {InstrumentationMode.BLOCK, true},
+            {InstrumentationMode.BRANCH, true}
+        };
+    }
+
+    @Test(dataProvider = "modes")
+    public void sameCounts(InstrumentationMode mode, boolean hitOnly) throws Exception {
+        InstrumentationParams call = params(mode).setHitOnly(hitOnly);
+        ClassMorph callMorph = new ClassMorph(null, new DataRoot(call), call);
+        byte[] callClass = callMorph.morph(original.clone(), null, null);
+
+        InstrumentationParams inline = params(mode).setHitOnly(hitOnly).setInlineProbes(true);
+        ClassMorph inlineMorph = new ClassMorph(null, new DataRoot(inline), inline);
+        byte[] inlineClass = inlineMorph.morph(original.clone(), null, null);
+
+        assertEquals(run(inlineClass), run(callClass));
+        List<String> callCounts = counts(callMorph.getRoot().getClasses().get(0));
+        assertEquals(counts(inlineMorph.getRoot().getClasses().get(0)), callCounts);
+        assertTrue(callCounts.stream().anyMatch(s -> !s.endsWith("=0")));
+        assertEquals(calls(inlineClass), 0);
+    }
+
+    /**
+     * A method keeps the array it was entered with while results are saved
+     * and the storage grows - its hits must get into the saves anyway.
+     */
+    @Test(dataProvider = "hitOnly")
+    public void savedWhileRunning(boolean hitOnly) throws Exception {
+        int slots = Collect.slotCount();
+        Collect.SLOTS = slots + 1000; // keep the grown storage small
+        Collect.enableCounts();
+        try {
+            checkSavedWhileRunning(hitOnly);
+        } finally {
+            Collect.SLOTS = Collect.MAX_SLOTS;
+            Collect.enableCounts();
+            Collect.setSlot(slots);
+        }
+    }
+
+    private void checkSavedWhileRunning(boolean hitOnly) throws Exception {
+        InstrumentationParams call = params(InstrumentationMode.BLOCK).setHitOnly(hitOnly);
+        ClassMorph callMorph = new ClassMorph(null, new DataRoot(call), call);
+        byte[] callClass = callMorph.morph(loop.clone(), null, null);
+
+        InstrumentationParams inline = params(InstrumentationMode.BLOCK).setHitOnly(hitOnly).setInlineProbes(true);
+        ClassMorph inlineMorph = new ClassMorph(null, new DataRoot(inline), inline);
+        byte[] inlineClass = inlineMorph.morph(loop.clone(), null, null);
+
+        Map<String, Long> callCounts = new LinkedHashMap<>();
+        Map<String, Long> inlineCounts = new LinkedHashMap<>();
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+                add(callCounts, callMorph.getRoot().getClasses().get(0), hitOnly);
+                add(inlineCounts, inlineMorph.getRoot().getClasses().get(0), hitOnly);
+            }
+        });
+        Collect.saveResults();
+        assertEquals(runLoop(inlineClass), runLoop(callClass));
+        Collect.saveResults();
+
+        assertEquals(inlineCounts, callCounts);
+        assertTrue(callCounts.values().stream().anyMatch(c -> c > (hitOnly ? 0 : 1)));
+        assertTrue(callCounts.entrySet().stream().filter(e -> e.getKey().startsWith("run"))
+                .allMatch(e -> e.getValue() > 0), "the last iteration runs after the storage grew");
+    }
+
+    @DataProvider
+    public Object[][] hitOnly() {
+        return new Object[][]{{false}, {true}};
+    }
+
+    /**
+     * Adds the counts being saved, hit-only ones are added as 0/1.
+     */
+    private static void add(Map<String, Long> sums, DataClass dc, boolean hitOnly) {
+        for (DataMethod m : dc.getMethods()) {
+            for (DataBlock b : m) {
+                String key = m.getName() + m.getVmSignature() + " " + b.getClass().getSimpleName() + " " + b.startBCI();
+                sums.merge(key, hitOnly ? Math.min(b.getCount(), 1) : b.getCount(),
+                        hitOnly ? Math::max : Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Runs the loop saving results every 100 iterations, the storage grows
+     * before the third save.
+     */
+    private static Object runLoop(byte[] classfile) throws Exception {
+        int[] saves = new int[1];
+        Runnable save = () -> {
+            if (++saves[0] == 3) {
+                long[] counts = Collect.counts();
+                while (Collect.counts() == counts) {
+                    Collect.newSlot();
+                }
+            }
+            Collect.saveResults();
+        };
+        return load(LOOP_CLASS, classfile).getMethod("run", int.class, Runnable.class).invoke(null, 1000, save);
+    }
+
+    private static InstrumentationParams params(InstrumentationMode mode) {
+        return new InstrumentationParams(true, false, false, false, ABSTRACTMODE.NONE,
+                null, null, new String[]{".*"}, null, mode);
+    }
+
+    private static Object run(byte[] classfile) throws Exception {
+        return load(CLASS, classfile).getMethod("run", int.class).invoke(null, 50);
+    }
+
+    private static Class<?> load(String className, byte[] classfile) throws Exception {
+        ClassLoader loader = new ClassLoader(InlineProbesTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                if (name.equals(className)) {
+                    return defineClass(name, classfile, 0, classfile.length);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        };
+        return loader.loadClass(className);
+    }
+
+    private static List<String> counts(DataClass dc) {
+        List<String> counts = new ArrayList<>();
+        for (DataMethod m : dc.getMethods()) {
+            for (DataBlock b : m) {
+                counts.add(m.getName() + m.getVmSignature() + " " + b.getClass().getSimpleName() + " "
+                        + b.startBCI() + "=" + b.getCount());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return number of calls to JCov runtime
+     */
+    private static int calls(byte[] classfile) {
+        int[] calls = new int[1];
+        new ClassReader(classfile).accept(new ClassVisitor(ASMUtils.ASM_API_VERSION) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                return new MethodVisitor(ASMUtils.ASM_API_VERSION) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                        if (opcode == Opcodes.INVOKESTATIC && owner.startsWith("com/sun/tdk/jcov/runtime/")) {
+                            calls[0]++;
+                        }
+                    }
+                };
+            }
+        }, 0);
+        return calls[0];
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+            }
+        });
+        Util.rmRF(test_dir);
+    }
+}
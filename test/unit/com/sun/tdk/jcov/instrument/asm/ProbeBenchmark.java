@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.ABSTRACTMODE;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.InstrumentationMode;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import com.sun.tdk.jcov.instrument.Util;
+
+import javax.tools.ToolProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Measures overhead of probe styles: Collect.hit() calls, inlined counts
+ * array updates and hit-only stores, with and without inlining. Runs a small
+ * method and a large one the JIT doesn't inline calls in. Not a unit test - run
+ * it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.instrument.asm.ProbeBenchmark [mode [iterations]]
+ * </pre> Default mode is branch, default number of iterations is 2000000.
+ */
+public class ProbeBenchmark {
+
+    static final String[] METHODS = {"small", "large"};
+
+    public static void main(String[] args) throws Exception {
+        InstrumentationMode mode = InstrumentationMode.fromString(args.length > 0 ? args[0] : "branch");
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        Path dir = Files.createTempDirectory("probe_benchmark");
+        try {
+            for (String method : METHODS) {
+                byte[] original = compile(dir, method);
+                run(method, "none", original, iterations);
+                for (boolean hitOnly : new boolean[]{false, true}) {
+                    for (boolean inline : new boolean[]{false, true}) {
+                        InstrumentationParams params = new InstrumentationParams(true, false, false, false,
+                                ABSTRACTMODE.NONE, null, null, new String[]{".*"}, null, mode)
+                                .setHitOnly(hitOnly).setInlineProbes(inline);
+                        ClassMorph morph = new ClassMorph(null, new DataRoot(params), params);
+                        byte[] instrumented = morph.morph(original.clone(), null, null);
+                        run(method, (hitOnly ? "hit-only " : "") + (inline ? "inline" : "call"), instrumented,
+                                iterations);
+                    }
+                }
+            }
+        } finally {
+            Util.rmRF(dir);
+        }
+    }
+
+    private static void run(String method, String style, byte[] classfile, int iterations) throws Exception {
+        LongUnaryOperator work = (LongUnaryOperator) load(classfile).getConstructor().newInstance();
+        long best = Long.MAX_VALUE;
+        long result = 0;
+        for (int i = 0; i < 5; ++i) {
+            long start = System.nanoTime();
+            for (int j = 0; j < iterations; ++j) {
+                result += work.applyAsLong(j);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%s method, %-16s %8.2f ns/op (%d)%n", method, style + ":",
+                (double) best / iterations, result);
+    }
+
+    private static Class<?> load(byte[] classfile) throws Exception {
+        return new ClassLoader(ProbeBenchmark.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                if (name.equals("probes.Work")) {
+                    return defineClass(name, classfile, 0, classfile.length);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        }.loadClass("probes.Work");
+    }
+
+    /**
+     * The small method has a loop and a couple of branches. The large one is a
+     * chain of branches longer than the JIT inlining limits, but short enough
+     * to be compiled when instrumented (see -XX:HugeMethodLimit).
+     */
+    private static byte[] compile(Path dir, String method) throws Exception {
+        StringBuilder body = new StringBuilder();
+        if (method.equals("small")) {
+            body.append("        long r = x;\n"
+                    + "        for (int i = 0; i < 8; i++) {\n"
+                    + "            if ((r & 1) == 0) r += i; else r ^= i;\n"
+                    + "        }\n"
+                    + "        return r;\n");
+        } else {
+            body.append("        long r = x;\n");
+            for (int i = 0; i < 60; ++i) {
+                body.append("        if ((r & ").append(1L << (i % 16)).append("L) == 0) r += ").append(i)
+                        .append("; else r ^= ").append(i).append(";\n");
+            }
+            body.append("        return r;\n");
+        }
+        Path src = dir.resolve(method).resolve("Work.java");
+        Files.createDirectories(src.getParent());
+        Files.writeString(src, "package probes;\n"
+                + "public class Work implements java.util.function.LongUnaryOperator {\n"
+                + "    public long applyAsLong(long x) {\n" + body + "    }\n"
+                + "}\n");
+        if (ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", src.getParent().toString(), src.toString()) != 0) {
+            throw new IllegalStateException("can't compile " + src);
+        }
+        return Files.readAllBytes(src.getParent().resolve("probes").resolve("Work.class"));
+    }
+}
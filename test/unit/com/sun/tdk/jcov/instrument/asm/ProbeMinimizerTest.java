@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.ABSTRACTMODE;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.InstrumentationMode;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import com.sun.tdk.jcov.instrument.Util;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ProbeMinimizerTest {
+    static final String CLASS = "minimize.Work";
+    static final String SOURCE = "package minimize;\n" +
+            "public class Work {\n" +
+            "    public static long run(int n) {\n" +
+            "        long sum = 0;\n" +
+            "        for (int i = 0; i < n; i++) {\n" +
+            "            if (i % 3 == 0) {\n" +
+            "                sum += i;\n" +
+            "            } else if (i % 5 == 0) {\n" +
+            "                sum -= i;\n" +
+            "            }\n" +
+            "            switch (i % 4) {\n" +
+            "                case 0: sum++; break;\n" +
+            "                case 1: sum += 2;\n" +
+            "                case 2: sum += 3; break;\n" +
+            "                default: sum--;\n" +
+            "            }\n" +
+            "            int j = i;\n" +
+            "            while (j > 10) {\n" +
+            "                j /= 2;\n" +
+            "            }\n" +
+            "            try {\n" +
+            "                sum += 100 / (i % 7);\n" +
+            "            } catch (ArithmeticException e) {\n" +
+            "                sum = -sum;\n" +
+            "            }\n" +
+            "            sum += i > 50 && i % 2 == 0 ? 1 : 0;\n" +
+            "        }\n" +
+            "        return sum;\n" +
+            "    }\n" +
+            "}\n";
+    Path test_dir;
+    byte[] original;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        test_dir = Files.createTempDirectory("probe_minimizer_test");
+        Path src = test_dir.resolve("Work.java");
+        Files.writeString(src, SOURCE);
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        assertEquals(javac.run(null, null, null, "-d", test_dir.toString(), src.toString()), 0);
+        original = Files.readAllBytes(test_dir.resolve("minimize").resolve("Work.class"));
+    }
+
+    @Test
+    public void sameCounts() throws Exception {
+        InstrumentationParams all = params();
+        ClassMorph allMorph = new ClassMorph(null, new DataRoot(all), all);
+        byte[] allClass = allMorph.morph(original.clone(), null, null);
+
+        InstrumentationParams minimal = params().setMinimizeProbes(true);
+        ClassMorph minimalMorph = new ClassMorph(null, new DataRoot(minimal), minimal);
+        byte[] minimalClass = minimalMorph.morph(original.clone(), null, null);
+
+        assertEquals(run(minimalClass), run(allClass));
+        List<String> allCounts = counts(allMorph.getRoot().getClasses().get(0));
+        assertEquals(counts(minimalMorph.getRoot().getClasses().get(0)), allCounts);
+        assertTrue(allCounts.stream().anyMatch(s -> !s.endsWith("=0")));
+        assertTrue(probes(minimalClass) < probes(allClass),
+                probes(minimalClass) + " probes with minimal placement, " + probes(allClass) + " with all");
+    }
+
+    private static InstrumentationParams params() {
+        return new InstrumentationParams(true, false, false, false, ABSTRACTMODE.NONE,
+                null, null, new String[]{".*"}, null, InstrumentationMode.BRANCH);
+    }
+
+    private static Object run(byte[] classfile) throws Exception {
+        ClassLoader loader = new ClassLoader(ProbeMinimizerTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                if (name.equals(CLASS)) {
+                    return defineClass(name, classfile, 0, classfile.length);
+                }
+                throw new ClassNotFoundException(name);
+            }
+        };
+        return loader.loadClass(CLASS).getMethod("run", int.class).invoke(null, 100);
+    }
+
+    private static List<String> counts(DataClass dc) {
+        List<String> counts = new ArrayList<>();
+        for (DataMethod m : dc.getMethods()) {
+            for (DataBlock b : m) {
+                counts.add(m.getName() + m.getVmSignature() + " " + b.getClass().getSimpleName() + " "
+                        + b.startBCI() + "=" + b.getCount());
+            }
+        }
+        return counts;
+    }
+
+    private static int probes(byte[] classfile) {
+        int[] probes = new int[1];
+        new ClassReader(classfile).accept(new ClassVisitor(ASMUtils.ASM_API_VERSION) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                return new MethodVisitor(ASMUtils.ASM_API_VERSION) {
+                    @Override
+                    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                        if (opcode == Opcodes.INVOKESTATIC && name.equals("hit") && desc.equals("(I)V")) {
+                            probes[0]++;
+                        }
+                    }
+                };
+            }
+        }, 0);
+        return probes[0];
+    }
+
+    @AfterClass
+    public void tearDown() throws Exception {
+        Util.rmRF(test_dir);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.asm;
+
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.ABSTRACTMODE;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions.InstrumentationMode;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ReloadStoreTest {
+
+    @Test
+    public void spillsOverLimit() {
+        ReloadStore store = new ReloadStore(20000);
+        Random random = new Random(0);
+        List<byte[]> classfiles = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            byte[] classfile = new byte[1000 + random.nextInt(3000)];
+            for (int j = 0; j < classfile.length; j++) {
+                classfile[j] = (byte) random.nextInt(16); // compressible, but not too much
+            }
+            classfiles.add(classfile);
+            store.put("c" + i, classfile);
+            assertTrue(store.getMemorySize() <= 20000);
+        }
+        assertTrue(store.getFileSize() > 0);
+        assertEquals(store.size(), 100);
+        for (int i = 99; i >= 0; i--) {
+            assertEquals(store.get("c" + i), classfiles.get(i));
+        }
+        assertNull(store.get("c100"));
+        store.put("c0", classfiles.get(1));
+        assertEquals(store.get("c0"), classfiles.get(1));
+    }
+
+    @Test
+    public void replacedRemovedFromFile() {
+        ReloadStore store = new ReloadStore(20000);
+        Random random = new Random(0);
+        byte[][] classfiles = new byte[50][];
+        long fileSize = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < classfiles.length; i++) {
+                classfiles[i] = new byte[1000 + random.nextInt(3000)];
+                for (int j = 0; j < classfiles[i].length; j++) {
+                    classfiles[i][j] = (byte) random.nextInt(16);
+                }
+                store.put("c" + i, classfiles[i]);
+            }
+            if (round == 0) {
+                fileSize = store.getFileSize();
+            }
+        }
+        // one round spills about the same amount, the rest is removed
+        assertTrue(store.getFileSize() < fileSize * 3, store.getFileSize() + " vs " + fileSize);
+        assertEquals(store.size(), classfiles.length);
+        for (int i = 0; i < classfiles.length; i++) {
+            assertEquals(store.get("c" + i), classfiles[i]);
+        }
+    }
+
+    @Test
+    public void putIfAbsentKeepsFirst() {
+        ReloadStore store = new ReloadStore(ReloadStore.DEFAULT_MEMORY);
+        byte[] first = {1, 2, 3};
+        assertNull(store.putIfAbsent("c", first));
+        assertEquals(store.putIfAbsent("c", new byte[]{4, 5}), first);
+        assertEquals(store.get("c"), first);
+    }
+
+    @Test
+    public void concurrentMorphsGetStoredClassfile() throws Exception {
+        byte[] classfile;
+        try (InputStream in = Object.class.getResourceAsStream("/java/util/AbstractList.class")) {
+            classfile = in.readAllBytes();
+        }
+        InstrumentationParams reload = params(true);
+        ClassMorph morph = new ClassMorph(null, new DataRoot(reload), reload);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<byte[]>() {
+                    public byte[] call() throws Exception {
+                        start.await();
+                        return morph.morph(classfile.clone(), null, null, "java.base");
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<byte[]> f : results) {
+                assertEquals(f.get(), morph.getReloadStore().get("java/util/AbstractList"));
+            }
+            assertEquals(morph.getRoot().getClasses().size(), 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void keptOnlyForReload() throws Exception {
+        byte[] classfile;
+        try (InputStream in = Object.class.getResourceAsStream("/java/util/AbstractList.class")) {
+            classfile = in.readAllBytes();
+        }
+        InstrumentationParams reload = params(true);
+        ClassMorph morph = new ClassMorph(null, new DataRoot(reload), reload);
+        byte[] instrumented = morph.morph(classfile.clone(), null, null, "java.base");
+        assertNotNull(instrumented);
+        assertEquals(morph.morph(classfile.clone(), null, null, "java.base"), instrumented);
+        assertEquals(morph.getReloadStore().size(), 1);
+
+        InstrumentationParams noReload = params(false);
+        morph = new ClassMorph(null, new DataRoot(noReload), noReload);
+        morph.setReloadStore(new ReloadStore(ReloadStore.DEFAULT_MEMORY));
+        assertNotNull(morph.morph(classfile.clone(), null, null, "java.base"));
+        assertNull(morph.getReloadStore());
+        assertNull(morph.morph(classfile.clone(), null, null, "java.base"));
+    }
+
+    private static InstrumentationParams params(boolean reload) {
+        return new InstrumentationParams(true, reload, true, false, false, false, ABSTRACTMODE.NONE,
+                null, null, new String[]{".*"}, null, InstrumentationMode.BLOCK, null, null);
+    }
+}
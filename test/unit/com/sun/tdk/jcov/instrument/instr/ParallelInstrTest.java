@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2025, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.instrument.instr;
+
+import com.sun.tdk.jcov.Instr;
+import com.sun.tdk.jcov.data.FileFormatException;
+import com.sun.tdk.jcov.instrument.DataBlock;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.Util;
+import com.sun.tdk.jcov.io.Reader;
+import com.sun.tdk.jcov.runtime.Collect;
+import com.sun.tdk.jcov.util.NaturalComparator;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParallelInstrTest {
+    Path test_dir;
+    Path classes;
+
+    @BeforeClass
+    public void clean() throws IOException {
+        System.setProperty("jcov.selftest", "true");
+        Path data_dir = Paths.get(System.getProperty("user.dir"));
+        test_dir = data_dir.resolve("parallel_instr_test");
+        System.out.println("test dir = " + test_dir);
+        Util.rmRF(test_dir);
+        classes = test_dir.resolve("classes");
+        new Util(classes).copyBytecode(DataRoot.class.getName(), DataClass.class.getName(),
+                DataMethod.class.getName(), DataBlock.class.getName(), NaturalComparator.class.getName(),
+                Reader.class.getName(), Instr.class.getName());
+    }
+
+    private DataRoot instrument(int threads, String name) throws IOException, FileFormatException {
+        Path template = test_dir.resolve(name + ".xml");
+        List<String> params = new ArrayList<>();
+        params.add("-threads");
+        params.add(Integer.toString(threads));
+        params.add("-t");
+        params.add(template.toString());
+        params.add("-o");
+        params.add(test_dir.resolve(name).toString());
+        params.add(classes.toString());
+        Collect.setSlot(0);
+        new Instr().run(params.toArray(new String[0]));
+        return Reader.readXML(template.toString());
+    }
+
+    @Test
+    public void sameAsSequential() throws IOException, FileFormatException {
+        DataRoot sequential = instrument(1, "sequential");
+        DataRoot parallel = instrument(4, "parallel");
+        assertEquals(blocks(parallel, false), blocks(sequential, false));
+    }
+
+    @Test(dependsOnMethods = "sameAsSequential")
+    public void repeatable() throws IOException, FileFormatException {
+        DataRoot parallel = instrument(4, "parallel_again");
+        DataRoot other = Reader.readXML(test_dir.resolve("parallel.xml").toString());
+        assertEquals(blocks(parallel, true), blocks(other, true));
+        List<Path> files = Files.walk(test_dir.resolve("parallel")).filter(Files::isRegularFile)
+                .sorted().collect(Collectors.toList());
+        assertEquals(files.size(), 7);
+        for (Path f : files) {
+            Path again = test_dir.resolve("parallel_again").resolve(test_dir.resolve("parallel").relativize(f));
+            assertTrue(Arrays.equals(Files.readAllBytes(f), Files.readAllBytes(again)), f.toString());
+        }
+    }
+
+    @Test(dependsOnMethods = "sameAsSequential")
+    public void slotsAreUnique() throws IOException, FileFormatException {
+        DataRoot parallel = Reader.readXML(test_dir.resolve("parallel.xml").toString());
+        Set<Integer> slots = new HashSet<>();
+        int count = 0;
+        for (DataClass c : parallel.getClasses()) {
+            for (DataMethod m : c.getMethods()) {
+                for (DataBlock b : m) {
+                    slots.add(b.getId());
+                    ++count;
+                }
+            }
+        }
+        assertEquals(slots.size(), count);
+        assertEquals(parallel.getCount(), count);
+    }
+
+    /**
+     * @return blocks of all methods in a stable order, with or without slots
+     */
+    private static List<String> blocks(DataRoot root, boolean withSlots) {
+        List<String> res = new ArrayList<>();
+        List<DataClass> cls = new ArrayList<>(root.getClasses());
+        cls.sort(Comparator.comparing(DataClass::getFullname));
+        for (DataClass c : cls) {
+            for (DataMethod m : c.getMethods()) {
+                for (DataBlock b : m) {
+                    res.add(c.getFullname() + "." + m.getName() + m.getVmSignature() + " " + b.startBCI()
+                            + (withSlots ? " " + b.getId() : ""));
+                }
+            }
+        }
+        res.sort(null);
+        return res;
+    }
+
+    @AfterClass
+    public void tearDown() throws IOException {
+        Util.rmRF(test_dir);
+    }
+}
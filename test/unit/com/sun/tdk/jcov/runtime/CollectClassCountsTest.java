@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class CollectClassCountsTest {
+
+    static class RecordingSaver implements JCovSaver {
+        final int[] slots;
+        final List<long[]> counts = new ArrayList<>();
+
+        RecordingSaver(int... slots) {
+            this.slots = slots;
+        }
+
+        public void saveResults() {
+            long[] c = new long[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                c[i] = Collect.countFor(slots[i]);
+            }
+            counts.add(c);
+        }
+    }
+
+    @Test
+    public void foldedWhenSaved() {
+        int base = Collect.SLOTS - 20;
+        // that's what a class initializer and probes of the class do
+        long[][] counts = Collect.registerCounts(base, 3);
+        RecordingSaver saver = new RecordingSaver(base, base + 1, base + 2);
+        Collect.setSaver(saver);
+
+        long[] saved = counts[0];
+        counts[0][0]++;
+        counts[0][0]++;
+        counts[0][2]++;
+        Collect.hit(base + 2);
+        assertEquals(Collect.countFor(base), 0);
+        Collect.saveResults();
+        counts[0][1]++;
+        Collect.saveResults();
+
+        assertEquals(saver.counts.get(0), new long[]{2, 0, 2});
+        assertEquals(saver.counts.get(1), new long[]{0, 1, 0});
+        // the array keeps totals, probes may hold it
+        assertEquals(counts[0], new long[]{2, 1, 1});
+        assertSame(counts[0], saved);
+    }
+
+    @Test
+    public void beyondSlots() {
+        int length = Collect.counts().length;
+        int base = length + 10;
+        long[][] counts = Collect.registerCounts(base, 5);
+        RecordingSaver saver = new RecordingSaver(base + 4);
+        Collect.setSaver(saver);
+
+        counts[0][4] = 7;
+        assertTrue(CollectHits.hits.length > 0); // hit-only code has run
+        Collect.saveResults();
+        assertEquals(saver.counts.get(0)[0], 7);
+        assertTrue(Collect.counts().length > base + 4);
+        assertTrue(CollectHits.hits.length >= Collect.counts().length);
+    }
+
+    @Test
+    public void concurrentHitsNotCountedTwice() throws Exception {
+        final int base = Collect.SLOTS - 30;
+        final long[][] counts = Collect.registerCounts(base, 1);
+        final long[] saved = new long[1];
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+                saved[0] += Collect.delta()[base];
+            }
+        });
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final long[] hits = new long[1];
+        Thread hitter = new Thread(() -> {
+            long n = 0;
+            while (!stop.get()) {
+                // an inlined probe loads the array once per method
+                long[] c = counts[0];
+                for (int i = 0; i < 1000; i++) {
+                    c[0]++;
+                }
+                n += 1000;
+            }
+            hits[0] = n;
+        });
+        hitter.start();
+        for (int i = 0; i < 2000; i++) {
+            Collect.saveResults();
+        }
+        stop.set(true);
+        hitter.join();
+        Collect.saveResults();
+
+        assertEquals(saved[0], hits[0]);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+            }
+        });
+    }
+}
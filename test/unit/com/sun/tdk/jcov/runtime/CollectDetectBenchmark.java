@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures CollectDetect.hit() throughput with 1, 8, 64 and 512 threads, each
+ * hitting its own slot, so that the cost of finding the state of the current
+ * thread dominates. Every round starts new threads, the later rounds run
+ * with thread ids beyond 32768 and after many threads have died. Not a unit
+ * test - run it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.runtime.CollectDetectBenchmark [millis]
+ * </pre>
+ */
+public class CollectDetectBenchmark {
+
+    static final int[] THREADS = {1, 8, 64, 512};
+    static final int BATCH = 10000;
+
+    public static void main(String[] args) throws Exception {
+        long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        CollectDetect.enableDetectInternal();
+        for (int round = 0; round < 3; ++round) {
+            if (round > 0) {
+                churn(20000);
+                System.out.println("thread ids from " + new Thread().getId());
+            }
+            for (int threads : THREADS) {
+                long hits = run(threads, millis);
+                System.out.printf("%4d threads: %6.1f M hits/s, %6.2f ns/hit per thread%n", threads,
+                        hits / (millis * 1000.0), millis * 1000000.0 * Math.min(threads,
+                                Runtime.getRuntime().availableProcessors()) / hits);
+            }
+        }
+    }
+
+    /**
+     * Runs short-lived threads hitting a slot, so that the runtime keeps
+     * state of some dead threads.
+     */
+    private static void churn(int count) throws InterruptedException {
+        int slot = Collect.SLOTS - 1;
+        for (int i = 0; i < count; i += 8) {
+            List<Thread> threads = new ArrayList<>();
+            for (int j = 0; j < 8; ++j) {
+                threads.add(new Thread(() -> CollectDetect.hit(slot)));
+            }
+            for (Thread t : threads) {
+                t.start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+        }
+    }
+
+    private static long run(int count, long millis) throws InterruptedException {
+        LongAdder hits = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            int slot = Collect.SLOTS - 8 * (i + 1); // own cache line for every thread
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long n = 0;
+                do {
+                    for (int j = 0; j < BATCH; ++j) {
+                        CollectDetect.hit(slot);
+                    }
+                    n += BATCH;
+                } while (System.nanoTime() < deadline[0]);
+                hits.add(n);
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        deadline[0] = System.nanoTime() + millis * 1000000;
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        return hits.sum();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class CollectDetectTest {
+    static final int THREADS = 8;
+    static final int HITS = 10000;
+
+    @BeforeClass
+    public void setup() {
+        CollectDetect.enableDetectInternal();
+    }
+
+    @Test
+    public void instrumentationCodeOfOneThread() throws Exception {
+        int slot = Collect.SLOTS - 40;
+        long before = Collect.countFor(slot);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch hit = new CountDownLatch(THREADS - 1);
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> {
+            CollectDetect.enterInstrumentationCode();
+            entered.countDown();
+            try {
+                hit.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            for (int j = 0; j < HITS; j++) {
+                CollectDetect.hit(slot);
+            }
+            CollectDetect.leaveInstrumentationCode();
+            CollectDetect.hit(slot);
+        }));
+        for (int i = 1; i < THREADS; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    entered.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                for (int j = 0; j < HITS; j++) {
+                    CollectDetect.hit(slot);
+                }
+                hit.countDown();
+            }));
+        }
+        run(threads);
+        assertEquals(Collect.countFor(slot), before + (THREADS - 1) * HITS + 1);
+    }
+
+    @Test
+    public void threadIdsBeyond32768() throws Exception {
+        int slot = Collect.SLOTS - 41;
+        long before = Collect.countFor(slot);
+        Thread t;
+        do {
+            t = new Thread(() -> {
+                CollectDetect.hit(slot);
+                CollectDetect.enterInstrumentationCode();
+                CollectDetect.hit(slot);
+                CollectDetect.leaveInstrumentationCode();
+                CollectDetect.hit(slot);
+            });
+        } while (t.getId() < 1 << 15);
+        run(List.of(t));
+        assertEquals(Collect.countFor(slot), before + 2);
+    }
+
+    @Test
+    public void deadThreadsDropped() throws Exception {
+        int slot = Collect.SLOTS - 42;
+        long before = Collect.countFor(slot);
+        int rounds = 1000;
+        for (int i = 0; i < rounds; i++) {
+            List<Thread> threads = new ArrayList<>();
+            for (int j = 0; j < THREADS; j++) {
+                threads.add(new Thread(() -> {
+                    CollectDetect.enterInstrumentationCode();
+                    CollectDetect.hit(slot);
+                    CollectDetect.leaveInstrumentationCode();
+                    CollectDetect.hit(slot);
+                }));
+            }
+            run(threads);
+        }
+        assertEquals(Collect.countFor(slot), before + rounds * THREADS);
+        assertTrue(CollectDetect.threads.length() <= 256, "length " + CollectDetect.threads.length());
+    }
+
+    private static void run(List<Thread> threads) throws InterruptedException {
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class CollectHitOnlyTest {
+
+    @Test
+    public void hitOnly() {
+        int slot = Collect.SLOTS - 3;
+        assertFalse(Collect.wasHit(slot));
+        assertEquals(Collect.countFor(slot), 0);
+        // that's what hit-only instrumented code does
+        CollectHits.hits[slot] = 1;
+        CollectHits.hits[slot] = 1;
+        assertTrue(Collect.wasHit(slot));
+        assertEquals(Collect.countFor(slot), 1);
+    }
+
+    @Test
+    public void arraysAllocatedWhenNeeded() throws Exception {
+        // fresh runtime, so that arrays allocated by other tests don't matter
+        URL classes = Collect.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, null)) {
+            Class<?> collect = Class.forName(Collect.class.getName(), true, loader);
+            Field counts = collect.getField("counts");
+            Field hits = collect.getDeclaredField("hits");
+            hits.setAccessible(true);
+            assertNull(counts.get(null));
+            assertNull(hits.get(null));
+
+            Class<?> collectHits = Class.forName(CollectHits.class.getName(), true, loader);
+            assertNotNull(collectHits.getField("hits").get(null));
+            assertNull(counts.get(null), "hit-only code doesn't need counts");
+
+            collect.getMethod("hit", int.class).invoke(null, 1);
+            assertNotNull(counts.get(null));
+            Class<?> collectCounts = Class.forName(CollectCounts.class.getName(), true, loader);
+            assertSame(collectCounts.getField("counts").get(null), counts.get(null));
+        }
+    }
+
+    @Test
+    public void hitOnlyAndCounted() {
+        int slot = Collect.SLOTS - 4;
+        Collect.hit(slot);
+        Collect.hit(slot);
+        CollectHits.hits[slot] = 1;
+        assertEquals(Collect.countFor(slot), 2);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class CollectSaveTest {
+
+    static class RecordingSaver implements JCovSaver {
+        final int slot;
+        final List<long[]> arrays = new ArrayList<>();
+        final List<Long> deltas = new ArrayList<>();
+
+        RecordingSaver(int slot) {
+            this.slot = slot;
+        }
+
+        public void saveResults() {
+            arrays.add(Collect.delta());
+            deltas.add(Collect.delta()[slot]);
+            Collect.hit(slot); // goes to the next save
+        }
+    }
+
+    @Test
+    public void deltasInReusedArray() {
+        int slot = Collect.SLOTS - 5;
+        RecordingSaver saver = new RecordingSaver(slot);
+        Collect.setSaver(saver);
+        int saves = Collect.saveCount();
+
+        long[] counts = CollectCounts.counts;
+        byte[] hits = CollectHits.hits;
+        Collect.hit(slot);
+        Collect.hit(slot);
+        Collect.saveResults();
+        Collect.hit(slot);
+        CollectHits.hits[slot] = 1;
+        Collect.saveResults();
+        Collect.saveResults();
+        CollectHits.hits[slot] = 1;
+        Collect.saveResults();
+
+        assertEquals(Collect.saveCount(), saves + 4);
+        assertEquals(saver.deltas.get(0).longValue(), 2);
+        assertEquals(saver.deltas.get(1).longValue(), 2);
+        assertEquals(saver.deltas.get(2).longValue(), 1);
+        assertEquals(saver.deltas.get(3).longValue(), 1);
+        assertEquals(Collect.countFor(slot), 1);
+
+        // no allocation per save - neither of the delta nor of the hit arrays
+        for (long[] delta : saver.arrays) {
+            assertSame(delta, saver.arrays.get(0));
+        }
+        assertSame(CollectCounts.counts, counts);
+        assertSame(CollectHits.hits, hits);
+    }
+
+    @Test
+    public void concurrentHitsNotCountedTwice() throws Exception {
+        final int slot = Collect.SLOTS - 6;
+        final long[] saved = new long[1];
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+                saved[0] += Collect.delta()[slot];
+            }
+        });
+        Collect.saveResults(); // drops hits left by other tests
+        saved[0] = 0;
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final long[] hits = new long[1];
+        Thread hitter = new Thread(() -> {
+            long n = 0;
+            while (!stop.get()) {
+                for (int i = 0; i < 1000; i++) {
+                    Collect.hit(slot);
+                }
+                n += 1000;
+            }
+            hits[0] = n;
+        });
+        hitter.start();
+        for (int i = 0; i < 2000; i++) {
+            Collect.saveResults();
+        }
+        stop.set(true);
+        hitter.join();
+        Collect.saveResults();
+
+        // every hit is saved once
+        assertEquals(saved[0], hits[0]);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+            }
+        });
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class CollectStripesTest {
+    static final int THREADS = 4;
+    static final int HITS = 100000;
+
+    @Test
+    public void concurrentHits() throws InterruptedException {
+        int slot = Collect.SLOTS - 1;
+        long before = Collect.countFor(slot);
+        Collect.enableStripes(THREADS + 1); // the test thread may hold one
+        assertTrue(Collect.isStriped());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < HITS; j++) {
+                    Collect.hit(slot);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        // hits stay in the stripes until they are folded
+        assertEquals(Collect.countFor(slot), before);
+        Collect.enableStripes(0);
+        assertFalse(Collect.isStriped());
+        assertEquals(Collect.countFor(slot), before + THREADS * HITS);
+    }
+
+    @Test
+    public void hitsBeforeStriping() {
+        int slot = Collect.SLOTS - 2;
+        long before = Collect.countFor(slot);
+        Collect.hit(slot);
+        Collect.enableStripes(2);
+        Collect.hit(slot);
+        Collect.enableStripes(0);
+        assertEquals(Collect.countFor(slot), before + 2);
+    }
+
+    @Test
+    public void moreThreadsThanStripes() throws InterruptedException {
+        int slot = Collect.SLOTS - 3;
+        long before = Collect.countFor(slot);
+        Collect.enableStripes(2);
+        // all threads are alive, they hit one by one so that the shared array doesn't lose hits
+        int count = THREADS * 2;
+        CountDownLatch[] turns = new CountDownLatch[count + 1];
+        for (int i = 0; i <= count; i++) {
+            turns[i] = new CountDownLatch(1);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CountDownLatch turn = turns[i];
+            CountDownLatch next = turns[i + 1];
+            threads.add(new Thread(() -> {
+                try {
+                    turn.await();
+                    for (int j = 0; j < HITS; j++) {
+                        Collect.hit(slot);
+                    }
+                    next.countDown();
+                    turns[count].await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        turns[0].countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        Collect.enableStripes(0);
+        assertEquals(Collect.countFor(slot), before + count * HITS);
+    }
+
+    /**
+     * A stripe grows while being saved and counted in.
+     */
+    @Test
+    public void grownWhileSaved() throws InterruptedException {
+        int slot = 10; // in the first 1024 longs a stripe is allocated with
+        int high = Collect.SLOTS - 4;
+        long[] saved = new long[2];
+        Collect.saveResults();
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+                saved[0] += Collect.delta()[slot];
+                saved[1] += Collect.delta()[high];
+            }
+        });
+        Collect.enableStripes(THREADS + 1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < HITS; j++) {
+                    Collect.hit(slot);
+                    if (j == HITS / 2) {
+                        Collect.hit(high);
+                    }
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            while (t.isAlive()) {
+                Collect.saveResults();
+            }
+        }
+        Collect.saveResults();
+        assertEquals(saved[0], THREADS * HITS);
+        assertEquals(saved[1], THREADS);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        Collect.enableStripes(0);
+        Collect.setSaver(new JCovSaver() {
+            public void saveResults() {
+            }
+        });
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class JCovSocketSaverTest {
+
+    @Test
+    public void varLong() throws IOException {
+        long[] values = {0, 1, 127, 128, 300, Collect.MAX_SLOTS, Integer.MAX_VALUE, Long.MAX_VALUE, -1};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (long v : values) {
+            JCovSocketSaver.writeVarLong(bytes, v);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long v : values) {
+            assertEquals(JCovSocketSaver.readVarLong(in), v);
+        }
+        assertEquals(in.available(), 0);
+    }
+
+    @Test
+    public void varLongSize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        JCovSocketSaver.writeVarLong(bytes, 127);
+        assertEquals(bytes.size(), 1);
+        JCovSocketSaver.writeVarLong(bytes, 128);
+        assertEquals(bytes.size(), 3);
+    }
+
+    @Test
+    public void deadlineSent() throws Exception {
+        Path fallback = Files.createTempDirectory("jcov");
+        int slot = Collect.SLOTS - 7;
+        ExecutorService grabber = Executors.newSingleThreadExecutor();
+        try (ServerSocket ss = new ServerSocket(0)) {
+            Future<byte[]> received = grabber.submit(() -> {
+                try (Socket s = ss.accept(); InputStream in = s.getInputStream()) {
+                    return in.readAllBytes();
+                }
+            });
+            setProperties(ss.getLocalPort(), fallback);
+            Collect.hit(slot);
+            new JCovSESocketSaver().saveResults();
+
+            byte[] data = received.get();
+            assertEquals(new String(data, 0, 4, "UTF-8"), "JCOV");
+            assertEquals(fallback.toFile().list().length, 0);
+        } finally {
+            grabber.shutdown();
+            Collect.counts[slot] = 0;
+            delete(fallback);
+        }
+    }
+
+    @Test
+    public void deadlineFallback() throws Exception {
+        Path fallback = Files.createTempDirectory("jcov");
+        int slot = Collect.SLOTS - 7;
+        int port;
+        try (ServerSocket ss = new ServerSocket(0)) {
+            port = ss.getLocalPort(); // nobody listens at the port after closing
+        }
+        try {
+            setProperties(port, fallback);
+            Collect.hit(slot);
+            long start = System.currentTimeMillis();
+            new JCovSESocketSaver().saveResults();
+            assertTrue(System.currentTimeMillis() - start < 3000, "saver should not wait for Grabber");
+
+            File[] files = fallback.toFile().listFiles();
+            assertNotNull(files);
+            assertEquals(files.length, 1);
+            assertTrue(files[0].getName().endsWith(JCovSpoolSaver.SPOOL_SUFFIX));
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(files[0].toPath()));
+            assertEquals(buf.getInt(), 0x4A434F56); // JCOV
+            assertEquals(buf.get(), JCovSpoolSaver.SPOOL_VERSION);
+            buf.position(8);
+            int offset = buf.getInt();
+            int size = buf.getInt();
+            DataInputStream names = new DataInputStream(new ByteArrayInputStream(buf.array(), 16, offset - 16));
+            names.readUTF();
+            assertEquals(names.readUTF(), "deadline");
+            boolean found = false;
+            for (int i = 0; i < size; i++) {
+                if (buf.getInt(offset + i * 4) == slot) {
+                    assertEquals(buf.getLong(offset + JCovSpoolSaver.align(size * 4) + i * 8), 1);
+                    found = true;
+                }
+            }
+            assertTrue(found);
+        } finally {
+            Collect.counts[slot] = 0;
+            delete(fallback);
+        }
+    }
+
+    @Test
+    public void notSentIsIncomplete() throws Exception {
+        byte[] payload = new byte[16 << 20]; // doesn't fit socket buffers
+        payload[payload.length - 1] = 1;
+        ExecutorService grabber = Executors.newSingleThreadExecutor();
+        try (ServerSocket ss = new ServerSocket(0)) {
+            Future<byte[]> received = grabber.submit(() -> {
+                try (Socket s = ss.accept(); InputStream in = s.getInputStream()) {
+                    Thread.sleep(1000); // the sender misses the deadline
+                    return in.readAllBytes();
+                }
+            });
+            JCovSocketSaver saver = new JCovSocketSaver() {
+                public void saveResults() {
+                }
+            };
+            saver.host = "localhost";
+            saver.port = ss.getLocalPort();
+
+            boolean sent = saver.send(payload, 200);
+            byte[] data;
+            try {
+                data = received.get();
+            } catch (ExecutionException e) {
+                data = new byte[0]; // connection reset
+            }
+            assertFalse(sent);
+            assertTrue(data.length < payload.length, "Grabber got all the data which is saved elsewhere");
+        } finally {
+            grabber.shutdown();
+        }
+    }
+
+    private static void setProperties(int port, Path fallback) {
+        System.setProperty("jcov.host", "localhost");
+        System.setProperty("jcov.port", Integer.toString(port));
+        System.setProperty("jcov.deadline", "1000");
+        System.setProperty("jcov.fallback", fallback.toString());
+        System.setProperty("jcov.testname", "deadline");
+    }
+
+    private static void delete(Path dir) {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.toFile().delete();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        for (String p : new String[]{"host", "port", "deadline", "fallback", "testname"}) {
+            System.clearProperty("jcov." + p);
+        }
+    }
+}
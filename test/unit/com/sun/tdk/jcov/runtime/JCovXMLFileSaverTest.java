@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import com.sun.tdk.jcov.instrument.BinaryFormat;
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethodEntryOnly;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import com.sun.tdk.jcov.instrument.XmlNames;
+import com.sun.tdk.jcov.io.Reader;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class JCovXMLFileSaverTest {
+    Path dir;
+    String result;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("saver");
+        result = dir.resolve("result.xml").toString();
+        System.setProperty("jcov." + JCovXMLFileSaver.SIDECAR, "true");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        System.clearProperty("jcov." + JCovXMLFileSaver.SIDECAR);
+        for (File f : dir.toFile().listFiles()) {
+            f.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    private static DataRoot data(String className, long count) {
+        DataRoot root = new DataRoot("", false, new InstrumentationParams(false, false, false, false, null,
+                new String[0], new String[0], new String[0], new String[0],
+                InstrumentationOptions.InstrumentationMode.METHOD));
+        DataClass c = new DataClass(root.rootId(), "pkg/" + className, XmlNames.NO_MODULE, 0, false);
+        c.setInfo("public", null, "java/lang/Object", null);
+        new DataMethodEntryOnly(c, 1, "m", "()V", null, null, 0, count);
+        root.addClass(c);
+        return root;
+    }
+
+    private void save(String className, long count) {
+        DataRoot root = data(className, count);
+        FileSaver.getFileSaver(root, result, null, InstrumentationOptions.MERGE.MERGE).saveResults();
+        root.destroy();
+    }
+
+    private long count(String className) throws Exception {
+        DataRoot root = Reader.readXML(result);
+        try {
+            return count(root, className);
+        } finally {
+            root.destroy();
+        }
+    }
+
+    private static long count(DataRoot root, String className) {
+        for (DataClass c : root.getClasses()) {
+            if (c.getName().equals(className)) {
+                return c.getMethods().get(0).getCount();
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void mergeWithSidecar() throws Exception {
+        save("A", 1);
+        save("A", 2);
+        File sidecar = new File(result + BinaryFormat.EXTENSION);
+        assertTrue(sidecar.isFile());
+        assertEquals(count("A"), 3);
+
+        DataRoot fromSidecar = JCovXMLFileSaver.readSidecar(result);
+        assertNotNull(fromSidecar);
+        assertEquals(count(fromSidecar, "A"), 3);
+        fromSidecar.destroy();
+
+        save("B", 5);
+        save("A", 10);
+        assertEquals(count("A"), 13);
+        assertEquals(count("B"), 5);
+    }
+
+    @Test
+    public void staleSidecarIgnored() throws Exception {
+        save("A", 1);
+        save("A", 2);
+        assertNotNull(JCovXMLFileSaver.readSidecar(result));
+
+        // the result is rewritten by someone else
+        DataRoot other = data("A", 100);
+        new JCovXMLFileSaver(other, InstrumentationOptions.MERGE.OVERWRITE).saveResults(result);
+        other.destroy();
+        assertNull(JCovXMLFileSaver.readSidecar(result));
+
+        save("A", 1);
+        assertEquals(count("A"), 101);
+    }
+
+    @Test
+    public void noSidecarByDefault() throws Exception {
+        System.clearProperty("jcov." + JCovXMLFileSaver.SIDECAR);
+        save("A", 1);
+        save("A", 2);
+        assertFalse(new File(result + BinaryFormat.EXTENSION).exists());
+        assertEquals(count("A"), 3);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.runtime;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ThreadTableTest {
+
+    @Test
+    public void indexesOfDeadThreadsReused() throws Exception {
+        ThreadTable table = new ThreadTable();
+        ThreadTable.Entry main = new ThreadTable.Entry(Thread.currentThread());
+        table.add(main);
+        assertEquals(main.index, 0);
+        for (int i = 0; i < 100; i++) {
+            ThreadTable.Entry[] e = new ThreadTable.Entry[1];
+            Thread t = new Thread(() -> {
+                e[0] = new ThreadTable.Entry(Thread.currentThread());
+                table.add(e[0]);
+            });
+            t.start();
+            t.join();
+            assertEquals(e[0].index, 1);
+            assertSame(table.get(t.getId()), e[0]);
+        }
+        assertSame(table.get(Thread.currentThread().getId()), main);
+    }
+
+    @Test
+    public void liveThreadsKept() throws Exception {
+        ThreadTable table = new ThreadTable();
+        int count = 200;
+        CountDownLatch added = new CountDownLatch(count);
+        CountDownLatch done = new CountDownLatch(1);
+        ThreadTable.Entry[] entries = new ThreadTable.Entry[count];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int n = i;
+            threads.add(new Thread(() -> {
+                entries[n] = new ThreadTable.Entry(Thread.currentThread());
+                table.add(entries[n]);
+                added.countDown();
+                try {
+                    done.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        added.await();
+        boolean[] used = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            assertSame(table.get(threads.get(i).getId()), entries[i]);
+            assertTrue(entries[i].index < count);
+            assertTrue(!used[entries[i].index], "index " + entries[i].index + " given twice");
+            used[entries[i].index] = true;
+        }
+        done.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        int length = table.length();
+        assertTrue(length >= count * 2);
+        for (int i = 0; i < length; i++) { // dead threads are dropped when the table is rebuilt
+            Thread t = new Thread(() -> table.add(new ThreadTable.Entry(Thread.currentThread())));
+            t.start();
+            t.join();
+        }
+        assertTrue(table.length() < length, "length " + table.length());
+        assertNull(table.get(threads.get(0).getId()));
+    }
+}
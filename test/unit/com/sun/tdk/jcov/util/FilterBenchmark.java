@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.util;
+
+import com.sun.tdk.jcov.util.Utils.Pattern;
+
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Compares PatternMatcher and NameMatcher with matching every regexp on every
+ * name as Utils.accept() and InstrumentationParams did before. Class names are
+ * taken from the running JDK. Not a unit test - run it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.util.FilterBenchmark
+ * </pre>
+ */
+public class FilterBenchmark {
+
+    static final String[] INCLUDES = {"java.*", "javax.**", "jdk.internal.misc.Unsafe", "sun.nio.ch.*"};
+    static final String[] EXCLUDES = {"java.lang.invoke.*", "java.util.concurrent.**", "javax.swing.plaf.*",
+            "javax.management.*", "javax.xml.**"};
+    static final String CALLERS = "java/util/.*|javax/swing/.*|jdk/internal/misc/Unsafe";
+
+    public static void main(String[] args) throws Exception {
+        List<String> names = classNames();
+        System.out.println(names.size() + " classes");
+        Pattern[] alls = Utils.concatFilters(INCLUDES, EXCLUDES);
+        PatternMatcher matcher = Utils.compileFilters(INCLUDES, EXCLUDES);
+        NameMatcher callers = new NameMatcher(CALLERS);
+
+        for (int i = 0; i < 10; ++i) {
+            int regexps = 0, compiled = 0, matches = 0, matcherMatches = 0;
+            long start = System.nanoTime();
+            for (String name : names) {
+                regexps += accept(alls, name) ? 1 : 0;
+            }
+            long scanned = System.nanoTime();
+            for (String name : names) {
+                compiled += Utils.accept(matcher, null, name, null) ? 1 : 0;
+            }
+            long matched = System.nanoTime();
+            for (String name : names) {
+                matches += name.substring(1).matches(CALLERS) ? 1 : 0;
+            }
+            long stringMatched = System.nanoTime();
+            for (String name : names) {
+                matcherMatches += callers.matches(name.substring(1)) ? 1 : 0;
+            }
+            long nameMatched = System.nanoTime();
+            if (regexps != compiled || matches != matcherMatches) {
+                throw new IllegalStateException(regexps + " != " + compiled + " or " + matches + " != " + matcherMatches);
+            }
+            System.out.printf("includes: regexps %d ms, PatternMatcher %d ms (%d accepted); "
+                            + "callers: String.matches %d ms, NameMatcher %d ms (%d accepted)%n",
+                    (scanned - start) / 1000000, (matched - scanned) / 1000000, compiled,
+                    (stringMatched - matched) / 1000000, (nameMatched - stringMatched) / 1000000, matches);
+        }
+    }
+
+    /**
+     * Utils.accept() as it was before PatternMatcher
+     */
+    private static boolean accept(Pattern[] alls, String className) {
+        Boolean parentIncluded = null;
+        boolean included = false;
+        for (Pattern p : alls) {
+            included |= p.included;
+            if (p.patt.matcher(className).matches()) {
+                parentIncluded = p.included;
+            }
+        }
+        return parentIncluded != null ? parentIncluded : !included;
+    }
+
+    private static List<String> classNames() throws Exception {
+        List<String> names = new ArrayList<>();
+        FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        try (Stream<Path> files = Files.walk(jrt.getPath("/modules"))) {
+            files.map(Path::toString).filter(s -> s.endsWith(".class") && !s.endsWith("module-info.class"))
+                    .forEach(s -> {
+                        String name = s.substring("/modules/".length(), s.length() - ".class".length());
+                        names.add(name.substring(name.indexOf('/')));
+                    });
+        }
+        return names;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.util;
+
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethodEntryOnly;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.instrument.InstrumentationOptions;
+import com.sun.tdk.jcov.instrument.InstrumentationParams;
+import com.sun.tdk.jcov.instrument.XmlNames;
+import com.sun.tdk.jcov.runtime.JCovXMLFileSaver;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Compares MapHelper.mapCounts() with the line based implementation it had
+ * before. Not a unit test - run it manually:
+ * <pre>
+ * java -cp jcov.jar:test/classes com.sun.tdk.jcov.util.MapHelperBenchmark [template.xml]
+ * </pre> Without arguments a synthetic JDK sized template is generated.
+ */
+public class MapHelperBenchmark {
+
+    static final int PACKAGES = 40;
+    static final int CLASSES = 500;
+    static final int METHODS = 20;
+
+    public static void main(String[] args) throws Exception {
+        File template;
+        if (args.length == 1) {
+            template = new File(args[0]);
+        } else {
+            template = File.createTempFile("template", ".xml");
+            template.deleteOnExit();
+            generate(template.getPath(), PACKAGES, CLASSES, METHODS);
+        }
+        long[] counts = counts(template.getPath());
+        File lines = File.createTempFile("lines", ".xml");
+        File fast = File.createTempFile("fast", ".xml");
+        lines.deleteOnExit();
+        fast.deleteOnExit();
+
+        for (int i = 0; i < 10; ++i) {
+            long start = System.nanoTime();
+            mapLines(lines.getPath(), template.getPath(), counts);
+            long mappedLines = System.nanoTime();
+            fast.delete();
+            MapHelper.mapCounts(fast.getPath(), template.getPath(), counts);
+            long mappedFast = System.nanoTime();
+
+            System.out.printf("%d MB: line based %d ms, mapCounts %d ms%n", template.length() >> 20,
+                    (mappedLines - start) / 1000000, (mappedFast - mappedLines) / 1000000);
+        }
+    }
+
+    /**
+     * Writes a template with methods having ids 0 .. packages*classes*methods-1
+     */
+    static void generate(String file, int packages, int classes, int methods) throws Exception {
+        DataRoot root = new DataRoot("", false, new InstrumentationParams(false, false, false, false, null,
+                new String[0], new String[0], new String[0], new String[0],
+                InstrumentationOptions.InstrumentationMode.METHOD));
+        for (int p = 0; p < packages; ++p) {
+            for (int c = 0; c < classes; ++c) {
+                DataClass dc = new DataClass(root.rootId(), "pkg" + p + "/Class" + c, XmlNames.NO_MODULE, 0, false);
+                dc.setInfo("public", null, "java/lang/Object", null);
+                for (int m = 0; m < methods; ++m) {
+                    new DataMethodEntryOnly(dc, 1, "method" + m, "(I)V", null, null, (p * classes + c) * methods + m, m % 3);
+                }
+                root.addClass(dc);
+            }
+        }
+        new JCovXMLFileSaver(root, InstrumentationOptions.MERGE.OVERWRITE).saveResults(file);
+        root.destroy();
+    }
+
+    /**
+     * @return counts for all ids found in the template, a half of them is 0
+     */
+    static long[] counts(String template) throws Exception {
+        int max = 0;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(template), Charset.defaultCharset()))) {
+            for (String s = r.readLine(); s != null; s = r.readLine()) {
+                int i = s.indexOf("id=");
+                if (i != -1) {
+                    max = Math.max(max, Integer.parseInt(s.substring(i + 4, s.indexOf("\"", i + 4))));
+                }
+            }
+        }
+        long[] counts = new long[max + 1];
+        Random r = new Random(0);
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = r.nextBoolean() ? 0 : r.nextInt(100000);
+        }
+        return counts;
+    }
+
+    /**
+     * MapHelper.mapXMLFast() as it was implemented with BufferedReader and
+     * PrintWriter
+     */
+    static void mapLines(String result, String templ, long[] counts) throws Exception {
+        BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(templ), Charset.defaultCharset()));
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(result, false), Charset.defaultCharset()));
+        try {
+            String s = r.readLine();
+            while (s != null) {
+                int i = s.indexOf("id=");
+                if (i != -1 && counts != null) {
+                    int id = 0;
+                    long count = 0;
+
+                    i += 4; //id="
+                    int id_end = s.indexOf("\"", i);
+                    id = Integer.parseInt(s.substring(i, id_end));
+
+                    if (counts[id] == 0) {
+                        pw.println(s); // nothing changed
+                    } else if (s.indexOf("count", i) > 0) {
+                        i = id_end + 9; //"_count="
+                        String res = s.substring(0, i);
+
+                        int count_end = s.indexOf("\"", i);
+                        count = Long.parseLong(s.substring(i, count_end));
+                        count += counts[id];
+                        res += count;
+
+                        res += s.substring(count_end);
+                        pw.println(res);
+                    } else {
+                        String res = s.substring(0, id_end + 1) + " count=\"" + counts[id] + "\"" + s.substring(id_end + 1);
+                        pw.println(res);
+                    }
+                } else {
+                    pw.println(s);
+                }
+
+                s = r.readLine();
+            }
+            pw.flush();
+        } finally {
+            pw.close();
+            r.close();
+        }
+    }
+}
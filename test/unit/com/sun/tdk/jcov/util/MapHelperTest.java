@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.util;
+
+import com.sun.tdk.jcov.instrument.DataClass;
+import com.sun.tdk.jcov.instrument.DataMethod;
+import com.sun.tdk.jcov.instrument.DataMethodEntryOnly;
+import com.sun.tdk.jcov.instrument.DataRoot;
+import com.sun.tdk.jcov.io.Reader;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class MapHelperTest {
+    Path dir;
+    String template;
+    long[] counts;
+
+    @BeforeClass
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("maphelper");
+        template = dir.resolve("template.xml").toString();
+        MapHelperBenchmark.generate(template, 3, 10, 5);
+        counts = MapHelperBenchmark.counts(template);
+    }
+
+    @AfterClass
+    public void tearDown() {
+        for (File f : dir.toFile().listFiles()) {
+            f.delete();
+        }
+        dir.toFile().delete();
+    }
+
+    @Test
+    public void sameAsLineBased() throws Exception {
+        String lines = dir.resolve("lines.xml").toString();
+        String fast = dir.resolve("fast.xml").toString();
+        MapHelperBenchmark.mapLines(lines, template, counts);
+        MapHelper.mapCounts(fast, template, counts);
+        assertTrue(Arrays.equals(Files.readAllBytes(Path.of(lines)), Files.readAllBytes(Path.of(fast))));
+    }
+
+    @Test
+    public void mapTwice() throws Exception {
+        String result = dir.resolve("result.xml").toString();
+        MapHelper.mapCounts(result, template, counts);
+        MapHelper.mapCounts(result, template, counts);
+        DataRoot root = Reader.readXML(result);
+        int checked = 0;
+        for (DataClass c : root.getClasses()) {
+            for (DataMethod m : c.getMethods()) {
+                int id = ((DataMethodEntryOnly) m).getId();
+                assertEquals(m.getCount(), id % 5 % 3 + 2 * counts[id], c.getName() + "." + m.getName());
+                ++checked;
+            }
+        }
+        root.destroy();
+        assertEquals(checked, counts.length);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2026, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.tdk.jcov.util;
+
+import com.sun.tdk.jcov.util.Utils.Pattern;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class PatternMatcherTest {
+
+    static final String[] NAMES = {
+            "", "/", "/com", "/com/", "/com/foo", "/com/foo/", "/com/foo/Bar", "/com/foo/Bar$1",
+            "/com/foo/Bar$Inner$2", "/com/foo/bar/Baz", "/com/foobar/Baz", "/com/fo", "/org/foo/Bar",
+            "/com/foo/Bar-1", "/com/foo/Bar-1/X", "/com/foo/Bar$-1", "/com/foo/B\u00e4r", "/com/foo/\u00c9t\u00e9/A",
+            "/com/foo/Bar\n", "/com/foo/Bar$\n", "/com/foo/x/\n", "/com/foo/Bar$\u2028", "/Default", "/Default$1", "/java/lang/Shutdown",
+            "java.base", "jdk.compiler", "com/foo/Bar", "com/foo/Bar.run", "com/foo/Bar.<init>"
+    };
+
+    @DataProvider
+    public Object[][] filters() {
+        return new Object[][]{
+                {new String[0], new String[0]},
+                {new String[]{"com.foo.*"}, new String[0]},
+                {new String[]{"com.foo.**"}, new String[]{"com.foo.bar.*"}},
+                {new String[]{"com.foo"}, new String[]{"com.foo.Bar$Inner"}},
+                {new String[]{"/"}, new String[]{"com.foo.Bar"}},
+                {new String[]{"com.foo.Bar|org.*"}, new String[]{"com.*.Baz", "com.foo.B*"}},
+                {new String[]{"com/f*"}, new String[]{"com/foo/Bar-1"}},
+                {new String[0], new String[]{"com.foo.*", "java.lang.Shutdown"}},
+                {new String[]{"com.foo.***", "com.foo.Bar$$Inner"}, new String[]{"*"}}
+        };
+    }
+
+    @Test(dataProvider = "filters")
+    public void sameAsRegexps(String[] includes, String[] excludes) {
+        Pattern[] alls = Utils.concatFilters(includes, excludes);
+        PatternMatcher matcher = new PatternMatcher(alls);
+        for (String name : NAMES) {
+            assertEquals(Utils.accept(matcher, null, name, null), accept(alls, name), name);
+        }
+        Pattern[] modules = Utils.concatModuleFilters(includes, excludes);
+        matcher = new PatternMatcher(modules);
+        for (String name : NAMES) {
+            assertEquals(Utils.accept(matcher, null, name, null), accept(modules, name), name);
+        }
+    }
+
+    @Test
+    public void plainMasksInTrie() {
+        PatternMatcher matcher = Utils.compileFilters(new String[]{"java.*", "javax.**", "com.foo.Bar$Inner"},
+                new String[]{"java.lang.invoke", "java.util.*$*"});
+        assertEquals(matcher.regexps.length, 1);
+        assertEquals(matcher.getPatterns()[matcher.regexps[0]].element, "/java/util/*\\$*");
+    }
+
+    /**
+     * Utils.accept() as it was before PatternMatcher
+     */
+    private static boolean accept(Pattern[] alls, String className) {
+        Boolean parentIncluded = null;
+        boolean included = false;
+        for (Pattern p : alls) {
+            included |= p.included;
+            if (p.patt.matcher(className).matches()) {
+                parentIncluded = p.included;
+            }
+        }
+        return parentIncluded != null ? parentIncluded : !included;
+    }
+
+    @Test
+    public void sameAsStringMatches() {
+        String[] regexps = {"", ".*", "com/foo/.*", "com/foo/Bar|com/foo/Bar\\$.*", "com/foo/Bar\\.run|com/foo/Bar.<init>",
+                "com.foo.*", "com/foo/Ba.", "com/foo/Bar\\.*", "(com|org)/foo/.*", "com/foo/[A-Z].*", "com/foo/Bar|",
+                "com/foo/\\w+", "java\\.base|jdk\\..*", "^com/foo/Bar$", "com/foo/B?ar.*"};
+        for (String regexp : regexps) {
+            NameMatcher matcher = new NameMatcher(regexp);
+            for (String name : NAMES) {
+                assertEquals(matcher.matches(name), name.matches(regexp), regexp + " " + name);
+            }
+        }
+    }
+}